@@ -0,0 +1,56 @@
+#!/bin/sh
+# Compares the read endpoints on platform threads (Tomcat pool) and on virtual threads
+# In-JVM version on H2, without Docker: ReadThroughputBenchmarkTests (mvn test -Pbenchmarks)
+# Usage (from the project root): sh docker/benchmark-reads.sh [concurrency] [duration]
+# It needs the database of docker-compose.yml running: docker compose -f docker/docker-compose.yml up -d db
+# Rate limit and admission control are disabled, so every request reaches the database
+# and the results show throughput and latency, not 429 / 503 answers
+set -e
+
+CONCURRENCY=${1:-400}
+DURATION=${2:-30s}
+NETWORK=$(docker inspect reservation_db --format '{{range $k, $v := .NetworkSettings.Networks}}{{$k}}{{end}}')
+BASE=http://reservation_bench:8080/reservation_system
+
+load() {
+  token=$1
+  path=$2
+  docker run --rm --network "$NETWORK" williamyeh/hey -z "$DURATION" -c "$CONCURRENCY" \
+    -H "Authorization: Bearer $token" "$BASE$path" | grep -E "Requests/sec|Average|99%|\[[0-9]+\]"
+}
+
+measure() {
+  virtual=$1
+  docker rm -f reservation_bench >/dev/null 2>&1 || true
+
+  docker run -d --name reservation_bench --network "$NETWORK" -p 8082:8080 \
+    -e SPRING_DATASOURCE_URL=jdbc:mysql://db:3306/reservation_system?useCursorFetch=true \
+    -e SPRING_DATASOURCE_USERNAME=root -e SPRING_DATASOURCE_PASSWORD=admin123 \
+    -e SPRING_THREADS_VIRTUAL_ENABLED="$virtual" \
+    -e RATELIMIT_ENABLED=false -e ADMISSION_ENABLED=false \
+    reservation-system:bench >/dev/null
+
+  until curl -sf http://localhost:8082/reservation_system/actuator/health >/dev/null; do
+    sleep 0.2
+  done
+
+  # A new admin per run, the register endpoint returns his token
+  name=bench_$(date +%s%N)
+  token=$(curl -sf -X POST http://localhost:8082/reservation_system/auth/register \
+    -H "Content-Type: application/json" \
+    -d "{\"username\":\"$name\",\"email\":\"$name@mail.com\",\"password\":\"secret\",\"roles\":[\"ADMIN\"]}" \
+    | sed -E 's/.*"access_token":"([^"]+)".*/\1/')
+
+  echo "== virtual threads: $virtual, $CONCURRENCY concurrent clients for $DURATION"
+  echo "-- GET /reservations/"
+  load "$token" /reservations/
+  echo "-- GET /resources/"
+  load "$token" /resources/
+
+  docker rm -f reservation_bench >/dev/null
+}
+
+docker build -q -f docker/Dockerfile -t reservation-system:bench . >/dev/null
+
+measure false
+measure true
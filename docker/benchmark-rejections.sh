@@ -0,0 +1,99 @@
+#!/bin/sh
+# Compares the rejected bookings with and without stack traces in the business exceptions
+# (check @BusinessException): same requests, same answers, only the cost of the throw changes
+# In-JVM version on H2, without Docker: RejectionBenchmarkTests (mvn test -Pbenchmarks, check its doc)
+# - Taken dates: a capacity-1 resource already booked, every request gets 406 under the lock
+# - Deactivated resource: every request gets 409 before the lock
+# Besides throughput and latency, it prints the bytes allocated by the JVM during each load
+# Usage (from the project root): sh docker/benchmark-rejections.sh [concurrency] [duration]
+# It needs the database of docker-compose.yml running: docker compose -f docker/docker-compose.yml up -d db
+# Rate limit and admission control are disabled, so every request reaches the booking code
+set -e
+
+CONCURRENCY=${1:-100}
+DURATION=${2:-30s}
+NETWORK=$(docker inspect reservation_db --format '{{range $k, $v := .NetworkSettings.Networks}}{{$k}}{{end}}')
+BASE=http://reservation_bench:8080/reservation_system
+LOCAL=http://localhost:8085/reservation_system
+
+# Registers a user and prints his token
+register() {
+  curl -sf -X POST "$LOCAL/auth/register" \
+    -H "Content-Type: application/json" \
+    -d "{\"username\":\"$1\",\"email\":\"$1@mail.com\",\"password\":\"secret\",\"roles\":[\"$2\"]}" \
+    | sed -E 's/.*"access_token":"([^"]+)".*/\1/'
+}
+
+# Creates a capacity-1 resource and prints its ID
+resource() {
+  curl -sf -X POST "$LOCAL/resources/create_resource" \
+    -H "Authorization: Bearer $1" -H "Content-Type: application/json" \
+    -d "{\"name\":\"$2\",\"description\":\"Rejections benchmark\",\"capacity\":1}" >/dev/null
+  curl -sf "$LOCAL/resources/search?q=$2" -H "Authorization: Bearer $1" | sed -E 's/.*"id":([0-9]+).*/\1/'
+}
+
+allocated() {
+  curl -sf "$LOCAL/actuator/metrics/jvm.gc.memory.allocated" -H "Authorization: Bearer $1" \
+    | sed -E 's/.*"value":([0-9.E+]+).*/\1/'
+}
+
+book() {
+  token=$1
+  resource_id=$2
+  docker run --rm --network "$NETWORK" williamyeh/hey -z "$DURATION" -c "$CONCURRENCY" -m POST \
+    -H "Authorization: Bearer $token" -T "application/json" \
+    -d "{\"resource_id\":$resource_id,\"start_date\":\"2040-01-10\",\"end_date\":\"2040-01-12\"}" \
+    "$BASE/reservations/create_reservation" | grep -E "Requests/sec|Average|99%|\[[0-9]+\]"
+}
+
+load() {
+  admin=$1
+  before=$(allocated "$admin")
+  book "$2" "$3"
+  after=$(allocated "$admin")
+  awk -v b="$before" -v a="$after" 'BEGIN { printf "  Allocated:\t%.0f MB\n", (a - b) / 1048576 }'
+}
+
+measure() {
+  traces=$1
+  docker rm -f reservation_bench >/dev/null 2>&1 || true
+
+  docker run -d --name reservation_bench --network "$NETWORK" -p 8085:8080 \
+    -e SPRING_DATASOURCE_URL=jdbc:mysql://db:3306/reservation_system?useCursorFetch=true \
+    -e SPRING_DATASOURCE_USERNAME=root -e SPRING_DATASOURCE_PASSWORD=admin123 \
+    -e JAVA_OPTS="-Dbusiness-errors.stack-traces=$traces" \
+    -e RATELIMIT_ENABLED=false -e ADMISSION_ENABLED=false \
+    reservation-system:bench >/dev/null
+
+  until curl -sf "$LOCAL/actuator/health" >/dev/null; do
+    sleep 0.2
+  done
+
+  run=$(date +%s%N)
+  admin=$(register "bench_admin_$run" ADMIN)
+  owner=$(register "bench_owner_$run" USER)
+  user=$(register "bench_user_$run" USER)
+
+  # The owner takes the dates, the user is rejected on every request
+  taken=$(resource "$admin" "bench_taken_$run")
+  curl -sf -o /dev/null -X POST "$LOCAL/reservations/create_reservation" \
+    -H "Authorization: Bearer $owner" -H "Content-Type: application/json" \
+    -d "{\"resource_id\":$taken,\"start_date\":\"2040-01-10\",\"end_date\":\"2040-01-12\"}"
+
+  inactive=$(resource "$admin" "bench_inactive_$run")
+  curl -sf -o /dev/null -X PATCH "$LOCAL/resources/deactivate_resource/$inactive" \
+    -H "Authorization: Bearer $admin"
+
+  echo "== stack traces: $traces, $CONCURRENCY concurrent clients for $DURATION"
+  echo "-- taken dates (406)"
+  load "$admin" "$user" "$taken"
+  echo "-- deactivated resource (409)"
+  load "$admin" "$user" "$inactive"
+
+  docker rm -f reservation_bench >/dev/null
+}
+
+docker build -q -f docker/Dockerfile -t reservation-system:bench . >/dev/null
+
+measure true
+measure false
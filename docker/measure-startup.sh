@@ -0,0 +1,34 @@
+#!/bin/sh
+# Reports the time to first request of the normal and the fast-start images
+# Usage (from the project root): sh docker/measure-startup.sh
+# It needs the database of docker-compose.yml running: docker compose -f docker/docker-compose.yml up -d db
+set -e
+
+NETWORK=$(docker inspect reservation_db --format '{{range $k, $v := .NetworkSettings.Networks}}{{$k}}{{end}}')
+
+measure() {
+  image=$1
+  docker rm -f reservation_startup >/dev/null 2>&1 || true
+
+  start=$(date +%s%3N)
+  docker run -d --name reservation_startup --network "$NETWORK" -p 8081:8080 \
+    -e SPRING_DATASOURCE_URL=jdbc:mysql://db:3306/reservation_system?useCursorFetch=true \
+    -e SPRING_DATASOURCE_USERNAME=root -e SPRING_DATASOURCE_PASSWORD=admin123 \
+    "$image" >/dev/null
+
+  # Liveness, not readiness: the readiness probe also waits for the warm-up (check @WarmUp)
+  until curl -sf http://localhost:8081/reservation_system/actuator/health/liveness >/dev/null; do
+    sleep 0.05
+  done
+  end=$(date +%s%3N)
+
+  echo "$image: first request answered $((end - start)) ms after docker run"
+  docker logs reservation_startup 2>&1 | grep "Time to first request" || true
+  docker rm -f reservation_startup >/dev/null
+}
+
+docker build -q -f docker/Dockerfile -t reservation-system:normal . >/dev/null
+docker build -q -f docker/Dockerfile --build-arg FAST_START=true -t reservation-system:fast-start . >/dev/null
+
+measure reservation-system:normal
+measure reservation-system:fast-start
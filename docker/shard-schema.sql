@@ -0,0 +1,56 @@
+-- Schema of the extra shards (bookings only, routed by resource id)
+-- Hibernate only updates the home shard, this file is run by the MySQL image
+-- the first time the shard container starts (docker-entrypoint-initdb.d)
+-- It can run again on an existing shard (the two-shard test runs it on every connection)
+-- Users and resources live in home: no foreign keys to them here
+
+create table if not exists reservations (
+    id bigint auto_increment primary key,
+    user_id bigint not null,
+    resource_id bigint not null,
+    start_date_time date not null,
+    end_date_time date not null,
+    status varchar(20) not null,
+    index idx_reservations_resource (resource_id, status),
+    index idx_reservations_user (user_id, status)
+);
+
+create table if not exists recurring_reservations (
+    id bigint auto_increment primary key,
+    user_id bigint not null,
+    resource_id bigint not null,
+    start_date date not null,
+    end_date date not null,
+    frequency varchar(10) not null,
+    repeat_every int not null default 1,
+    occurrences int not null,
+    last_end_date date not null,
+    status varchar(20) not null,
+    index idx_recurring_resource_window (resource_id, start_date, last_end_date),
+    index idx_recurring_user (user_id, status)
+);
+
+create table if not exists waitlist_entries (
+    id bigint auto_increment primary key,
+    user_id bigint not null,
+    resource_id bigint not null,
+    start_date date not null,
+    end_date date not null,
+    priority int not null default 0,
+    status varchar(20) not null,
+    reservation_id bigint,
+    created_at datetime not null default current_timestamp,
+    index idx_waitlist_queue (resource_id, status, priority, id),
+    index idx_waitlist_user (user_id, status)
+);
+
+create table if not exists resource_locks (
+    resource_id bigint primary key,
+    version bigint not null
+);
+create table if not exists resource_usage_daily (
+    resource_id bigint not null,
+    usage_date date not null,
+    booked_units int not null,
+    primary key (resource_id, usage_date)
+);
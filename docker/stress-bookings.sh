@@ -0,0 +1,90 @@
+#!/bin/sh
+# Books the same dates of one resource from many users at once, through two app instances
+# The resource has capacity 1, so exactly one booking must succeed: the others get 406
+# (dates taken) or 503 (lock busy, retry). More than one 200 means an overbooking
+# Usage (from the project root): sh docker/stress-bookings.sh [users]
+# It needs the databases of docker-compose.yml running: docker compose -f docker/docker-compose.yml up -d db db_shard1
+# Rate limit is disabled in both instances, so every request reaches the booking code
+set -e
+
+USERS=${1:-40}
+NETWORK=$(docker inspect reservation_db --format '{{range $k, $v := .NetworkSettings.Networks}}{{$k}}{{end}}')
+OUT=$(mktemp -d)
+
+start() {
+  name=$1
+  port=$2
+  docker rm -f "$name" >/dev/null 2>&1 || true
+  docker run -d --name "$name" --network "$NETWORK" -p "$port":8080 \
+    -e SPRING_DATASOURCE_URL="jdbc:mysql://db:3306/reservation_system?useCursorFetch=true&sessionVariables=innodb_lock_wait_timeout=5" \
+    -e SPRING_DATASOURCE_USERNAME=root -e SPRING_DATASOURCE_PASSWORD=admin123 \
+    -e SHARDING_SHARDS_0_URL="jdbc:mysql://db_shard1:3306/reservation_system?useCursorFetch=true&sessionVariables=innodb_lock_wait_timeout=5" \
+    -e SHARDING_SHARDS_0_USERNAME=root -e SHARDING_SHARDS_0_PASSWORD=admin123 \
+    -e RATELIMIT_ENABLED=false \
+    reservation-system:stress >/dev/null
+}
+
+wait_ready() {
+  until curl -sf "http://localhost:$1/reservation_system/actuator/health" >/dev/null; do
+    sleep 0.2
+  done
+}
+
+# Registers a user and prints his token
+register() {
+  curl -sf -X POST "http://localhost:8083/reservation_system/auth/register" \
+    -H "Content-Type: application/json" \
+    -d "{\"username\":\"$1\",\"email\":\"$1@mail.com\",\"password\":\"secret\",\"roles\":[\"$2\"]}" \
+    | sed -E 's/.*"access_token":"([^"]+)".*/\1/'
+}
+
+docker build -q -f docker/Dockerfile -t reservation-system:stress . >/dev/null
+start reservation_stress_a 8083
+start reservation_stress_b 8084
+wait_ready 8083
+wait_ready 8084
+
+run=$(date +%s)
+admin=$(register "stress_admin_$run" ADMIN)
+curl -sf -X POST "http://localhost:8083/reservation_system/resources/create_resource" \
+  -H "Authorization: Bearer $admin" -H "Content-Type: application/json" \
+  -d "{\"name\":\"stress_room_$run\",\"description\":\"Stress test\",\"capacity\":1}" >/dev/null
+resource=$(curl -sf "http://localhost:8083/reservation_system/resources/search?q=stress_room_$run" \
+  -H "Authorization: Bearer $admin" | sed -E 's/.*"id":([0-9]+).*/\1/')
+
+i=0
+while [ "$i" -lt "$USERS" ]; do
+  register "stress_user_${run}_$i" USER > "$OUT/token_$i"
+  i=$((i + 1))
+done
+
+# Every user books the same dates at the same time, half of them through each instance
+i=0
+while [ "$i" -lt "$USERS" ]; do
+  port=$((8083 + i % 2))
+  curl -s -o /dev/null -w "%{http_code}\n" -X POST \
+    "http://localhost:$port/reservation_system/reservations/create_reservation" \
+    -H "Authorization: Bearer $(cat "$OUT/token_$i")" -H "Content-Type: application/json" \
+    -d "{\"resource_id\":$resource,\"start_date\":\"2040-01-10\",\"end_date\":\"2040-01-12\"}" \
+    > "$OUT/status_$i" &
+  i=$((i + 1))
+done
+wait
+
+echo "Responses (status code, count):"
+cat "$OUT"/status_* | sort | uniq -c
+booked=$(cat "$OUT"/status_* | grep -c '^200$' || true)
+
+echo "Lock waits:"
+curl -sf "http://localhost:8083/reservation_system/actuator/metrics/booking.lock.wait" \
+  -H "Authorization: Bearer $admin" || true
+echo
+
+docker rm -f reservation_stress_a reservation_stress_b >/dev/null
+rm -rf "$OUT"
+
+if [ "$booked" -ne 1 ]; then
+  echo "FAILED: $booked bookings for a resource of capacity 1"
+  exit 1
+fi
+echo "OK: exactly one booking"
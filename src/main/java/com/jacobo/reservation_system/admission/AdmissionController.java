@@ -0,0 +1,183 @@
+package com.jacobo.reservation_system.admission;
+
+import com.jacobo.reservation_system.sharding.ShardPools;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides if a request is admitted depending on the JDBC pool saturation
+ * It reads the Hikari pool state (threads waiting for a connection and
+ * recent connection acquire time) and sheds requests by priority:
+ * HEAVY ones first, then NORMAL ones, and CRITICAL ones only when the pool is really stuck
+ * Every shard has its own pool (check @ShardPools). The shard of a request is only known
+ * inside the service, so a request is shed when the most saturated pool is over the limits
+ * Exposes "admission.shed" (tag: priority), "admission.pool.waiting" and
+ * "admission.pool.active" (tag: pool)
+ */
+@Component
+public class AdmissionController {
+    public enum Priority {
+        EXEMPT, // Never touches the database
+        CRITICAL,
+        NORMAL,
+        HEAVY
+    }
+
+    private final AdmissionProperties properties;
+    private final ShardPools pools;
+    private final MeterRegistry registry;
+    private final AntPathMatcher matcher = new AntPathMatcher();
+    private final Map<Priority, Counter> shedCounters = new EnumMap<>(Priority.class);
+
+    /**
+     * "hikaricp.connections.acquire" of each pool, by pool name
+     * Resolved on first use, the timer doesn't exist until the pool is started
+     */
+    private final Map<String, Timer> acquireTimers = new ConcurrentHashMap<>();
+
+    public AdmissionController(AdmissionProperties properties, ShardPools pools, MeterRegistry registry) {
+        this.properties = properties;
+        this.pools = pools;
+        this.registry = registry;
+
+        for (Priority priority : Priority.values()) {
+            shedCounters.put(priority, Counter.builder("admission.shed")
+                    .description("Requests rejected with 503 because the JDBC pool is saturated")
+                    .tag("priority", priority.name())
+                    .register(registry));
+        }
+
+        for (HikariDataSource pool : pools.all()) {
+            Gauge.builder("admission.pool.waiting", pool, p -> waiting(p))
+                    .description("Threads waiting for a JDBC connection")
+                    .tag("pool", pool.getPoolName())
+                    .register(registry);
+            Gauge.builder("admission.pool.active", pool, p -> active(p))
+                    .description("JDBC connections in use")
+                    .tag("pool", pool.getPoolName())
+                    .register(registry);
+        }
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Classifies a request by its method and path
+     * @param method HTTP method
+     * @param path path without context path
+     * @return priority of the request
+     */
+    public Priority classify(String method, String path) {
+        if (matches(properties.getExemptPaths(), method, path)) {
+            return Priority.EXEMPT;
+        }
+        if (matches(properties.getCriticalPaths(), method, path)) {
+            return Priority.CRITICAL;
+        }
+        if (matches(properties.getHeavyPaths(), method, path)) {
+            return Priority.HEAVY;
+        }
+
+        return Priority.NORMAL;
+    }
+
+    /**
+     * Checks the pool state against the limits of the priority
+     * @param priority priority of the request
+     * @return true if the request can go on, false if it must be shed
+     */
+    public boolean admit(Priority priority) {
+        if (priority == Priority.EXEMPT) {
+            return true;
+        }
+
+        AdmissionProperties.Limits limits = switch (priority) {
+            case CRITICAL -> properties.getCritical();
+            case HEAVY -> properties.getHeavy();
+            default -> properties.getNormal();
+        };
+
+        for (HikariDataSource pool : pools.all()) {
+            if (saturated(pool, limits)) {
+                shedCounters.get(priority).increment();
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    public int getRetryAfterSeconds() {
+        return properties.getRetryAfterSeconds();
+    }
+
+    private boolean matches(List<String> patterns, String method, String path) {
+        for (String pattern : patterns) {
+            // Patterns may start with the HTTP method, e.g. "GET /users/"
+            int space = pattern.indexOf(' ');
+            if (space > 0) {
+                if (pattern.regionMatches(true, 0, method, 0, space) && method.length() == space
+                        && matcher.match(pattern.substring(space + 1), path)) {
+                    return true;
+                }
+            } else if (matcher.match(pattern, path)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean saturated(HikariDataSource pool, AdmissionProperties.Limits limits) {
+        // Null until the pool is started by its first connection request
+        HikariPoolMXBean state = pool.getHikariPoolMXBean();
+        if (state == null) {
+            return false;
+        }
+
+        int waiting = state.getThreadsAwaitingConnection();
+        // The acquire time only counts while there's a queue, otherwise an old peak would keep shedding
+        return waiting > limits.getMaxWaiting()
+                || (waiting > 0 && recentAcquireMs(pool.getPoolName()) > limits.getMaxAcquireMs());
+    }
+
+    /**
+     * Recent maximum connection acquire time of one pool, recorded by the Hikari metrics
+     */
+    private double recentAcquireMs(String poolName) {
+        Timer timer = acquireTimers.get(poolName);
+        if (timer == null) {
+            timer = registry.find("hikaricp.connections.acquire").tag("pool", poolName).timer();
+            if (timer == null) {
+                return 0;
+            }
+            acquireTimers.put(poolName, timer);
+        }
+
+        return timer.max(TimeUnit.MILLISECONDS);
+    }
+
+    private static double waiting(HikariDataSource pool) {
+        HikariPoolMXBean state = pool.getHikariPoolMXBean();
+        return state == null ? 0 : state.getThreadsAwaitingConnection();
+    }
+
+    private static double active(HikariDataSource pool) {
+        HikariPoolMXBean state = pool.getHikariPoolMXBean();
+        return state == null ? 0 : state.getActiveConnections();
+    }
+}
@@ -0,0 +1,53 @@
+package com.jacobo.reservation_system.admission;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Filter that sheds requests with 503 + Retry-After when the JDBC pool is saturated
+ * It runs before the security chain, so a rejected request releases its Tomcat thread
+ * right away instead of waiting the whole connection timeout (check @AdmissionController)
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 2)
+public class AdmissionFilter extends OncePerRequestFilter {
+    private final AdmissionController admission;
+
+    public AdmissionFilter(AdmissionController admission) {
+        this.admission = admission;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest req) {
+        return !admission.isEnabled();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest req, HttpServletResponse res, FilterChain chain)
+            throws ServletException, IOException {
+        String path = req.getRequestURI().substring(req.getContextPath().length());
+        AdmissionController.Priority priority = admission.classify(req.getMethod(), path);
+
+        if (!admission.admit(priority)) {
+            res.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            res.setHeader(HttpHeaders.RETRY_AFTER, Integer.toString(admission.getRetryAfterSeconds()));
+            res.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            res.getWriter().write("{\"error\":\"Service overloaded\",\"message\":\"Try again in "
+                    + admission.getRetryAfterSeconds() + " seconds\"}");
+            return;
+        }
+
+        chain.doFilter(req, res);
+    }
+}
@@ -0,0 +1,54 @@
+package com.jacobo.reservation_system.admission;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Admission control settings read from application.properties (prefix "admission")
+ * Requests are classified by path (Ant patterns, without context path) and each
+ * priority has its own limits: heavy requests are shed first, critical ones last
+ */
+@Component
+@ConfigurationProperties(prefix = "admission")
+@Data
+public class AdmissionProperties {
+    private boolean enabled = true;
+
+    /**
+     * Seconds sent in the Retry-After header of a 503
+     */
+    private int retryAfterSeconds = 2;
+
+    /**
+     * Paths that never touch the database (Swagger, health), never shed
+     */
+    private List<String> exemptPaths = new ArrayList<>();
+    /**
+     * Cheap or important paths (login, cancellations), shed last
+     */
+    private List<String> criticalPaths = new ArrayList<>();
+    /**
+     * Expensive paths (admin lists), shed first. Format: "METHOD /path"
+     */
+    private List<String> heavyPaths = new ArrayList<>();
+
+    private Limits critical = new Limits();
+    private Limits normal = new Limits();
+    private Limits heavy = new Limits();
+
+    @Data
+    public static class Limits {
+        /**
+         * Threads already waiting for a pool connection above which requests are shed
+         */
+        private int maxWaiting;
+        /**
+         * Recent maximum time to get a connection (ms) above which requests are shed
+         */
+        private long maxAcquireMs;
+    }
+}
@@ -39,7 +39,8 @@ public class AuthConfig {
      */
     @Bean
     public UserDetailsService userDetailsService() {
-        return username -> usersRepository.findByUsername(username)
+        // Roles are loaded in the same query because Spring Security reads the authorities
+        return username -> usersRepository.findWithRoleByUsername(username)
                 .orElseThrow(() -> new RuntimeException("User not found"));
     }
 }
@@ -1,10 +1,14 @@
 package com.jacobo.reservation_system.auth;
 
+import com.jacobo.reservation_system.observability.RequestTiming;
+import com.jacobo.reservation_system.profiling.JwtCheckEvent;
+import com.jacobo.reservation_system.revocation.TokenRevocations;
 import com.jacobo.reservation_system.services.implementation.JwtService;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -18,7 +22,7 @@ import java.util.List;
  * JWT authentication filter for Spring Security
  * It intercepts each HTTP request and validates the JWT token present in the Authorization header
  * If the token is valid, it establishes authentication in the security context with the user roles
- * If the token is invalid or not present, the request continues without authentication
+ * If the token is invalid, revoked or not present, the request continues without authentication
  */
 @Component
 public class JwtAuthFilter extends OncePerRequestFilter {
@@ -27,13 +31,26 @@ public class JwtAuthFilter extends OncePerRequestFilter {
      * Service for the management and validation of JWT tokens
      */
     private final JwtService jwtService;
+    /**
+     * Deny-list of revoked tokens and users
+     */
+    private final TokenRevocations revocations;
+    /**
+     * The token check is timed for sampled requests (check @ServerTimingFilter)
+     */
+    private final boolean timingEnabled;
 
     /**
-     * Constructor that injects the JWT service
+     * Constructor that injects the JWT service and the deny-list
      * @param jwtService service to parse and validate tokens
+     * @param revocations revoked tokens, checked in memory
+     * @param timingEnabled true if the phases of the requests are measured
      */
-    public JwtAuthFilter(JwtService jwtService) {
+    public JwtAuthFilter(JwtService jwtService, TokenRevocations revocations,
+                         @Value("${server-timing.enabled:false}") boolean timingEnabled) {
         this.jwtService = jwtService;
+        this.revocations = revocations;
+        this.timingEnabled = timingEnabled;
     }
 
     /**
@@ -56,11 +73,38 @@ public class JwtAuthFilter extends OncePerRequestFilter {
             return;
         }
 
+        RequestTiming timing = timingEnabled ? RequestTiming.current() : null;
+        long start = timing == null ? 0 : System.nanoTime();
+
         // Extract the JWT token
         String token = header.substring(7);
+        JwtCheckEvent event = JwtCheckEvent.started();
+        event.finish(authenticate(token));
+
+        if (timing != null) {
+            timing.add(RequestTiming.Phase.AUTH, System.nanoTime() - start);
+        }
+
+        //Continue with the filter chain
+        chain.doFilter(req, res);
+    }
+
+    /**
+     * Validates the token and establishes the authentication, or clears the context
+     * @param token JWT token without the "Bearer " prefix
+     * @return valid, revoked or invalid
+     */
+    private String authenticate(String token) {
         try {
             // Parse and validate the token
             io.jsonwebtoken.Claims claims = jwtService.parse(token);
+
+            // A revoked token (logout) or user (deactivated, deleted) is treated as an invalid token
+            if (revocations.isRevoked(claims)) {
+                SecurityContextHolder.clearContext();
+                return "revoked";
+            }
+
             String username = claims.getSubject();
 
             @SuppressWarnings("unchecked")
@@ -78,13 +122,12 @@ public class JwtAuthFilter extends OncePerRequestFilter {
                     new UsernamePasswordAuthenticationToken(username, "N/A", authorities);
 
             SecurityContextHolder.getContext().setAuthentication(auth);
+            return "valid";
         } catch (Exception e) {
             //If the token is invalid, clear the security context
             SecurityContextHolder.clearContext();
+            return "invalid";
         }
-
-        //Continue with the filter chain
-        chain.doFilter(req, res);
     }
 }
 
@@ -1,7 +1,12 @@
 package com.jacobo.reservation_system.auth;
 
 // Imports required for security configuration
+import com.jacobo.reservation_system.idempotency.IdempotencyFilter; // Filter that replays responses of retried POST requests
+import com.jacobo.reservation_system.idempotency.IdempotencyStore; // Store of the responses of idempotent requests
+import com.jacobo.reservation_system.ratelimit.RateLimitFilter; // Filter that applies per-user and per-IP token buckets
+import com.jacobo.reservation_system.ratelimit.RateLimiter; // Token buckets and rules of the rate limit
 import lombok.RequiredArgsConstructor; // Automatically generates the constructor with the fields marked as 'final'
+import org.springframework.beans.factory.annotation.Value; // It allows injecting values from application.properties
 import org.springframework.context.annotation.Bean; // It allows you to define methods that return objects managed by Spring
 import org.springframework.context.annotation.Configuration; // Indicates that this class contains Spring configuration
 import org.springframework.security.authentication.AuthenticationManager; // Manage the authentication process
@@ -35,6 +40,13 @@ public class SecurityConfig {
     private final UserDetailsService uds;
     // Password encoder, for example BCrypt. It is used to securely store and verify passwords
     private final PasswordEncoder encoder;
+    // Token buckets used by the rate limit filter
+    private final RateLimiter rateLimiter;
+    // Store used by the idempotency filter to replay responses of retried requests
+    private final IdempotencyStore idempotencyStore;
+    // Maximum time a duplicated request waits for the first execution of its Idempotency-Key
+    @Value("${idempotency.wait-timeout-ms}")
+    private long idempotencyWaitTimeoutMs;
 
     /**
      * Configure the security filter chain and access rules
@@ -58,10 +70,14 @@ public class SecurityConfig {
                                 // endpoints. Otherwise, no one else
                                 "/auth/login",
                                 "/auth/register",
+                                "/openapi.json",
                                 "/v3/api-docs/**",
                                 "/swagger-ui/**",
-                                "/swagger-ui.html"
+                                "/swagger-ui.html",
+                                "/actuator/health/**"
                         ).permitAll()
+                        // Metrics and the rest of Actuator endpoints are only for administrators
+                        .requestMatchers("/actuator/**").hasRole("ADMIN")
                         .anyRequest().authenticated()
                 )
 
@@ -69,6 +85,11 @@ public class SecurityConfig {
                 .authenticationProvider(authenticationProvider())
                 // Add the JWT filter before the standard username/password filter
                 .addFilterBefore(jwtFilter, UsernamePasswordAuthenticationFilter.class)
+                // Add the rate limit filter after the JWT filter, so limits are applied per authenticated user
+                // It is not a @Component to avoid Spring Boot registering it again outside the security chain
+                .addFilterAfter(new RateLimitFilter(rateLimiter), JwtAuthFilter.class)
+                // Add the idempotency filter after the rate limit, so keys are scoped to the authenticated user
+                .addFilterAfter(new IdempotencyFilter(idempotencyStore, idempotencyWaitTimeoutMs), RateLimitFilter.class)
                 .build(); // Build and return the filter chain
     }
 
@@ -105,9 +126,9 @@ public class SecurityConfig {
         // Allow these HTTP methods
         cfg.setAllowedMethods(List.of("GET","POST","PUT","PATCH","DELETE","OPTIONS"));
         // Allow these headers in requests
-        cfg.setAllowedHeaders(List.of("Authorization","Content-Type","Accept"));
-        // Expose the Authorization header in the responses
-        cfg.setExposedHeaders(List.of("Authorization"));
+        cfg.setAllowedHeaders(List.of("Authorization","Content-Type","Accept", IdempotencyFilter.HEADER));
+        // Expose the Authorization and Idempotency-Replayed headers in the responses
+        cfg.setExposedHeaders(List.of("Authorization", IdempotencyFilter.REPLAYED_HEADER));
         // Allows sending credentials (cookies, tokens)
         cfg.setAllowCredentials(true);
         // Defines how long the CORS configuration is cached in the browser
@@ -0,0 +1,269 @@
+package com.jacobo.reservation_system.availability;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jacobo.reservation_system.exceptions.MissFillingFieldsException;
+import com.jacobo.reservation_system.models.dtos.ResourcesDtos.AvailabilityEventOutDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Server-Sent Events of availability changes, per resource
+ * Clients subscribe to some resources and receive an event when a booking change
+ * of one of them commits, instead of polling the lists every few seconds
+ * ---------------------------------------------------------------------------
+ * Events are published by the booking code inside its transaction and sent after
+ * the commit (never for a rollback). Each event is serialized once and the same
+ * frame is queued to every subscriber of the resource
+ * - An idle subscriber holds no thread: only its emitter and a small buffer
+ * - Each subscriber has a bounded buffer (availability-stream.buffer-size frames),
+ *   drained by a virtual thread only while it has frames. A write to a slow client
+ *   parks that thread, never the publisher nor the other subscribers
+ * - A subscriber whose buffer is full is a slow consumer: its stream is closed
+ *   ("availability.stream.evicted") and the client reconnects and refreshes
+ * - A heartbeat comment every availability-stream.heartbeat-ms keeps proxies from
+ *   closing idle streams and detects the clients that are gone
+ * Events are not replayed: after a (re)connection the client refreshes what it
+ * shows once, then applies the events. Only the bookings committed by this instance
+ * are sent, so with several instances the clients must subscribe on every one of them
+ * or keep a slow poll as fallback
+ */
+@Slf4j
+@Component
+public class AvailabilityStream {
+    private final ObjectMapper mapper;
+    private final int maxResources;
+    private final int bufferSize;
+    private final long timeoutMs;
+
+    private final Map<Long, Set<Subscriber>> byResource = new ConcurrentHashMap<>();
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final AtomicLong sequence = new AtomicLong();
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+    private final Counter evicted;
+
+    public AvailabilityStream(ObjectMapper mapper, MeterRegistry registry,
+                              @Value("${availability-stream.max-resources:50}") int maxResources,
+                              @Value("${availability-stream.buffer-size:32}") int bufferSize,
+                              @Value("${availability-stream.timeout-ms:1800000}") long timeoutMs) {
+        this.mapper = mapper;
+        this.maxResources = maxResources;
+        this.bufferSize = Math.max(1, bufferSize);
+        this.timeoutMs = timeoutMs;
+
+        Gauge.builder("availability.stream.subscribers", subscribers, Set::size)
+                .description("Open availability streams")
+                .register(registry);
+        this.evicted = Counter.builder("availability.stream.evicted")
+                .description("Availability streams closed because the client didn't keep up")
+                .register(registry);
+    }
+
+    /**
+     * Opens a stream of the changes of some resources
+     * Unknown resources are accepted, they just never change
+     * @param resourceIds resources to follow
+     * @return emitter, returned by the controller
+     */
+    public SseEmitter subscribe(Collection<Long> resourceIds) {
+        if (resourceIds == null || resourceIds.isEmpty()) {
+            throw new MissFillingFieldsException("Enter at least one resource ID");
+        }
+
+        Set<Long> ids = new TreeSet<>(resourceIds);
+        if (ids.size() > maxResources) {
+            throw new MissFillingFieldsException("A stream can follow at most " + maxResources + " resources");
+        }
+
+        Subscriber subscriber = new Subscriber(new SseEmitter(timeoutMs), ids, bufferSize);
+        subscriber.emitter.onCompletion(() -> unregister(subscriber));
+        subscriber.emitter.onTimeout(subscriber.emitter::complete); // The client reconnects
+        subscriber.emitter.onError(e -> unregister(subscriber));
+
+        subscribers.add(subscriber);
+        for (Long id : ids) {
+            byResource.compute(id, (key, set) -> {
+                Set<Subscriber> followers = set == null ? ConcurrentHashMap.newKeySet() : set;
+                followers.add(subscriber);
+                return followers;
+            });
+        }
+
+        // First frame: the response starts right away and the client knows when to refresh
+        try {
+            send(subscriber, SseEmitter.event().name("subscribed").data(mapper.writeValueAsString(ids)).build());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+
+        return subscriber.emitter;
+    }
+
+    /**
+     * Sends a change of a resource to its subscribers when the current transaction commits
+     * (right away if there's no transaction)
+     * @param resourceId changed resource
+     * @param type booked, released, deactivated or changed
+     * @param start first day of the changed range, null if it's the whole resource
+     * @param end day after the last one, null if it's the whole resource
+     */
+    public void publish(Long resourceId, String type, LocalDate start, LocalDate end) {
+        AvailabilityEventOutDTO event = new AvailabilityEventOutDTO(resourceId, type, start, end);
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            dispatch(event);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                dispatch(event);
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${availability-stream.heartbeat-ms:25000}",
+            initialDelayString = "${availability-stream.heartbeat-ms:25000}")
+    public void heartbeat() {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+
+        Set<DataWithMediaType> frame = SseEmitter.event().comment("heartbeat").build();
+        subscribers.forEach(subscriber -> send(subscriber, frame));
+    }
+
+    @PreDestroy
+    public void closeAll() {
+        subscribers.forEach(this::close);
+        senders.shutdownNow();
+    }
+
+    private void dispatch(AvailabilityEventOutDTO event) {
+        Set<Subscriber> followers = byResource.get(event.getResource_id());
+        if (followers == null) {
+            return;
+        }
+
+        Set<DataWithMediaType> frame;
+        try {
+            frame = SseEmitter.event()
+                    .id(Long.toString(sequence.incrementAndGet()))
+                    .name(event.getType())
+                    .data(mapper.writeValueAsString(event))
+                    .build();
+        } catch (JsonProcessingException e) {
+            log.warn("Availability event of resource {} not sent: {}", event.getResource_id(), e.getMessage());
+            return;
+        }
+
+        followers.forEach(subscriber -> send(subscriber, frame));
+    }
+
+    /**
+     * Queues a frame without blocking, the subscriber is evicted if its buffer is full
+     */
+    private void send(Subscriber subscriber, Set<DataWithMediaType> frame) {
+        if (subscriber.closed.get()) {
+            return;
+        }
+
+        if (!subscriber.buffer.offer(frame)) {
+            evicted.increment();
+            close(subscriber);
+            return;
+        }
+
+        if (subscriber.draining.compareAndSet(false, true)) {
+            senders.execute(() -> drain(subscriber));
+        }
+    }
+
+    /**
+     * Writes the queued frames, one drain at most per subscriber at a time
+     */
+    private void drain(Subscriber subscriber) {
+        do {
+            Set<DataWithMediaType> frame;
+            while ((frame = subscriber.buffer.poll()) != null) {
+                try {
+                    subscriber.emitter.send(frame);
+                } catch (IOException | IllegalStateException e) {
+                    close(subscriber); // Client gone or stream already completed
+                    return;
+                }
+            }
+            subscriber.draining.set(false);
+
+            // A frame queued after the last poll and before the reset would wait for the next one
+        } while (!subscriber.buffer.isEmpty() && subscriber.draining.compareAndSet(false, true));
+    }
+
+    private void close(Subscriber subscriber) {
+        if (unregister(subscriber)) {
+            subscriber.buffer.clear();
+            try {
+                subscriber.emitter.complete();
+            } catch (RuntimeException e) {
+                // Already completed by the container
+            }
+        }
+    }
+
+    /**
+     * @return false if it was already unregistered
+     */
+    private boolean unregister(Subscriber subscriber) {
+        if (!subscriber.closed.compareAndSet(false, true)) {
+            return false;
+        }
+
+        subscribers.remove(subscriber);
+        for (Long id : subscriber.resourceIds) {
+            byResource.computeIfPresent(id, (key, followers) -> {
+                followers.remove(subscriber);
+                return followers.isEmpty() ? null : followers;
+            });
+        }
+        return true;
+    }
+
+    private static final class Subscriber {
+        final SseEmitter emitter;
+        final Set<Long> resourceIds;
+        final BlockingQueue<Set<DataWithMediaType>> buffer;
+        final AtomicBoolean draining = new AtomicBoolean();
+        final AtomicBoolean closed = new AtomicBoolean();
+
+        Subscriber(SseEmitter emitter, Set<Long> resourceIds, int bufferSize) {
+            this.emitter = emitter;
+            this.resourceIds = resourceIds;
+            this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        }
+    }
+}
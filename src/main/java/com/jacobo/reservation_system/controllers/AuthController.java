@@ -7,6 +7,7 @@ import com.jacobo.reservation_system.models.entities.Roles;
 import com.jacobo.reservation_system.models.entities.Users;
 import com.jacobo.reservation_system.repositories.RolesRepository;
 import com.jacobo.reservation_system.repositories.UsersRepository;
+import com.jacobo.reservation_system.revocation.TokenRevocations;
 import com.jacobo.reservation_system.services.implementation.JwtService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
@@ -50,6 +51,10 @@ public class AuthController {
      * PasswordEncoder to encrypt passwords.
      */
     private final PasswordEncoder passwordEncoder;
+    /**
+     * Deny-list where logged out tokens are revoked
+     */
+    private final TokenRevocations revocations;
 
     /**
      * User login endpoint
@@ -80,7 +85,7 @@ public class AuthController {
         }
 
         // Search for users in the database
-        var user = userRepo.findByUsername(username)
+        var user = userRepo.findWithRoleByUsername(username)
                 .orElseThrow(() -> new UserNotFoundException("Username does not exist"));
 
         if (!user.getActive()) {
@@ -176,6 +181,26 @@ public class AuthController {
         );
     }
 
+    /**
+     * Logout endpoint
+     * Revokes the token of the request, it's refused from now on even before it expires
+     */
+    @Operation(
+            summary = "Logout",
+            description = "Revokes the JWT token sent in the Authorization header"
+    ) //Swagger annotation
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Token revoked"),
+            @ApiResponse(responseCode = "401", description = "Missing, invalid or already revoked token")
+    }) //Swagger annotation
+    @PostMapping("/logout")
+    public Map<String, Object> logout(@RequestHeader("Authorization") String header) {
+        // The filter already validated the token, so it can be parsed again safely
+        revocations.revokeToken(jwt.parse(header));
+
+        return Map.of("message", "Logged out successfully");
+    }
+
     /**
      * Manage authentication errors returning a standard message
      */
@@ -1,18 +1,29 @@
 package com.jacobo.reservation_system.controllers;
 
+import com.jacobo.reservation_system.jackson.JsonArrayStreamer;
+import com.jacobo.reservation_system.models.dtos.ReservationsDtos.CreateRecurringReservationsInDTO;
+import com.jacobo.reservation_system.models.dtos.ReservationsDtos.CreateRecurringReservationsOutDTO;
 import com.jacobo.reservation_system.models.dtos.ReservationsDtos.CreateReservationsInDTO;
 import com.jacobo.reservation_system.models.dtos.ReservationsDtos.CreateReservationsOutDTO;
 import com.jacobo.reservation_system.models.dtos.ReservationsDtos.DeactivateReservationsOutDTO;
 import com.jacobo.reservation_system.models.dtos.ReservationsDtos.GetAllReservationsOutDTO;
+import com.jacobo.reservation_system.models.dtos.ReservationsDtos.ReservationsPageOutDTO;
+import com.jacobo.reservation_system.models.dtos.ReservationsDtos.WaitlistStatusOutDTO;
 import com.jacobo.reservation_system.services.implementation.ReservationsService;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
+import java.io.IOException;
+import java.time.LocalDate;
 
 /**
  * Controller for reservations management
@@ -23,9 +34,11 @@ import java.util.List;
 @RequestMapping("/reservations")
 public class ReservationsController {
     private final ReservationsService reservationSer;
+    private final JsonArrayStreamer jsonStreamer;
 
-    public ReservationsController(ReservationsService reservationSer) {
+    public ReservationsController(ReservationsService reservationSer, JsonArrayStreamer jsonStreamer) {
         this.reservationSer = reservationSer;
+        this.jsonStreamer = jsonStreamer;
     }
 
     @Operation (
@@ -34,10 +47,11 @@ public class ReservationsController {
                     "because is the client"
     ) //Swagger annotation
     @ApiResponses({
-            @ApiResponse(responseCode = "200", description = "Reservation created successfully"),
+            @ApiResponse(responseCode = "200", description = "Reservation created successfully " +
+                    "(or waitlisted if join_waitlist is true and the dates are occupied)"),
             @ApiResponse(responseCode = "401", description = "Role not permitted"),
             @ApiResponse(responseCode = "400", description = "Bad request"),
-            @ApiResponse(responseCode = "406", description = "Reservation is duplicated"),
+            @ApiResponse(responseCode = "406", description = "Reservation is duplicated, with the nearest free windows (free_before, free_after)"),
             @ApiResponse(responseCode = "409", description = "Conflict. Already active reservation"),
             @ApiResponse(responseCode = "404", description = "Resource or user not found")
 
@@ -54,13 +68,32 @@ public class ReservationsController {
                     "(ADMIN = All reservations, (USER) = Only his own ones"
     ) //Swagger annotation
     @ApiResponses({
-            @ApiResponse(responseCode = "200", description = "Reservation created successfully"),
+            @ApiResponse(responseCode = "200", description = "Reservation created successfully",
+                    content = @Content(array = @ArraySchema(schema = @Schema(implementation = GetAllReservationsOutDTO.class)))),
             @ApiResponse(responseCode = "404", description = "User not authenticated yet")
 
     }) //Swagger annotation
     @GetMapping("/")
-    public List<GetAllReservationsOutDTO> listReservations() {
-        return reservationSer.listReservations();
+    public void listReservations(HttpServletResponse response) throws IOException {
+        // The JSON array is written while the rows are read, not built in memory first
+        jsonStreamer.writeArray(response, reservationSer::forEachReservation);
+    }
+
+    @Operation (
+            summary = "Show a page of reservations",
+            description = "Shows reservations of every shard in ID order, a page at a time (Only ADMIN). " +
+                    "Pass the next_after of the response as after to get the next page"
+    ) //Swagger annotation
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Page of reservations"),
+            @ApiResponse(responseCode = "401", description = "Role not permitted")
+
+    }) //Swagger annotation
+    @GetMapping("/page")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ReservationsPageOutDTO pageReservations(@RequestParam(value = "after", required = false) Long after,
+                                                   @RequestParam(value = "limit", defaultValue = "100") int limit) {
+        return reservationSer.pageReservations(after, limit);
     }
 
     @Operation (
@@ -77,4 +110,111 @@ public class ReservationsController {
     public DeactivateReservationsOutDTO deactivateReservation(@PathVariable("id") Long id) {
         return reservationSer.deactivateReservation(id);
     }
+
+    @Operation (
+            summary = "Create recurring reservation",
+            description = "Creates a daily or weekly reservation that repeats until a date " +
+                    "or a number of times (Only USER). The series is stored as one rule"
+    ) //Swagger annotation
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Recurring reservation created successfully"),
+            @ApiResponse(responseCode = "401", description = "Role not permitted"),
+            @ApiResponse(responseCode = "400", description = "Bad request or invalid recurrence"),
+            @ApiResponse(responseCode = "406", description = "An occurrence overlaps an existing reservation"),
+            @ApiResponse(responseCode = "409", description = "Conflict. Already active reservation"),
+            @ApiResponse(responseCode = "404", description = "Resource or user not found")
+
+    }) //Swagger annotation
+    @PostMapping("/create_recurring_reservation")
+    @PreAuthorize("hasRole('USER')")
+    public CreateRecurringReservationsOutDTO createRecurringReservation(
+            @RequestBody CreateRecurringReservationsInDTO inDto) {
+        return reservationSer.createRecurringReservations(inDto);
+    }
+
+    @Operation (
+            summary = "Show occurrences of a recurring reservation",
+            description = "Generates the occurrences of a series, optionally between two dates " +
+                    "(ADMIN = any series, USER = Only his own ones)"
+    ) //Swagger annotation
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Occurrences of the series",
+                    content = @Content(array = @ArraySchema(schema = @Schema(implementation = GetAllReservationsOutDTO.class)))),
+            @ApiResponse(responseCode = "404", description = "Recurring reservation not found")
+
+    }) //Swagger annotation
+    @GetMapping("/recurring/{id}/occurrences")
+    public void listOccurrences(@PathVariable("id") Long id,
+                                @RequestParam(value = "from", required = false)
+                                @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                @RequestParam(value = "to", required = false)
+                                @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                HttpServletResponse response) throws IOException {
+        jsonStreamer.<GetAllReservationsOutDTO>writeArray(response,
+                action -> reservationSer.forEachOccurrence(id, from, to, action));
+    }
+
+    @Operation (
+            summary = "Deactivate recurring reservation",
+            description = "Deactivates every occurrence of a series by searching for its ID " +
+                    "(ADMIN = any series, USER = Only his own ones)"
+    ) //Swagger annotation
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Recurring reservation canceled successfully"),
+            @ApiResponse(responseCode = "409", description = "Conflict. Already deactivated reservation"),
+            @ApiResponse(responseCode = "404", description = "Recurring reservation not found")
+
+    }) //Swagger annotation
+    @PatchMapping("/recurring/deactivate/{id}")
+    public DeactivateReservationsOutDTO deactivateRecurringReservation(@PathVariable("id") Long id) {
+        return reservationSer.deactivateRecurringReservation(id);
+    }
+
+    @Operation (
+            summary = "Show waitlist entry",
+            description = "Shows the status of a waitlist entry: waiting (with its position), " +
+                    "promoted (with the created reservation), canceled or expired"
+    ) //Swagger annotation
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Waitlist entry status"),
+            @ApiResponse(responseCode = "404", description = "Waitlist entry not found")
+
+    }) //Swagger annotation
+    @GetMapping("/waitlist/{id}")
+    public WaitlistStatusOutDTO getWaitlistStatus(@PathVariable("id") Long id) {
+        return reservationSer.getWaitlistStatus(id);
+    }
+
+    @Operation (
+            summary = "Cancel waitlist entry",
+            description = "Takes a waiting entry out of the waitlist (USER or ADMIN)"
+    ) //Swagger annotation
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Waitlist entry canceled successfully"),
+            @ApiResponse(responseCode = "409", description = "Conflict. Entry is not waiting"),
+            @ApiResponse(responseCode = "404", description = "Waitlist entry not found")
+
+    }) //Swagger annotation
+    @PatchMapping("/waitlist/cancel/{id}")
+    public DeactivateReservationsOutDTO cancelWaitlistEntry(@PathVariable("id") Long id) {
+        return reservationSer.cancelWaitlistEntry(id);
+    }
+
+    @Operation (
+            summary = "Change waitlist priority",
+            description = "Changes the priority of a waiting entry, higher ones are promoted first (Only ADMIN)"
+    ) //Swagger annotation
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Priority changed successfully"),
+            @ApiResponse(responseCode = "401", description = "Role not permitted"),
+            @ApiResponse(responseCode = "409", description = "Conflict. Entry is not waiting"),
+            @ApiResponse(responseCode = "404", description = "Waitlist entry not found")
+
+    }) //Swagger annotation
+    @PatchMapping("/waitlist/{id}/priority")
+    @PreAuthorize("hasRole('ADMIN')")
+    public WaitlistStatusOutDTO changeWaitlistPriority(@PathVariable("id") Long id,
+                                                       @RequestParam("value") int priority) {
+        return reservationSer.changeWaitlistPriority(id, priority);
+    }
 }
@@ -1,17 +1,31 @@
 package com.jacobo.reservation_system.controllers;
 
+import com.jacobo.reservation_system.jackson.JsonArrayStreamer;
 import com.jacobo.reservation_system.models.dtos.ResourcesDtos.CreateResourcesInDTO;
 import com.jacobo.reservation_system.models.dtos.ResourcesDtos.CreateResourcesOutDTO;
 import com.jacobo.reservation_system.models.dtos.ResourcesDtos.DeactivateResourcesOutDTO;
 import com.jacobo.reservation_system.models.dtos.ResourcesDtos.ListAllResourcesOutDTO;
+import com.jacobo.reservation_system.models.dtos.ResourcesDtos.ResourceUtilizationOutDTO;
+import com.jacobo.reservation_system.models.dtos.ResourcesDtos.SearchResourcesOutDTO;
+import com.jacobo.reservation_system.models.dtos.ResourcesDtos.UsageBackfillOutDTO;
 import com.jacobo.reservation_system.services.implementation.ResourcesService;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.time.LocalDate;
 import java.util.List;
 
 /**
@@ -23,9 +37,11 @@ import java.util.List;
 @RequestMapping("/resources")
 public class ResourcesController {
     private final ResourcesService resourcesServ;
+    private final JsonArrayStreamer jsonStreamer;
 
-    public ResourcesController (ResourcesService resourcesServ) {
+    public ResourcesController (ResourcesService resourcesServ, JsonArrayStreamer jsonStreamer) {
         this.resourcesServ = resourcesServ;
+        this.jsonStreamer = jsonStreamer;
     }
 
     /**
@@ -52,11 +68,43 @@ public class ResourcesController {
             description = "Returns full list of resources"
     ) //Swagger annotation
     @ApiResponses({
-            @ApiResponse(responseCode = "200", description = "Return of resources list successfully")
+            @ApiResponse(responseCode = "200", description = "Return of resources list successfully",
+                    content = @Content(array = @ArraySchema(schema = @Schema(implementation = ListAllResourcesOutDTO.class))))
     }) //Swagger annotation
     @GetMapping("/")
-    public List<ListAllResourcesOutDTO> getResourcesList() {
-        return resourcesServ.listAllResources();
+    public void getResourcesList(HttpServletResponse response) throws IOException {
+        // The JSON array is written while the rows are read, not built in memory first
+        jsonStreamer.writeArray(response, resourcesServ::forEachResource);
+    }
+
+    @Operation(
+            summary = "Search resources",
+            description = "Searches resources by name and description, accepting prefixes and small typos. " +
+                    "Results are ranked (ADMIN = all resources, USER = only active ones)"
+    ) //Swagger annotation
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Results, best first"),
+            @ApiResponse(responseCode = "400", description = "Empty search")
+    }) //Swagger annotation
+    @GetMapping("/search")
+    public List<SearchResourcesOutDTO> searchResources(@RequestParam("q") String query,
+                                                       @RequestParam(value = "limit", defaultValue = "20") int limit) {
+        return resourcesServ.searchResources(query, limit);
+    }
+
+    @Operation(
+            summary = "Availability stream",
+            description = "Server-Sent Events of the booking changes of the given resources " +
+                    "(booked, released, deactivated, changed), sent when they commit. " +
+                    "Replaces polling the lists: refresh once after each (re)connection"
+    ) //Swagger annotation
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Event stream opened"),
+            @ApiResponse(responseCode = "400", description = "No resources or too many of them")
+    }) //Swagger annotation
+    @GetMapping(value = "/availability/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamAvailability(@RequestParam("ids") List<Long> ids) {
+        return resourcesServ.subscribeAvailability(ids);
     }
 
     @Operation(
@@ -74,4 +122,41 @@ public class ResourcesController {
         return resourcesServ.deactivateResource(id);
     }
 
+    @Operation(
+            summary = "Resource utilization",
+            description = "Booked units against capacity per day, week or month in [from, to), " +
+                    "read from the daily rollups (Only ADMIN)"
+    ) //Swagger annotation
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Utilization of each period"),
+            @ApiResponse(responseCode = "400", description = "Invalid range or period"),
+            @ApiResponse(responseCode = "404", description = "Resource not found"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized role for that action")
+    }) //Swagger annotation
+    @GetMapping("/utilization/{id}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResourceUtilizationOutDTO getUtilization(@PathVariable("id") Long id,
+                                                    @RequestParam("from")
+                                                    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                    @RequestParam("to")
+                                                    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                    @RequestParam(value = "period", defaultValue = "day") String period) {
+        return resourcesServ.getUtilization(id, from, to, period);
+    }
+
+    @Operation(
+            summary = "Rebuild utilization rollups",
+            description = "Recomputes the daily rollups of every resource from the bookings, " +
+                    "in the background (Only ADMIN)"
+    ) //Swagger annotation
+    @ApiResponses({
+            @ApiResponse(responseCode = "202", description = "Backfill started, or already running"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized role for that action")
+    }) //Swagger annotation
+    @PostMapping("/utilization/backfill")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<UsageBackfillOutDTO> startUsageBackfill() {
+        return ResponseEntity.accepted().body(resourcesServ.startUsageBackfill());
+    }
+
 }
@@ -1,16 +1,21 @@
 package com.jacobo.reservation_system.controllers;
 
+import com.jacobo.reservation_system.jackson.JsonArrayStreamer;
 import com.jacobo.reservation_system.models.dtos.UserDtos.*;
 import com.jacobo.reservation_system.services.implementation.UsersService;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
+import java.io.IOException;
 
 /**
  * Controller to intercept client's HTTP requests
@@ -26,13 +31,19 @@ public class UsersController {
      * It delegates business logic on the methods below
      */
     private final UsersService userService;
+    /**
+     * Writes list responses as a JSON stream
+     */
+    private final JsonArrayStreamer jsonStreamer;
 
     /**
      * We inject user service inside the constructor
      * @param userService
+     * @param jsonStreamer
      */
-    public UsersController(UsersService userService) {
+    public UsersController(UsersService userService, JsonArrayStreamer jsonStreamer) {
         this.userService = userService;
+        this.jsonStreamer = jsonStreamer;
     }
 
     @Operation(
@@ -40,13 +51,15 @@ public class UsersController {
             description = "Returns full list of users"
     ) //Swagger annotation
     @ApiResponses({
-            @ApiResponse(responseCode = "200", description = "Return of users list successfully"),
+            @ApiResponse(responseCode = "200", description = "Return of users list successfully",
+                    content = @Content(array = @ArraySchema(schema = @Schema(implementation = GetAllUsersOutDTO.class)))),
             @ApiResponse(responseCode = "401", description = "Unauthorized role for that action")
     }) //Swagger annotation
     @GetMapping("/")
     @PreAuthorize("hasRole('ADMIN')")
-    public List<GetAllUsersOutDTO> getUsersList() {
-        return userService.getUsers();
+    public void getUsersList(HttpServletResponse response) throws IOException {
+        // The JSON array is written while the rows are read, not built in memory first
+        jsonStreamer.writeArray(response, userService::forEachUser);
     }
 
     @Operation(
@@ -80,10 +93,11 @@ public class UsersController {
 
     @Operation(
             summary = "Delete user",
-            description = "Deletes user by searching for his ID"
+            description = "Deactivates the user and schedules the deletion of his data by searching for his ID. " +
+                    "The rows are deleted in the background, check the progress with GET /users/purge/{id}"
     ) //Swagger annotation
     @ApiResponses({
-            @ApiResponse(responseCode = "200", description = "Success message returned"),
+            @ApiResponse(responseCode = "202", description = "Deletion scheduled (or already done)"),
             @ApiResponse(responseCode = "404", description = "Not user found to delete"),
             @ApiResponse(responseCode = "401", description = "Unauthorized role for that action")
     }) //Swagger annotation
@@ -92,6 +106,22 @@ public class UsersController {
     public ResponseEntity<DeleteUsersOutDTO> deleteUser(@PathVariable("id") Long id) {
         DeleteUsersOutDTO outDto = userService.deleteUser(id);
 
-        return ResponseEntity.ok(outDto);
+        return ResponseEntity.accepted().body(outDto);
+    }
+
+    @Operation(
+            summary = "Get user deletion progress",
+            description = "Returns the state of the background deletion of a user: " +
+                    "pending, running (with the table and shard being purged) or done"
+    ) //Swagger annotation
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Deletion progress returned"),
+            @ApiResponse(responseCode = "404", description = "No deletion requested for that user"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized role for that action")
+    }) //Swagger annotation
+    @GetMapping("purge/{id}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public UserPurgeStatusOutDTO getPurgeStatus(@PathVariable("id") Long id) {
+        return userService.getPurgeStatus(id);
     }
 }
@@ -1,6 +1,8 @@
 package com.jacobo.reservation_system.exceptions.AuthExceptions;
 
-public class InvalidEmailException extends RuntimeException {
+import com.jacobo.reservation_system.exceptions.BusinessException;
+
+public class InvalidEmailException extends BusinessException {
     public InvalidEmailException(String message) {
         super(message);
     }
@@ -1,6 +1,8 @@
 package com.jacobo.reservation_system.exceptions.AuthExceptions;
 
-public class MultipleRolesException extends RuntimeException {
+import com.jacobo.reservation_system.exceptions.BusinessException;
+
+public class MultipleRolesException extends BusinessException {
     public MultipleRolesException(String message) {
         super(message);
     }
@@ -1,9 +1,11 @@
 package com.jacobo.reservation_system.exceptions.AuthExceptions;
 
+import com.jacobo.reservation_system.exceptions.BusinessException;
+
 /**
  * When we set a non permitted role at registering moment
  */
-public class RoleNotValidException extends RuntimeException {
+public class RoleNotValidException extends BusinessException {
     public RoleNotValidException(String message) {
         super(message);
     }
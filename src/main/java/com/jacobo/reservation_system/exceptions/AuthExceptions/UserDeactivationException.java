@@ -1,6 +1,8 @@
 package com.jacobo.reservation_system.exceptions.AuthExceptions;
 
-public class UserDeactivationException extends RuntimeException {
+import com.jacobo.reservation_system.exceptions.BusinessException;
+
+public class UserDeactivationException extends BusinessException {
     public UserDeactivationException(String message) {
         super(message);
     }
@@ -1,6 +1,8 @@
 package com.jacobo.reservation_system.exceptions.AuthExceptions;
 
-public class UserNotFoundException extends RuntimeException {
+import com.jacobo.reservation_system.exceptions.BusinessException;
+
+public class UserNotFoundException extends BusinessException {
     public UserNotFoundException(String message) {
         super(message);
     }
@@ -1,6 +1,8 @@
 package com.jacobo.reservation_system.exceptions.AuthExceptions;
 
-public class UsernameAlreadyExistsException extends RuntimeException {
+import com.jacobo.reservation_system.exceptions.BusinessException;
+
+public class UsernameAlreadyExistsException extends BusinessException {
     public UsernameAlreadyExistsException(String message) {
         super(message);
     }
@@ -0,0 +1,18 @@
+package com.jacobo.reservation_system.exceptions;
+
+/**
+ * Base of the expected rejections (taken dates, deactivated user, missing fields...)
+ * They are answered by @GlobalExceptionHandler with a fixed status and message, and
+ * under contention most bookings end this way, so they don't capture a stack trace:
+ * filling it walks the whole stack and allocates one element per frame on every throw
+ * Unexpected errors (database, bugs) are not business exceptions and keep their traces
+ * Traces can be turned back on with -Dbusiness-errors.stack-traces=true to debug
+ * (check docker/benchmark-rejections.sh)
+ */
+public abstract class BusinessException extends RuntimeException {
+    private static final boolean STACK_TRACES = Boolean.getBoolean("business-errors.stack-traces");
+
+    protected BusinessException(String message) {
+        super(message, null, false, STACK_TRACES);
+    }
+}
@@ -1,10 +1,12 @@
 package com.jacobo.reservation_system.exceptions;
 
 import com.jacobo.reservation_system.exceptions.AuthExceptions.*;
+import com.jacobo.reservation_system.exceptions.ReservationsExceptions.RecurrenceNotValidException;
 import com.jacobo.reservation_system.exceptions.ReservationsExceptions.ReservationAlreadyCanceled;
 import com.jacobo.reservation_system.exceptions.ReservationsExceptions.ReservationDeniedException;
 import com.jacobo.reservation_system.exceptions.ReservationsExceptions.ReservationDuplicatedException;
 import com.jacobo.reservation_system.exceptions.ReservationsExceptions.ReservationNotFoundException;
+import com.jacobo.reservation_system.exceptions.ReservationsExceptions.ResourceBusyException;
 import com.jacobo.reservation_system.exceptions.ResourcesExceptions.ResourceAlreadyCreatedException;
 import com.jacobo.reservation_system.exceptions.ResourcesExceptions.ResourceDeactivationException;
 import com.jacobo.reservation_system.exceptions.ResourcesExceptions.ResourceNotFoundException;
@@ -16,11 +18,13 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.security.access.AccessDeniedException;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
  * Global manager for custom exceptions
  * Returns JSON responses readable by Postman or HTTP clients
+ * Every custom exception is a @BusinessException: thrown without a stack trace
  */
 @ControllerAdvice
 public class GlobalExceptionHandler {
@@ -140,11 +144,17 @@ public class GlobalExceptionHandler {
 
     @ExceptionHandler(ReservationDuplicatedException.class)
     public ResponseEntity<Map<String, Object>> handleDuplicatedReservation(ReservationDuplicatedException ex) {
+        // Nearest free windows, so the client retries once instead of trying nearby dates
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("error", "Reservation can't be duplicated");
+        body.put("message", ex.getMessage());
+        if (ex.isWithSuggestions()) {
+            body.put("free_before", ex.getFreeBefore());
+            body.put("free_after", ex.getFreeAfter());
+        }
+
         return ResponseEntity
-                .status(HttpStatus.NOT_ACCEPTABLE).body(Map.of(
-                        "error", "Reservation can't be duplicated",
-                        "message", ex.getMessage()
-                ));
+                .status(HttpStatus.NOT_ACCEPTABLE).body(body);
     }
 
     @ExceptionHandler(ReservationDeniedException.class)
@@ -174,5 +184,25 @@ public class GlobalExceptionHandler {
         return ResponseEntity
                 .status(HttpStatus.CONFLICT).body(outDto);
     }
-}
 
+    // The lock of the resource wasn't free in time (check @OccupancyIndex), retrying soon may work
+    @ExceptionHandler(ResourceBusyException.class)
+    public ResponseEntity<Map<String, Object>> handleResourceBusy(ResourceBusyException ex) {
+        return ResponseEntity
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header("Retry-After", "1")
+                .body(Map.of(
+                        "error", "Resource busy",
+                        "message", ex.getMessage()
+                ));
+    }
+
+    @ExceptionHandler(RecurrenceNotValidException.class)
+    public ResponseEntity<Map<String, Object>> handleRecurrenceNotValid(RecurrenceNotValidException ex) {
+        return ResponseEntity
+                .status(HttpStatus.BAD_REQUEST).body(Map.of(
+                        "error", "Recurrence not valid",
+                        "message", ex.getMessage()
+                ));
+    }
+}
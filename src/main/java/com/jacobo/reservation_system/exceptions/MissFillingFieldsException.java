@@ -1,6 +1,6 @@
 package com.jacobo.reservation_system.exceptions;
 
-public class MissFillingFieldsException extends RuntimeException {
+public class MissFillingFieldsException extends BusinessException {
     public MissFillingFieldsException(String message) {
         super(message);
     }
@@ -0,0 +1,9 @@
+package com.jacobo.reservation_system.exceptions.ReservationsExceptions;
+
+import com.jacobo.reservation_system.exceptions.BusinessException;
+
+public class RecurrenceNotValidException extends BusinessException {
+    public RecurrenceNotValidException(String message) {
+        super(message);
+    }
+}
@@ -1,6 +1,8 @@
 package com.jacobo.reservation_system.exceptions.ReservationsExceptions;
 
-public class ReservationAlreadyCanceled extends RuntimeException {
+import com.jacobo.reservation_system.exceptions.BusinessException;
+
+public class ReservationAlreadyCanceled extends BusinessException {
     public ReservationAlreadyCanceled(String message) {
         super(message);
     }
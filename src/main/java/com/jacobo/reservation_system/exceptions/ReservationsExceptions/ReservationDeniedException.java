@@ -1,6 +1,8 @@
 package com.jacobo.reservation_system.exceptions.ReservationsExceptions;
 
-public class ReservationDeniedException extends RuntimeException {
+import com.jacobo.reservation_system.exceptions.BusinessException;
+
+public class ReservationDeniedException extends BusinessException {
     public ReservationDeniedException(String message) {
         super(message);
     }
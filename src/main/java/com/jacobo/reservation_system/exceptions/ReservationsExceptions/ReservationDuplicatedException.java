@@ -1,7 +1,31 @@
 package com.jacobo.reservation_system.exceptions.ReservationsExceptions;
 
-public class ReservationDuplicatedException extends RuntimeException {
+import com.jacobo.reservation_system.exceptions.BusinessException;
+import com.jacobo.reservation_system.models.dtos.ReservationsDtos.FreeWindowOutDTO;
+import lombok.Getter;
+
+/**
+ * The requested dates have no free unit
+ * For single reservations it carries the nearest free windows of the same length,
+ * before and after the request (null if there's none)
+ */
+@Getter
+public class ReservationDuplicatedException extends BusinessException {
+    private final boolean withSuggestions;
+    private final FreeWindowOutDTO freeBefore;
+    private final FreeWindowOutDTO freeAfter;
+
     public ReservationDuplicatedException(String message) {
         super(message);
+        this.withSuggestions = false;
+        this.freeBefore = null;
+        this.freeAfter = null;
+    }
+
+    public ReservationDuplicatedException(String message, FreeWindowOutDTO freeBefore, FreeWindowOutDTO freeAfter) {
+        super(message);
+        this.withSuggestions = true;
+        this.freeBefore = freeBefore;
+        this.freeAfter = freeAfter;
     }
 }
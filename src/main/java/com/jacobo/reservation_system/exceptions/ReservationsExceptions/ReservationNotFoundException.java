@@ -1,6 +1,8 @@
 package com.jacobo.reservation_system.exceptions.ReservationsExceptions;
 
-public class ReservationNotFoundException extends RuntimeException {
+import com.jacobo.reservation_system.exceptions.BusinessException;
+
+public class ReservationNotFoundException extends BusinessException {
     public ReservationNotFoundException(String message) {
         super(message);
     }
@@ -0,0 +1,9 @@
+package com.jacobo.reservation_system.exceptions.ReservationsExceptions;
+
+import com.jacobo.reservation_system.exceptions.BusinessException;
+
+public class ResourceBusyException extends BusinessException {
+    public ResourceBusyException(String message) {
+        super(message);
+    }
+}
@@ -1,6 +1,8 @@
 package com.jacobo.reservation_system.exceptions.ResourcesExceptions;
 
-public class ResourceAlreadyCreatedException extends RuntimeException {
+import com.jacobo.reservation_system.exceptions.BusinessException;
+
+public class ResourceAlreadyCreatedException extends BusinessException {
     public ResourceAlreadyCreatedException(String message) {
         super(message);
     }
@@ -1,6 +1,8 @@
 package com.jacobo.reservation_system.exceptions.ResourcesExceptions;
 
-public class ResourceDeactivationException extends RuntimeException {
+import com.jacobo.reservation_system.exceptions.BusinessException;
+
+public class ResourceDeactivationException extends BusinessException {
     public ResourceDeactivationException(String message) {
         super(message);
     }
@@ -1,6 +1,8 @@
 package com.jacobo.reservation_system.exceptions.ResourcesExceptions;
 
-public class ResourceNotFoundException extends RuntimeException {
+import com.jacobo.reservation_system.exceptions.BusinessException;
+
+public class ResourceNotFoundException extends BusinessException {
     public ResourceNotFoundException(String message) {
         super(message);
     }
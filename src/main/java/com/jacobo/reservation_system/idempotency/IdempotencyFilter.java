@@ -0,0 +1,197 @@
+package com.jacobo.reservation_system.idempotency;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Filter that makes the POST endpoints listed below idempotent
+ * If the client sends an Idempotency-Key header, the first response is stored and
+ * every retry with the same key gets that response back without re-executing the request
+ * Concurrent duplicates wait for the first execution instead of running in parallel
+ * It is added to the security filter chain right after JwtAuthFilter (check @SecurityConfig)
+ * so keys are scoped to the authenticated user
+ */
+@Slf4j
+public class IdempotencyFilter extends OncePerRequestFilter {
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotency-Replayed";
+
+    /**
+     * Endpoints where the header is taken into account (path without context path)
+     */
+    private static final Set<String> IDEMPOTENT_PATHS = Set.of(
+            "/reservations/create_reservation",
+            "/reservations/create_recurring_reservation",
+            "/auth/register"
+    );
+
+    private final IdempotencyStore store;
+    private final long waitTimeoutMs;
+
+    public IdempotencyFilter(IdempotencyStore store, long waitTimeoutMs) {
+        this.store = store;
+        this.waitTimeoutMs = waitTimeoutMs;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest req) {
+        return !"POST".equals(req.getMethod())
+                || req.getHeader(HEADER) == null
+                || !IDEMPOTENT_PATHS.contains(pathOf(req));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest req, HttpServletResponse res, FilterChain chain)
+            throws ServletException, IOException {
+        String key = req.getHeader(HEADER);
+        if (key.isBlank() || key.length() > 255) {
+            writeError(res, HttpServletResponse.SC_BAD_REQUEST,
+                    "The Idempotency-Key header must have between 1 and 255 characters");
+            return;
+        }
+
+        byte[] body = StreamUtils.copyToByteArray(req.getInputStream());
+        String fingerprint = sha256(body);
+
+        // The same key sent by two different users must not collide
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        String user = auth == null ? "anonymous" : auth.getName();
+        String scopedKey = sha256((user + '\n' + req.getMethod() + '\n' + pathOf(req) + '\n' + key)
+                .getBytes(StandardCharsets.UTF_8));
+
+        while (true) {
+            StoredResponse stored = store.find(scopedKey);
+            if (stored != null) {
+                replay(stored, fingerprint, res);
+                return;
+            }
+
+            CompletableFuture<StoredResponse> pending = store.claim(scopedKey);
+            if (pending == null) {
+                // Another execution could have finished between find() and claim()
+                stored = store.find(scopedKey);
+                if (stored != null) {
+                    store.complete(scopedKey, null);
+                    replay(stored, fingerprint, res);
+                    return;
+                }
+
+                execute(new CachedBodyRequest(req, body), res, chain, scopedKey, fingerprint);
+                return;
+            }
+
+            try {
+                stored = pending.get(waitTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                writeError(res, HttpServletResponse.SC_CONFLICT,
+                        "A request with this Idempotency-Key is still being processed");
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ServletException(e);
+            } catch (ExecutionException e) {
+                throw new ServletException(e.getCause());
+            }
+
+            if (stored != null) {
+                replay(stored, fingerprint, res);
+                return;
+            }
+            // The first execution didn't leave a response to replay, so we try again
+        }
+    }
+
+    /**
+     * Runs the request and stores its response
+     * Server errors and authentication failures are not stored, so the client can retry them
+     */
+    private void execute(HttpServletRequest req, HttpServletResponse res, FilterChain chain,
+                         String scopedKey, String fingerprint) throws ServletException, IOException {
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(res);
+        StoredResponse stored = null;
+
+        try {
+            chain.doFilter(req, wrapper);
+
+            int status = wrapper.getStatus();
+            if (status < 500 && status != HttpServletResponse.SC_UNAUTHORIZED
+                    && status != HttpServletResponse.SC_FORBIDDEN && status != 429) {
+
+                stored = new StoredResponse(fingerprint, status, wrapper.getContentType(),
+                        wrapper.getContentAsByteArray(), store.newExpiration());
+            }
+        } finally {
+            // The client gets its response even if the key can't be stored
+            try {
+                wrapper.copyBodyToResponse();
+            } finally {
+                complete(scopedKey, stored);
+            }
+        }
+    }
+
+    /**
+     * Stores the response and releases the waiting duplicates
+     * A failure only means a retry with this key runs the request again, so it's logged
+     */
+    private void complete(String scopedKey, StoredResponse stored) {
+        try {
+            store.complete(scopedKey, stored);
+        } catch (RuntimeException e) {
+            log.warn("Response of Idempotency-Key {} not stored: {}", scopedKey, e.getMessage());
+        }
+    }
+
+    private void replay(StoredResponse stored, String fingerprint, HttpServletResponse res) throws IOException {
+        if (!stored.getFingerprint().equals(fingerprint)) {
+            writeError(res, 422, "The Idempotency-Key was already used with a different request body");
+            return;
+        }
+
+        res.setStatus(stored.getStatusCode());
+        if (stored.getContentType() != null) {
+            res.setContentType(stored.getContentType());
+        }
+        res.setHeader(REPLAYED_HEADER, "true");
+        res.setContentLength(stored.getBody().length);
+        res.getOutputStream().write(stored.getBody());
+    }
+
+    private void writeError(HttpServletResponse res, int status, String message) throws IOException {
+        res.setStatus(status);
+        res.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        res.getWriter().write("{\"error\":\"Idempotency-Key\",\"message\":\"" + message + "\"}");
+    }
+
+    private static String pathOf(HttpServletRequest req) {
+        return req.getRequestURI().substring(req.getContextPath().length());
+    }
+
+    private static String sha256(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.jacobo.reservation_system.idempotency;
+
+import com.jacobo.reservation_system.models.entities.IdempotencyKeys;
+import com.jacobo.reservation_system.repositories.IdempotencyKeysRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Store for the responses of requests sent with an Idempotency-Key header
+ * - A bounded LRU map in memory answers most of the retries
+ * - The "idempotency_keys" table is the fallback when the entry was evicted or the app restarted
+ * - A map of in-flight executions lets concurrent duplicates wait on the first one
+ */
+@Component
+public class IdempotencyStore {
+    private final IdempotencyKeysRepository keysRepo;
+    private final long ttlHours;
+
+    /**
+     * Bounded in-memory cache. LinkedHashMap in access order drops the least recently used entry
+     */
+    private final Map<String, StoredResponse> cache;
+
+    /**
+     * Executions that are running right now, by scoped key
+     */
+    private final Map<String, CompletableFuture<StoredResponse>> inFlight = new ConcurrentHashMap<>();
+
+    public IdempotencyStore(IdempotencyKeysRepository keysRepo,
+                            @Value("${idempotency.max-entries}") int maxEntries,
+                            @Value("${idempotency.ttl-hours}") long ttlHours) {
+        this.keysRepo = keysRepo;
+        this.ttlHours = ttlHours;
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<String, StoredResponse>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, StoredResponse> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    /**
+     * Searches for a stored response, first in memory and then in the database
+     * @param key scoped idempotency key
+     * @return stored response or null if there's none (or it expired)
+     */
+    public StoredResponse find(String key) {
+        LocalDateTime now = LocalDateTime.now();
+
+        StoredResponse stored = cache.get(key);
+        if (stored != null) {
+            if (!stored.isExpired(now)) {
+                return stored;
+            }
+            cache.remove(key);
+        }
+
+        IdempotencyKeys entity = keysRepo.findById(key).orElse(null);
+        if (entity == null || entity.getExpiresAt().isBefore(now)) {
+            return null;
+        }
+
+        stored = new StoredResponse(
+                entity.getFingerprint(),
+                entity.getStatusCode(),
+                entity.getContentType(),
+                entity.getResponseBody() == null
+                        ? new byte[0]
+                        : entity.getResponseBody().getBytes(StandardCharsets.UTF_8),
+                entity.getExpiresAt()
+        );
+        cache.put(key, stored); // Next retries are answered from memory
+
+        return stored;
+    }
+
+    /**
+     * Tries to become the owner of the execution of a key
+     * @param key scoped idempotency key
+     * @return null if the caller owns the execution now,
+     * otherwise the future of the execution that is already running
+     */
+    public CompletableFuture<StoredResponse> claim(String key) {
+        return inFlight.putIfAbsent(key, new CompletableFuture<>());
+    }
+
+    /**
+     * Finishes the execution of a key and wakes up the duplicates that were waiting
+     * @param key scoped idempotency key
+     * @param response response to store, or null if it must not be replayed
+     */
+    public void complete(String key, StoredResponse response) {
+        try {
+            if (response != null) {
+                save(key, response);
+            }
+        } finally {
+            CompletableFuture<StoredResponse> pending = inFlight.remove(key);
+            if (pending != null) {
+                pending.complete(response);
+            }
+        }
+    }
+
+    /**
+     * Builds the expiration date of a new stored response
+     * @return now plus the configured time to live
+     */
+    public LocalDateTime newExpiration() {
+        return LocalDateTime.now().plusHours(ttlHours);
+    }
+
+    private void save(String key, StoredResponse response) {
+        cache.put(key, response);
+
+        IdempotencyKeys entity = new IdempotencyKeys();
+        entity.setId(key);
+        entity.setFingerprint(response.getFingerprint());
+        entity.setStatusCode(response.getStatusCode());
+        entity.setContentType(response.getContentType());
+        entity.setResponseBody(new String(response.getBody(), StandardCharsets.UTF_8));
+        entity.setExpiresAt(response.getExpiresAt());
+
+        keysRepo.save(entity);
+    }
+
+    /**
+     * Removes the expired responses from memory and database every 10 minutes
+     */
+    @Scheduled(fixedDelay = 600_000)
+    public void purgeExpired() {
+        LocalDateTime now = LocalDateTime.now();
+
+        synchronized (cache) {
+            cache.values().removeIf(stored -> stored.isExpired(now));
+        }
+
+        keysRepo.deleteExpired(now);
+    }
+}
@@ -0,0 +1,24 @@
+package com.jacobo.reservation_system.idempotency;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Response captured from the first execution of an idempotent request
+ * It is replayed as it is to every retry with the same Idempotency-Key
+ */
+@Getter
+@AllArgsConstructor
+public class StoredResponse {
+    private final String fingerprint; // SHA-256 of the original request body
+    private final int statusCode;
+    private final String contentType;
+    private final byte[] body;
+    private final LocalDateTime expiresAt;
+
+    public boolean isExpired(LocalDateTime now) {
+        return expiresAt.isBefore(now);
+    }
+}
@@ -0,0 +1,24 @@
+package com.jacobo.reservation_system.jackson;
+
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Jackson configuration
+ * Spring Boot registers every Module bean in the ObjectMapper used by the controllers
+ */
+@Configuration
+public class JacksonConfig {
+
+    /**
+     * Blackbird replaces the reflection calls to getters, setters and constructors
+     * with generated lambdas, which the JIT can inline like normal code
+     * @return Blackbird module
+     */
+    @Bean
+    public Module blackbirdModule() {
+        return new BlackbirdModule();
+    }
+}
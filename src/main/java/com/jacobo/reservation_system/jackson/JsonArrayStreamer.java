@@ -0,0 +1,57 @@
+package com.jacobo.reservation_system.jackson;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * Writes a JSON array to the response element by element
+ * The elements are serialized while the rows are read from the database,
+ * so the full list never exists in memory
+ */
+@Component
+public class JsonArrayStreamer {
+    private final ObjectMapper mapper;
+
+    public JsonArrayStreamer(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    /**
+     * Streams the elements given by the producer as a JSON array
+     * If the producer throws before the first buffer is flushed (e.g. user not found),
+     * nothing is written, so @GlobalExceptionHandler can still send its response
+     * @param res HTTP response
+     * @param producer receives the callback to call once per element
+     * @throws IOException if the client connection fails
+     */
+    public <T> void writeArray(HttpServletResponse res, Consumer<Consumer<T>> producer) throws IOException {
+        res.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        res.setCharacterEncoding(StandardCharsets.UTF_8.name());
+
+        JsonGenerator gen = mapper.getFactory().createGenerator(res.getOutputStream());
+        gen.writeStartArray();
+
+        try {
+            producer.accept(element -> {
+                try {
+                    gen.writeObject(element);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        gen.writeEndArray();
+        gen.close(); // Only closed on success, otherwise the buffered "[" would be flushed
+    }
+}
@@ -0,0 +1,24 @@
+package com.jacobo.reservation_system.models.dtos.ReservationsDtos;
+
+import lombok.Data;
+
+import java.time.LocalDate;
+
+/**
+ * InDTO to create a recurring reservation
+ * start_date and end_date are the dates of the first occurrence
+ * The series ends on "until" (last possible start date) or after "count" occurrences,
+ * one of them is required
+ * -----------------------------------------------------
+ * NOTE: Check @ReservationsService
+ */
+@Data
+public class CreateRecurringReservationsInDTO {
+    private Long resource_id;
+    private LocalDate start_date;
+    private LocalDate end_date;
+    private String frequency; // "daily" or "weekly"
+    private Integer every = 1; // Every N days or weeks
+    private LocalDate until;
+    private Integer count;
+}
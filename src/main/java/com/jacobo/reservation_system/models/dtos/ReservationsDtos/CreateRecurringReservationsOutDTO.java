@@ -0,0 +1,14 @@
+package com.jacobo.reservation_system.models.dtos.ReservationsDtos;
+
+import lombok.Data;
+
+import java.time.LocalDate;
+
+@Data
+public class CreateRecurringReservationsOutDTO {
+    private Long id;
+    private String message;
+    private String status;
+    private int occurrences;
+    private LocalDate last_end_date;
+}
@@ -12,6 +12,9 @@ import java.time.LocalDate;
  * Attributes names defined below must be the same
  * On Postman's JSON
  * -----------------------------------------------------
+ * join_waitlist: if the range is occupied, the request is queued
+ * instead of rejected, and promoted when the range gets free
+ * -----------------------------------------------------
  * NOTE: Check @ReservationsService
  */
 @Data
@@ -19,4 +22,5 @@ public class CreateReservationsInDTO {
     private Long resource_id;
     private LocalDate start_date;
     private LocalDate end_date;
+    private Boolean join_waitlist = false;
 }
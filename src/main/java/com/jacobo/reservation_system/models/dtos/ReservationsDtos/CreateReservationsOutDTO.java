@@ -2,8 +2,13 @@ package com.jacobo.reservation_system.models.dtos.ReservationsDtos;
 
 import lombok.Data;
 
+/**
+ * status is "active", or "waitlisted" when the request was queued
+ * In that case waitlist_id is the entry to poll (GET /reservations/waitlist/{id})
+ */
 @Data
 public class CreateReservationsOutDTO {
     private String message;
     private String status;
+    private Long waitlist_id;
 }
@@ -0,0 +1,19 @@
+package com.jacobo.reservation_system.models.dtos.ReservationsDtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Free range of a resource with the length of a rejected request,
+ * suggested in the conflict response so the client can retry once
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FreeWindowOutDTO {
+    private LocalDate start_date;
+    private LocalDate end_date;
+}
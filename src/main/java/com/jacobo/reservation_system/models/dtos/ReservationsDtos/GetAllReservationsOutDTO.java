@@ -1,14 +1,30 @@
 package com.jacobo.reservation_system.models.dtos.ReservationsDtos;
 
+import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 import java.time.LocalDate;
 
+/**
+ * The 6 arguments constructor is used by the repository to build
+ * this DTO straight from the query (no entities loaded)
+ * Occurrences of a recurring reservation have no id, only recurring_id
+ */
 @Data
+@NoArgsConstructor
+@AllArgsConstructor
 public class GetAllReservationsOutDTO {
+    private Long id;
     private Long user;
     private Long resource;
     private LocalDate start_date;
     private LocalDate end_date;
     private String status;
+    private Long recurring_id;
+
+    public GetAllReservationsOutDTO(Long id, Long user, Long resource, LocalDate start_date,
+                                    LocalDate end_date, String status) {
+        this(id, user, resource, start_date, end_date, status, null);
+    }
 }
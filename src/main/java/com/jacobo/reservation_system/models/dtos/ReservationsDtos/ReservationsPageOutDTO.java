@@ -0,0 +1,15 @@
+package com.jacobo.reservation_system.models.dtos.ReservationsDtos;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * One page of reservations in ID order
+ * next_after is the "after" of the next page, null on the last one
+ */
+@Data
+public class ReservationsPageOutDTO {
+    private List<GetAllReservationsOutDTO> items;
+    private Long next_after;
+}
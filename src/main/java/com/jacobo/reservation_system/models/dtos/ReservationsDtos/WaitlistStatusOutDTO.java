@@ -0,0 +1,22 @@
+package com.jacobo.reservation_system.models.dtos.ReservationsDtos;
+
+import lombok.Data;
+
+import java.time.LocalDate;
+
+/**
+ * Status of a waitlist entry, polled by the client
+ * position is the number of waiters served before it (only while "waiting")
+ * reservation_id is set once it's "promoted"
+ */
+@Data
+public class WaitlistStatusOutDTO {
+    private Long id;
+    private Long resource;
+    private LocalDate start_date;
+    private LocalDate end_date;
+    private String status;
+    private int priority;
+    private Long position;
+    private Long reservation_id;
+}
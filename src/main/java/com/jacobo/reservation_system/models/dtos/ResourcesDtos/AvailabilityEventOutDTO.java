@@ -0,0 +1,22 @@
+package com.jacobo.reservation_system.models.dtos.ResourcesDtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Availability change of a resource, sent to the subscribers of its stream
+ * (check @AvailabilityStream). Only the changed range is sent: the client
+ * refreshes that range instead of polling the whole list
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AvailabilityEventOutDTO {
+    private Long resource_id;
+    private String type; // booked, released, deactivated or changed (refresh the whole resource)
+    private LocalDate start_date; // Null for deactivated and changed
+    private LocalDate end_date; // Excluded
+}
@@ -10,4 +10,5 @@ import lombok.Data;
 public class CreateResourcesInDTO {
     private String name;
     private String description;
+    private Integer capacity = 1; // Units that can be booked at the same time
 }
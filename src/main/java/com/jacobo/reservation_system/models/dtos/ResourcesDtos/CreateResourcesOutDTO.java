@@ -6,4 +6,5 @@ import lombok.Data;
 public class CreateResourcesOutDTO {
     private String name;
     private String description;
+    private int capacity;
 }
@@ -6,4 +6,5 @@ import lombok.Data;
 public class DeactivateResourcesOutDTO {
     private boolean success;
     private String message;
+    private int canceled_reservations; // Unfinished single and recurring ones, canceled in cascade
 }
@@ -1,9 +1,18 @@
 package com.jacobo.reservation_system.models.dtos.ResourcesDtos;
 
+import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
+/**
+ * The all-args constructor is used by the repository to build
+ * this DTO straight from the query (no entities loaded)
+ */
 @Data
+@NoArgsConstructor
+@AllArgsConstructor
 public class ListAllResourcesOutDTO {
     private String name;
     private String description;
+    private int capacity;
 }
@@ -0,0 +1,20 @@
+package com.jacobo.reservation_system.models.dtos.ResourcesDtos;
+
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Result of GET /resources/utilization/{id}, read from the daily rollups
+ * Utilization uses the current capacity of the resource for the whole range
+ */
+@Data
+public class ResourceUtilizationOutDTO {
+    private Long resource_id;
+    private int capacity;
+    private String period; // day, week or month
+    private LocalDate from;
+    private LocalDate to; // Excluded
+    private List<UtilizationPeriodOutDTO> periods;
+}
@@ -0,0 +1,20 @@
+package com.jacobo.reservation_system.models.dtos.ResourcesDtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Result of GET /resources/search, best results first
+ * score is only meaningful to compare results of the same search
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchResourcesOutDTO {
+    private Long id;
+    private String name;
+    private String description;
+    private boolean active;
+    private float score;
+}
@@ -0,0 +1,9 @@
+package com.jacobo.reservation_system.models.dtos.ResourcesDtos;
+
+import lombok.Data;
+
+@Data
+public class UsageBackfillOutDTO {
+    private boolean started; // False if a backfill was already running
+    private String message;
+}
@@ -0,0 +1,22 @@
+package com.jacobo.reservation_system.models.dtos.ResourcesDtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * One day, week (Monday to Sunday) or month of a utilization report
+ * Periods are cut at the limits of the requested range
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UtilizationPeriodOutDTO {
+    private LocalDate start;
+    private LocalDate end; // Excluded
+    private long booked_units; // Sum of the units booked each day
+    private long available_units; // capacity * days
+    private double utilization; // booked_units / available_units, from 0 to 1
+}
@@ -10,4 +10,5 @@ import lombok.Data;
 public class DeactivateUsersOutDTO {
     private boolean success;
     private String message;
+    private int canceled_reservations; // Unfinished single and recurring ones, canceled in cascade
 }
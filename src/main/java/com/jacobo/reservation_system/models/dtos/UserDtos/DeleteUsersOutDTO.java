@@ -2,8 +2,13 @@ package com.jacobo.reservation_system.models.dtos.UserDtos;
 
 import lombok.Data;
 
+/**
+ * OutDTO of a user deletion request
+ * The user is purged in the background, purge_status is pending, running or done
+ */
 @Data
 public class DeleteUsersOutDTO {
     private boolean success;
     private String message;
+    private String purge_status;
 }
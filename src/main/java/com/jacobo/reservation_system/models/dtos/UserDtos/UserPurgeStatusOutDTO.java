@@ -0,0 +1,20 @@
+package com.jacobo.reservation_system.models.dtos.UserDtos;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * OutDTO with the progress of a user deletion
+ * phase and shard tell where the purge is, deleted_rows how many rows are gone
+ */
+@Data
+public class UserPurgeStatusOutDTO {
+    private Long user_id;
+    private String status;
+    private String phase;
+    private int shard;
+    private long deleted_rows;
+    private LocalDateTime requested_at;
+    private LocalDateTime finished_at;
+}
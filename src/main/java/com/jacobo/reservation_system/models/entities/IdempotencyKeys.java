@@ -0,0 +1,37 @@
+package com.jacobo.reservation_system.models.entities;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entity that stores the response of a request sent with an Idempotency-Key header
+ * It is the persistent fallback of the in-memory idempotency store, so a replayed
+ * request can be answered even after the entry was evicted from memory or the
+ * application was restarted
+ * It is mapped to the "idempotency_keys" table
+ */
+@Entity
+@Table(name = "idempotency_keys")
+@Data
+public class IdempotencyKeys {
+    @Id
+    @Column(name = "id", length = 64)
+    private String id; // SHA-256 of user + method + path + key
+
+    @Column(name = "fingerprint", nullable = false, length = 64)
+    private String fingerprint; // SHA-256 of the request body
+
+    @Column(name = "status_code", nullable = false)
+    private int statusCode;
+
+    @Column(name = "content_type", length = 100)
+    private String contentType;
+
+    @Column(name = "response_body", columnDefinition = "TEXT")
+    private String responseBody;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+}
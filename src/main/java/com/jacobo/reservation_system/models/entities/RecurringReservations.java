@@ -0,0 +1,61 @@
+package com.jacobo.reservation_system.models.entities;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+import java.time.LocalDate;
+
+/**
+ * Recurring reservation stored as one rule (one row for the whole series)
+ * Occurrences are never saved: they are computed from the rule when
+ * checking conflicts and when listing (check @Recurrence)
+ */
+@Entity
+@Table(name = "recurring_reservations", indexes = {
+        @Index(name = "idx_recurring_resource_window", columnList = "resource_id, start_date, last_end_date")
+})
+@Data
+public class RecurringReservations {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id", unique = true)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id")
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private Users user;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "resource_id")
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private Resources resource;
+
+    // Dates of the first occurrence
+    @Column(name = "start_date")
+    private LocalDate start_date;
+
+    @Column(name = "end_date")
+    private LocalDate end_date;
+
+    @Column(name = "frequency", length = 10)
+    private String frequency; // "daily" or "weekly"
+
+    @Column(name = "repeat_every")
+    private int every = 1; // Every N days or weeks
+
+    @Column(name = "occurrences")
+    private int occurrences;
+
+    // End of the last occurrence, so the series that touch a date range
+    // are found with a simple range query
+    @Column(name = "last_end_date")
+    private LocalDate last_end_date;
+
+    @Column(name = "status")
+    private String status = "active"; // By default
+}
@@ -2,6 +2,8 @@ package com.jacobo.reservation_system.models.entities;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 
 import java.time.LocalDate;
 
@@ -14,13 +16,20 @@ public class Reservations {
     @Column(name = "id", unique = true)
     private Long id;
 
-    @ManyToOne
+    // Associations are LAZY: each use case asks for what it needs with an
+    // entity graph or a projection in @ReservationsRepository
+    // Excluded from toString/equals/hashCode so they never trigger a load
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id")
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private Users user; // This is the attribute name mapped in Users
                         // by using @OneToMany
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "resource_id")
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private Resources resource;
 
     @Column(name = "start_date_time")
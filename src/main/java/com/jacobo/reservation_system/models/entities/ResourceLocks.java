@@ -0,0 +1,24 @@
+package com.jacobo.reservation_system.models.entities;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+/**
+ * Entity that is the cross-instance lock of a resource (check @OccupancyIndex)
+ * A booking change locks the row of its resource (row lock of the update, held until
+ * the commit) and increments the version, so other instances know their in-memory
+ * occupancy of the resource is stale
+ * One row per booked resource, created the first time it's locked
+ * It is mapped to the "resource_locks" table, in the shard of the resource
+ */
+@Entity
+@Table(name = "resource_locks")
+@Data
+public class ResourceLocks {
+    @Id
+    @Column(name = "resource_id")
+    private Long resource_id; // The resource may live in another shard, so no FK
+
+    @Column(name = "version", nullable = false)
+    private long version;
+}
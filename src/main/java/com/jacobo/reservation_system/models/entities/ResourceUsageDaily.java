@@ -0,0 +1,44 @@
+package com.jacobo.reservation_system.models.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * Entity that stores the booked units of a resource on one day (daily rollup)
+ * A reservation of [start, end) adds one unit to each of its days, so the
+ * utilization of any range is read from these rows instead of the reservations
+ * Kept up to date by the booking code and rebuilt by the backfill (check @UsageRollups)
+ * It is mapped to the "resource_usage_daily" table, in the shard of the resource
+ */
+@Entity
+@Table(name = "resource_usage_daily")
+@IdClass(ResourceUsageDaily.Key.class)
+@Data
+public class ResourceUsageDaily {
+    @Id
+    @Column(name = "resource_id")
+    private Long resource_id; // The resource may live in another shard, so no FK
+
+    @Id
+    @Column(name = "usage_date")
+    private LocalDate usage_date;
+
+    @Column(name = "booked_units", nullable = false)
+    private int booked_units;
+
+    /**
+     * Primary key: resource + day, so a range of a resource is one index range scan
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long resource_id;
+        private LocalDate usage_date;
+    }
+}
@@ -21,4 +21,9 @@ public class Resources {
 
     @Column(name = "active")
     private boolean active = true; // Default value
+
+    // Identical units that can be booked at the same time (parking lots, desk pools)
+    // The default keeps existing rows as single-occupancy when the column is added
+    @Column(name = "capacity", columnDefinition = "int not null default 1")
+    private int capacity = 1;
 }
@@ -0,0 +1,29 @@
+package com.jacobo.reservation_system.models.entities;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entity that stores a JWT revocation, the exact store behind the in-memory
+ * deny-list (check @TokenRevocations)
+ * - "token:" + token ID: that token is refused
+ * - "user:" + username: his tokens issued up to not_before are refused
+ * A row is useless once every token it covers has expired, then it's deleted
+ * It is mapped to the "revoked_tokens" table, in home
+ */
+@Entity
+@Table(name = "revoked_tokens")
+@Data
+public class RevokedTokens {
+    @Id
+    @Column(name = "id", length = 120)
+    private String id;
+
+    @Column(name = "not_before")
+    private LocalDateTime not_before; // Only for users
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expires_at;
+}
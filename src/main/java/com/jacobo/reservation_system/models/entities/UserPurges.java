@@ -0,0 +1,39 @@
+package com.jacobo.reservation_system.models.entities;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entity that tracks the background deletion of a user (check @UserPurger)
+ * The row is the mark of a user pending purge, and also the cursor of the purge:
+ * it's resumed from phase + shard after a restart
+ * It is mapped to the "user_purges" table, in home
+ */
+@Entity
+@Table(name = "user_purges")
+@Data
+public class UserPurges {
+    @Id
+    @Column(name = "user_id")
+    private Long user_id; // The user row is deleted at the end, so no FK
+
+    @Column(name = "status", length = 20)
+    private String status = "pending"; // pending, running or done
+
+    @Column(name = "phase", length = 30)
+    private String phase; // Table being purged, "user" for the final step
+
+    @Column(name = "shard")
+    private int shard;
+
+    @Column(name = "deleted_rows")
+    private long deleted_rows;
+
+    @Column(name = "requested_at")
+    private LocalDateTime requested_at = LocalDateTime.now();
+
+    @Column(name = "finished_at")
+    private LocalDateTime finished_at;
+}
@@ -3,6 +3,8 @@ package com.jacobo.reservation_system.models.entities;
 // Imports for JPA, Lombok, and Spring Security
 import jakarta.persistence.*; // Annotations for entities and relationships
 import lombok.Data; // Generate getters/setters, equals, hashCode, toString
+import lombok.EqualsAndHashCode; // Exclude associations from equals and hashCode
+import lombok.ToString; // Exclude associations from toString
 import org.springframework.security.core.GrantedAuthority; // Represents an authority (role)
 import org.springframework.security.core.userdetails.UserDetails; // Interface for authenticated users
 import java.util.Collection; // Collection for roles
@@ -40,7 +42,11 @@ public class Users implements UserDetails { // Implement UserDetails for integra
     private Boolean active = true; // Indicates if the user is active
                                     // True by default
 
-    @ManyToMany(fetch = FetchType.EAGER) // Many-to-many relationships with roles, immediate loading
+    // Many-to-many relationships with roles, LAZY loading
+    // Use cases that need the roles load them with an entity graph (check @UsersRepository)
+    @ManyToMany(fetch = FetchType.LAZY)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     @JoinTable(
             name = "user_role", // Intermediate table
             joinColumns = @JoinColumn(name = "user_id"), // User FK
@@ -49,6 +55,8 @@ public class Users implements UserDetails { // Implement UserDetails for integra
     private Set<Roles> role = new HashSet<>(); // Set of roles assigned to the user
 
     @OneToMany(mappedBy = "user") // Attribute name from Reservations (user)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private Set<Reservations> reservations;
 
     // Returns the user's authority (role) for Spring Security
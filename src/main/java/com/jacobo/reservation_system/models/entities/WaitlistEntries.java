@@ -0,0 +1,57 @@
+package com.jacobo.reservation_system.models.entities;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Request for an occupied range, queued per resource
+ * Waiters are served by priority (higher first) and then in arrival order (id)
+ * Status: "waiting" -> "promoted" (reservation created), "canceled" or "expired"
+ * Clients poll it through GET /reservations/waitlist/{id} (check @ReservationsService)
+ */
+@Entity
+@Table(name = "waitlist_entries", indexes = {
+        @Index(name = "idx_waitlist_queue", columnList = "resource_id, status, priority, id")
+})
+@Data
+public class WaitlistEntries {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id", unique = true)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id")
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private Users user;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "resource_id")
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private Resources resource;
+
+    @Column(name = "start_date")
+    private LocalDate start_date;
+
+    @Column(name = "end_date")
+    private LocalDate end_date;
+
+    @Column(name = "priority")
+    private int priority = 0; // FIFO by default, ADMIN can raise it
+
+    @Column(name = "status")
+    private String status = "waiting"; // By default
+
+    @Column(name = "reservation_id")
+    private Long reservation_id; // Set when promoted
+
+    @Column(name = "created_at")
+    private LocalDateTime created_at = LocalDateTime.now();
+}
@@ -0,0 +1,35 @@
+package com.jacobo.reservation_system.observability;
+
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+/**
+ * Wraps the DataSource created by Spring Boot with datasource-proxy
+ * Every statement executed through JPA then goes through @SqlStatsListener
+ * The pools of the shards are still reachable through @ShardPools
+ */
+@Component
+public class DataSourceProxyPostProcessor implements BeanPostProcessor {
+    private final long slowQueryThresholdMs;
+
+    public DataSourceProxyPostProcessor(@Value("${sql.slow-query-threshold-ms}") long slowQueryThresholdMs) {
+        this.slowQueryThresholdMs = slowQueryThresholdMs;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !(bean instanceof ProxyDataSource)) {
+            return ProxyDataSourceBuilder.create(dataSource)
+                    .name(beanName)
+                    .listener(new SqlStatsListener(slowQueryThresholdMs))
+                    .build();
+        }
+
+        return bean;
+    }
+}
@@ -0,0 +1,96 @@
+package com.jacobo.reservation_system.observability;
+
+import java.lang.reflect.Method;
+
+/**
+ * Time spent by the current HTTP request in each phase (check @ServerTimingFilter)
+ * Phases are filled where they happen: JWT check (@JwtAuthFilter), repository calls,
+ * password check and JSON serialization. The JDBC time comes from @SqlStats
+ * Only sampled requests have one, everywhere else current() is null and nothing is measured.
+ * Like @SqlStats, only the request thread touches it: work done on other threads
+ * (e.g. @ShardTemplate scatter) is part of the total but of no phase
+ */
+public class RequestTiming {
+    private static final ThreadLocal<RequestTiming> CURRENT = new ThreadLocal<>();
+
+    public enum Phase {
+        AUTH("auth"),
+        REPOSITORY("repo"),
+        PASSWORD("password"),
+        SERIALIZATION("json");
+
+        final String metricName;
+
+        Phase(String metricName) {
+            this.metricName = metricName;
+        }
+    }
+
+    private final long startNanos = System.nanoTime();
+    private final long[] nanos = new long[Phase.values().length];
+    private final int[] counts = new int[Phase.values().length];
+
+    private long slowestRepositoryNanos = -1;
+    private Class<?> slowestRepository;
+    private Method slowestRepositoryMethod;
+
+    /**
+     * Starts collecting the phases of the current thread
+     * @return empty timing
+     */
+    public static RequestTiming start() {
+        RequestTiming timing = new RequestTiming();
+        CURRENT.set(timing);
+        return timing;
+    }
+
+    /**
+     * @return timing of the current thread, or null if the request is not sampled
+     */
+    public static RequestTiming current() {
+        return CURRENT.get();
+    }
+
+    public static void stop() {
+        CURRENT.remove();
+    }
+
+    public void add(Phase phase, long elapsedNanos) {
+        nanos[phase.ordinal()] += elapsedNanos;
+        counts[phase.ordinal()]++;
+    }
+
+    void addRepositoryCall(Class<?> repository, Method method, long elapsedNanos) {
+        add(Phase.REPOSITORY, elapsedNanos);
+
+        if (elapsedNanos > slowestRepositoryNanos) {
+            slowestRepositoryNanos = elapsedNanos;
+            slowestRepository = repository;
+            slowestRepositoryMethod = method;
+        }
+    }
+
+    long nanos(Phase phase) {
+        return nanos[phase.ordinal()];
+    }
+
+    int count(Phase phase) {
+        return counts[phase.ordinal()];
+    }
+
+    long totalNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    /**
+     * @return slowest repository call as Repository.method, or null if there was none
+     */
+    String slowestRepositoryCall() {
+        return slowestRepositoryMethod == null ? null
+                : slowestRepository.getSimpleName() + "." + slowestRepositoryMethod.getName();
+    }
+
+    long slowestRepositoryNanos() {
+        return slowestRepositoryNanos;
+    }
+}
@@ -0,0 +1,137 @@
+package com.jacobo.reservation_system.observability;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jacobo.reservation_system.observability.RequestTiming.Phase;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+import org.springframework.data.repository.core.support.RepositoryMethodInvocationListener;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hooks of the phases measured for @ServerTimingFilter, only with server-timing.enabled=true
+ * Without the property none of them is registered, so repositories, the password encoder
+ * and the JSON converter run exactly as before. With it, a request that is not sampled
+ * pays one ThreadLocal read per hook
+ */
+@Configuration
+@ConditionalOnProperty(name = "server-timing.enabled", havingValue = "true")
+public class ServerTimingConfig {
+
+    /**
+     * Adds a listener to every Spring Data repository that times each call
+     * (same mechanism as the repository metrics of Actuator)
+     */
+    @Bean
+    static BeanPostProcessor repositoryTimingPostProcessor() {
+        RepositoryMethodInvocationListener listener = invocation -> {
+            RequestTiming timing = RequestTiming.current();
+            if (timing != null) {
+                timing.addRepositoryCall(invocation.getRepositoryInterface(), invocation.getMethod(),
+                        invocation.getDuration(TimeUnit.NANOSECONDS));
+            }
+        };
+
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> factoryBean) {
+                    factoryBean.addRepositoryFactoryCustomizer(factory -> factory.addInvocationListener(listener));
+                }
+                return bean;
+            }
+        };
+    }
+
+    /**
+     * Times the password checks (BCrypt on login) and hashes (register)
+     */
+    @Bean
+    static BeanPostProcessor passwordTimingPostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                return bean instanceof PasswordEncoder encoder ? new TimedPasswordEncoder(encoder) : bean;
+            }
+        };
+    }
+
+    /**
+     * Replaces the default JSON converter (same class, Spring Boot keeps its position)
+     * A sampled response is serialized into a buffer first, so its time is known
+     * before the body commits the response and appears in the header
+     */
+    @Bean
+    MappingJackson2HttpMessageConverter timedJacksonConverter(ObjectMapper mapper) {
+        return new MappingJackson2HttpMessageConverter(mapper) {
+            @Override
+            protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage) throws IOException {
+                RequestTiming timing = RequestTiming.current();
+                if (timing == null) {
+                    super.writeInternal(object, type, outputMessage);
+                    return;
+                }
+
+                long start = System.nanoTime();
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream(1024);
+                super.writeInternal(object, type, new HttpOutputMessage() {
+                    @Override
+                    public OutputStream getBody() {
+                        return buffer;
+                    }
+
+                    @Override
+                    public HttpHeaders getHeaders() {
+                        return outputMessage.getHeaders();
+                    }
+                });
+                timing.add(Phase.SERIALIZATION, System.nanoTime() - start);
+
+                buffer.writeTo(outputMessage.getBody());
+            }
+        };
+    }
+
+    private record TimedPasswordEncoder(PasswordEncoder delegate) implements PasswordEncoder {
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            RequestTiming timing = RequestTiming.current();
+            long start = timing == null ? 0 : System.nanoTime();
+            String encoded = delegate.encode(rawPassword);
+
+            if (timing != null) {
+                timing.add(Phase.PASSWORD, System.nanoTime() - start);
+            }
+            return encoded;
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            RequestTiming timing = RequestTiming.current();
+            long start = timing == null ? 0 : System.nanoTime();
+            boolean matches = delegate.matches(rawPassword, encodedPassword);
+
+            if (timing != null) {
+                timing.add(Phase.PASSWORD, System.nanoTime() - start);
+            }
+            return matches;
+        }
+
+        @Override
+        public boolean upgradeEncoding(String encodedPassword) {
+            return delegate.upgradeEncoding(encodedPassword);
+        }
+    }
+}
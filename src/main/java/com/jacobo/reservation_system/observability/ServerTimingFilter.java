@@ -0,0 +1,138 @@
+package com.jacobo.reservation_system.observability;
+
+import com.jacobo.reservation_system.observability.RequestTiming.Phase;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.security.web.util.OnCommittedResponseWrapper;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Per-request phase breakdown for sampled requests (server-timing.sample-rate)
+ * - "Server-Timing" response header, added right before the response is committed,
+ *   so browsers and clients show it next to the request (e.g. devtools)
+ * - One key=value log line when the request ends, with the complete values
+ *   (streamed lists commit early: their header only has the phases until then)
+ * Only registered with server-timing.enabled=true (check @ServerTimingConfig):
+ * otherwise no request is wrapped and no phase is measured anywhere
+ * It runs inside @SqlStatsFilter, so the JDBC time of the request is reported too
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "server-timing.enabled", havingValue = "true")
+@Order(Ordered.HIGHEST_PRECEDENCE + 3)
+public class ServerTimingFilter extends OncePerRequestFilter {
+    static final String HEADER = "Server-Timing";
+
+    private final double sampleRate;
+
+    public ServerTimingFilter(@Value("${server-timing.sample-rate:0.01}") double sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest req, HttpServletResponse res, FilterChain chain)
+            throws ServletException, IOException {
+        if (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            chain.doFilter(req, res);
+            return;
+        }
+
+        RequestTiming timing = RequestTiming.start();
+        HttpServletResponse timed = new OnCommittedResponseWrapper(res) {
+            @Override
+            protected void onResponseCommitted() {
+                res.setHeader(HEADER, header(timing, SqlStats.current()));
+            }
+        };
+
+        try {
+            chain.doFilter(req, timed);
+        } finally {
+            RequestTiming.stop();
+
+            // Responses without a body are committed after the filters
+            if (!res.isCommitted()) {
+                res.setHeader(HEADER, header(timing, SqlStats.current()));
+            }
+            log(req, res, timing, SqlStats.current());
+        }
+    }
+
+    /**
+     * Server-Timing value: one metric per phase with time, durations in ms
+     * e.g. auth;dur=0.215, repo;dur=3.402;desc="4 calls", db;dur=3;desc="3 statements", total;dur=5.120
+     */
+    static String header(RequestTiming timing, SqlStats sql) {
+        StringBuilder value = new StringBuilder(160);
+
+        for (Phase phase : Phase.values()) {
+            int count = timing.count(phase);
+            if (count == 0) {
+                continue;
+            }
+
+            value.append(phase.metricName).append(";dur=");
+            appendMillis(value, timing.nanos(phase));
+            if (count > 1 || phase == Phase.REPOSITORY) {
+                value.append(";desc=\"").append(count).append(count == 1 ? " call\"" : " calls\"");
+            }
+            value.append(", ");
+        }
+
+        if (sql != null && sql.getStatements() > 0) {
+            value.append("db;dur=").append(sql.getTotalMs())
+                    .append(";desc=\"").append(sql.getStatements()).append(" statements\", ");
+        }
+
+        value.append("total;dur=");
+        appendMillis(value, timing.totalNanos());
+        return value.toString();
+    }
+
+    private void log(HttpServletRequest req, HttpServletResponse res, RequestTiming timing, SqlStats sql) {
+        Object pattern = req.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+
+        log.info("server_timing method={} uri={} status={} total_ms={} auth_ms={} repo_ms={} repo_calls={} "
+                        + "db_ms={} db_statements={} password_ms={} json_ms={} slowest_repo={} slowest_repo_ms={}",
+                req.getMethod(), pattern == null ? "UNKNOWN" : pattern, res.getStatus(),
+                millis(timing.totalNanos()),
+                millis(timing.nanos(Phase.AUTH)),
+                millis(timing.nanos(Phase.REPOSITORY)), timing.count(Phase.REPOSITORY),
+                sql == null ? 0 : sql.getTotalMs(), sql == null ? 0 : sql.getStatements(),
+                millis(timing.nanos(Phase.PASSWORD)),
+                millis(timing.nanos(Phase.SERIALIZATION)),
+                timing.slowestRepositoryCall(), millis(Math.max(0, timing.slowestRepositoryNanos())));
+    }
+
+    private static String millis(long nanos) {
+        StringBuilder value = new StringBuilder(12);
+        appendMillis(value, nanos);
+        return value.toString();
+    }
+
+    /**
+     * Milliseconds with 3 decimals, without String.format nor scientific notation
+     */
+    private static void appendMillis(StringBuilder value, long nanos) {
+        long micros = nanos / 1_000;
+        long fraction = micros % 1_000;
+
+        value.append(micros / 1_000).append('.');
+        if (fraction < 100) {
+            value.append(fraction < 10 ? "00" : "0");
+        }
+        value.append(fraction);
+    }
+}
@@ -0,0 +1,49 @@
+package com.jacobo.reservation_system.observability;
+
+import lombok.Getter;
+
+/**
+ * SQL statistics of the current HTTP request
+ * Filled by @SqlStatsListener for every JDBC statement and read by @SqlStatsFilter
+ * when the request ends. Only the request thread touches it, so it needs no locks
+ */
+@Getter
+public class SqlStats {
+    private static final ThreadLocal<SqlStats> CURRENT = new ThreadLocal<>();
+
+    private int statements;
+    private long totalMs;
+    private long slowestMs = -1;
+    private String slowestQuery;
+
+    /**
+     * Starts collecting the statistics of the current thread
+     * @return empty statistics
+     */
+    public static SqlStats start() {
+        SqlStats stats = new SqlStats();
+        CURRENT.set(stats);
+        return stats;
+    }
+
+    /**
+     * @return statistics of the current thread, or null if nobody is collecting
+     */
+    public static SqlStats current() {
+        return CURRENT.get();
+    }
+
+    public static void stop() {
+        CURRENT.remove();
+    }
+
+    void record(String query, long elapsedMs) {
+        statements++;
+        totalMs += elapsedMs;
+
+        if (elapsedMs > slowestMs) {
+            slowestMs = elapsedMs;
+            slowestQuery = query;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.jacobo.reservation_system.observability;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects the SQL statistics of each HTTP request
+ * When the request ends it records, per endpoint (URI pattern, e.g. /users/{id}):
+ * - "http.server.requests.sql.statements": statements executed
+ * - "http.server.requests.sql.time": total JDBC time
+ * and logs (debug) the statement count, JDBC time and slowest statement
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class SqlStatsFilter extends OncePerRequestFilter {
+    private final MeterRegistry registry;
+
+    public SqlStatsFilter(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest req, HttpServletResponse res, FilterChain chain)
+            throws ServletException, IOException {
+        SqlStats stats = SqlStats.start();
+
+        try {
+            chain.doFilter(req, res);
+        } finally {
+            SqlStats.stop();
+            record(req, stats);
+        }
+    }
+
+    private void record(HttpServletRequest req, SqlStats stats) {
+        // The pattern keeps the number of tags bounded (IDs are not part of it)
+        Object pattern = req.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern == null ? "UNKNOWN" : pattern.toString();
+
+        DistributionSummary.builder("http.server.requests.sql.statements")
+                .description("SQL statements executed per request")
+                .tag("method", req.getMethod())
+                .tag("uri", uri)
+                .register(registry)
+                .record(stats.getStatements());
+
+        Timer.builder("http.server.requests.sql.time")
+                .description("Total JDBC time per request")
+                .tag("method", req.getMethod())
+                .tag("uri", uri)
+                .register(registry)
+                .record(stats.getTotalMs(), TimeUnit.MILLISECONDS);
+
+        if (log.isDebugEnabled() && stats.getStatements() > 0) {
+            log.debug("{} {}: {} statements, {} ms in JDBC, slowest {} ms: {}",
+                    req.getMethod(), uri, stats.getStatements(), stats.getTotalMs(),
+                    stats.getSlowestMs(), SqlStatsListener.redact(stats.getSlowestQuery()));
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.jacobo.reservation_system.observability;
+
+import lombok.extern.slf4j.Slf4j;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * datasource-proxy listener called after every JDBC statement
+ * - Adds the statement to the statistics of the current request (@SqlStats)
+ * - Logs the statement if it is slower than the threshold
+ * Bind parameters are never logged and string literals are replaced by '?',
+ * so no user data (passwords, emails) ends in the logs
+ */
+@Slf4j
+public class SqlStatsListener implements QueryExecutionListener {
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+
+    private final long slowQueryThresholdMs;
+
+    public SqlStatsListener(long slowQueryThresholdMs) {
+        this.slowQueryThresholdMs = slowQueryThresholdMs;
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        // Nothing to do, the elapsed time is measured by datasource-proxy
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        long elapsedMs = execInfo.getElapsedTime();
+        String query = queryInfoList.isEmpty() ? "" : queryInfoList.get(0).getQuery();
+
+        SqlStats stats = SqlStats.current();
+        if (stats != null) {
+            stats.record(query, elapsedMs);
+        }
+
+        if (elapsedMs >= slowQueryThresholdMs) {
+            log.warn("Slow query ({} ms, batch size {}, success {}): {}",
+                    elapsedMs, queryInfoList.size(), execInfo.isSuccess(), redact(query));
+        }
+    }
+
+    /**
+     * Replaces the string literals of a statement with '?'
+     * @param query SQL statement
+     * @return statement safe to log
+     */
+    public static String redact(String query) {
+        return query == null ? null : STRING_LITERAL.matcher(query).replaceAll("'?'");
+    }
+}
@@ -0,0 +1,264 @@
+package com.jacobo.reservation_system.occupancy;
+
+import com.jacobo.reservation_system.exceptions.ReservationsExceptions.ResourceBusyException;
+import com.jacobo.reservation_system.models.entities.RecurringReservations;
+import com.jacobo.reservation_system.recurrence.Recurrence;
+import com.jacobo.reservation_system.repositories.RecurringReservationsRepository;
+import com.jacobo.reservation_system.repositories.ReservationsRepository;
+import com.jacobo.reservation_system.repositories.ResourceLocksRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Per-resource occupancy, used to check capacity without loading the overlapping rows
+ * The occupancy of a resource is loaded from the database the first time it's needed
+ * (active reservations and occurrences of active series) and then kept up to date
+ * by the booking code itself
+ * ---------------------------------------------------------------------------
+ * Every booking change runs inside a transaction holding the resource lock:
+ * lock(id) is released when the transaction completes, so the check, the insert,
+ * the commit and the index update are one atomic step for other bookings of the
+ * same resource. If the transaction rolls back, the changed occupancy is dropped
+ * and reloaded from the database the next time
+ * ---------------------------------------------------------------------------
+ * The lock has two levels:
+ * - A ReentrantLock per JVM, so the bookings of one instance queue in memory
+ * - The row of the resource in "resource_locks" (check @ResourceLocks), locked by an
+ *   update in the booking transaction, so the bookings of all the instances queue in
+ *   the database. It's released by the commit or the rollback, never left behind
+ * The update also increments the version of the resource: an occupancy loaded at
+ * another version was changed by another instance, and it's reloaded
+ * Both waits are bounded (booking-lock.timeout-ms, innodb_lock_wait_timeout) and
+ * measured ("booking.lock.wait", tags: level, outcome). Several resources are locked
+ * in ascending ID order, so two bookings never wait for each other
+ */
+@Component
+public class OccupancyIndex {
+    private final ReservationsRepository resRepo;
+    private final RecurringReservationsRepository recurringRepo;
+    private final ResourceLocksRepository locksRepo;
+    private final long timeoutMs;
+    private final Map<Long, ReentrantLock> locks = new ConcurrentHashMap<>();
+    private final Map<Long, ResourceOccupancy> occupancies = new ConcurrentHashMap<>();
+
+    /**
+     * Version of each locked resource, read by its lock holder to load the occupancy
+     */
+    private final Map<Long, Long> lockedVersions = new ConcurrentHashMap<>();
+
+    private final Timer localAcquired;
+    private final Timer localTimeout;
+    private final Timer databaseAcquired;
+    private final Timer databaseTimeout;
+
+    public OccupancyIndex(ReservationsRepository resRepo, RecurringReservationsRepository recurringRepo,
+                          ResourceLocksRepository locksRepo, MeterRegistry registry,
+                          @Value("${booking-lock.timeout-ms:5000}") long timeoutMs) {
+        this.resRepo = resRepo;
+        this.recurringRepo = recurringRepo;
+        this.locksRepo = locksRepo;
+        this.timeoutMs = timeoutMs;
+
+        this.localAcquired = waitTimer(registry, "local", "acquired");
+        this.localTimeout = waitTimer(registry, "local", "timeout");
+        this.databaseAcquired = waitTimer(registry, "database", "acquired");
+        this.databaseTimeout = waitTimer(registry, "database", "timeout");
+    }
+
+    /**
+     * Locks the resource until the current transaction completes
+     * It can be called again for the same resource in the same transaction
+     * Must run in the transaction of the resource shard
+     * @param resourceId resource to lock
+     */
+    public void lock(Long resourceId) {
+        lock(List.of(resourceId));
+    }
+
+    /**
+     * Locks several resources until the current transaction completes, in ascending ID
+     * order whatever the order of the collection, so it can't deadlock with other bookings
+     * @param resourceIds resources to lock, all of them in the shard of the transaction
+     */
+    public void lock(Collection<Long> resourceIds) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Booking changes must run inside a transaction");
+        }
+
+        for (Long resourceId : new TreeSet<>(resourceIds)) {
+            lockOne(resourceId);
+        }
+    }
+
+    /**
+     * Occupancy of a locked resource, loaded if it's not in memory yet
+     * The load runs in the caller transaction (the shard of the resource),
+     * so it sees its pending changes
+     * @param resourceId locked resource
+     * @return occupancy, to check and update
+     */
+    public ResourceOccupancy get(Long resourceId) {
+        checkLocked(resourceId);
+
+        // No computeIfAbsent: the load runs queries, and the lock already serializes it
+        ResourceOccupancy occupancy = occupancies.get(resourceId);
+        if (occupancy == null) {
+            occupancy = load(resourceId);
+            occupancies.put(resourceId, occupancy);
+        }
+
+        return occupancy;
+    }
+
+    /**
+     * Occupancy of a locked resource only if it's already in memory
+     * Used to remove bookings: if it's not loaded, the next load will read the new state
+     * @param resourceId locked resource
+     * @return occupancy or null
+     */
+    public ResourceOccupancy getIfLoaded(Long resourceId) {
+        checkLocked(resourceId);
+        return occupancies.get(resourceId);
+    }
+
+    /**
+     * Drops the occupancy of a locked resource, it's reloaded on demand
+     * For set-based changes of its bookings (e.g. cancellations of a deactivated resource)
+     * Other instances reload it too, the lock already incremented its version
+     * @param resourceId locked resource
+     */
+    public void evict(Long resourceId) {
+        checkLocked(resourceId);
+        occupancies.remove(resourceId);
+    }
+
+    private void lockOne(Long resourceId) {
+        ReentrantLock lock = locks.computeIfAbsent(resourceId, id -> new ReentrantLock());
+        if (lock.isHeldByCurrentThread()) {
+            return; // Already locked by this transaction, released when the first lock is
+        }
+
+        long start = System.nanoTime();
+        if (!tryLock(lock)) {
+            localTimeout.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw new ResourceBusyException("The resource is being booked by other users, try again");
+        }
+        localAcquired.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        long version;
+        try {
+            version = lockRow(resourceId);
+        } catch (RuntimeException e) {
+            lock.unlock();
+            throw e;
+        }
+
+        // Loaded at another version: another instance changed its bookings since then
+        ResourceOccupancy loaded = occupancies.get(resourceId);
+        if (loaded != null && loaded.version != version - 1) {
+            occupancies.remove(resourceId);
+        }
+        lockedVersions.put(resourceId, version);
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                lockedVersions.remove(resourceId);
+
+                ResourceOccupancy occupancy = occupancies.get(resourceId);
+                if (occupancy != null) {
+                    if (status == STATUS_COMMITTED) {
+                        occupancy.dirty = false;
+                        occupancy.version = version;
+                    } else if (occupancy.dirty) {
+                        occupancies.remove(resourceId);
+                    }
+                    // Rolled back without changes: the row is back at version - 1, like the occupancy
+                }
+                lock.unlock();
+            }
+        });
+    }
+
+    private boolean tryLock(ReentrantLock lock) {
+        try {
+            return lock.tryLock(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Locks the row of the resource in the current transaction
+     * @return new version of the resource
+     */
+    private long lockRow(Long resourceId) {
+        long start = System.nanoTime();
+        try {
+            while (true) {
+                if (locksRepo.lockAndIncrement(resourceId) == 1) {
+                    long version = locksRepo.findVersion(resourceId);
+                    databaseAcquired.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    return version;
+                }
+
+                // First booking of the resource: the insert locks the new row. If another
+                // transaction inserted it first, the update waits for it
+                if (locksRepo.create(resourceId) == 1) {
+                    databaseAcquired.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    return 1;
+                }
+            }
+        } catch (PessimisticLockingFailureException e) {
+            databaseTimeout.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw new ResourceBusyException("The resource is being booked by other users, try again");
+        }
+    }
+
+    private void checkLocked(Long resourceId) {
+        ReentrantLock lock = locks.get(resourceId);
+        if (lock == null || !lock.isHeldByCurrentThread()) {
+            throw new IllegalStateException("Resource " + resourceId + " must be locked first");
+        }
+    }
+
+    private ResourceOccupancy load(Long resourceId) {
+        ResourceOccupancy occupancy = new ResourceOccupancy();
+
+        for (Object[] range : resRepo.findActiveRanges(resourceId)) {
+            occupancy.add((LocalDate) range[0], (LocalDate) range[1]);
+        }
+
+        for (RecurringReservations series : recurringRepo.findByResourceIdAndStatus(resourceId, "active")) {
+            Recurrence.of(series).forEachOccurrence(occupancy::add);
+        }
+
+        // The rows read are the ones of the version before the lock of this transaction
+        occupancy.version = lockedVersions.get(resourceId) - 1;
+        occupancy.dirty = false;
+        return occupancy;
+    }
+
+    private static Timer waitTimer(MeterRegistry registry, String level, String outcome) {
+        return Timer.builder("booking.lock.wait")
+                .description("Time waited for the lock of a resource before a booking change")
+                .tag("level", level)
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+}
@@ -0,0 +1,202 @@
+package com.jacobo.reservation_system.occupancy;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Occupancy of one resource over time, as a step function (sweep line)
+ * Each key is a day where the number of booked units changes, and its value is
+ * the number of units booked from that day until the next key (0 before the first one)
+ * Ranges are half-open [start, end), like the overlap query of WaitlistEntriesRepository
+ * - Max occupancy of a range: O(log n + changes inside the range)
+ * - Adding / removing a booking: same cost, neighbours with the same level are merged
+ * - Nearest free window before / after a day: jumps over the busy segments (gap search),
+ *   O(log n) per segment crossed
+ * Not thread safe: it's only used while holding the resource lock (check @OccupancyIndex)
+ */
+public class ResourceOccupancy {
+    private final TreeMap<Long, Integer> levels = new TreeMap<>();
+
+    /**
+     * Changed by the current transaction, the index must be reloaded if it rolls back
+     */
+    boolean dirty;
+
+    /**
+     * Version of the resource lock row this occupancy reflects (check @OccupancyIndex)
+     */
+    long version;
+
+    /**
+     * Maximum units booked at the same time on any day of the range
+     * @param start range start
+     * @param end range end (excluded)
+     * @return maximum concurrent occupancy
+     */
+    public int maxOccupancy(LocalDate start, LocalDate end) {
+        long from = start.toEpochDay();
+        long to = end.toEpochDay();
+
+        Map.Entry<Long, Integer> before = levels.floorEntry(from);
+        int max = before == null ? 0 : before.getValue();
+
+        for (int level : levels.subMap(from, false, to, false).values()) {
+            max = Math.max(max, level);
+        }
+
+        return max;
+    }
+
+    /**
+     * Earliest range of the given length starting on or after a day where every day
+     * has at most maxLevel units booked. There's always one: the level ends at 0
+     * @param from first possible start
+     * @param days length of the range
+     * @param maxLevel maximum booked units allowed (capacity - 1 to fit one more booking)
+     * @return start of the range
+     */
+    public LocalDate nextFree(LocalDate from, int days, int maxLevel) {
+        long start = from.toEpochDay();
+
+        while (true) {
+            long blocked = firstBlocked(start, start + days, maxLevel);
+            if (blocked == NONE) {
+                return LocalDate.ofEpochDay(start);
+            }
+            start = endOfBlocked(blocked, maxLevel);
+        }
+    }
+
+    /**
+     * Latest range of the given length starting before a day (and not before another one)
+     * where every day has at most maxLevel units booked
+     * @param before the range starts before this day
+     * @param notBefore first possible start (e.g. today)
+     * @param days length of the range
+     * @param maxLevel maximum booked units allowed
+     * @return start of the range, or null if there's none
+     */
+    public LocalDate previousFree(LocalDate before, LocalDate notBefore, int days, int maxLevel) {
+        long start = before.toEpochDay() - 1;
+        long limit = notBefore.toEpochDay();
+
+        while (start >= limit) {
+            long blocked = lastBlocked(start, start + days, maxLevel);
+            if (blocked == NONE) {
+                return LocalDate.ofEpochDay(start);
+            }
+            start = blocked - days; // Latest start whose range ends before the blocked day
+        }
+
+        return null;
+    }
+
+    public void add(LocalDate start, LocalDate end) {
+        change(start.toEpochDay(), end.toEpochDay(), 1);
+    }
+
+    public void remove(LocalDate start, LocalDate end) {
+        change(start.toEpochDay(), end.toEpochDay(), -1);
+    }
+
+    private static final long NONE = Long.MIN_VALUE;
+
+    /**
+     * First day of [from, to) with more than maxLevel units booked, or NONE
+     */
+    private long firstBlocked(long from, long to, int maxLevel) {
+        Map.Entry<Long, Integer> before = levels.floorEntry(from);
+        if (before != null && before.getValue() > maxLevel) {
+            return from;
+        }
+
+        for (Map.Entry<Long, Integer> entry : levels.subMap(from, false, to, false).entrySet()) {
+            if (entry.getValue() > maxLevel) {
+                return entry.getKey();
+            }
+        }
+
+        return NONE;
+    }
+
+    /**
+     * Last day of [from, to) with more than maxLevel units booked, or NONE
+     */
+    private long lastBlocked(long from, long to, int maxLevel) {
+        for (Map.Entry<Long, Integer> entry : levels.subMap(from, false, to, false).descendingMap().entrySet()) {
+            if (entry.getValue() > maxLevel) {
+                return segmentEnd(entry.getKey(), to) - 1;
+            }
+        }
+
+        Map.Entry<Long, Integer> before = levels.floorEntry(from);
+        if (before != null && before.getValue() > maxLevel) {
+            return segmentEnd(before.getKey(), to) - 1;
+        }
+
+        return NONE;
+    }
+
+    /**
+     * First day after a blocked one with at most maxLevel units booked
+     */
+    private long endOfBlocked(long blocked, int maxLevel) {
+        Map.Entry<Long, Integer> next = levels.higherEntry(blocked);
+        while (next != null && next.getValue() > maxLevel) {
+            next = levels.higherEntry(next.getKey());
+        }
+
+        return next == null ? blocked + 1 : next.getKey();
+    }
+
+    /**
+     * End (excluded) of the segment starting on a key, cut at a limit
+     */
+    private long segmentEnd(long key, long limit) {
+        Long next = levels.higherKey(key);
+        return next == null ? limit : Math.min(next, limit);
+    }
+
+    private void change(long from, long to, int delta) {
+        if (from >= to) {
+            return;
+        }
+
+        split(from);
+        split(to);
+
+        for (Map.Entry<Long, Integer> entry : levels.subMap(from, true, to, false).entrySet()) {
+            entry.setValue(entry.getValue() + delta);
+        }
+
+        merge(from);
+        merge(to);
+        dirty = true;
+    }
+
+    /**
+     * Adds a key on the day with the level it already had
+     */
+    private void split(long day) {
+        if (!levels.containsKey(day)) {
+            Map.Entry<Long, Integer> before = levels.floorEntry(day);
+            levels.put(day, before == null ? 0 : before.getValue());
+        }
+    }
+
+    /**
+     * Removes the key of the day if it doesn't change the level anymore
+     */
+    private void merge(long day) {
+        Integer level = levels.get(day);
+        if (level == null) {
+            return;
+        }
+
+        Map.Entry<Long, Integer> before = levels.lowerEntry(day);
+        if (level == (before == null ? 0 : before.getValue())) {
+            levels.remove(day);
+        }
+    }
+}
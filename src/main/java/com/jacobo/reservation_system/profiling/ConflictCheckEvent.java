@@ -0,0 +1,65 @@
+package com.jacobo.reservation_system.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.time.LocalDate;
+
+/**
+ * JFR event: capacity check of a booking against the occupancy of its resource
+ * (check @OccupancyIndex). One event per reservation, one per whole series
+ */
+@Name(ConflictCheckEvent.NAME)
+@Label("Conflict Check")
+@Description("Capacity check of a booking on the occupancy of its resource")
+@Category({"Reservation System", "Bookings"})
+@StackTrace(false)
+public class ConflictCheckEvent extends Event {
+    static final String NAME = "reservation_system.ConflictCheck";
+
+    @Label("Resource ID")
+    long resourceId;
+
+    @Label("Start Date")
+    String startDate;
+
+    @Label("End Date")
+    @Description("Day after the last one")
+    String endDate;
+
+    @Label("Occurrences")
+    int occurrences;
+
+    @Label("Outcome")
+    @Description("free or conflict")
+    String outcome;
+
+    /**
+     * @return event with its start time taken
+     */
+    public static ConflictCheckEvent started() {
+        ConflictCheckEvent event = new ConflictCheckEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends the event and commits it if it's recorded. The fields are only
+     * filled (and the dates formatted) when a recording wants it
+     */
+    public void finish(Long resourceId, LocalDate from, LocalDate to, int occurrences, boolean free) {
+        end();
+        if (shouldCommit()) {
+            this.resourceId = resourceId;
+            this.startDate = from.toString();
+            this.endDate = to.toString();
+            this.occurrences = occurrences;
+            this.outcome = free ? "free" : "conflict";
+            commit();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.jacobo.reservation_system.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event: parse and signature check of a JWT plus its revocation lookup
+ * (check @JwtAuthFilter)
+ */
+@Name(JwtCheckEvent.NAME)
+@Label("JWT Check")
+@Description("Parse, signature check and revocation lookup of a bearer token")
+@Category({"Reservation System", "Security"})
+@StackTrace(false)
+public class JwtCheckEvent extends Event {
+    static final String NAME = "reservation_system.JwtCheck";
+
+    @Label("Outcome")
+    @Description("valid, revoked or invalid")
+    String outcome;
+
+    public static JwtCheckEvent started() {
+        JwtCheckEvent event = new JwtCheckEvent();
+        event.begin();
+        return event;
+    }
+
+    public void finish(String outcome) {
+        end();
+        if (shouldCommit()) {
+            this.outcome = outcome;
+            commit();
+        }
+    }
+}
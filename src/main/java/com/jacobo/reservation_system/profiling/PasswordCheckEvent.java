@@ -0,0 +1,38 @@
+package com.jacobo.reservation_system.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event: password hash (register) or check (login) by the PasswordEncoder
+ */
+@Name(PasswordCheckEvent.NAME)
+@Label("Password Check")
+@Description("Password hash or check by the password encoder")
+@Category({"Reservation System", "Security"})
+@StackTrace(false)
+public class PasswordCheckEvent extends Event {
+    static final String NAME = "reservation_system.PasswordCheck";
+
+    @Label("Outcome")
+    @Description("match, mismatch or encode")
+    String outcome;
+
+    public static PasswordCheckEvent started() {
+        PasswordCheckEvent event = new PasswordCheckEvent();
+        event.begin();
+        return event;
+    }
+
+    public void finish(String outcome) {
+        end();
+        if (shouldCommit()) {
+            this.outcome = outcome;
+            commit();
+        }
+    }
+}
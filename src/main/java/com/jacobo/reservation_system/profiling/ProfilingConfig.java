@@ -0,0 +1,95 @@
+package com.jacobo.reservation_system.profiling;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Emits the JFR events of the repository calls and the password checks, only with
+ * profiling.enabled=true. The conflict checks and the JWT checks emit theirs inline
+ * (check @ReservationsService, @JwtAuthFilter): an event that no recording enables
+ * costs a flag check
+ */
+@Configuration
+@ConditionalOnProperty(name = "profiling.enabled", havingValue = "true")
+public class ProfilingConfig {
+
+    /**
+     * Adds an interceptor to the proxy of every Spring Data repository
+     */
+    @Bean
+    static BeanPostProcessor repositoryEventsPostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> factoryBean) {
+                    factoryBean.addRepositoryFactoryCustomizer(factory -> factory.addRepositoryProxyPostProcessor(
+                            (proxy, info) -> proxy.addAdvice(repositoryEvents(info.getRepositoryInterface()))));
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    static BeanPostProcessor passwordEventsPostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                return bean instanceof PasswordEncoder encoder ? new ProfiledPasswordEncoder(encoder) : bean;
+            }
+        };
+    }
+
+    private static MethodInterceptor repositoryEvents(Class<?> repository) {
+        String repositoryName = repository.getSimpleName();
+
+        return invocation -> {
+            RepositoryCallEvent event = new RepositoryCallEvent();
+            event.begin();
+            boolean success = false;
+
+            try {
+                Object result = invocation.proceed();
+                success = true;
+                return result;
+            } finally {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.repository = repositoryName;
+                    event.method = invocation.getMethod().getName();
+                    event.success = success;
+                    event.commit();
+                }
+            }
+        };
+    }
+
+    private record ProfiledPasswordEncoder(PasswordEncoder delegate) implements PasswordEncoder {
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            PasswordCheckEvent event = PasswordCheckEvent.started();
+            String encoded = delegate.encode(rawPassword);
+            event.finish("encode");
+            return encoded;
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            PasswordCheckEvent event = PasswordCheckEvent.started();
+            boolean matches = delegate.matches(rawPassword, encodedPassword);
+            event.finish(matches ? "match" : "mismatch");
+            return matches;
+        }
+
+        @Override
+        public boolean upgradeEncoding(String encodedPassword) {
+            return delegate.upgradeEncoding(encodedPassword);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.jacobo.reservation_system.profiling;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Actuator endpoint /actuator/profiling (ADMIN, like the rest of Actuator)
+ * Count, average, max and total duration of the custom JFR events of the last
+ * profiling.window-minutes, per outcome or repository method (check @ProfilingEvents)
+ */
+@Component
+@ConditionalOnProperty(name = "profiling.enabled", havingValue = "true")
+@Endpoint(id = "profiling")
+public class ProfilingEndpoint {
+    private final ProfilingEvents events;
+
+    public ProfilingEndpoint(ProfilingEvents events) {
+        this.events = events;
+    }
+
+    @ReadOperation
+    public Map<String, Object> aggregates() {
+        return events.snapshot();
+    }
+}
@@ -0,0 +1,102 @@
+package com.jacobo.reservation_system.profiling;
+
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In-process consumer of the custom JFR events (package profiling)
+ * A RecordingStream enables them (no threshold, no stack traces) and rolls every
+ * event into per-minute aggregates (check @RollingStats), read by @ProfilingEndpoint
+ * ---------------------------------------------------------------------------
+ * Nothing is dumped: the stream only keeps profiling.max-age-seconds of chunks in the
+ * JFR repository (temporary files managed by the JVM) and drops them after parsing.
+ * A recording started with -XX:StartFlightRecording gets the same events, for full
+ * profiles next to the JVM ones
+ * Started when the application is ready, so the training run of the fast-start build
+ * (which exits on refresh) never starts it
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "profiling.enabled", havingValue = "true")
+public class ProfilingEvents {
+    private final long maxAgeSeconds;
+    private final int windowMinutes;
+    private final RollingStats conflictChecks;
+    private final RollingStats jwtChecks;
+    private final RollingStats passwordChecks;
+    private final RollingStats repositoryCalls;
+
+    private RecordingStream stream;
+
+    public ProfilingEvents(@Value("${profiling.window-minutes:5}") int windowMinutes,
+                           @Value("${profiling.max-age-seconds:60}") long maxAgeSeconds) {
+        this.windowMinutes = Math.max(1, windowMinutes);
+        this.maxAgeSeconds = maxAgeSeconds;
+        this.conflictChecks = new RollingStats(this.windowMinutes);
+        this.jwtChecks = new RollingStats(this.windowMinutes);
+        this.passwordChecks = new RollingStats(this.windowMinutes);
+        this.repositoryCalls = new RollingStats(this.windowMinutes);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        stream = new RecordingStream();
+        stream.setMaxAge(Duration.ofSeconds(maxAgeSeconds));
+
+        stream.enable(ConflictCheckEvent.class).withoutThreshold();
+        stream.enable(JwtCheckEvent.class).withoutThreshold();
+        stream.enable(PasswordCheckEvent.class).withoutThreshold();
+        stream.enable(RepositoryCallEvent.class).withoutThreshold();
+
+        stream.onEvent(ConflictCheckEvent.NAME, event -> record(conflictChecks, event.getString("outcome"), event));
+        stream.onEvent(JwtCheckEvent.NAME, event -> record(jwtChecks, event.getString("outcome"), event));
+        stream.onEvent(PasswordCheckEvent.NAME, event -> record(passwordChecks, event.getString("outcome"), event));
+        stream.onEvent(RepositoryCallEvent.NAME, event -> record(repositoryCalls,
+                event.getString("repository") + "." + event.getString("method")
+                        + (event.getBoolean("success") ? "" : " (failed)"), event));
+
+        stream.startAsync();
+        log.info("Profiling events stream started, aggregated over {} minutes", windowMinutes);
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (stream != null) {
+            stream.close();
+        }
+    }
+
+    /**
+     * @return aggregates of the last window, per event kind and key
+     */
+    public Map<String, Object> snapshot() {
+        long minute = currentMinute();
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("window_minutes", windowMinutes);
+        result.put("conflict_checks", conflictChecks.snapshot(minute));
+        result.put("jwt_checks", jwtChecks.snapshot(minute));
+        result.put("password_checks", passwordChecks.snapshot(minute));
+        result.put("repository_calls", repositoryCalls.snapshot(minute));
+        return result;
+    }
+
+    private static void record(RollingStats stats, String key, RecordedEvent event) {
+        stats.record(key, event.getStartTime().getEpochSecond() / 60, event.getDuration().toNanos());
+    }
+
+    private static long currentMinute() {
+        return System.currentTimeMillis() / 60_000;
+    }
+}
@@ -0,0 +1,30 @@
+package com.jacobo.reservation_system.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event: call to a Spring Data repository (check @ProfilingConfig)
+ * A method returning a Stream only measures the query, not the reading of the rows
+ */
+@Name(RepositoryCallEvent.NAME)
+@Label("Repository Call")
+@Description("Call to a Spring Data repository method")
+@Category({"Reservation System", "Persistence"})
+@StackTrace(false)
+public class RepositoryCallEvent extends Event {
+    static final String NAME = "reservation_system.RepositoryCall";
+
+    @Label("Repository")
+    String repository;
+
+    @Label("Method")
+    String method;
+
+    @Label("Success")
+    boolean success;
+}
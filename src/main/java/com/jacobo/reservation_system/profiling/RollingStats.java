@@ -0,0 +1,82 @@
+package com.jacobo.reservation_system.profiling;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Rolling aggregates of the events of one kind, per key (e.g. outcome, repository method)
+ * Each key keeps one bucket per minute of the window (count, total and max duration),
+ * so old minutes fall out without storing the events
+ * Written by the JFR stream thread and read by the endpoint, both synchronized
+ */
+class RollingStats {
+    private final int windowMinutes;
+    private final Map<String, Bucket[]> buckets = new TreeMap<>();
+
+    RollingStats(int windowMinutes) {
+        this.windowMinutes = windowMinutes;
+    }
+
+    synchronized void record(String key, long minute, long durationNanos) {
+        Bucket[] ring = buckets.computeIfAbsent(key, k -> new Bucket[windowMinutes]);
+        int slot = (int) (minute % windowMinutes);
+
+        Bucket bucket = ring[slot];
+        if (bucket == null || bucket.minute != minute) {
+            bucket = new Bucket(minute);
+            ring[slot] = bucket;
+        }
+
+        bucket.count++;
+        bucket.totalNanos += durationNanos;
+        bucket.maxNanos = Math.max(bucket.maxNanos, durationNanos);
+    }
+
+    /**
+     * Aggregates of the last windowMinutes minutes, per key (keys without events are left out)
+     * @param currentMinute minute of the snapshot
+     * @return key -> count, avg_ms, max_ms, total_ms
+     */
+    synchronized Map<String, Map<String, Object>> snapshot(long currentMinute) {
+        Map<String, Map<String, Object>> result = new TreeMap<>();
+
+        buckets.forEach((key, ring) -> {
+            long count = 0;
+            long total = 0;
+            long max = 0;
+
+            for (Bucket bucket : ring) {
+                if (bucket != null && bucket.minute > currentMinute - windowMinutes) {
+                    count += bucket.count;
+                    total += bucket.totalNanos;
+                    max = Math.max(max, bucket.maxNanos);
+                }
+            }
+
+            if (count > 0) {
+                result.put(key, Map.of(
+                        "count", count,
+                        "avg_ms", millis(total / count),
+                        "max_ms", millis(max),
+                        "total_ms", millis(total)));
+            }
+        });
+
+        return result;
+    }
+
+    private static double millis(long nanos) {
+        return Math.round(nanos / 1_000.0) / 1_000.0;
+    }
+
+    private static final class Bucket {
+        final long minute;
+        long count;
+        long totalNanos;
+        long maxNanos;
+
+        Bucket(long minute) {
+            this.minute = minute;
+        }
+    }
+}
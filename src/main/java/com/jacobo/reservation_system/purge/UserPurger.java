@@ -0,0 +1,236 @@
+package com.jacobo.reservation_system.purge;
+
+import com.jacobo.reservation_system.models.entities.UserPurges;
+import com.jacobo.reservation_system.repositories.RecurringReservationsRepository;
+import com.jacobo.reservation_system.repositories.ReservationsRepository;
+import com.jacobo.reservation_system.repositories.UserPurgesRepository;
+import com.jacobo.reservation_system.repositories.UsersRepository;
+import com.jacobo.reservation_system.repositories.WaitlistEntriesRepository;
+import com.jacobo.reservation_system.sharding.ShardContext;
+import com.jacobo.reservation_system.sharding.ShardTemplate;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Background deletion of users
+ * Deleting a user at once would remove all his bookings (no limit) in one long
+ * transaction, locking hot tables. Instead the request only marks him (deactivated,
+ * with a user_purges row) and this job removes his rows in small chunks: waitlist
+ * entries, recurring reservations and reservations of each shard, and finally his
+ * role links and his row
+ * ---------------------------------------------------------------------------
+ * Each chunk is a short transaction of its own, with a pause between chunks and
+ * a maximum of chunks per run, so a big purge never holds locks for long
+ * The cursor (phase + shard) is saved after every chunk, so after a restart the purge
+ * goes on where it was. A chunk reads and deletes its IDs in the same transaction,
+ * so repeating one is harmless (deleted_rows may then be slightly off)
+ * Several instances may work on the same purge at the same time
+ * The chunks run on a thread of their own: the scheduler thread, shared by every
+ * @Scheduled job (revocation rebuild, heartbeats...), only hands the run over
+ */
+@Component
+@Slf4j
+public class UserPurger {
+    static final String WAITLIST = "waitlist_entries";
+    static final String RECURRING = "recurring_reservations";
+    static final String RESERVATIONS = "reservations";
+    static final String USER = "user";
+
+    /**
+     * Tables purged in each shard, in this order
+     */
+    private static final List<String> TABLES = List.of(WAITLIST, RECURRING, RESERVATIONS);
+
+    private final UserPurgesRepository purgeRepo;
+    private final UsersRepository userRepo;
+    private final ReservationsRepository resRepo;
+    private final RecurringReservationsRepository recurringRepo;
+    private final WaitlistEntriesRepository waitlistRepo;
+    private final ShardTemplate shards;
+    private final int chunkSize;
+    private final int chunksPerRun;
+    private final long pauseMs;
+
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("user-purger").daemon().factory());
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public UserPurger(UserPurgesRepository purgeRepo, UsersRepository userRepo, ReservationsRepository resRepo,
+                      RecurringReservationsRepository recurringRepo, WaitlistEntriesRepository waitlistRepo,
+                      ShardTemplate shards,
+                      @Value("${purge.chunk-size:500}") int chunkSize,
+                      @Value("${purge.chunks-per-run:20}") int chunksPerRun,
+                      @Value("${purge.pause-ms:100}") long pauseMs) {
+        this.purgeRepo = purgeRepo;
+        this.userRepo = userRepo;
+        this.resRepo = resRepo;
+        this.recurringRepo = recurringRepo;
+        this.waitlistRepo = waitlistRepo;
+        this.shards = shards;
+        this.chunkSize = chunkSize;
+        this.chunksPerRun = chunksPerRun;
+        this.pauseMs = pauseMs;
+    }
+
+    /**
+     * Marks the user as pending purge: deactivated, with a purge row
+     * Asking again for the same user returns the same purge
+     * @param userId user to delete
+     * @return purge, or null if the user doesn't exist and was never purged
+     */
+    @Transactional
+    public UserPurges request(Long userId) {
+        // The update locks the user row, so two requests for the same user run one after the other
+        int found = userRepo.deactivate(userId);
+
+        Optional<UserPurges> existing = purgeRepo.findById(userId);
+        if (existing.isPresent()) {
+            return existing.get();
+        }
+
+        if (found == 0) {
+            return null;
+        }
+
+        UserPurges purge = new UserPurges();
+        purge.setUser_id(userId);
+        purge.setPhase(TABLES.get(0));
+        purge.setShard(ShardContext.HOME);
+
+        return purgeRepo.save(purge);
+    }
+
+    /**
+     * Hands a run over to the purge thread, unless the previous one is still going
+     */
+    @Scheduled(fixedDelayString = "${purge.interval-ms:5000}")
+    public void schedule() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+
+        worker.execute(() -> {
+            try {
+                run();
+            } catch (RuntimeException e) {
+                log.warn("User purge run failed, retried in the next one", e);
+            } finally {
+                running.set(false);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        worker.shutdownNow();
+    }
+
+    /**
+     * Runs some chunks of the unfinished purges, oldest first
+     * The maximum per run bounds how long a run holds the purge thread
+     */
+    void run() {
+        int budget = chunksPerRun;
+
+        for (UserPurges purge : purgeRepo.findUnfinished(PageRequest.of(0, 10))) {
+            // Interrupted on shutdown: the cursor is saved, the next start goes on from it
+            while (budget > 0 && !purge.getStatus().equals("done") && !Thread.currentThread().isInterrupted()) {
+                step(purge);
+                budget--;
+                pause();
+            }
+
+            if (budget == 0) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * One chunk of a purge: deletes some rows of the current table, or moves
+     * the cursor to the next table when it's empty
+     */
+    private void step(UserPurges purge) {
+        Long userId = purge.getUser_id();
+        purge.setStatus("running");
+
+        if (purge.getPhase().equals(USER)) {
+            int deleted = shards.inShard(ShardContext.HOME,
+                    () -> userRepo.deleteRoleLinks(userId) + userRepo.deleteRow(userId));
+
+            purge.setDeleted_rows(purge.getDeleted_rows() + deleted);
+            purge.setStatus("done");
+            purge.setFinished_at(LocalDateTime.now());
+            log.info("User {} purged, {} rows deleted", userId, purge.getDeleted_rows());
+        } else {
+            int deleted = shards.inShard(purge.getShard(), () -> deleteChunk(purge.getPhase(), userId));
+
+            if (deleted > 0) {
+                purge.setDeleted_rows(purge.getDeleted_rows() + deleted);
+            } else {
+                advance(purge);
+            }
+        }
+
+        purgeRepo.save(purge);
+    }
+
+    /**
+     * Next table of the shard, then the first table of the next shard,
+     * then the final step (role links and user row)
+     */
+    private void advance(UserPurges purge) {
+        int next = TABLES.indexOf(purge.getPhase()) + 1;
+
+        if (next < TABLES.size()) {
+            purge.setPhase(TABLES.get(next));
+        } else if (purge.getShard() + 1 < shards.count()) {
+            purge.setShard(purge.getShard() + 1);
+            purge.setPhase(TABLES.get(0));
+        } else {
+            purge.setPhase(USER);
+        }
+    }
+
+    private int deleteChunk(String phase, Long userId) {
+        PageRequest chunk = PageRequest.of(0, chunkSize);
+
+        return switch (phase) {
+            case WAITLIST -> deleteIds(waitlistRepo, waitlistRepo.findIdsByUserId(userId, chunk));
+            case RECURRING -> deleteIds(recurringRepo, recurringRepo.findIdsByUserId(userId, chunk));
+            default -> deleteIds(resRepo, resRepo.findIdsByUserId(userId, chunk));
+        };
+    }
+
+    /**
+     * Deletes the rows with one "delete ... where id in (...)"
+     */
+    private static int deleteIds(JpaRepository<?, Long> repo, List<Long> ids) {
+        if (!ids.isEmpty()) {
+            repo.deleteAllByIdInBatch(ids);
+        }
+
+        return ids.size();
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(pauseMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.jacobo.reservation_system.ratelimit;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Filter that applies the token bucket limits of @RateLimiter
+ * It runs right after JwtAuthFilter (check @SecurityConfig), so authenticated requests
+ * are limited per user and anonymous ones (login, register) per IP
+ * Rejected requests get 429 with a Retry-After header in seconds
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+    private final RateLimiter rateLimiter;
+
+    public RateLimitFilter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest req) {
+        return !rateLimiter.isEnabled();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest req, HttpServletResponse res, FilterChain chain)
+            throws ServletException, IOException {
+        String path = req.getRequestURI().substring(req.getContextPath().length());
+
+        long waitNanos = rateLimiter.tryAcquire(req.getMethod(), path,
+                SecurityContextHolder.getContext().getAuthentication(), req.getRemoteAddr());
+
+        if (waitNanos > 0) {
+            long retryAfterSeconds = Math.max(1, (waitNanos + 999_999_999L) / 1_000_000_000L);
+
+            res.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            res.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+            res.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            res.getWriter().write("{\"error\":\"Too many requests\",\"message\":\"Try again in "
+                    + retryAfterSeconds + " seconds\"}");
+            return;
+        }
+
+        chain.doFilter(req, res);
+    }
+}
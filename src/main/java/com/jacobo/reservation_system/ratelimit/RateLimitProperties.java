@@ -0,0 +1,46 @@
+package com.jacobo.reservation_system.ratelimit;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rate limit settings read from application.properties (prefix "rate-limit")
+ * Rules are checked in order and the first one that matches the request is applied
+ */
+@Component
+@ConfigurationProperties(prefix = "rate-limit")
+@Data
+public class RateLimitProperties {
+    private boolean enabled = true;
+
+    /**
+     * Maximum number of buckets kept in memory
+     * When it's reached and no bucket is idle, new clients are rejected (429)
+     */
+    private int maxBuckets = 100_000;
+
+    private List<Rule> rules = new ArrayList<>();
+
+    /**
+     * Whose requests are counted together in one bucket
+     */
+    public enum KeyType {
+        USER, // Authenticated username, or IP if there's no authenticated user
+        IP
+    }
+
+    @Data
+    public static class Rule {
+        private String name;
+        private String method; // Empty means any HTTP method
+        private String path = "/**"; // Ant pattern without context path
+        private String role; // Empty means any role, e.g. "ADMIN"
+        private KeyType key = KeyType.USER;
+        private int capacity; // Maximum burst of requests
+        private int refillPerMinute; // Sustained rate
+    }
+}
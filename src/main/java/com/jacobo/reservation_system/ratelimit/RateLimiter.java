@@ -0,0 +1,170 @@
+package com.jacobo.reservation_system.ratelimit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-user and per-IP rate limiter
+ * Resolves the rule that applies to a request and takes a token from its bucket
+ * Buckets live in a bounded map and the idle ones are evicted periodically
+ * When the map is full, the idle buckets are evicted right away. If none is idle, new
+ * clients are rejected until one is: the clients that have a bucket keep their own limit
+ * Exposes the metrics "rate_limit.requests" (tags: rule, outcome) and "rate_limit.buckets"
+ */
+@Component
+public class RateLimiter {
+    /**
+     * Minimum time between two evictions triggered by a full map, each one walks every bucket
+     */
+    private static final long FULL_SWEEP_INTERVAL_NANOS = 1_000_000_000L;
+
+    private final RateLimitProperties properties;
+    private final List<CompiledRule> rules;
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final AntPathMatcher matcher = new AntPathMatcher();
+    private final AtomicLong lastFullSweep = new AtomicLong(System.nanoTime() - FULL_SWEEP_INTERVAL_NANOS);
+
+    public RateLimiter(RateLimitProperties properties, MeterRegistry registry) {
+        this.properties = properties;
+        this.rules = properties.getRules().stream()
+                .map(rule -> new CompiledRule(rule, registry))
+                .toList();
+
+        Gauge.builder("rate_limit.buckets", buckets, Map::size)
+                .description("Token buckets kept in memory")
+                .register(registry);
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled() && !rules.isEmpty();
+    }
+
+    /**
+     * Takes a token for the request
+     * @param method HTTP method
+     * @param path path without context path
+     * @param auth current authentication, may be null
+     * @param ip client IP address
+     * @return 0 if the request is allowed, otherwise nanoseconds to wait before retrying
+     */
+    public long tryAcquire(String method, String path, Authentication auth, String ip) {
+        CompiledRule compiled = resolve(method, path, auth);
+        if (compiled == null) {
+            return 0;
+        }
+
+        boolean byUser = compiled.rule.getKey() == RateLimitProperties.KeyType.USER
+                && auth != null && auth.isAuthenticated();
+        String key = compiled.rule.getName() + (byUser ? "|u|" + auth.getName() : "|ip|" + ip);
+
+        long now = System.nanoTime();
+        TokenBucket bucket = buckets.get(key);
+        if (bucket == null) {
+            if (buckets.size() >= properties.getMaxBuckets()) {
+                evictIdleBuckets(now);
+            }
+            if (buckets.size() >= properties.getMaxBuckets()) {
+                // Memory is bounded: the client waits like one whose bucket is empty
+                compiled.rejected.increment();
+                return compiled.intervalNanos;
+            }
+            bucket = buckets.computeIfAbsent(key, k -> compiled.newBucket(now));
+        }
+
+        long wait = bucket.tryAcquire(now);
+        (wait == 0 ? compiled.allowed : compiled.rejected).increment();
+
+        return wait;
+    }
+
+    private CompiledRule resolve(String method, String path, Authentication auth) {
+        for (CompiledRule compiled : rules) {
+            RateLimitProperties.Rule rule = compiled.rule;
+
+            if (rule.getMethod() != null && !rule.getMethod().isEmpty()
+                    && !rule.getMethod().equalsIgnoreCase(method)) {
+                continue;
+            }
+            if (compiled.authority != null && !hasAuthority(auth, compiled.authority)) {
+                continue;
+            }
+            if (matcher.match(rule.getPath(), path)) {
+                return compiled;
+            }
+        }
+
+        return null;
+    }
+
+    private boolean hasAuthority(Authentication auth, String authority) {
+        if (auth == null) {
+            return false;
+        }
+        for (GrantedAuthority granted : auth.getAuthorities()) {
+            if (authority.equals(granted.getAuthority())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Drops the buckets that are full again every 30 seconds
+     * A full bucket behaves like a new one, so nothing is lost
+     */
+    @Scheduled(fixedDelay = 30_000)
+    public void evictIdleBuckets() {
+        long now = System.nanoTime();
+        buckets.entrySet().removeIf(entry -> entry.getValue().isIdle(now));
+    }
+
+    /**
+     * Eviction for a full map, at most once per FULL_SWEEP_INTERVAL_NANOS: when no bucket
+     * is idle, every new client would walk the whole map again
+     */
+    private void evictIdleBuckets(long now) {
+        long last = lastFullSweep.get();
+        if (now - last >= FULL_SWEEP_INTERVAL_NANOS && lastFullSweep.compareAndSet(last, now)) {
+            buckets.entrySet().removeIf(entry -> entry.getValue().isIdle(now));
+        }
+    }
+
+    /**
+     * Rule with its metrics already built
+     */
+    private static class CompiledRule {
+        private final RateLimitProperties.Rule rule;
+        private final String authority; // "ROLE_" + role, or null if the rule applies to any role
+        private final long intervalNanos; // Time to refill one token
+        private final Counter allowed;
+        private final Counter rejected;
+
+        CompiledRule(RateLimitProperties.Rule rule, MeterRegistry registry) {
+            this.rule = rule;
+            this.authority = rule.getRole() == null || rule.getRole().isEmpty() ? null : "ROLE_" + rule.getRole();
+            this.intervalNanos = TokenBucket.intervalNanos(rule.getRefillPerMinute());
+            this.allowed = Counter.builder("rate_limit.requests")
+                    .tag("rule", rule.getName()).tag("outcome", "allowed")
+                    .register(registry);
+            this.rejected = Counter.builder("rate_limit.requests")
+                    .tag("rule", rule.getName()).tag("outcome", "rejected")
+                    .register(registry);
+        }
+
+        TokenBucket newBucket(long now) {
+            return new TokenBucket(rule.getCapacity(), rule.getRefillPerMinute(), now);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.jacobo.reservation_system.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket
+ * Instead of storing tokens and last refill time, it stores one number: the time when
+ * the bucket would be full again (GCRA, generic cell rate algorithm). Taking a token
+ * moves that time one emission interval ahead with a single compare-and-set,
+ * so no locks nor allocations are needed per request
+ */
+class TokenBucket {
+    private final long intervalNanos; // Time to refill one token
+    private final long burstNanos; // capacity * intervalNanos
+
+    /**
+     * Theoretical arrival time: moment (System.nanoTime) when the bucket is full again
+     */
+    private final AtomicLong tat;
+
+    TokenBucket(int capacity, int refillPerMinute, long now) {
+        this.intervalNanos = intervalNanos(refillPerMinute);
+        this.burstNanos = intervalNanos * Math.max(1, capacity);
+        this.tat = new AtomicLong(now);
+    }
+
+    /**
+     * Time to refill one token at the given rate
+     */
+    static long intervalNanos(int refillPerMinute) {
+        return 60_000_000_000L / Math.max(1, refillPerMinute);
+    }
+
+    /**
+     * Tries to take one token
+     * @param now current System.nanoTime()
+     * @return 0 if the request is allowed, otherwise nanoseconds until a token is available
+     */
+    long tryAcquire(long now) {
+        while (true) {
+            long current = tat.get();
+            long base = Math.max(current, now);
+            long next = base + intervalNanos;
+            long wait = next - now - burstNanos;
+
+            if (wait > 0) {
+                return wait;
+            }
+            if (tat.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * A bucket that is full again behaves like a new one, so it can be dropped
+     */
+    boolean isIdle(long now) {
+        return tat.get() - now <= 0;
+    }
+}
@@ -0,0 +1,102 @@
+package com.jacobo.reservation_system.reactive;
+
+import com.jacobo.reservation_system.revocation.ReactiveTokenRevocations;
+import com.jacobo.reservation_system.services.implementation.JwtService;
+import io.jsonwebtoken.Claims;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * JWT authentication of the reactive read path, ported from @JwtAuthFilter
+ * The token is parsed and checked against the deny-list, and the authentication
+ * (username and ROLE_ authorities) is set as the principal of the exchange
+ * The access rules of @SecurityConfig are applied here too, as there is no Spring Security chain:
+ * - Health probes are public
+ * - The rest of Actuator is only for administrators
+ * - Every other request must be authenticated. Without a valid token the answer is 403,
+ *   like the main application (no authentication entry point is configured there)
+ */
+public class JwtAuthWebFilter implements WebFilter {
+    private static final SimpleGrantedAuthority ADMIN = new SimpleGrantedAuthority("ROLE_ADMIN");
+
+    /**
+     * Service for the management and validation of JWT tokens
+     */
+    private final JwtService jwtService;
+    /**
+     * Deny-list of revoked tokens and users
+     */
+    private final ReactiveTokenRevocations revocations;
+
+    public JwtAuthWebFilter(JwtService jwtService, ReactiveTokenRevocations revocations) {
+        this.jwtService = jwtService;
+        this.revocations = revocations;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        String path = exchange.getRequest().getPath().pathWithinApplication().value();
+        if (path.startsWith("/actuator/health")) {
+            return chain.filter(exchange);
+        }
+
+        return authenticate(exchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION))
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(auth -> {
+                    boolean allowed = auth.isPresent()
+                            && (!path.startsWith("/actuator/") || auth.get().getAuthorities().contains(ADMIN));
+                    if (!allowed) {
+                        exchange.getResponse().setStatusCode(HttpStatus.FORBIDDEN);
+                        return exchange.getResponse().setComplete();
+                    }
+
+                    return chain.filter(exchange.mutate().principal(Mono.just(auth.get())).build());
+                });
+    }
+
+    /**
+     * Validates the token of the Authorization header
+     * @param header Authorization header, may be null
+     * @return authentication, or empty if the token is missing, invalid or revoked
+     */
+    private Mono<UsernamePasswordAuthenticationToken> authenticate(String header) {
+        if (header == null || !header.startsWith("Bearer ")) {
+            return Mono.empty();
+        }
+
+        Claims claims;
+        try {
+            // Parse and validate the token
+            claims = jwtService.parse(header.substring(7));
+        } catch (Exception e) {
+            return Mono.empty();
+        }
+
+        // A revoked token (logout) or user (deactivated, deleted) is treated as an invalid token
+        return revocations.isRevoked(claims)
+                .filter(revoked -> !revoked)
+                .map(valid -> {
+                    @SuppressWarnings("unchecked")
+                    List<String> roles = (List<String>) claims.get("roles");
+
+                    // Convert roles into Spring Security authorities
+                    List<SimpleGrantedAuthority> authorities =
+                            (roles == null ? List.<String>of() : roles).stream()
+                                    .map(r -> r.startsWith("ROLE_") ? r : "ROLE_" + r)
+                                    .map(SimpleGrantedAuthority::new)
+                                    .toList();
+
+                    return new UsernamePasswordAuthenticationToken(claims.getSubject(), "N/A", authorities);
+                });
+    }
+}
@@ -0,0 +1,167 @@
+package com.jacobo.reservation_system.reactive;
+
+import com.jacobo.reservation_system.models.dtos.ReservationsDtos.GetAllReservationsOutDTO;
+import com.jacobo.reservation_system.models.dtos.ResourcesDtos.ListAllResourcesOutDTO;
+import com.jacobo.reservation_system.recurrence.Recurrence;
+import io.r2dbc.spi.Readable;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * GET /reservations/ and GET /resources/ of the reactive read path
+ * Same role rules and OutDTOs as ReservationsService.forEachReservation and
+ * ResourcesService.forEachResource, with the R2DBC rows mapped straight into the OutDTOs
+ * ---------------------------------------------------------------------------
+ * The body is a Flux: WebFlux writes the JSON array element by element and only asks
+ * for more rows when the connection takes them (backpressure), so a slow client slows
+ * down the read instead of filling the memory. Rows are fetched FETCH_SIZE at a time,
+ * like the fetch size hint of the JPA streams. A client that handles one element at
+ * a time can ask for application/x-ndjson instead of the array
+ */
+public class ReactiveReads {
+    private static final int FETCH_SIZE = 500;
+
+    private final ReactiveShards shards;
+
+    public ReactiveReads(ReactiveShards shards) {
+        this.shards = shards;
+    }
+
+    /**
+     * ADMIN = all reservations and series of every shard with their user,
+     * USER = only his own ones, without the user
+     */
+    public Mono<ServerResponse> reservations(ServerRequest request) {
+        return reader(request)
+                .flatMap(reader -> body(request, shards.concat(shard -> reservationsOf(shard, reader)),
+                        GetAllReservationsOutDTO.class))
+                .switchIfEmpty(Mono.defer(() -> userNotFound("Not user authenticated")));
+    }
+
+    /**
+     * ADMIN = active and inactive resources, USER = only the active ones
+     */
+    public Mono<ServerResponse> resources(ServerRequest request) {
+        return reader(request)
+                .flatMap(reader -> {
+                    Flux<ListAllResourcesOutDTO> resources = Flux.empty();
+                    if (reader.admin()) {
+                        resources = resourcesWhere("");
+                    } else if (reader.user()) {
+                        resources = resourcesWhere(" where active = true");
+                    }
+
+                    return body(request, resources, ListAllResourcesOutDTO.class);
+                })
+                .switchIfEmpty(Mono.defer(() -> userNotFound("Enter an existing username")));
+    }
+
+    private Flux<ListAllResourcesOutDTO> resourcesWhere(String where) {
+        return shards.home().sql("select name, description, capacity from resources" + where)
+                .filter(statement -> statement.fetchSize(FETCH_SIZE))
+                .map(row -> new ListAllResourcesOutDTO(row.get("name", String.class),
+                        row.get("description", String.class), row.get("capacity", Integer.class)))
+                .all();
+    }
+
+    /**
+     * Reservations and series occurrences of one shard
+     */
+    private Flux<GetAllReservationsOutDTO> reservationsOf(DatabaseClient shard, Reader reader) {
+        String where = reader.admin() ? "" : " where user_id = :user_id";
+
+        Flux<GetAllReservationsOutDTO> reservations = prepare(shard.sql("""
+                select id, user_id, resource_id, start_date_time, end_date_time, status
+                from reservations""" + where), reader)
+                .map(row -> new GetAllReservationsOutDTO(row.get("id", Long.class),
+                        reader.admin() ? row.get("user_id", Long.class) : null,
+                        row.get("resource_id", Long.class), row.get("start_date_time", LocalDate.class),
+                        row.get("end_date_time", LocalDate.class), row.get("status", String.class)))
+                .all();
+
+        // A series is at most Recurrence.MAX_OCCURRENCES elements, generated when its row is read
+        Flux<GetAllReservationsOutDTO> occurrences = prepare(shard.sql("""
+                select id, user_id, resource_id, start_date, end_date, frequency, repeat_every, occurrences, status
+                from recurring_reservations""" + where), reader)
+                .map(row -> expand(row, reader.admin()))
+                .all()
+                .concatMapIterable(series -> series);
+
+        return reservations.concatWith(occurrences);
+    }
+
+    /**
+     * Fetch size, and the user ID for USER listings
+     */
+    private static DatabaseClient.GenericExecuteSpec prepare(DatabaseClient.GenericExecuteSpec spec, Reader reader) {
+        spec = spec.filter(statement -> statement.fetchSize(FETCH_SIZE));
+        return reader.admin() ? spec : spec.bind("user_id", reader.id());
+    }
+
+    /**
+     * Occurrences of a series row as OutDTOs, like ReservationsService.expand
+     */
+    private static List<GetAllReservationsOutDTO> expand(Readable row, boolean showUser) {
+        Long seriesId = row.get("id", Long.class);
+        Long userId = showUser ? row.get("user_id", Long.class) : null;
+        Long resourceId = row.get("resource_id", Long.class);
+        String status = row.get("status", String.class);
+
+        Recurrence rule = new Recurrence(row.get("start_date", LocalDate.class), row.get("end_date", LocalDate.class),
+                Recurrence.periodDays(row.get("frequency", String.class), row.get("repeat_every", Integer.class)),
+                row.get("occurrences", Integer.class));
+
+        List<GetAllReservationsOutDTO> occurrences = new ArrayList<>((int) rule.getCount());
+        rule.forEachOccurrence((start, end) -> occurrences.add(
+                new GetAllReservationsOutDTO(null, userId, resourceId, start, end, status, seriesId)));
+
+        return occurrences;
+    }
+
+    /**
+     * Authenticated user with his roles, read from home in one query
+     * @return reader, or empty if the user doesn't exist
+     */
+    private Mono<Reader> reader(ServerRequest request) {
+        return request.principal().flatMap(principal -> shards.home().sql("""
+                        select u.id, r.name
+                        from users u
+                        left join user_role ur on ur.user_id = u.id
+                        left join roles r on r.id = ur.role_id
+                        where u.username = :username""")
+                .bind("username", principal.getName())
+                .map(row -> new Reader(row.get("id", Long.class), "ADMIN".equals(row.get("name", String.class)),
+                        "USER".equals(row.get("name", String.class))))
+                .all()
+                .reduce((a, b) -> new Reader(a.id(), a.admin() || b.admin(), a.user() || b.user())));
+    }
+
+    private static <T> Mono<ServerResponse> body(ServerRequest request, Flux<T> elements, Class<T> type) {
+        MediaType mediaType = request.headers().accept().contains(MediaType.APPLICATION_NDJSON)
+                ? MediaType.APPLICATION_NDJSON
+                : MediaType.APPLICATION_JSON;
+
+        return ServerResponse.ok().contentType(mediaType).body(elements, type);
+    }
+
+    /**
+     * Same answer as GlobalExceptionHandler for UserNotFoundException
+     */
+    private static Mono<ServerResponse> userNotFound(String message) {
+        return ServerResponse.status(HttpStatus.NOT_FOUND)
+                .bodyValue(Map.of("error", "Not user found", "message", message));
+    }
+
+    private record Reader(Long id, boolean admin, boolean user) {
+    }
+}
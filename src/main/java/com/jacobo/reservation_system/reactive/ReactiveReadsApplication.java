@@ -0,0 +1,64 @@
+package com.jacobo.reservation_system.reactive;
+
+import com.jacobo.reservation_system.jackson.JacksonConfig;
+import com.jacobo.reservation_system.services.implementation.JwtService;
+import com.jacobo.reservation_system.sharding.ShardingProperties;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.actuate.autoconfigure.security.reactive.ReactiveManagementWebSecurityAutoConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcTransactionManagerAutoConfiguration;
+import org.springframework.boot.autoconfigure.security.reactive.ReactiveSecurityAutoConfiguration;
+import org.springframework.boot.autoconfigure.security.reactive.ReactiveUserDetailsServiceAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.annotation.Import;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Reactive read path: GET /reservations/ and GET /resources/ on WebFlux (Netty) and R2DBC
+ * Same URLs, tokens, role rules and JSON as the main application, which keeps every write
+ * (JPA) and the rest of the reads. Both run side by side on the same databases, and the
+ * proxy in front sends these two GETs here (check docker/docker-compose.yml)
+ * A request holds no thread while it waits for the database, so the number of concurrent
+ * reads is bounded by the R2DBC pools (reactive-reads.pool-size), not by a thread pool
+ * ---------------------------------------------------------------------------
+ * It reads application.properties plus the "reactive-reads" profile. Nothing of the main
+ * application is scanned: JPA, the JDBC pools and the servlet security chain are not
+ * started, and the token check is @JwtAuthWebFilter. Rate limit and admission control
+ * stay in the main application
+ * The condition keeps the component scan of the main application from loading this class
+ */
+@SpringBootConfiguration
+@EnableAutoConfiguration(exclude = {
+        DataSourceAutoConfiguration.class,
+        HibernateJpaAutoConfiguration.class,
+        // The pools are built by ReactiveReadsConfig, one per shard
+        R2dbcAutoConfiguration.class,
+        R2dbcTransactionManagerAutoConfiguration.class,
+        ReactiveSecurityAutoConfiguration.class,
+        ReactiveUserDetailsServiceAutoConfiguration.class,
+        ReactiveManagementWebSecurityAutoConfiguration.class
+})
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@EnableScheduling // Rebuild of the revocation filter
+@Import({ReactiveReadsConfig.class, JwtService.class, JacksonConfig.class, ShardingProperties.class})
+public class ReactiveReadsApplication {
+
+    public static void main(String[] args) {
+        application().run(args);
+        System.out.println("Reservation system reactive reads running!");
+    }
+
+    /**
+     * Reactive web application with the "reactive-reads" profile
+     */
+    public static SpringApplicationBuilder application() {
+        return new SpringApplicationBuilder(ReactiveReadsApplication.class)
+                .web(WebApplicationType.REACTIVE)
+                .profiles("reactive-reads");
+    }
+}
@@ -0,0 +1,117 @@
+package com.jacobo.reservation_system.reactive;
+
+import com.jacobo.reservation_system.revocation.ReactiveTokenRevocations;
+import com.jacobo.reservation_system.services.implementation.JwtService;
+import com.jacobo.reservation_system.sharding.ShardContext;
+import com.jacobo.reservation_system.sharding.ShardingProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.metrics.r2dbc.ConnectionPoolMetrics;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Beans of the reactive read path (check @ReactiveReadsApplication)
+ * Only active in a reactive web application, so the component scan of the main
+ * application skips it
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveReadsConfig {
+
+    /**
+     * Netty, not Tomcat: Spring Boot picks Tomcat when both are in the classpath,
+     * and the main application needs it
+     */
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    /**
+     * One R2DBC pool per shard, sized by reactive-reads.pool-size and named "shard-N"
+     * in the r2dbc.pool metrics, like the Hikari pools of @ShardingConfig
+     */
+    @Bean
+    public ReactiveShards reactiveShards(@Value("${spring.r2dbc.url}") String url,
+                                         @Value("${spring.r2dbc.username}") String username,
+                                         @Value("${spring.r2dbc.password}") String password,
+                                         ShardingProperties sharding,
+                                         @Value("${reactive-reads.pool-size}") int poolSize,
+                                         @Value("${reactive-reads.max-acquire-ms}") long maxAcquireMs,
+                                         ObjectProvider<MeterRegistry> registry) {
+        List<ConnectionPool> pools = new ArrayList<>();
+        pools.add(pool(url, username, password, ShardContext.HOME, poolSize, maxAcquireMs, registry));
+
+        List<ShardingProperties.Shard> shards = sharding.getShards();
+        for (int i = 0; i < shards.size(); i++) {
+            ShardingProperties.Shard shard = shards.get(i);
+            pools.add(pool(shard.getR2dbcUrl(), shard.getUsername(), shard.getPassword(), i + 1,
+                    poolSize, maxAcquireMs, registry));
+        }
+
+        return new ReactiveShards(pools);
+    }
+
+    @Bean
+    public ReactiveTokenRevocations reactiveTokenRevocations(ReactiveShards shards,
+                                                             @Value("${revocation.min-capacity:1024}") int minCapacity,
+                                                             @Value("${revocation.false-positive-rate:0.01}") double falsePositiveRate) {
+        return new ReactiveTokenRevocations(shards.home(), minCapacity, falsePositiveRate);
+    }
+
+    @Bean
+    public JwtAuthWebFilter jwtAuthWebFilter(JwtService jwtService, ReactiveTokenRevocations revocations) {
+        return new JwtAuthWebFilter(jwtService, revocations);
+    }
+
+    @Bean
+    public RouterFunction<ServerResponse> reactiveReadRoutes(ReactiveShards shards) {
+        ReactiveReads reads = new ReactiveReads(shards);
+
+        return RouterFunctions.route()
+                .GET("/reservations/", reads::reservations)
+                .GET("/resources/", reads::resources)
+                .build();
+    }
+
+    private static ConnectionPool pool(String url, String username, String password, int shard,
+                                       int poolSize, long maxAcquireMs, ObjectProvider<MeterRegistry> registry) {
+        ConnectionFactoryOptions.Builder options = ConnectionFactoryOptions.parse(url).mutate();
+        if (username != null) {
+            options.option(ConnectionFactoryOptions.USER, username);
+        }
+        if (password != null) {
+            options.option(ConnectionFactoryOptions.PASSWORD, password);
+        }
+
+        ConnectionPool pool = new ConnectionPool(ConnectionPoolConfiguration
+                .builder(ConnectionFactories.get(options.build()))
+                .name("shard-" + shard)
+                .maxSize(poolSize)
+                .maxAcquireTime(Duration.ofMillis(maxAcquireMs))
+                .build());
+
+        MeterRegistry meterRegistry = registry.getIfAvailable();
+        if (meterRegistry != null) {
+            new ConnectionPoolMetrics(pool, "shard-" + shard, Tags.empty()).bindTo(meterRegistry);
+        }
+
+        return pool;
+    }
+}
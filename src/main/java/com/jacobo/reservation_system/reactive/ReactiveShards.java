@@ -0,0 +1,47 @@
+package com.jacobo.reservation_system.reactive;
+
+import com.jacobo.reservation_system.sharding.ShardContext;
+import io.r2dbc.pool.ConnectionPool;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * R2DBC counterpart of @ShardPools and @ShardTemplate for the reactive read path
+ * One connection pool per shard, in the same order as the JDBC ones: shard 0 is home
+ * (spring.r2dbc.url) and shard N is sharding.shards[N - 1].r2dbc-url
+ */
+public class ReactiveShards implements AutoCloseable {
+    private final List<ConnectionPool> pools;
+    private final List<DatabaseClient> clients;
+
+    public ReactiveShards(List<ConnectionPool> pools) {
+        this.pools = List.copyOf(pools);
+        this.clients = this.pools.stream().map(DatabaseClient::create).toList();
+    }
+
+    /**
+     * Home shard: users, roles, resources and revoked tokens
+     */
+    public DatabaseClient home() {
+        return clients.get(ShardContext.HOME);
+    }
+
+    /**
+     * Reads every shard one after the other, like ShardTemplate.forEachShard
+     * The query of a shard is only sent when the previous one is done, so a request
+     * holds one connection at a time
+     * @param query rows of one shard
+     * @return rows of every shard
+     */
+    public <T> Flux<T> concat(Function<DatabaseClient, Flux<T>> query) {
+        return Flux.fromIterable(clients).concatMap(query);
+    }
+
+    @Override
+    public void close() {
+        pools.forEach(ConnectionPool::dispose);
+    }
+}
@@ -0,0 +1,133 @@
+package com.jacobo.reservation_system.recurrence;
+
+import com.jacobo.reservation_system.models.entities.RecurringReservations;
+
+import java.time.LocalDate;
+import java.util.function.BiConsumer;
+
+/**
+ * Arithmetic over a recurring reservation without materializing its occurrences
+ * Occurrence k (0 <= k < count) goes from firstStart + k * period to firstEnd + k * period
+ * Dates are handled as epoch days, and intervals are half-open like in
+ * ResourceOccupancy and WaitlistEntriesRepository.findWaitersForUpdate (start < other end and end > other start)
+ * Occurrences are generated one by one when needed (listings, occupancy of the resource)
+ */
+public final class Recurrence {
+    public static final String DAILY = "daily";
+    public static final String WEEKLY = "weekly";
+
+    /**
+     * A weekly series for 10 years still fits, it keeps conflict checks bounded
+     */
+    public static final int MAX_OCCURRENCES = 520;
+
+    private final long firstStart;
+    private final long length;
+    private final long period;
+    private final long count;
+
+    public Recurrence(LocalDate firstStart, LocalDate firstEnd, long period, long count) {
+        this.firstStart = firstStart.toEpochDay();
+        this.length = firstEnd.toEpochDay() - this.firstStart;
+        this.period = period;
+        this.count = count;
+    }
+
+    /**
+     * Rule of a stored series
+     */
+    public static Recurrence of(RecurringReservations series) {
+        return new Recurrence(series.getStart_date(), series.getEnd_date(),
+                periodDays(series.getFrequency(), series.getEvery()), series.getOccurrences());
+    }
+
+    /**
+     * Days between two occurrences
+     * @param frequency "daily" or "weekly"
+     * @param every repeat every N days / weeks
+     * @return period in days, or -1 if the frequency is unknown
+     */
+    public static long periodDays(String frequency, int every) {
+        if (DAILY.equalsIgnoreCase(frequency)) {
+            return every;
+        }
+        if (WEEKLY.equalsIgnoreCase(frequency)) {
+            return 7L * every;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Number of occurrences that start on or before the until date
+     */
+    public static long countUntil(LocalDate firstStart, LocalDate until, long period) {
+        long days = until.toEpochDay() - firstStart.toEpochDay();
+        return days < 0 ? 0 : days / period + 1;
+    }
+
+    /**
+     * Number of occurrences of a new series: the count, cut at the until date when both are given
+     * @param count occurrences asked for, null if only until is given
+     * @param until last day an occurrence can start, null if only count is given
+     * @return occurrences, 0 if until is before the first start
+     */
+    public static long occurrences(Integer count, LocalDate firstStart, LocalDate until, long period) {
+        long occurrences = count != null ? count : Long.MAX_VALUE;
+        if (until != null) {
+            occurrences = Math.min(occurrences, countUntil(firstStart, until, period));
+        }
+
+        return occurrences;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * End date of the last occurrence, used to find the series that touch a date range
+     */
+    public LocalDate lastEnd() {
+        return LocalDate.ofEpochDay(lastEndDay());
+    }
+
+    /**
+     * Generates the occurrences that overlap the range, one by one
+     * Nothing is stored, so a long series costs nothing until it's read
+     * @param from range start
+     * @param to range end
+     * @param action receives start and end date of each occurrence
+     */
+    public void forEachOccurrence(LocalDate from, LocalDate to, BiConsumer<LocalDate, LocalDate> action) {
+        long[] range = occurrencesIn(from.toEpochDay(), to.toEpochDay());
+        forEachOccurrence(range[0], range[1], action);
+    }
+
+    public void forEachOccurrence(BiConsumer<LocalDate, LocalDate> action) {
+        forEachOccurrence(0, count - 1, action);
+    }
+
+    private void forEachOccurrence(long first, long last, BiConsumer<LocalDate, LocalDate> action) {
+        for (long k = first; k <= last; k++) {
+            long start = firstStart + k * period;
+            action.accept(LocalDate.ofEpochDay(start), LocalDate.ofEpochDay(start + length));
+        }
+    }
+
+    /**
+     * First and last occurrence index overlapping [start, end)
+     * Occurrence k overlaps when firstStart + k * period < end and firstStart + length + k * period > start
+     * @return {first, last}, empty when first > last
+     */
+    private long[] occurrencesIn(long start, long end) {
+        long first = Math.max(0, Math.floorDiv(start - firstStart - length, period) + 1);
+        long last = Math.min(count - 1, Math.ceilDiv(end - firstStart, period) - 1);
+
+        return new long[] {first, last};
+    }
+
+    private long lastEndDay() {
+        return firstStart + length + (count - 1) * period;
+    }
+}
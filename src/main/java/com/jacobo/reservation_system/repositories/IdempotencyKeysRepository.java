@@ -0,0 +1,27 @@
+package com.jacobo.reservation_system.repositories;
+
+import com.jacobo.reservation_system.models.entities.IdempotencyKeys;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+/**
+ * JPA repository for the IdempotencyKeys entity
+ * Persists the responses of idempotent requests
+ */
+public interface IdempotencyKeysRepository extends JpaRepository<IdempotencyKeys, String> {
+
+    /**
+     * Removes every stored response whose time to live is over
+     * @param now current time
+     * @return number of deleted rows
+     */
+    @Modifying
+    @Transactional
+    @Query("delete from IdempotencyKeys k where k.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
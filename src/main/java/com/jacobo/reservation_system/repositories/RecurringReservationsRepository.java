@@ -0,0 +1,86 @@
+package com.jacobo.reservation_system.repositories;
+
+import com.jacobo.reservation_system.models.entities.RecurringReservations;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * JPA repository for the RecurringReservations entity
+ * Each row is a whole series, its occurrences are computed in memory
+ */
+public interface RecurringReservationsRepository extends JpaRepository<RecurringReservations, Long> {
+
+    // Explicit queries: the derived ones join the users and resources tables,
+    // which only exist in home (check @ReservationsRepository)
+    @Query("select count(r) from RecurringReservations r where r.user.id = :user_id and r.status = :status")
+    long countByUserIdAndStatus(@Param("user_id") Long user_id, @Param("status") String status);
+
+    @Query("select distinct r.user.id from RecurringReservations r where r.user.id in :user_ids and r.status = :status")
+    List<Long> findUserIdsWithStatus(@Param("user_ids") Collection<Long> user_ids, @Param("status") String status);
+
+    @Query("select r from RecurringReservations r where r.resource.id = :resource_id and r.status = :status")
+    List<RecurringReservations> findByResourceIdAndStatus(@Param("resource_id") Long resource_id,
+                                                          @Param("status") String status);
+
+    // Conditional updates, same as @ReservationsRepository
+    // A series is unfinished while its last occurrence hasn't ended
+    @Modifying
+    @Query("""
+    update RecurringReservations r
+    set r.status = "inactive"
+    where r.id = :id
+      and r.status = "active"
+    """)
+    int deactivateIfActive(@Param("id") Long id);
+
+    @Modifying
+    @Query("""
+    update RecurringReservations r
+    set r.status = "inactive"
+    where r.resource.id = :resource_id
+      and r.status = "active"
+      and r.last_end_date > :today
+    """)
+    int cancelUnfinishedByResource(@Param("resource_id") Long resource_id, @Param("today") LocalDate today);
+
+    @Modifying
+    @Query("""
+    update RecurringReservations r
+    set r.status = "inactive"
+    where r.user.id = :user_id
+      and r.status = "active"
+      and r.last_end_date > :today
+    """)
+    int cancelUnfinishedByUser(@Param("user_id") Long user_id, @Param("today") LocalDate today);
+
+    @Query("""
+    select distinct r.resource.id
+    from RecurringReservations r
+    where r.user.id = :user_id
+      and r.status = "active"
+      and r.last_end_date > :today
+    """)
+    List<Long> findResourceIdsOfUnfinishedByUser(@Param("user_id") Long user_id, @Param("today") LocalDate today);
+
+    // user.id and resource.id are read from the lazy proxies without loading them
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "500"))
+    @Query("select r from RecurringReservations r")
+    Stream<RecurringReservations> streamAll();
+
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "500"))
+    @Query("select r from RecurringReservations r where r.user.id = :user_id")
+    Stream<RecurringReservations> streamByUserId(@Param("user_id") Long user_id);
+
+    @Query("select r.id from RecurringReservations r where r.user.id = :user_id")
+    List<Long> findIdsByUserId(@Param("user_id") Long user_id, Pageable page);
+}
@@ -1,12 +1,19 @@
 package com.jacobo.reservation_system.repositories;
 
+import com.jacobo.reservation_system.models.dtos.ReservationsDtos.GetAllReservationsOutDTO;
 import com.jacobo.reservation_system.models.entities.Reservations;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * JPA repository for the Reservations entity
@@ -25,33 +32,144 @@ public interface ReservationsRepository extends JpaRepository<Reservations, Long
      * @param status
      * @return number of active reservations from a user
      */
-    long countByUserIdAndStatus(Long user_id, String status);
+    // Explicit query: the derived one joins the users table, which only exists in home
+    @Query("select count(r) from Reservations r where r.user.id = :user_id and r.status = :status")
+    long countByUserIdAndStatus(@Param("user_id") Long user_id, @Param("status") String status);
 
-    // When it's a more extended consultation
-    // It's better to use @Query to create a personalized one
-    // Not to set a long method name like the previous one
     /**
-     * Method that consults in the database
-     * If there's a date overlapping where
-     * A reservation has a same resource associated
+     * Users of the list with a reservation in that status, with one query for all of them
+     * @param user_ids
+     * @param status
+     * @return user IDs
+     */
+    @Query("select distinct r.user.id from Reservations r where r.user.id in :user_ids and r.status = :status")
+    List<Long> findUserIdsWithStatus(@Param("user_ids") Collection<Long> user_ids, @Param("status") String status);
+
+    // Conditional updates: the status is checked by the UPDATE itself and the
+    // row count tells if it changed, instead of reading the entity and saving every column
+    // They run in the transaction of the caller (check @ShardTemplate)
+    /**
+     * Cancels a reservation only if it's active
+     * @param id
+     * @return 1 if canceled, 0 if not found or already canceled
+     */
+    @Modifying
+    @Query("""
+    update Reservations r
+    set r.status = "inactive"
+    where r.id = :id
+      and r.status = "active"
+    """)
+    int deactivateIfActive(@Param("id") Long id);
+
+    /**
+     * Cancels every unfinished active reservation of a resource (deactivated resource)
      * @param resource_id
-     * @param new_start_date
-     * @param new_end_date
-     * @return List of overlapped reservations
+     * @param today reservations ending after today are canceled
+     * @return number of canceled reservations
      */
+    @Modifying
     @Query("""
-    select r
+    update Reservations r
+    set r.status = "inactive"
+    where r.resource.id = :resource_id
+      and r.status = "active"
+      and r.end_date > :today
+    """)
+    int cancelUnfinishedByResource(@Param("resource_id") Long resource_id, @Param("today") LocalDate today);
+
+    /**
+     * Cancels every unfinished active reservation of a user (deactivated user)
+     * @param user_id
+     * @param today reservations ending after today are canceled
+     * @return number of canceled reservations
+     */
+    @Modifying
+    @Query("""
+    update Reservations r
+    set r.status = "inactive"
+    where r.user.id = :user_id
+      and r.status = "active"
+      and r.end_date > :today
+    """)
+    int cancelUnfinishedByUser(@Param("user_id") Long user_id, @Param("today") LocalDate today);
+
+    // Resources touched by cancelUnfinishedByUser, read before it to lock them
+    @Query("""
+    select distinct r.resource.id
+    from Reservations r
+    where r.user.id = :user_id
+      and r.status = "active"
+      and r.end_date > :today
+    """)
+    List<Long> findResourceIdsOfUnfinishedByUser(@Param("user_id") Long user_id, @Param("today") LocalDate today);
+
+    /**
+     * Dates of the active reservations of a resource, to load its occupancy
+     * (check @OccupancyIndex)
+     * @param resource_id
+     * @return rows: start_date, end_date
+     */
+    @Query("""
+    select r.start_date, r.end_date
     from Reservations r
     where r.resource.id = :resource_id
-      and r.start_date < :new_end_date
-      and r.end_date > :new_start_date
       and r.status = "active"
     """)
-    List<Reservations> findOverlappingReservations(
-            @Param("resource_id") Long resource_id,
-            @Param("new_start_date") LocalDate new_start_date,
-            @Param("new_end_date") LocalDate new_end_date
-    );
+    List<Object[]> findActiveRanges(@Param("resource_id") Long resource_id);
+
+    // Streaming queries: rows are mapped straight into the OutDTO and read
+    // in chunks of the fetch size, so big lists are not loaded at once
+    // They must be consumed inside a transaction (check @ReservationsService)
+    /**
+     * Streams every reservation (ADMIN listing)
+     * @return stream of reservations as OutDTO
+     */
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "500"))
+    @Query("""
+    select new com.jacobo.reservation_system.models.dtos.ReservationsDtos.GetAllReservationsOutDTO(
+        r.id, r.user.id, r.resource.id, r.start_date, r.end_date, r.status)
+    from Reservations r
+    """)
+    Stream<GetAllReservationsOutDTO> streamAll();
+
+    /**
+     * Streams the reservations of a user (USER listing)
+     * @param user_id
+     * @return stream of reservations as OutDTO
+     */
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "500"))
+    @Query("""
+    select new com.jacobo.reservation_system.models.dtos.ReservationsDtos.GetAllReservationsOutDTO(
+        r.id, r.user.id, r.resource.id, r.start_date, r.end_date, r.status)
+    from Reservations r
+    where r.user.id = :user_id
+    """)
+    Stream<GetAllReservationsOutDTO> streamByUserId(@Param("user_id") Long user_id);
 
-    List<Reservations> findByUserId(Long id);
+    /**
+     * Keyset page of one shard: the next reservations after an ID, in ID order
+     * The pages of every shard are merged by ID (check @ReservationsService)
+     * @param after last ID already returned (0 for the first page)
+     * @param page page size
+     * @return reservations as OutDTO
+     */
+    @Query("""
+    select new com.jacobo.reservation_system.models.dtos.ReservationsDtos.GetAllReservationsOutDTO(
+        r.id, r.user.id, r.resource.id, r.start_date, r.end_date, r.status)
+    from Reservations r
+    where r.id > :after
+    order by r.id
+    """)
+    List<GetAllReservationsOutDTO> findPageAfter(@Param("after") Long after, Pageable page);
+
+    /**
+     * IDs of the next chunk of reservations of a user, deleted by the purge
+     * (check @UserPurger) with deleteAllByIdInBatch
+     * @param user_id
+     * @param page chunk size
+     * @return reservation IDs
+     */
+    @Query("select r.id from Reservations r where r.user.id = :user_id")
+    List<Long> findIdsByUserId(@Param("user_id") Long user_id, Pageable page);
 }
@@ -0,0 +1,37 @@
+package com.jacobo.reservation_system.repositories;
+
+import com.jacobo.reservation_system.models.entities.ResourceLocks;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+/**
+ * JPA repository for the ResourceLocks entity
+ * Row locks of the resources, used by @OccupancyIndex inside the booking transaction
+ */
+public interface ResourceLocksRepository extends JpaRepository<ResourceLocks, Long> {
+
+    /**
+     * Locks the row of the resource until the commit, waiting for the current holder
+     * (at most innodb_lock_wait_timeout), and increments its version
+     * @param resource_id resource to lock
+     * @return 0 if the resource has no row yet
+     */
+    @Modifying
+    @Query("update ResourceLocks l set l.version = l.version + 1 where l.resource_id = :resource_id")
+    int lockAndIncrement(@Param("resource_id") Long resource_id);
+
+    /**
+     * Creates the row of a resource, already locked by the insert
+     * @param resource_id resource to lock
+     * @return 0 if another transaction created it first
+     */
+    @Modifying
+    @Query(value = "insert ignore into resource_locks (resource_id, version) values (:resource_id, 1)",
+            nativeQuery = true)
+    int create(@Param("resource_id") Long resource_id);
+
+    @Query("select l.version from ResourceLocks l where l.resource_id = :resource_id")
+    long findVersion(@Param("resource_id") Long resource_id);
+}
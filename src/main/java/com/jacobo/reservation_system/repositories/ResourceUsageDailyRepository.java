@@ -0,0 +1,38 @@
+package com.jacobo.reservation_system.repositories;
+
+import com.jacobo.reservation_system.models.entities.ResourceUsageDaily;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * JPA repository for the ResourceUsageDaily entity
+ * Daily rollups are written in batches by @UsageRollups, this repository reads and clears them
+ */
+public interface ResourceUsageDailyRepository extends JpaRepository<ResourceUsageDaily, ResourceUsageDaily.Key> {
+
+    /**
+     * Booked days of a resource in [from, to), one primary key range scan
+     * Days without bookings have no row
+     * @return rows: usage_date, booked_units
+     */
+    @Query("""
+    select u.usage_date, u.booked_units
+    from ResourceUsageDaily u
+    where u.resource_id = :resource_id
+      and u.usage_date >= :from
+      and u.usage_date < :to
+      and u.booked_units > 0
+    order by u.usage_date
+    """)
+    List<Object[]> findRange(@Param("resource_id") Long resource_id,
+                             @Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Modifying
+    @Query("delete from ResourceUsageDaily u where u.resource_id = :resource_id")
+    int deleteByResource(@Param("resource_id") Long resource_id);
+}
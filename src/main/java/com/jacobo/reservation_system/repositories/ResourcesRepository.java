@@ -1,13 +1,85 @@
 package com.jacobo.reservation_system.repositories;
 
+import com.jacobo.reservation_system.models.dtos.ResourcesDtos.ListAllResourcesOutDTO;
 import com.jacobo.reservation_system.models.entities.Resources;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * JPA Repository for Resources entity
  */
 public interface ResourcesRepository extends JpaRepository<Resources, Long> {
     Optional<Resources> findByName(String name);
+
+    /**
+     * Resource of a booking, read with a shared lock (select ... for share) until the end
+     * of the home transaction: deactivateIfActive waits for the bookings in progress,
+     * and a booking waits for a deactivation in progress and then reads it
+     * @param id
+     * @return resource
+     */
+    @Lock(LockModeType.PESSIMISTIC_READ)
+    @Query("select r from Resources r where r.id = :id")
+    Optional<Resources> findForBookingById(@Param("id") Long id);
+
+    /**
+     * Streams every resource, active and inactive (ADMIN listing)
+     * Must be consumed inside a transaction
+     * @return stream of resources as OutDTO
+     */
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "500"))
+    @Query("""
+    select new com.jacobo.reservation_system.models.dtos.ResourcesDtos.ListAllResourcesOutDTO(
+        r.name, r.description, r.capacity)
+    from Resources r
+    """)
+    Stream<ListAllResourcesOutDTO> streamAll();
+
+    /**
+     * Streams only the active resources (USER listing)
+     * Must be consumed inside a transaction
+     * @return stream of resources as OutDTO
+     */
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "500"))
+    @Query("""
+    select new com.jacobo.reservation_system.models.dtos.ResourcesDtos.ListAllResourcesOutDTO(
+        r.name, r.description, r.capacity)
+    from Resources r
+    where r.active = true
+    """)
+    Stream<ListAllResourcesOutDTO> streamActive();
+
+    /**
+     * Streams the columns used by the search index (check @ResourceSearchIndex)
+     * Must be consumed inside a transaction
+     * @return stream of rows: id, name, description, active
+     */
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "500"))
+    @Query("select r.id, r.name, r.description, r.active from Resources r")
+    Stream<Object[]> streamForIndex();
+
+    // IDs only, to split the rollup backfill in chunks (check @UsageBackfill)
+    @Query("select r.id from Resources r order by r.id")
+    List<Long> findAllIds();
+
+    /**
+     * Deactivates a resource only if it's active, in one conditional update
+     * @param id
+     * @return 1 if deactivated, 0 if not found or already deactivated
+     */
+    @Modifying
+    @Transactional
+    @Query("update Resources r set r.active = false where r.id = :id and r.active = true")
+    int deactivateIfActive(@Param("id") Long id);
 }
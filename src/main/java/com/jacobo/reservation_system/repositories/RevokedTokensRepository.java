@@ -0,0 +1,36 @@
+package com.jacobo.reservation_system.repositories;
+
+import com.jacobo.reservation_system.models.entities.RevokedTokens;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * JPA repository for the RevokedTokens entity
+ * Token revocations, in home
+ */
+public interface RevokedTokensRepository extends JpaRepository<RevokedTokens, String> {
+
+    /**
+     * IDs of the revocations still in force, to rebuild the deny-list
+     * @param now current time
+     * @return revocation IDs
+     */
+    @Query("select r.id from RevokedTokens r where r.expires_at > :now")
+    List<String> findLiveIds(@Param("now") LocalDateTime now);
+
+    /**
+     * Removes the revocations whose tokens have all expired
+     * @param now current time
+     * @return number of deleted rows
+     */
+    @Modifying
+    @Transactional
+    @Query("delete from RevokedTokens r where r.expires_at <= :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
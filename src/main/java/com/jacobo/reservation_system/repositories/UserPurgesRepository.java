@@ -0,0 +1,28 @@
+package com.jacobo.reservation_system.repositories;
+
+import com.jacobo.reservation_system.models.entities.UserPurges;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+
+/**
+ * JPA repository for the UserPurges entity
+ * Background deletions of users, in home
+ */
+public interface UserPurgesRepository extends JpaRepository<UserPurges, Long> {
+
+    /**
+     * Purges not finished yet, oldest first
+     * @param page how many
+     * @return pending and running purges
+     */
+    @Query("""
+    select p
+    from UserPurges p
+    where p.status <> "done"
+    order by p.requested_at
+    """)
+    List<UserPurges> findUnfinished(Pageable page);
+}
@@ -1,8 +1,21 @@
 package com.jacobo.reservation_system.repositories;
 
 import com.jacobo.reservation_system.models.entities.Users;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * JPA repository for the Users entity
@@ -10,5 +23,74 @@ import java.util.Optional;
  */
 public interface UsersRepository extends JpaRepository<Users,Long> {
     Optional<Users> findByUsername(String username);
-}
 
+    // Entity graphs: roles are LAZY, these methods load them in the same query
+    // Use them only where the roles are read (login, role checks, user details)
+    @EntityGraph(attributePaths = "role")
+    Optional<Users> findWithRoleByUsername(String username);
+
+    @EntityGraph(attributePaths = "role")
+    Optional<Users> findWithRoleById(Long id);
+
+    // Locking reads (select ... for update): the row stays locked until the end of the
+    // home transaction, so bookings and promotions of the same user run one at a time
+    // and the "one active reservation" check sees the previous one (check @ReservationsService)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select u from Users u where u.username = :username")
+    Optional<Users> findForBookingByUsername(@Param("username") String username);
+
+    // Several users are always locked in ID order, so two transactions can't wait for each other
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select u from Users u where u.id in :ids order by u.id")
+    List<Users> findAllForBookingById(@Param("ids") Collection<Long> ids);
+
+    // Only the username, to revoke his tokens (check @TokenRevocations)
+    @Query("select u.username from Users u where u.id = :id")
+    Optional<String> findUsernameById(@Param("id") Long id);
+
+    /**
+     * Streams users joined with their role names, ordered by user ID
+     * One row per user and role: [id, username, active, role name]
+     * A single query instead of one extra query per user for the roles
+     * Must be consumed inside a transaction
+     * @return stream of rows
+     */
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "500"))
+    @Query("""
+    select u.id, u.username, u.active, r.name
+    from Users u
+    left join u.role r
+    order by u.id
+    """)
+    Stream<Object[]> streamWithRoleNames();
+
+    /**
+     * Deactivates a user only if he's active, in one conditional update
+     * Only the active column is written, and the row count replaces the read + check
+     * @param id
+     * @return 1 if deactivated, 0 if not found or already deactivated
+     */
+    @Modifying
+    @Transactional
+    @Query("update Users u set u.active = false where u.id = :id and u.active = true")
+    int deactivateIfActive(@Param("id") Long id);
+
+    /**
+     * Deactivates a user, whatever his state (first step of his deletion)
+     * @param id
+     * @return 0 if not found
+     */
+    @Modifying
+    @Query("update Users u set u.active = false where u.id = :id")
+    int deactivate(@Param("id") Long id);
+
+    // Last step of the purge of a user (check @UserPurger): role links and then
+    // his row, without loading the entity. The join table has no entity, so it's native
+    @Modifying
+    @Query(value = "delete from user_role where user_id = :id", nativeQuery = true)
+    int deleteRoleLinks(@Param("id") Long id);
+
+    @Modifying
+    @Query("delete from Users u where u.id = :id")
+    int deleteRow(@Param("id") Long id);
+}
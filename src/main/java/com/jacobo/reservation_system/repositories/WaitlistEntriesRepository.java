@@ -0,0 +1,117 @@
+package com.jacobo.reservation_system.repositories;
+
+import com.jacobo.reservation_system.models.entities.WaitlistEntries;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * JPA repository for the WaitlistEntries entity
+ * Manages the per-resource queues of requests for occupied ranges
+ */
+public interface WaitlistEntriesRepository extends JpaRepository<WaitlistEntries, Long> {
+
+    // Explicit query: the derived one joins the users table (check @ReservationsRepository)
+    @Query("select count(w) from WaitlistEntries w where w.user.id = :user_id and w.status = :status")
+    long countByUserIdAndStatus(@Param("user_id") Long user_id, @Param("status") String status);
+
+    /**
+     * Waiters of a resource whose range touches the freed one, in serving order
+     * Rows are locked (select ... for update) so two cancellations at the same
+     * time can't promote the same waiter twice
+     * @param resource_id
+     * @param freed_start
+     * @param freed_end
+     * @param page maximum candidates checked per cancellation
+     * @return waiting entries, higher priority first, then oldest first
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("""
+    select w
+    from WaitlistEntries w
+    where w.resource.id = :resource_id
+      and w.status = "waiting"
+      and w.start_date < :freed_end
+      and w.end_date > :freed_start
+    order by w.priority desc, w.id asc
+    """)
+    List<WaitlistEntries> findWaitersForUpdate(
+            @Param("resource_id") Long resource_id,
+            @Param("freed_start") LocalDate freed_start,
+            @Param("freed_end") LocalDate freed_end,
+            Pageable page
+    );
+
+    /**
+     * Users of the same waiters as findWaitersForUpdate, without locking them
+     * Read before the cancellation to load the users from home first
+     * @return user IDs, in serving order
+     */
+    @Query("""
+    select w.user.id
+    from WaitlistEntries w
+    where w.resource.id = :resource_id
+      and w.status = "waiting"
+      and w.start_date < :freed_end
+      and w.end_date > :freed_start
+    order by w.priority desc, w.id asc
+    """)
+    List<Long> findWaitingUserIds(
+            @Param("resource_id") Long resource_id,
+            @Param("freed_start") LocalDate freed_start,
+            @Param("freed_end") LocalDate freed_end,
+            Pageable page
+    );
+
+    /**
+     * Position in the queue: waiters of the same resource served before this one
+     */
+    @Query("""
+    select count(w)
+    from WaitlistEntries w
+    where w.resource.id = :resource_id
+      and w.status = "waiting"
+      and (w.priority > :priority or (w.priority = :priority and w.id < :id))
+    """)
+    long countAhead(
+            @Param("resource_id") Long resource_id,
+            @Param("priority") int priority,
+            @Param("id") Long id
+    );
+
+    /**
+     * Cancels the waiting entries of a resource (deactivated resource)
+     * @return number of canceled entries
+     */
+    @Modifying
+    @Query("""
+    update WaitlistEntries w
+    set w.status = "canceled"
+    where w.resource.id = :resource_id
+      and w.status = "waiting"
+    """)
+    int cancelWaitingByResource(@Param("resource_id") Long resource_id);
+
+    /**
+     * Cancels the waiting entries of a user (deactivated user)
+     * @return number of canceled entries
+     */
+    @Modifying
+    @Query("""
+    update WaitlistEntries w
+    set w.status = "canceled"
+    where w.user.id = :user_id
+      and w.status = "waiting"
+    """)
+    int cancelWaitingByUser(@Param("user_id") Long user_id);
+
+    @Query("select w.id from WaitlistEntries w where w.user.id = :user_id")
+    List<Long> findIdsByUserId(@Param("user_id") Long user_id, Pageable page);
+}
@@ -0,0 +1,107 @@
+package com.jacobo.reservation_system.revocation;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size Bloom filter of strings
+ * It answers "maybe present" or "surely absent": a key that was added is always
+ * found, and a key that wasn't is found only with the configured false positive rate
+ * Keys are hashed as prefix + key, char by char, so the check needs no concatenation
+ * nor any other allocation. hash("user:", "bob") is the same as hash("", "user:bob")
+ * ---------------------------------------------------------------------------
+ * The bits are set with atomic ORs, so keys can be added while other threads check
+ * It can't remove keys: the filter is rebuilt instead (check @TokenRevocations)
+ */
+class BloomFilter {
+    private final AtomicLongArray words;
+    private final long bits;
+    private final int hashes;
+
+    /**
+     * @param expectedKeys keys the filter is sized for, more keys raise the false positive rate
+     * @param falsePositiveRate wanted rate with that number of keys (e.g. 0.01)
+     */
+    BloomFilter(int expectedKeys, double falsePositiveRate) {
+        long n = Math.max(1, expectedKeys);
+        double p = Math.min(0.5, Math.max(1e-9, falsePositiveRate));
+
+        // Optimal sizes: m = -n ln p / (ln 2)^2 bits and k = m / n ln 2 hash functions
+        long m = (long) Math.ceil(-n * Math.log(p) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (m + 63) / 64));
+
+        this.words = new AtomicLongArray(words);
+        this.bits = words * 64L;
+        this.hashes = (int) Math.max(1, Math.round((double) bits / n * Math.log(2)));
+    }
+
+    void add(String prefix, String key) {
+        long hash = hash(prefix, key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+
+        for (int i = 1; i <= hashes; i++) {
+            long bit = index(h1 + i * h2);
+            long mask = 1L << bit;
+            int word = (int) (bit >>> 6);
+
+            // Atomic OR, compareAndSet only when the bit is not set yet
+            long current = words.get(word);
+            while ((current & mask) == 0 && !words.compareAndSet(word, current, current | mask)) {
+                current = words.get(word);
+            }
+        }
+    }
+
+    /**
+     * @return false if the key was never added, true if it may have been
+     */
+    boolean mightContain(String prefix, String key) {
+        if (key == null) {
+            return false;
+        }
+
+        long hash = hash(prefix, key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+
+        for (int i = 1; i <= hashes; i++) {
+            long bit = index(h1 + i * h2);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Bit of one of the k hashes, built from two halves of one 64-bit hash
+     * (Kirsch-Mitzenmacher double hashing)
+     */
+    private long index(int combined) {
+        return (combined < 0 ? ~combined : combined) % bits;
+    }
+
+    /**
+     * 64-bit FNV-1a over the chars of prefix + key, with the MurmurHash3 finalizer
+     * so both halves are well mixed
+     */
+    private static long hash(String prefix, String key) {
+        long h = 0xcbf29ce484222325L;
+
+        for (int i = 0; i < prefix.length(); i++) {
+            h = (h ^ prefix.charAt(i)) * 0x100000001b3L;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            h = (h ^ key.charAt(i)) * 0x100000001b3L;
+        }
+
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+
+        return h;
+    }
+}
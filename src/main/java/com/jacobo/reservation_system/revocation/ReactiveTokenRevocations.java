@@ -0,0 +1,94 @@
+package com.jacobo.reservation_system.revocation;
+
+import io.jsonwebtoken.Claims;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.scheduling.annotation.Scheduled;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+import static com.jacobo.reservation_system.revocation.TokenRevocations.TOKEN;
+import static com.jacobo.reservation_system.revocation.TokenRevocations.USER;
+
+/**
+ * Deny-list of JWTs of the reactive read path (check @ReactiveReadsApplication)
+ * Same checks as @TokenRevocations over the "revoked_tokens" table of the home shard,
+ * read with R2DBC: the filter answers in memory and a "maybe" costs one query that
+ * holds no thread while it runs
+ * This path never revokes (logout and user deactivation are writes of the main
+ * application), it sees the revocations after its next rebuild like any other instance.
+ * Until the first rebuild there is no filter, and every check reads the table
+ * The main application deletes the expired rows, this one only reads them
+ * Not a @Component: only the reactive application creates it
+ */
+public class ReactiveTokenRevocations {
+    private final DatabaseClient home;
+    private final int minCapacity;
+    private final double falsePositiveRate;
+
+    /**
+     * Filter used by the checks, replaced on each rebuild
+     */
+    private volatile BloomFilter current;
+
+    public ReactiveTokenRevocations(DatabaseClient home, int minCapacity, double falsePositiveRate) {
+        this.home = home;
+        this.minCapacity = minCapacity;
+        this.falsePositiveRate = falsePositiveRate;
+    }
+
+    /**
+     * Checks if a valid token was revoked
+     * @param claims claims of the token, already verified
+     * @return true if the token must be refused
+     */
+    public Mono<Boolean> isRevoked(Claims claims) {
+        BloomFilter filter = current;
+        String tokenId = claims.getId();
+        String username = claims.getSubject();
+
+        Mono<Boolean> token = tokenId != null && (filter == null || filter.mightContain(TOKEN, tokenId))
+                ? home.sql("select count(*) from revoked_tokens where id = :id")
+                        .bind("id", TOKEN + tokenId)
+                        .map(row -> row.get(0, Long.class))
+                        .one()
+                        .map(count -> count > 0)
+                : Mono.just(false);
+
+        return token.flatMap(revoked -> {
+            if (revoked || username == null || (filter != null && !filter.mightContain(USER, username))) {
+                return Mono.just(revoked);
+            }
+
+            return home.sql("select not_before from revoked_tokens where id = :id")
+                    .bind("id", USER + username)
+                    .map(row -> row.get("not_before", LocalDateTime.class))
+                    .one()
+                    .map(notBefore -> TokenRevocations.issuedUntil(claims, notBefore))
+                    .defaultIfEmpty(false);
+        });
+    }
+
+    /**
+     * Rebuilds the filter from the revocations in force
+     * Sized for twice the current rows, like @TokenRevocations
+     * The scheduler subscribes to the returned Mono and waits for it before the next delay
+     */
+    @Scheduled(fixedDelayString = "${revocation.rebuild-interval-ms:30000}")
+    public Mono<Void> rebuild() {
+        return home.sql("select id from revoked_tokens where expires_at > :now")
+                .bind("now", LocalDateTime.now())
+                .map(row -> row.get("id", String.class))
+                .all()
+                .collectList()
+                .doOnNext(ids -> {
+                    BloomFilter next = new BloomFilter(Math.max(minCapacity, ids.size() * 2), falsePositiveRate);
+                    for (String id : ids) {
+                        next.add("", id);
+                    }
+
+                    current = next;
+                })
+                .then();
+    }
+}
@@ -0,0 +1,177 @@
+package com.jacobo.reservation_system.revocation;
+
+import com.jacobo.reservation_system.models.entities.RevokedTokens;
+import com.jacobo.reservation_system.repositories.RevokedTokensRepository;
+import io.jsonwebtoken.Claims;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Deny-list of JWTs, checked by @JwtAuthFilter on every authenticated request
+ * - A token can be revoked by its ID (logout)
+ * - A user can be revoked from a moment on (deactivation, deletion): his tokens
+ *   issued before it are refused
+ * ---------------------------------------------------------------------------
+ * The "revoked_tokens" table is the exact store, but reading it per request would
+ * cost one query each. A Bloom filter of the revoked IDs and usernames answers
+ * almost every request in memory with no allocations, and the table is only read
+ * when the filter says "maybe" (revoked, or a false positive)
+ * The filter is rebuilt every revocation.rebuild-interval-ms from the table, which
+ * drops the expired revocations and brings the ones made by other instances
+ * (until then, another instance doesn't know them). Revocations of this instance
+ * are added to the filter right away
+ */
+@Component
+public class TokenRevocations {
+    static final String TOKEN = "token:";
+    static final String USER = "user:";
+
+    private final RevokedTokensRepository revokedRepo;
+    private final long expMinutes;
+    private final int minCapacity;
+    private final double falsePositiveRate;
+
+    /**
+     * Filter used by the checks, replaced on each rebuild
+     */
+    private volatile BloomFilter current;
+
+    /**
+     * Filter being rebuilt, null between rebuilds
+     * Revocations made during a rebuild go to both filters, so none is lost on the swap
+     */
+    private volatile BloomFilter building;
+
+    public TokenRevocations(RevokedTokensRepository revokedRepo,
+                            @Value("${jwt.exp-min}") long expMinutes,
+                            @Value("${revocation.min-capacity:1024}") int minCapacity,
+                            @Value("${revocation.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.revokedRepo = revokedRepo;
+        this.expMinutes = expMinutes;
+        this.minCapacity = minCapacity;
+        this.falsePositiveRate = falsePositiveRate;
+        this.current = new BloomFilter(minCapacity, falsePositiveRate);
+    }
+
+    /**
+     * Checks if a valid token was revoked
+     * Fast path: two filter lookups with no allocations nor queries
+     * @param claims claims of the token, already verified
+     * @return true if the token must be refused
+     */
+    public boolean isRevoked(Claims claims) {
+        BloomFilter filter = current;
+        String tokenId = claims.getId();
+        String username = claims.getSubject();
+
+        if (filter.mightContain(TOKEN, tokenId) && revokedRepo.existsById(TOKEN + tokenId)) {
+            return true;
+        }
+
+        if (filter.mightContain(USER, username)) {
+            Optional<RevokedTokens> revoked = revokedRepo.findById(USER + username);
+            return revoked.isPresent() && issuedUntil(claims, revoked.get().getNot_before());
+        }
+
+        return false;
+    }
+
+    /**
+     * Checks if a token was issued before its user was revoked
+     * Same second counts as before: "iat" has no milliseconds
+     * @param claims claims of the token
+     * @param notBefore moment the user was revoked
+     * @return true if the token must be refused
+     */
+    static boolean issuedUntil(Claims claims, LocalDateTime notBefore) {
+        Date issuedAt = claims.getIssuedAt();
+        return issuedAt == null
+                || !LocalDateTime.ofInstant(issuedAt.toInstant(), ZoneId.systemDefault()).isAfter(notBefore);
+    }
+
+    /**
+     * Revokes one token until it expires
+     * @param claims claims of the token
+     */
+    public void revokeToken(Claims claims) {
+        if (claims.getId() == null) {
+            return; // Issued before tokens had an ID, it only expires
+        }
+
+        RevokedTokens revoked = new RevokedTokens();
+        revoked.setId(TOKEN + claims.getId());
+        revoked.setExpires_at(LocalDateTime.ofInstant(claims.getExpiration().toInstant(), ZoneId.systemDefault()));
+        revokedRepo.save(revoked);
+
+        add(TOKEN, claims.getId());
+    }
+
+    /**
+     * Revokes every token of a user issued until now
+     * The row lives as long as a token issued now, later all those tokens are expired anyway
+     * @param username user whose tokens are refused
+     */
+    public void revokeUser(String username) {
+        LocalDateTime now = LocalDateTime.now();
+
+        RevokedTokens revoked = new RevokedTokens();
+        revoked.setId(USER + username);
+        revoked.setNot_before(now);
+        revoked.setExpires_at(now.plusMinutes(expMinutes));
+        revokedRepo.save(revoked);
+
+        add(USER, username);
+    }
+
+    /**
+     * Rebuilds the filter from the revocations in force and deletes the expired ones
+     * Sized for twice the current rows, so the revocations added until the next
+     * rebuild keep the false positive rate low
+     */
+    @Scheduled(fixedDelayString = "${revocation.rebuild-interval-ms:30000}")
+    public void rebuild() {
+        LocalDateTime now = LocalDateTime.now();
+        revokedRepo.deleteExpired(now);
+
+        // Published before the read: a revocation saved after it is added to this filter too
+        BloomFilter next = new BloomFilter(minCapacity, falsePositiveRate);
+        building = next;
+
+        try {
+            List<String> ids = revokedRepo.findLiveIds(now);
+            if (ids.size() * 2 > minCapacity) {
+                next = new BloomFilter(ids.size() * 2, falsePositiveRate);
+                building = next;
+                ids = revokedRepo.findLiveIds(now);
+            }
+
+            for (String id : ids) {
+                next.add("", id);
+            }
+
+            current = next;
+        } finally {
+            building = null;
+        }
+    }
+
+    /**
+     * Adds a revocation to the filter, after its row was saved
+     */
+    private void add(String prefix, String key) {
+        // building is read first: if it's already null, the swap is done and current is the new filter
+        BloomFilter next = building;
+        current.add(prefix, key);
+
+        if (next != null) {
+            next.add(prefix, key);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.jacobo.reservation_system.rollup;
+
+import com.jacobo.reservation_system.occupancy.OccupancyIndex;
+import com.jacobo.reservation_system.repositories.ResourcesRepository;
+import com.jacobo.reservation_system.sharding.ShardContext;
+import com.jacobo.reservation_system.sharding.ShardRouter;
+import com.jacobo.reservation_system.sharding.ShardTemplate;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Rebuilds the daily rollups of every resource from the bookings (history included)
+ * For the first deployment of the rollups, or to repair them
+ * ---------------------------------------------------------------------------
+ * Resources are split in chunks of rollup.backfill-chunk-size, grouped by shard.
+ * Each chunk is one short transaction of its shard that locks its resources (in ID
+ * order, check @OccupancyIndex) and rebuilds them, so bookings of those resources
+ * wait for it instead of racing with it, and bookings of other resources go on
+ * At most rollup.backfill-parallelism chunks run at the same time
+ * Only one backfill runs per instance. Running it on two instances is harmless
+ */
+@Component
+@Slf4j
+public class UsageBackfill {
+    private final ResourcesRepository resourcesRepo;
+    private final ShardRouter shardRouter;
+    private final ShardTemplate shards;
+    private final OccupancyIndex occupancyIndex;
+    private final UsageRollups rollups;
+    private final int chunkSize;
+    private final int parallelism;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public UsageBackfill(ResourcesRepository resourcesRepo, ShardRouter shardRouter, ShardTemplate shards,
+                         OccupancyIndex occupancyIndex, UsageRollups rollups,
+                         @Value("${rollup.backfill-chunk-size:50}") int chunkSize,
+                         @Value("${rollup.backfill-parallelism:4}") int parallelism) {
+        this.resourcesRepo = resourcesRepo;
+        this.shardRouter = shardRouter;
+        this.shards = shards;
+        this.occupancyIndex = occupancyIndex;
+        this.rollups = rollups;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Starts a backfill in the background
+     * @return false if one is already running
+     */
+    public boolean start() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+
+        Thread.ofVirtual().name("usage-backfill").start(this::run);
+        return true;
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    private void run() {
+        long start = System.currentTimeMillis();
+        AtomicInteger rebuilt = new AtomicInteger();
+        AtomicInteger failedChunks = new AtomicInteger();
+
+        try {
+            List<Long> ids = shards.readShard(ShardContext.HOME, resourcesRepo::findAllIds);
+            Map<Integer, List<Long>> byShard = ids.stream()
+                    .collect(Collectors.groupingBy(shardRouter::shardForResource, TreeMap::new, Collectors.toList()));
+
+            Semaphore permits = new Semaphore(parallelism);
+
+            // Closing the executor waits for every chunk
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                byShard.forEach((shard, resourceIds) -> {
+                    for (int from = 0; from < resourceIds.size(); from += chunkSize) {
+                        List<Long> chunk = new ArrayList<>(
+                                resourceIds.subList(from, Math.min(from + chunkSize, resourceIds.size())));
+
+                        permits.acquireUninterruptibly();
+                        executor.submit(() -> {
+                            try {
+                                shards.inShard(shard, () -> {
+                                    occupancyIndex.lock(chunk);
+                                    chunk.forEach(rollups::rebuild);
+                                    return null;
+                                });
+                                rebuilt.addAndGet(chunk.size());
+                            } catch (RuntimeException e) {
+                                failedChunks.incrementAndGet();
+                                log.warn("Rollup backfill of resources {} to {} failed: {}",
+                                        chunk.get(0), chunk.get(chunk.size() - 1), e.getMessage());
+                            } finally {
+                                permits.release();
+                            }
+                        });
+                    }
+                });
+            }
+
+            log.info("Rollup backfill finished in {} ms: {} resources rebuilt, {} chunks failed",
+                    System.currentTimeMillis() - start, rebuilt.get(), failedChunks.get());
+        } catch (RuntimeException e) {
+            log.error("Rollup backfill stopped", e);
+        } finally {
+            running.set(false);
+        }
+    }
+}
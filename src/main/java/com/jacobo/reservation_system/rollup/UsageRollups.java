@@ -0,0 +1,119 @@
+package com.jacobo.reservation_system.rollup;
+
+import com.jacobo.reservation_system.models.entities.RecurringReservations;
+import com.jacobo.reservation_system.recurrence.Recurrence;
+import com.jacobo.reservation_system.repositories.RecurringReservationsRepository;
+import com.jacobo.reservation_system.repositories.ReservationsRepository;
+import com.jacobo.reservation_system.repositories.ResourceUsageDailyRepository;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Daily utilization rollups of the resources ("resource_usage_daily")
+ * Each row holds the units booked on one day: active reservations plus occurrences
+ * of active series, like the occupancy of @OccupancyIndex but stored per day
+ * ---------------------------------------------------------------------------
+ * The booking code applies every change incrementally (+1 / -1 on the days of the
+ * range) in its own transaction, while it holds the resource lock, so the rollup
+ * commits or rolls back with the booking. All the days of a change are written in
+ * one JDBC batch of upserts, whatever its length
+ * Set-based changes (cancellations of a deactivated resource or user) rebuild the
+ * rollup of the resource from its rows instead, also under the lock
+ * Every method runs in the transaction of the resource shard
+ */
+@Component
+public class UsageRollups {
+    private static final String UPSERT = """
+            insert into resource_usage_daily (resource_id, usage_date, booked_units) values (?, ?, ?)
+            on duplicate key update booked_units = booked_units + ?
+            """;
+
+    private final JdbcTemplate jdbc;
+    private final ResourceUsageDailyRepository usageRepo;
+    private final ReservationsRepository resRepo;
+    private final RecurringReservationsRepository recurringRepo;
+
+    public UsageRollups(JdbcTemplate jdbc, ResourceUsageDailyRepository usageRepo,
+                        ReservationsRepository resRepo, RecurringReservationsRepository recurringRepo) {
+        this.jdbc = jdbc;
+        this.usageRepo = usageRepo;
+        this.resRepo = resRepo;
+        this.recurringRepo = recurringRepo;
+    }
+
+    /**
+     * A reservation was booked (delta 1) or canceled (delta -1)
+     * @param resourceId locked resource
+     * @param start first day
+     * @param end day after the last one
+     * @param delta units to add to each day
+     */
+    public void add(Long resourceId, LocalDate start, LocalDate end, int delta) {
+        Map<Long, Integer> days = new TreeMap<>();
+        addDays(days, start, end, delta);
+        write(resourceId, days);
+    }
+
+    /**
+     * A series was booked (delta 1) or canceled (delta -1): every occurrence, in one batch
+     * @param resourceId locked resource
+     * @param rule occurrences of the series
+     * @param delta units to add to each day of each occurrence
+     */
+    public void addSeries(Long resourceId, Recurrence rule, int delta) {
+        Map<Long, Integer> days = new TreeMap<>();
+        rule.forEachOccurrence((start, end) -> addDays(days, start, end, delta));
+        write(resourceId, days);
+    }
+
+    /**
+     * Recomputes the whole rollup of a resource from its active bookings
+     * Used by the backfill and after set-based changes
+     * @param resourceId locked resource
+     */
+    public void rebuild(Long resourceId) {
+        Map<Long, Integer> days = new TreeMap<>();
+
+        for (Object[] range : resRepo.findActiveRanges(resourceId)) {
+            addDays(days, (LocalDate) range[0], (LocalDate) range[1], 1);
+        }
+
+        for (RecurringReservations series : recurringRepo.findByResourceIdAndStatus(resourceId, "active")) {
+            Recurrence.of(series).forEachOccurrence((start, end) -> addDays(days, start, end, 1));
+        }
+
+        usageRepo.deleteByResource(resourceId);
+        write(resourceId, days);
+    }
+
+    private static void addDays(Map<Long, Integer> days, LocalDate start, LocalDate end, int delta) {
+        for (long day = start.toEpochDay(); day < end.toEpochDay(); day++) {
+            days.merge(day, delta, Integer::sum);
+        }
+    }
+
+    /**
+     * One batch of upserts, in day order (the order of the primary key)
+     */
+    private void write(Long resourceId, Map<Long, Integer> days) {
+        List<Object[]> rows = new ArrayList<>(days.size());
+
+        days.forEach((day, delta) -> {
+            if (delta != 0) {
+                Date date = Date.valueOf(LocalDate.ofEpochDay(day));
+                rows.add(new Object[]{resourceId, date, delta, delta});
+            }
+        });
+
+        if (!rows.isEmpty()) {
+            jdbc.batchUpdate(UPSERT, rows);
+        }
+    }
+}
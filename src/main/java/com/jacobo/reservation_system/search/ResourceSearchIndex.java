@@ -0,0 +1,387 @@
+package com.jacobo.reservation_system.search;
+
+import com.jacobo.reservation_system.models.dtos.ResourcesDtos.SearchResourcesOutDTO;
+import com.jacobo.reservation_system.models.entities.Resources;
+import com.jacobo.reservation_system.repositories.ResourcesRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * In-memory full-text index over resource names and descriptions
+ * - Token dictionaries (sorted, one per field) map each word to the resources that contain it,
+ *   so exact and prefix matches are dictionary lookups
+ * - A trigram index over the dictionary finds words within 1 or 2 typos of a query word
+ * Every query word must match (exact, prefix or typo) and results are ranked by score:
+ * name matches weigh more than description ones, exact more than prefix, prefix more than typo
+ * It's built once when the application is ready and updated by @ResourcesService
+ * on creation and deactivation (resources are never renamed or deleted)
+ */
+@Slf4j
+@Component
+public class ResourceSearchIndex {
+    private static final float NAME_WEIGHT = 2f;
+    private static final float DESCRIPTION_WEIGHT = 1f;
+    private static final float EXACT = 1f;
+    private static final float PREFIX = 0.7f;
+    private static final float TYPO = 0.5f;
+
+    /**
+     * Maximum dictionary words a prefix or a typo can expand to
+     */
+    private static final int MAX_EXPANSIONS = 64;
+
+    /**
+     * Word separators: Unicode classes, so Cyrillic, Greek or CJK names are not dropped
+     */
+    private static final Pattern NOT_WORD = Pattern.compile("[^\\p{Alnum}]+", Pattern.UNICODE_CHARACTER_CLASS);
+
+    private final ResourcesRepository resourcesRepo;
+    private final TransactionTemplate readOnlyTx;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Documents by internal number (0..size-1), in insertion order
+    private long[] ids = new long[1024];
+    private String[] names = new String[1024];
+    private String[] descriptions = new String[1024];
+    private boolean[] active = new boolean[1024];
+    private int size;
+    private final Map<Long, Integer> docsById = new HashMap<>();
+
+    private final TreeMap<String, Postings> nameWords = new TreeMap<>();
+    private final TreeMap<String, Postings> descriptionWords = new TreeMap<>();
+    private final Map<String, List<String>> wordsByTrigram = new HashMap<>();
+
+    public ResourceSearchIndex(ResourcesRepository resourcesRepo, PlatformTransactionManager txManager) {
+        this.resourcesRepo = resourcesRepo;
+        this.readOnlyTx = new TransactionTemplate(txManager);
+        this.readOnlyTx.setReadOnly(true);
+    }
+
+    /**
+     * Loads every resource, streaming the rows (check @ResourcesRepository)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        long start = System.nanoTime();
+
+        readOnlyTx.executeWithoutResult(status -> {
+            try (Stream<Object[]> rows = resourcesRepo.streamForIndex()) {
+                rows.forEach(row -> add((Long) row[0], (String) row[1], (String) row[2], (Boolean) row[3]));
+            }
+        });
+
+        log.info("Resource search index built: {} resources, {} words in {} ms", size,
+                nameWords.size() + descriptionWords.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    public void add(Resources resource) {
+        add(resource.getId(), resource.getName(), resource.getDescription(), resource.isActive());
+    }
+
+    public void setActive(Long id, boolean value) {
+        lock.writeLock().lock();
+        try {
+            Integer doc = docsById.get(id);
+            if (doc != null) {
+                active[doc] = value;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ranked search
+     * @param query words to look for
+     * @param includeInactive true for ADMIN, USER only sees active resources
+     * @param limit maximum results
+     * @return best results first
+     */
+    public List<SearchResourcesOutDTO> search(String query, boolean includeInactive, int limit) {
+        List<String> terms = tokenize(query);
+        if (terms.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            // Matches of each word, the rarest one first so the intersection stays small
+            List<Map<Integer, Float>> matches = new ArrayList<>(terms.size());
+            for (String term : new LinkedHashSet<>(terms)) {
+                Map<Integer, Float> termMatches = match(term);
+                if (termMatches.isEmpty()) {
+                    return List.of();
+                }
+                matches.add(termMatches);
+            }
+            matches.sort(Comparator.comparingInt(Map::size));
+
+            Map<Integer, Float> scores = new HashMap<>(matches.get(0));
+            for (int i = 1; i < matches.size() && !scores.isEmpty(); i++) {
+                Map<Integer, Float> next = matches.get(i);
+                scores.entrySet().removeIf(entry -> !next.containsKey(entry.getKey()));
+                scores.replaceAll((doc, score) -> score + next.get(doc));
+            }
+
+            // Top results with a bounded heap (the worst one on top)
+            Comparator<Map.Entry<Integer, Float>> ranking = Map.Entry.<Integer, Float>comparingByValue()
+                    .thenComparing(entry -> names[entry.getKey()], Comparator.reverseOrder());
+            PriorityQueue<Map.Entry<Integer, Float>> top = new PriorityQueue<>(limit + 1, ranking);
+
+            for (Map.Entry<Integer, Float> entry : scores.entrySet()) {
+                if (!includeInactive && !active[entry.getKey()]) {
+                    continue;
+                }
+                top.add(entry);
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            }
+
+            List<SearchResourcesOutDTO> results = new ArrayList<>(top.size());
+            while (!top.isEmpty()) {
+                Map.Entry<Integer, Float> entry = top.poll();
+                int doc = entry.getKey();
+                results.add(new SearchResourcesOutDTO(ids[doc], names[doc], descriptions[doc],
+                        active[doc], entry.getValue()));
+            }
+            Collections.reverse(results);
+
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void add(Long id, String name, String description, boolean isActive) {
+        lock.writeLock().lock();
+        try {
+            if (docsById.containsKey(id)) {
+                return; // Already loaded by build() or by the service
+            }
+
+            if (size == ids.length) {
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                names = Arrays.copyOf(names, capacity);
+                descriptions = Arrays.copyOf(descriptions, capacity);
+                active = Arrays.copyOf(active, capacity);
+            }
+
+            int doc = size++;
+            ids[doc] = id;
+            names[doc] = name;
+            descriptions[doc] = description;
+            active[doc] = isActive;
+            docsById.put(id, doc);
+
+            index(nameWords, name, doc);
+            index(descriptionWords, description, doc);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void index(TreeMap<String, Postings> words, String text, int doc) {
+        for (String word : tokenize(text)) {
+            Postings postings = words.get(word);
+            if (postings == null) {
+                // Trigrams are registered once per word, whatever the field
+                boolean newWord = !nameWords.containsKey(word) && !descriptionWords.containsKey(word);
+
+                postings = new Postings();
+                words.put(word, postings);
+
+                if (newWord) {
+                    for (String trigram : trigrams(word)) {
+                        List<String> list = wordsByTrigram.computeIfAbsent(trigram, t -> new ArrayList<>());
+                        if (list.isEmpty() || !list.get(list.size() - 1).equals(word)) {
+                            list.add(word);
+                        }
+                    }
+                }
+            }
+            postings.add(doc);
+        }
+    }
+
+    /**
+     * Documents matching a query word in any field, with their best score
+     */
+    private Map<Integer, Float> match(String term) {
+        Map<Integer, Float> scores = new HashMap<>();
+        List<String> typos = wordsWithTypos(term);
+
+        collect(nameWords, term, typos, NAME_WEIGHT, scores);
+        collect(descriptionWords, term, typos, DESCRIPTION_WEIGHT, scores);
+
+        return scores;
+    }
+
+    private void collect(TreeMap<String, Postings> words, String term, List<String> typos, float weight,
+                         Map<Integer, Float> scores) {
+        addAll(words.get(term), weight * EXACT, scores);
+
+        // Search as you type: "conf" finds "conference"
+        if (term.length() >= 2) {
+            int expansions = 0;
+            for (Postings postings : words.subMap(term, false, term + Character.MAX_VALUE, false).values()) {
+                addAll(postings, weight * PREFIX, scores);
+                if (++expansions == MAX_EXPANSIONS) {
+                    break;
+                }
+            }
+        }
+
+        for (String word : typos) {
+            addAll(words.get(word), weight * TYPO, scores);
+        }
+    }
+
+    private static void addAll(Postings postings, float score, Map<Integer, Float> scores) {
+        if (postings == null) {
+            return;
+        }
+
+        for (int i = 0; i < postings.size; i++) {
+            scores.merge(postings.docs[i], score, Math::max);
+        }
+    }
+
+    /**
+     * Dictionary words within the allowed typos of the term (1 from 4 letters, 2 from 8)
+     * Candidates share enough trigrams with the term (q-gram lemma: a word at distance k
+     * shares at least length - 3k trigrams), then the edit distance is checked
+     */
+    private List<String> wordsWithTypos(String term) {
+        int maxTypos = term.length() >= 8 ? 2 : term.length() >= 4 ? 1 : 0;
+        if (maxTypos == 0) {
+            return List.of();
+        }
+
+        Map<String, Integer> shared = new HashMap<>();
+        for (String trigram : trigrams(term)) {
+            for (String word : wordsByTrigram.getOrDefault(trigram, List.of())) {
+                shared.merge(word, 1, Integer::sum);
+            }
+        }
+
+        int minShared = Math.max(1, term.length() - 3 * maxTypos);
+        List<String> result = new ArrayList<>();
+
+        for (Map.Entry<String, Integer> entry : shared.entrySet()) {
+            String word = entry.getKey();
+            if (entry.getValue() >= minShared && !word.equals(term)
+                    && editDistance(term, word, maxTypos) <= maxTypos) {
+                result.add(word);
+                if (result.size() == MAX_EXPANSIONS) {
+                    break;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Levenshtein distance, it stops as soon as it's sure to be over the maximum
+     * @return distance, or max + 1 if it's greater than max
+     */
+    static int editDistance(String a, String b, int max) {
+        if (Math.abs(a.length() - b.length()) > max) {
+            return max + 1;
+        }
+
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+
+            if (rowMin > max) {
+                return max + 1;
+            }
+
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+
+        return previous[b.length()];
+    }
+
+    /**
+     * Lowercase words without accents ("Sala Reunión" -> [sala, reunion])
+     * Letters and digits of any script are word characters ("Зал 3" -> [зал, 3])
+     */
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase(Locale.ROOT);
+
+        List<String> words = new ArrayList<>();
+        for (String word : NOT_WORD.split(normalized)) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+
+        return words;
+    }
+
+    /**
+     * Trigrams of a word padded with "^" and "$", so short words have some too
+     */
+    private static List<String> trigrams(String word) {
+        String padded = "^" + word + "$";
+        List<String> result = new ArrayList<>(padded.length() - 2);
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            result.add(padded.substring(i, i + 3));
+        }
+
+        return result;
+    }
+
+    /**
+     * Sorted document numbers of a word. Documents are added in increasing order,
+     * so appending keeps it sorted and a repeated word in the same text is skipped
+     */
+    private static final class Postings {
+        private int[] docs = new int[4];
+        private int size;
+
+        void add(int doc) {
+            if (size > 0 && docs[size - 1] == doc) {
+                return;
+            }
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+            }
+            docs[size++] = doc;
+        }
+    }
+}
@@ -1,11 +1,17 @@
 package com.jacobo.reservation_system.services;
 
+import com.jacobo.reservation_system.models.dtos.ReservationsDtos.CreateRecurringReservationsInDTO;
+import com.jacobo.reservation_system.models.dtos.ReservationsDtos.CreateRecurringReservationsOutDTO;
 import com.jacobo.reservation_system.models.dtos.ReservationsDtos.CreateReservationsInDTO;
 import com.jacobo.reservation_system.models.dtos.ReservationsDtos.CreateReservationsOutDTO;
 import com.jacobo.reservation_system.models.dtos.ReservationsDtos.DeactivateReservationsOutDTO;
 import com.jacobo.reservation_system.models.dtos.ReservationsDtos.GetAllReservationsOutDTO;
+import com.jacobo.reservation_system.models.dtos.ReservationsDtos.ReservationsPageOutDTO;
+import com.jacobo.reservation_system.models.dtos.ReservationsDtos.WaitlistStatusOutDTO;
 
+import java.time.LocalDate;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Reservations service interface that defines methods to implement
@@ -13,5 +19,13 @@ import java.util.List;
 public interface IReservationsService {
     public CreateReservationsOutDTO createReservations(CreateReservationsInDTO inDto);
     public List<GetAllReservationsOutDTO> listReservations();
+    public void forEachReservation(Consumer<GetAllReservationsOutDTO> action);
+    public ReservationsPageOutDTO pageReservations(Long after, int limit);
     public DeactivateReservationsOutDTO deactivateReservation(Long id);
+    public CreateRecurringReservationsOutDTO createRecurringReservations(CreateRecurringReservationsInDTO inDto);
+    public void forEachOccurrence(Long id, LocalDate from, LocalDate to, Consumer<GetAllReservationsOutDTO> action);
+    public DeactivateReservationsOutDTO deactivateRecurringReservation(Long id);
+    public WaitlistStatusOutDTO getWaitlistStatus(Long id);
+    public DeactivateReservationsOutDTO cancelWaitlistEntry(Long id);
+    public WaitlistStatusOutDTO changeWaitlistPriority(Long id, int priority);
 }
@@ -4,8 +4,15 @@ import com.jacobo.reservation_system.models.dtos.ResourcesDtos.CreateResourcesIn
 import com.jacobo.reservation_system.models.dtos.ResourcesDtos.CreateResourcesOutDTO;
 import com.jacobo.reservation_system.models.dtos.ResourcesDtos.DeactivateResourcesOutDTO;
 import com.jacobo.reservation_system.models.dtos.ResourcesDtos.ListAllResourcesOutDTO;
+import com.jacobo.reservation_system.models.dtos.ResourcesDtos.ResourceUtilizationOutDTO;
+import com.jacobo.reservation_system.models.dtos.ResourcesDtos.SearchResourcesOutDTO;
+import com.jacobo.reservation_system.models.dtos.ResourcesDtos.UsageBackfillOutDTO;
 
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.LocalDate;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Resources service interface that defines methods to implement
@@ -13,5 +20,10 @@ import java.util.List;
 public interface IResourcesService {
     public CreateResourcesOutDTO createResource(CreateResourcesInDTO inDto);
     public List<ListAllResourcesOutDTO> listAllResources();
+    public void forEachResource(Consumer<ListAllResourcesOutDTO> action);
     public DeactivateResourcesOutDTO deactivateResource(Long id);
+    public List<SearchResourcesOutDTO> searchResources(String query, int limit);
+    public ResourceUtilizationOutDTO getUtilization(Long id, LocalDate from, LocalDate to, String period);
+    public UsageBackfillOutDTO startUsageBackfill();
+    public SseEmitter subscribeAvailability(List<Long> ids);
 }
@@ -3,6 +3,7 @@ package com.jacobo.reservation_system.services;
 import com.jacobo.reservation_system.models.dtos.UserDtos.*;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * User service interface that defines methods to implement
@@ -10,6 +11,8 @@ import java.util.List;
 public interface IUsersService {
     public GetUsersByIdOutDTO getUserById(Long id);
     public List<GetAllUsersOutDTO> getUsers();
+    public void forEachUser(Consumer<GetAllUsersOutDTO> action);
     public DeactivateUsersOutDTO deactivateUser(Long id);
     public DeleteUsersOutDTO deleteUser(Long id);
+    public UserPurgeStatusOutDTO getPurgeStatus(Long id);
 }
@@ -12,6 +12,7 @@ import java.time.Instant; // It represents a moment in time
 import java.util.Date; // Issue date and expiration
 import java.util.List; // List of roles
 import java.util.Map; // Map for custom claims
+import java.util.UUID; // Random token ID
 
 /**
  * Service for managing JWT tokens
@@ -56,6 +57,7 @@ public class JwtService {
         List<String> safeRoles = roles == null ? List.of() : roles; // Ensure that the role list is not null
         // Build the JWT token
         return Jwts.builder()
+                .id(UUID.randomUUID().toString()) // Token ID ("jti"), so a single token can be revoked
                 .subject(subject) // Set the subject (username)
                 .claims(Map.of("roles", safeRoles)) // Add the roles as a custom claim
                 .issuedAt(Date.from(now)) // Issue date
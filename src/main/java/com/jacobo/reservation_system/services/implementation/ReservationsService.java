@@ -1,5 +1,6 @@
 package com.jacobo.reservation_system.services.implementation;
 
+import com.jacobo.reservation_system.availability.AvailabilityStream;
 import com.jacobo.reservation_system.exceptions.AuthExceptions.UserDeactivationException;
 import com.jacobo.reservation_system.exceptions.AuthExceptions.UserNotFoundException;
 import com.jacobo.reservation_system.exceptions.MissFillingFieldsException;
@@ -7,44 +8,105 @@ import com.jacobo.reservation_system.exceptions.ReservationsExceptions.Reservati
 import com.jacobo.reservation_system.exceptions.ReservationsExceptions.ReservationDeniedException;
 import com.jacobo.reservation_system.exceptions.ReservationsExceptions.ReservationDuplicatedException;
 import com.jacobo.reservation_system.exceptions.ReservationsExceptions.ReservationNotFoundException;
+import com.jacobo.reservation_system.exceptions.ReservationsExceptions.RecurrenceNotValidException;
 import com.jacobo.reservation_system.exceptions.ResourcesExceptions.ResourceDeactivationException;
 import com.jacobo.reservation_system.exceptions.ResourcesExceptions.ResourceNotFoundException;
+import com.jacobo.reservation_system.models.dtos.ReservationsDtos.CreateRecurringReservationsInDTO;
+import com.jacobo.reservation_system.models.dtos.ReservationsDtos.CreateRecurringReservationsOutDTO;
 import com.jacobo.reservation_system.models.dtos.ReservationsDtos.CreateReservationsInDTO;
 import com.jacobo.reservation_system.models.dtos.ReservationsDtos.CreateReservationsOutDTO;
 import com.jacobo.reservation_system.models.dtos.ReservationsDtos.DeactivateReservationsOutDTO;
+import com.jacobo.reservation_system.models.dtos.ReservationsDtos.FreeWindowOutDTO;
 import com.jacobo.reservation_system.models.dtos.ReservationsDtos.GetAllReservationsOutDTO;
+import com.jacobo.reservation_system.models.dtos.ReservationsDtos.ReservationsPageOutDTO;
+import com.jacobo.reservation_system.models.dtos.ReservationsDtos.WaitlistStatusOutDTO;
+import com.jacobo.reservation_system.models.entities.RecurringReservations;
 import com.jacobo.reservation_system.models.entities.Reservations;
 import com.jacobo.reservation_system.models.entities.Resources;
 import com.jacobo.reservation_system.models.entities.Users;
+import com.jacobo.reservation_system.models.entities.WaitlistEntries;
+import com.jacobo.reservation_system.occupancy.OccupancyIndex;
+import com.jacobo.reservation_system.occupancy.ResourceOccupancy;
+import com.jacobo.reservation_system.profiling.ConflictCheckEvent;
+import com.jacobo.reservation_system.recurrence.Recurrence;
+import com.jacobo.reservation_system.repositories.RecurringReservationsRepository;
 import com.jacobo.reservation_system.repositories.ReservationsRepository;
 import com.jacobo.reservation_system.repositories.ResourcesRepository;
 import com.jacobo.reservation_system.repositories.UsersRepository;
+import com.jacobo.reservation_system.repositories.WaitlistEntriesRepository;
+import com.jacobo.reservation_system.rollup.UsageRollups;
 import com.jacobo.reservation_system.services.IReservationsService;
+import com.jacobo.reservation_system.sharding.ShardContext;
+import com.jacobo.reservation_system.sharding.ShardRouter;
+import com.jacobo.reservation_system.sharding.ShardTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Service where is all business logic
  * Reservations management
  * Implements his interface
+ * ---------------------------------------------------------------------------
+ * Bookings are sharded by resource (check @ShardRouter): a home transaction reads
+ * the resource and locks the user, then the booking runs in one transaction of the
+ * shard of the resource, nested in the home one. Transactions are always nested from
+ * home to a shard, never back: the shard transaction doesn't read home, and other
+ * shards are only read through @ShardTemplate, never through lazy associations
+ * Every booking change also updates the daily rollups of the resource in the same
+ * transaction (check @UsageRollups) and is sent to the subscribers of the resource
+ * after the commit (check @AvailabilityStream)
  */
 @Service
 public class ReservationsService implements IReservationsService {
     private final ReservationsRepository resRepo;
     private final UsersRepository userRepo;
     private final ResourcesRepository resourceRepo;
+    private final RecurringReservationsRepository recurringRepo;
+    private final WaitlistEntriesRepository waitlistRepo;
+    private final OccupancyIndex occupancyIndex;
+    private final UsageRollups rollups;
+    private final AvailabilityStream availability;
+    private final ShardRouter shardRouter;
+    private final ShardTemplate shards;
+    private final int waitlistMaxCandidates;
 
     public ReservationsService(ReservationsRepository resRepo, UsersRepository userRepo,
-        ResourcesRepository resourceRepo) {
+        ResourcesRepository resourceRepo, RecurringReservationsRepository recurringRepo,
+        WaitlistEntriesRepository waitlistRepo, OccupancyIndex occupancyIndex,
+        UsageRollups rollups, AvailabilityStream availability, ShardRouter shardRouter, ShardTemplate shards,
+        @Value("${waitlist.max-candidates:20}") int waitlistMaxCandidates) {
 
         this.resRepo = resRepo;
         this.userRepo = userRepo;
         this.resourceRepo = resourceRepo;
+        this.recurringRepo = recurringRepo;
+        this.waitlistRepo = waitlistRepo;
+        this.occupancyIndex = occupancyIndex;
+        this.rollups = rollups;
+        this.availability = availability;
+        this.shardRouter = shardRouter;
+        this.shards = shards;
+        this.waitlistMaxCandidates = waitlistMaxCandidates;
     }
 
     /**
@@ -62,11 +124,20 @@ public class ReservationsService implements IReservationsService {
         // Gets the username of the currently authenticated user
         String username = auth.getName();
 
-        Users user = userRepo.findByUsername(username).orElseThrow(
+        // Bookings of the same user run one at a time: this home transaction locks
+        // his row until the booking is committed in the shard of the resource
+        return shards.inShard(ShardContext.HOME, () -> createReservation(username, inDto));
+    }
+
+    /**
+     * Checks the user and the resource and books, inside the home transaction that locks the user
+     */
+    private CreateReservationsOutDTO createReservation(String username, CreateReservationsInDTO inDto) {
+        Users user = userRepo.findForBookingByUsername(username).orElseThrow(
                 () -> new UserNotFoundException("Not user authenticated")
         );
 
-        Resources resource = resourceRepo.findById(inDto.getResource_id()).
+        Resources resource = resourceRepo.findForBookingById(inDto.getResource_id()).
                 orElseThrow(() -> new ResourceNotFoundException("Enter an existing resource ID"));
 
         LocalDate new_start_date = inDto.getStart_date();
@@ -79,30 +150,54 @@ public class ReservationsService implements IReservationsService {
                     "creating");
         }
 
-        if (!resource.isActive()) {
-            throw new ResourceDeactivationException("Cannot associate a deactivated resource");
-        }
-
         if (!user.getActive()) {
             throw new UserDeactivationException("Cannot associate a deactivated user");
         }
 
-        // If there's a reservation with the same resource as the JSON body
-        // Looks for overlapped reservations
-        List<Reservations> reservations = resRepo.findOverlappingReservations(
-                resource.getId(), new_start_date, new_end_date
-        );
+        // If a user has more than one active reservation (single or recurring) throws an exception
+        if (hasActiveReservation(user.getId())) {
+            throw new ReservationDeniedException("You cannot have more than 1 active reservation");
+        }
+
+        boolean joinWaitlist = Boolean.TRUE.equals(inDto.getJoin_waitlist());
+        // A user can wait for only one range at a time, in any shard
+        boolean waiting = joinWaitlist
+                && inAnyShard(() -> waitlistRepo.countByUserIdAndStatus(user.getId(), "waiting") > 0);
+        int shard = shardRouter.shardForResource(resource.getId());
+
+        // The whole booking runs in one transaction of the shard of the resource
+        return shards.inShard(shard, () ->
+                book(user, resource, new_start_date, new_end_date, joinWaitlist, waiting));
+    }
 
-        if (!reservations.isEmpty()) {
-            throw new ReservationDuplicatedException("These dates overlap with an existing one");
+    /**
+     * Checks and saves a reservation, inside the transaction of the resource shard
+     */
+    private CreateReservationsOutDTO book(Users user, Resources resource, LocalDate new_start_date,
+                                          LocalDate new_end_date, boolean joinWaitlist, boolean waiting) {
+        // From here until the commit, no other booking of this resource can run
+        // The occupancy (single reservations and series) tells if there's a free unit
+        // without loading the overlapping rows (check @OccupancyIndex)
+        occupancyIndex.lock(resource.getId());
+        checkActive(resource);
+        ResourceOccupancy occupancy = occupancyIndex.get(resource.getId());
+
+        ConflictCheckEvent check = ConflictCheckEvent.started();
+        String conflict = capacityConflict(occupancy, resource, new_start_date, new_end_date);
+        check.finish(resource.getId(), new_start_date, new_end_date, 1, conflict == null);
+
+        if (conflict != null && !joinWaitlist) {
+            throw conflictWithFreeWindows(conflict, occupancy, resource, new_start_date, new_end_date);
         }
 
-        // Looks for number of active reservations from a user
-        long activeReservations = resRepo.countByUserIdAndStatus(user.getId(), "active");
+        // Occupied range: the request is queued instead of rejected,
+        // so the client polls its entry instead of retrying the creation
+        if (conflict != null) {
+            if (waiting) {
+                throw new ReservationDeniedException("You are already waiting for another reservation");
+            }
 
-        // If a user has more than one active reservation throws an exception
-        if (activeReservations > 0) {
-            throw new ReservationDeniedException("You cannot have more than 1 active reservation");
+            return joinWaitlist(user, resource, new_start_date, new_end_date);
         }
 
         Reservations reservation = new Reservations();
@@ -113,6 +208,9 @@ public class ReservationsService implements IReservationsService {
         reservation.setStatus("active");
 
         resRepo.save(reservation);
+        occupancy.add(new_start_date, new_end_date);
+        rollups.add(resource.getId(), new_start_date, new_end_date, 1);
+        availability.publish(resource.getId(), "booked", new_start_date, new_end_date);
 
         CreateReservationsOutDTO outDto = new CreateReservationsOutDTO();
         outDto.setMessage("Reservation created successfully. For more info, please check " +
@@ -123,15 +221,161 @@ public class ReservationsService implements IReservationsService {
         return outDto;
     }
 
+    /**
+     * Method that creates a recurring reservation (daily or weekly)
+     * The whole series is saved as one row, occurrences are never inserted
+     * Each occurrence is checked against the resource occupancy, so the cost
+     * depends on the number of occurrences, not on the bookings in the window
+     * @param inDto
+     * @return outDto
+     */
+    @Override
+    public CreateRecurringReservationsOutDTO createRecurringReservations(CreateRecurringReservationsInDTO inDto) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        String username = auth.getName();
+
+        // Same lock of the user as a single reservation
+        return shards.inShard(ShardContext.HOME, () -> createRecurringReservation(username, inDto));
+    }
+
+    private CreateRecurringReservationsOutDTO createRecurringReservation(String username,
+                                                                         CreateRecurringReservationsInDTO inDto) {
+        Users user = userRepo.findForBookingByUsername(username).orElseThrow(
+                () -> new UserNotFoundException("Not user authenticated")
+        );
+
+        LocalDate start_date = inDto.getStart_date();
+        LocalDate end_date = inDto.getEnd_date();
+
+        if (inDto.getResource_id() == null || start_date == null || end_date == null ||
+                inDto.getFrequency() == null || (inDto.getUntil() == null && inDto.getCount() == null)) {
+
+            throw new MissFillingFieldsException("You must complete all the fields before " +
+                    "creating (until or count is required)");
+        }
+
+        Resources resource = resourceRepo.findForBookingById(inDto.getResource_id()).
+                orElseThrow(() -> new ResourceNotFoundException("Enter an existing resource ID"));
+
+        int every = inDto.getEvery() == null ? 1 : inDto.getEvery();
+        long period = every < 1 ? -1 : Recurrence.periodDays(inDto.getFrequency(), every);
+
+        if (period < 0) {
+            throw new RecurrenceNotValidException("Frequency must be daily or weekly, every 1 or more");
+        }
+
+        if (!end_date.isAfter(start_date)) {
+            throw new RecurrenceNotValidException("end_date must be after start_date");
+        }
+
+        // Longer occurrences would overlap the next one of the same series
+        if (end_date.toEpochDay() - start_date.toEpochDay() > period) {
+            throw new RecurrenceNotValidException("Each occurrence must end before the next one starts");
+        }
+
+        long count = Recurrence.occurrences(inDto.getCount(), start_date, inDto.getUntil(), period);
+
+        if (count < 1 || count > Recurrence.MAX_OCCURRENCES) {
+            throw new RecurrenceNotValidException("A series must have between 1 and " +
+                    Recurrence.MAX_OCCURRENCES + " occurrences");
+        }
+
+        if (!user.getActive()) {
+            throw new UserDeactivationException("Cannot associate a deactivated user");
+        }
+
+        if (hasActiveReservation(user.getId())) {
+            throw new ReservationDeniedException("You cannot have more than 1 active reservation");
+        }
+
+        Recurrence rule = new Recurrence(start_date, end_date, period, count);
+        String frequency = inDto.getFrequency().toLowerCase();
+        int shard = shardRouter.shardForResource(resource.getId());
+
+        return shards.inShard(shard, () -> {
+            RecurringReservations series = new RecurringReservations();
+            series.setUser(user);
+            series.setResource(resource);
+            series.setStart_date(start_date);
+            series.setEnd_date(end_date);
+            series.setFrequency(frequency);
+            series.setEvery(every);
+
+            return bookSeries(series, rule);
+        });
+    }
+
+    /**
+     * Checks every occurrence and saves the series, inside the transaction of the resource shard
+     */
+    private CreateRecurringReservationsOutDTO bookSeries(RecurringReservations series, Recurrence rule) {
+        Resources resource = series.getResource();
+        LocalDate last_end_date = rule.lastEnd();
+
+        occupancyIndex.lock(resource.getId());
+        checkActive(resource);
+        ResourceOccupancy occupancy = occupancyIndex.get(resource.getId());
+
+        // First occurrence without a free unit, if any
+        ConflictCheckEvent check = ConflictCheckEvent.started();
+        LocalDate[] conflict = new LocalDate[1];
+        rule.forEachOccurrence((start, end) -> {
+            if (conflict[0] == null && capacityConflict(occupancy, resource, start, end) != null) {
+                conflict[0] = start;
+            }
+        });
+        check.finish(resource.getId(), series.getStart_date(), last_end_date, (int) rule.getCount(), conflict[0] == null);
+
+        if (conflict[0] != null) {
+            throw new ReservationDuplicatedException("The occurrence of " + conflict[0] +
+                    " overlaps an existing reservation");
+        }
+
+        series.setOccurrences((int) rule.getCount());
+        series.setLast_end_date(last_end_date);
+        series.setStatus("active");
+
+        recurringRepo.save(series);
+        rule.forEachOccurrence(occupancy::add);
+        rollups.addSeries(resource.getId(), rule, 1);
+        availability.publish(resource.getId(), "booked", series.getStart_date(), last_end_date);
+
+        CreateRecurringReservationsOutDTO outDto = new CreateRecurringReservationsOutDTO();
+        outDto.setId(series.getId());
+        outDto.setMessage("Recurring reservation created successfully. For more info, please check " +
+                "GETTERS endpoints");
+        outDto.setStatus("active");
+        outDto.setOccurrences((int) rule.getCount());
+        outDto.setLast_end_date(last_end_date);
+
+        return outDto;
+    }
+
     /**
      * Method that lists all reservations depending on the role
      * @return outDto list
      */
     @Override
     public List<GetAllReservationsOutDTO> listReservations() {
+        List<GetAllReservationsOutDTO> outDto = new ArrayList<>();
+        forEachReservation(outDto::add);
+
+        return outDto;
+    }
+
+    /**
+     * Method that passes the reservations visible for the authenticated user
+     * one by one to the action, while they are read from the database
+     * Used to stream big lists without building them in memory
+     * Shards are read one after the other, each one streamed in its own transaction
+     * @param action receives each reservation
+     */
+    @Override
+    public void forEachReservation(Consumer<GetAllReservationsOutDTO> action) {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
 
-        Users user = userRepo.findByUsername(auth.getName())
+        // Roles are needed below, so they are loaded in the same query
+        Users user = userRepo.findWithRoleByUsername(auth.getName())
                 .orElseThrow(() -> new UserNotFoundException("Not user authenticated"));
 
         // Returns true if it finds any role with ADMIN's name
@@ -139,35 +383,109 @@ public class ReservationsService implements IReservationsService {
         boolean isAdmin = user.getRole().stream()
                 .anyMatch(role -> role.getName().equals("ADMIN"));
 
-        List<Reservations> reservations;
+        shards.forEachShard(shard -> {
+            if (isAdmin) {
+                // ADMIN is able to see all reservations (active and inactive)
+                // Only ADMIN can see the associated user
+                try (Stream<GetAllReservationsOutDTO> reservations = resRepo.streamAll()) {
+                    reservations.forEach(action);
+                }
+
+                try (Stream<RecurringReservations> series = recurringRepo.streamAll()) {
+                    series.forEach(s -> expand(s, s.getUser().getId(), null, null, action));
+                }
+            } else {
+                // USER is able to see only his own reservations (active and inactive)
+                try (Stream<GetAllReservationsOutDTO> reservations = resRepo.streamByUserId(user.getId())) {
+                    reservations.forEach(dto -> {
+                        dto.setUser(null);
+                        action.accept(dto);
+                    });
+                }
+
+                try (Stream<RecurringReservations> series = recurringRepo.streamByUserId(user.getId())) {
+                    series.forEach(s -> expand(s, null, null, null, action));
+                }
+            }
+        });
+    }
 
-        if (isAdmin) {
-            // ADMIN is able to see all reservations (active and inactive)
-            reservations = resRepo.findAll();
-        } else {
-            // USER is able to see only his own reservations (active and inactive)
-            reservations = resRepo.findByUserId(user.getId());
-        }
+    /**
+     * Method that returns a page of reservations of every shard in ID order (ADMIN)
+     * Scatter-gather: each shard returns its next "limit" reservations after the ID
+     * (one index range scan), and the sorted pages are merged keeping the lowest IDs
+     * The cost depends on the page size and the number of shards, not on the offset
+     * Recurring reservations are listed by GET /reservations/
+     * @param after last ID of the previous page (null for the first one)
+     * @param limit page size (1 to 500)
+     * @return outDto
+     */
+    @Override
+    public ReservationsPageOutDTO pageReservations(Long after, int limit) {
+        int size = Math.max(1, Math.min(limit, 500));
+        long from = after == null ? 0 : after;
 
-        List<GetAllReservationsOutDTO> outDto = new ArrayList<>();
+        List<List<GetAllReservationsOutDTO>> pages = shards.scatter(
+                shard -> resRepo.findPageAfter(from, PageRequest.of(0, size)));
 
-        for (Reservations reservation : reservations) {
-            GetAllReservationsOutDTO dto = new GetAllReservationsOutDTO();
+        // K-way merge: the queue holds the shard whose next row has the lowest ID
+        int[] next = new int[pages.size()];
+        PriorityQueue<Integer> heads = new PriorityQueue<>(
+                Comparator.comparing((Integer shard) -> pages.get(shard).get(next[shard]).getId()));
 
-            if (isAdmin) {
-                // Only ADMIN can see the associated user
-                dto.setUser(reservation.getUser().getId());
+        for (int shard = 0; shard < pages.size(); shard++) {
+            if (!pages.get(shard).isEmpty()) {
+                heads.add(shard);
             }
-            dto.setResource(reservation.getResource().getId());
-            dto.setStart_date(reservation.getStart_date());
-            dto.setEnd_date(reservation.getEnd_date());
-            dto.setStatus(reservation.getStatus());
-            outDto.add(dto);
         }
 
+        List<GetAllReservationsOutDTO> items = new ArrayList<>();
+        while (items.size() < size && !heads.isEmpty()) {
+            int shard = heads.poll();
+            items.add(pages.get(shard).get(next[shard]++));
+
+            if (next[shard] < pages.get(shard).size()) {
+                heads.add(shard);
+            }
+        }
+
+        ReservationsPageOutDTO outDto = new ReservationsPageOutDTO();
+        outDto.setItems(items);
+        outDto.setNext_after(items.size() == size ? items.get(size - 1).getId() : null);
+
         return outDto;
     }
 
+    /**
+     * Method that passes the occurrences of a recurring reservation
+     * one by one to the action, generated from the rule
+     * USER can only read his own series
+     * @param id recurring reservation ID
+     * @param from optional range start
+     * @param to optional range end
+     * @param action receives each occurrence
+     */
+    @Override
+    public void forEachOccurrence(Long id, LocalDate from, LocalDate to,
+                                  Consumer<GetAllReservationsOutDTO> action) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+
+        Users user = userRepo.findWithRoleByUsername(auth.getName())
+                .orElseThrow(() -> new UserNotFoundException("Not user authenticated"));
+
+        boolean isAdmin = user.getRole().stream()
+                .anyMatch(role -> role.getName().equals("ADMIN"));
+
+        shards.readShard(shardRouter.shardForId(id), () -> {
+            RecurringReservations series = recurringRepo.findById(id)
+                    .filter(s -> isAdmin || s.getUser().getId().equals(user.getId()))
+                    .orElseThrow(() -> new ReservationNotFoundException("Enter an existing ID"));
+
+            expand(series, isAdmin ? series.getUser().getId() : null, from, to, action);
+            return null;
+        });
+    }
+
     /**
      * Method that deactivates a reservation
      * Firstly searches for the ID
@@ -176,20 +494,435 @@ public class ReservationsService implements IReservationsService {
      */
     @Override
     public DeactivateReservationsOutDTO deactivateReservation(Long id) {
-        Reservations reservation = resRepo.findById(id)
+        int shard = shardRouter.shardForId(id);
+
+        // Read only for the resource and the dates (user and resource are not loaded)
+        Reservations reservation = shards.readShard(shard, () -> resRepo.findById(id))
                 .orElseThrow(() -> new ReservationNotFoundException("Enter an existing ID"));
+        releasing(reservation.getResource().getId(), reservation.getStart_date(), reservation.getEnd_date(),
+                shard, waiters -> cancelReservation(reservation, waiters));
+
+        DeactivateReservationsOutDTO outDto = new DeactivateReservationsOutDTO();
+        outDto.setSuccess(true);
+        outDto.setMessage("Reservation canceled successfully");
+
+        return outDto;
+    }
+
+    private Reservations cancelReservation(Reservations reservation, Waiters waiters) {
+        Long resourceId = reservation.getResource().getId();
+        occupancyIndex.lock(resourceId);
 
-        if (!reservation.getStatus().equals("active")) {
+        // The status is checked by the update itself: of two cancellations of the
+        // same reservation, only the first one changes the row and frees the dates
+        if (resRepo.deactivateIfActive(reservation.getId()) == 0) {
             throw new ReservationAlreadyCanceled("Cannot re-deactivate a reservation");
         }
 
-        reservation.setStatus("inactive");
-        resRepo.save(reservation);
+        ResourceOccupancy occupancy = occupancyIndex.getIfLoaded(resourceId);
+        if (occupancy != null) {
+            occupancy.remove(reservation.getStart_date(), reservation.getEnd_date());
+        }
+        rollups.add(resourceId, reservation.getStart_date(), reservation.getEnd_date(), -1);
+        availability.publish(resourceId, "released", reservation.getStart_date(), reservation.getEnd_date());
+
+        // The freed range goes to the waitlist in the same transaction
+        promoteWaiters(resourceId, reservation.getStart_date(), reservation.getEnd_date(), waiters);
+
+        return reservation;
+    }
+
+    /**
+     * Method that deactivates a whole recurring reservation
+     * Only one row is updated, whatever the number of occurrences
+     * USER can only deactivate his own series, the ones of other users are not found
+     * @param id
+     * @return outDto
+     */
+    @Override
+    public DeactivateReservationsOutDTO deactivateRecurringReservation(Long id) {
+        Users user = authenticatedUser();
+        boolean isAdmin = user.getRole().stream()
+                .anyMatch(role -> role.getName().equals("ADMIN"));
+        int shard = shardRouter.shardForId(id);
+
+        RecurringReservations series = shards.readShard(shard, () -> recurringRepo.findById(id)
+                        .filter(s -> isAdmin || s.getUser().getId().equals(user.getId())))
+                .orElseThrow(() -> new ReservationNotFoundException("Enter an existing ID"));
+        releasing(series.getResource().getId(), series.getStart_date(), series.getLast_end_date(),
+                shard, waiters -> cancelSeries(series, waiters));
 
         DeactivateReservationsOutDTO outDto = new DeactivateReservationsOutDTO();
         outDto.setSuccess(true);
-        outDto.setMessage("Reservation canceled successfully");
+        outDto.setMessage("Recurring reservation canceled successfully");
 
         return outDto;
     }
+
+    private RecurringReservations cancelSeries(RecurringReservations series, Waiters waiters) {
+        Long resourceId = series.getResource().getId();
+        occupancyIndex.lock(resourceId);
+
+        if (recurringRepo.deactivateIfActive(series.getId()) == 0) {
+            throw new ReservationAlreadyCanceled("Cannot re-deactivate a reservation");
+        }
+
+        Recurrence rule = Recurrence.of(series);
+        ResourceOccupancy occupancy = occupancyIndex.getIfLoaded(resourceId);
+        if (occupancy != null) {
+            rule.forEachOccurrence(occupancy::remove);
+        }
+        rollups.addSeries(resourceId, rule, -1);
+        availability.publish(resourceId, "released", series.getStart_date(), series.getLast_end_date());
+
+        promoteWaiters(resourceId, series.getStart_date(), series.getLast_end_date(), waiters);
+
+        return series;
+    }
+
+    /**
+     * Method that shows the status of a waitlist entry, polled by the client
+     * USER can only read his own entries
+     * @param id waitlist entry ID
+     * @return outDto
+     */
+    @Override
+    public WaitlistStatusOutDTO getWaitlistStatus(Long id) {
+        Users user = authenticatedUser();
+
+        return shards.readShard(shardRouter.shardForId(id),
+                () -> waitlistStatus(findOwnWaitlistEntry(id, user)));
+    }
+
+    private WaitlistStatusOutDTO waitlistStatus(WaitlistEntries entry) {
+        WaitlistStatusOutDTO outDto = new WaitlistStatusOutDTO();
+        outDto.setId(entry.getId());
+        outDto.setResource(entry.getResource().getId());
+        outDto.setStart_date(entry.getStart_date());
+        outDto.setEnd_date(entry.getEnd_date());
+        outDto.setStatus(entry.getStatus());
+        outDto.setPriority(entry.getPriority());
+        outDto.setReservation_id(entry.getReservation_id());
+
+        if (entry.getStatus().equals("waiting")) {
+            outDto.setPosition(waitlistRepo.countAhead(
+                    entry.getResource().getId(), entry.getPriority(), entry.getId()));
+        }
+
+        return outDto;
+    }
+
+    /**
+     * Method that takes an entry out of the waitlist
+     * @param id waitlist entry ID
+     * @return outDto
+     */
+    @Override
+    public DeactivateReservationsOutDTO cancelWaitlistEntry(Long id) {
+        Users user = authenticatedUser();
+
+        shards.inShard(shardRouter.shardForId(id), () -> {
+            WaitlistEntries entry = findOwnWaitlistEntry(id, user);
+
+            if (!entry.getStatus().equals("waiting")) {
+                throw new ReservationAlreadyCanceled("Only waiting entries can be canceled");
+            }
+
+            entry.setStatus("canceled");
+            return waitlistRepo.save(entry);
+        });
+
+        DeactivateReservationsOutDTO outDto = new DeactivateReservationsOutDTO();
+        outDto.setSuccess(true);
+        outDto.setMessage("Waitlist entry canceled successfully");
+
+        return outDto;
+    }
+
+    /**
+     * Method that changes the priority of a waiting entry (ADMIN)
+     * Higher priorities are promoted first, same priorities in arrival order
+     * @param id waitlist entry ID
+     * @param priority new priority
+     * @return outDto
+     */
+    @Override
+    public WaitlistStatusOutDTO changeWaitlistPriority(Long id, int priority) {
+        return shards.inShard(shardRouter.shardForId(id), () -> {
+            WaitlistEntries entry = waitlistRepo.findById(id)
+                    .orElseThrow(() -> new ReservationNotFoundException("Enter an existing waitlist ID"));
+
+            if (!entry.getStatus().equals("waiting")) {
+                throw new ReservationAlreadyCanceled("Only waiting entries can change their priority");
+            }
+
+            entry.setPriority(priority);
+            waitlistRepo.save(entry);
+
+            return waitlistStatus(entry);
+        });
+    }
+
+    /**
+     * Queues a request for an occupied range, inside the transaction of the resource shard
+     */
+    private CreateReservationsOutDTO joinWaitlist(Users user, Resources resource,
+                                                  LocalDate start_date, LocalDate end_date) {
+        WaitlistEntries entry = new WaitlistEntries();
+        entry.setUser(user);
+        entry.setResource(resource);
+        entry.setStart_date(start_date);
+        entry.setEnd_date(end_date);
+        entry.setStatus("waiting");
+
+        waitlistRepo.save(entry);
+
+        CreateReservationsOutDTO outDto = new CreateReservationsOutDTO();
+        outDto.setMessage("These dates are occupied, you have been added to the waitlist. " +
+                "Check GET /reservations/waitlist/" + entry.getId());
+        outDto.setStatus("waitlisted");
+        outDto.setWaitlist_id(entry.getId());
+
+        return outDto;
+    }
+
+    /**
+     * Runs a cancellation that frees [start, end) of a resource in the transaction of its shard,
+     * with the waiters it may promote ready (check @promoteWaiters)
+     * Their users and the resource live in home: they are read before the shard transaction
+     * (check @ShardTemplate), not inside it nor through the lazy associations of the entries.
+     * The users are locked like in their own bookings by a home transaction that ends after
+     * the shard one, so none of them can book in between. Nothing is read from home,
+     * and no home transaction is opened, when nobody waits for the range
+     */
+    private <T> T releasing(Long resourceId, LocalDate start, LocalDate end, int shard, Function<Waiters, T> cancel) {
+        List<Long> userIds = shards.readShard(shard, () -> waitlistRepo.findWaitingUserIds(
+                resourceId, start, end, PageRequest.of(0, waitlistMaxCandidates)));
+
+        if (userIds.isEmpty()) {
+            return shards.inShard(shard, () -> cancel.apply(Waiters.NONE));
+        }
+
+        return shards.inShard(ShardContext.HOME, () -> {
+            Map<Long, Users> users = userRepo.findAllForBookingById(userIds).stream()
+                    .collect(Collectors.toMap(Users::getId, Function.identity()));
+            Resources resource = resourceRepo.findForBookingById(resourceId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Enter an existing resource ID"));
+            Waiters waiters = new Waiters(resource, users, activeInOtherShards(users.keySet(), shard));
+
+            return shards.inShard(shard, () -> cancel.apply(waiters));
+        });
+    }
+
+    /**
+     * Promotes the waiters of a resource whose range fits now that [start, end) is free
+     * The resource must be locked (check @OccupancyIndex)
+     * It runs in the cancellation transaction, so nobody else can take the freed slot
+     * in between. Waiters are checked in serving order and all of them that fit are promoted
+     * Waiters that can't be promoted yet (user with an active reservation) keep waiting,
+     * and so do the ones that joined after @releasing locked the users
+     */
+    private void promoteWaiters(Long resourceId, LocalDate start, LocalDate end, Waiters candidates) {
+        if (candidates.users().isEmpty()) {
+            return;
+        }
+
+        List<WaitlistEntries> waiters = waitlistRepo.findWaitersForUpdate(
+                resourceId, start, end, PageRequest.of(0, waitlistMaxCandidates));
+
+        Map<Long, Users> users = candidates.users();
+        Resources resource = candidates.resource();
+
+        // The resource is already locked by the cancellation
+        ResourceOccupancy occupancy = occupancyIndex.get(resourceId);
+        LocalDate today = LocalDate.now();
+
+        for (WaitlistEntries entry : waiters) {
+            if (entry.getStart_date().isBefore(today)) {
+                entry.setStatus("expired");
+                continue;
+            }
+
+            if (!resource.isActive()) {
+                return; // Nobody can be promoted on a deactivated resource
+            }
+
+            Users waiter = users.get(entry.getUser().getId());
+
+            // Active reservations of other shards were read by @releasing, the ones of this
+            // shard are read here: they include the changes of this transaction
+            if (waiter == null || !waiter.getActive() || candidates.activeElsewhere().contains(waiter.getId())
+                    || hasActiveReservationHere(waiter.getId())) {
+                continue;
+            }
+
+            if (capacityConflict(occupancy, resource, entry.getStart_date(), entry.getEnd_date()) != null) {
+                continue;
+            }
+
+            Reservations reservation = new Reservations();
+            reservation.setUser(entry.getUser());
+            reservation.setResource(entry.getResource());
+            reservation.setStart_date(entry.getStart_date());
+            reservation.setEnd_date(entry.getEnd_date());
+            reservation.setStatus("active");
+            resRepo.save(reservation);
+            occupancy.add(entry.getStart_date(), entry.getEnd_date());
+            rollups.add(resourceId, entry.getStart_date(), entry.getEnd_date(), 1);
+            availability.publish(resourceId, "booked", entry.getStart_date(), entry.getEnd_date());
+
+            entry.setStatus("promoted");
+            entry.setReservation_id(reservation.getId());
+        }
+    }
+
+    /**
+     * Resource and locked users read from home for a promotion, by user ID,
+     * and the users among them with an active reservation in another shard
+     */
+    private record Waiters(Resources resource, Map<Long, Users> users, Set<Long> activeElsewhere) {
+        static final Waiters NONE = new Waiters(null, Map.of(), Set.of());
+    }
+
+    /**
+     * Authenticated user with his roles, read from home
+     * Must be called before entering a shard transaction
+     */
+    private Users authenticatedUser() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+
+        return userRepo.findWithRoleByUsername(auth.getName())
+                .orElseThrow(() -> new UserNotFoundException("Not user authenticated"));
+    }
+
+    /**
+     * Waitlist entry of the user (any entry for ADMIN), in the current shard transaction
+     */
+    private WaitlistEntries findOwnWaitlistEntry(Long id, Users user) {
+        boolean isAdmin = user.getRole().stream()
+                .anyMatch(role -> role.getName().equals("ADMIN"));
+
+        return waitlistRepo.findById(id)
+                .filter(entry -> isAdmin || entry.getUser().getId().equals(user.getId()))
+                .orElseThrow(() -> new ReservationNotFoundException("Enter an existing waitlist ID"));
+    }
+
+    /**
+     * Status of the resource of a booking, checked once the resource is locked
+     * It was read by findForBookingById in the home transaction, whose shared lock stays
+     * until the booking is committed: the resource can't be deactivated in between,
+     * and a deactivation that ran before (with its cancellations) was already read
+     */
+    private void checkActive(Resources resource) {
+        if (!resource.isActive()) {
+            throw new ResourceDeactivationException("Cannot associate a deactivated resource");
+        }
+    }
+
+    /**
+     * Checks if the resource has a free unit on every day of the range
+     * @return message of the conflict, or null if the range can be booked
+     */
+    private String capacityConflict(ResourceOccupancy occupancy, Resources resource,
+                                    LocalDate start, LocalDate end) {
+        if (occupancy.maxOccupancy(start, end) < resource.getCapacity()) {
+            return null;
+        }
+
+        return resource.getCapacity() == 1
+                ? "These dates overlap with an existing one"
+                : "All the units of this resource are booked on some of these dates";
+    }
+
+    /**
+     * Conflict of a single reservation with the nearest free windows of the same length,
+     * before and after the requested start. They're searched in the occupancy of the
+     * locked resource (check @ResourceOccupancy), no query is sent
+     */
+    private ReservationDuplicatedException conflictWithFreeWindows(String conflict, ResourceOccupancy occupancy,
+                                                                   Resources resource, LocalDate start, LocalDate end) {
+        int days = (int) ChronoUnit.DAYS.between(start, end);
+        if (days <= 0 || resource.getCapacity() < 1) {
+            return new ReservationDuplicatedException(conflict);
+        }
+
+        // A window fits if one more unit can be booked on every day of it
+        int maxLevel = resource.getCapacity() - 1;
+        LocalDate before = occupancy.previousFree(start, LocalDate.now(), days, maxLevel);
+        LocalDate after = occupancy.nextFree(start.plusDays(1), days, maxLevel);
+
+        return new ReservationDuplicatedException(conflict,
+                before == null ? null : new FreeWindowOutDTO(before, before.plusDays(days)),
+                new FreeWindowOutDTO(after, after.plusDays(days)));
+    }
+
+    /**
+     * A user can have only one active reservation, single or recurring, in any shard
+     * Checked in the home transaction that locks the user: another booking or promotion
+     * of the same user waits for that lock, so it can't pass the check at the same time
+     */
+    private boolean hasActiveReservation(Long userId) {
+        return inAnyShard(() -> hasActiveReservationHere(userId));
+    }
+
+    /**
+     * Same check in the shard of the current transaction only
+     * The second count only runs when the first one is 0
+     */
+    private boolean hasActiveReservationHere(Long userId) {
+        return resRepo.countByUserIdAndStatus(userId, "active") > 0
+                || recurringRepo.countByUserIdAndStatus(userId, "active") > 0;
+    }
+
+    /**
+     * Users of the list with an active reservation or series in a shard other than this one,
+     * two queries per shard for all of them
+     */
+    private Set<Long> activeInOtherShards(Collection<Long> userIds, int shard) {
+        Set<Long> active = new HashSet<>();
+
+        for (int other = 0; other < shards.count(); other++) {
+            if (other != shard) {
+                shards.readShard(other, () -> {
+                    active.addAll(resRepo.findUserIdsWithStatus(userIds, "active"));
+                    return active.addAll(recurringRepo.findUserIdsWithStatus(userIds, "active"));
+                });
+            }
+        }
+
+        return active;
+    }
+
+    /**
+     * Runs a check in every shard while it's false, each one in its own read-only
+     * transaction (home in the current one, check @ShardTemplate)
+     */
+    private boolean inAnyShard(Supplier<Boolean> check) {
+        for (int shard = 0; shard < shards.count(); shard++) {
+            if (shards.readShard(shard, check)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Generates the occurrences of a series as OutDTOs, without storing them
+     * @param userId shown user (null for USER listings)
+     */
+    private void expand(RecurringReservations series, Long userId, LocalDate from, LocalDate to,
+                        Consumer<GetAllReservationsOutDTO> action) {
+        Recurrence rule = Recurrence.of(series);
+        Long resourceId = series.getResource().getId();
+
+        BiConsumer<LocalDate, LocalDate> emit = (start, end) -> action.accept(
+                new GetAllReservationsOutDTO(null, userId, resourceId, start, end, series.getStatus(), series.getId()));
+
+        if (from == null && to == null) {
+            rule.forEachOccurrence(emit);
+        } else {
+            rule.forEachOccurrence(from == null ? LocalDate.MIN : from, to == null ? LocalDate.MAX : to, emit);
+        }
+    }
 }
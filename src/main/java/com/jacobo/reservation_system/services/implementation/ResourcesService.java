@@ -1,5 +1,6 @@
 package com.jacobo.reservation_system.services.implementation;
 
+import com.jacobo.reservation_system.availability.AvailabilityStream;
 import com.jacobo.reservation_system.exceptions.AuthExceptions.UserNotFoundException;
 import com.jacobo.reservation_system.exceptions.MissFillingFieldsException;
 import com.jacobo.reservation_system.exceptions.ResourcesExceptions.ResourceAlreadyCreatedException;
@@ -9,18 +10,43 @@ import com.jacobo.reservation_system.models.dtos.ResourcesDtos.CreateResourcesIn
 import com.jacobo.reservation_system.models.dtos.ResourcesDtos.CreateResourcesOutDTO;
 import com.jacobo.reservation_system.models.dtos.ResourcesDtos.DeactivateResourcesOutDTO;
 import com.jacobo.reservation_system.models.dtos.ResourcesDtos.ListAllResourcesOutDTO;
+import com.jacobo.reservation_system.models.dtos.ResourcesDtos.ResourceUtilizationOutDTO;
+import com.jacobo.reservation_system.models.dtos.ResourcesDtos.SearchResourcesOutDTO;
+import com.jacobo.reservation_system.models.dtos.ResourcesDtos.UsageBackfillOutDTO;
+import com.jacobo.reservation_system.models.dtos.ResourcesDtos.UtilizationPeriodOutDTO;
 import com.jacobo.reservation_system.models.entities.Resources;
 import com.jacobo.reservation_system.models.entities.Roles;
 import com.jacobo.reservation_system.models.entities.Users;
+import com.jacobo.reservation_system.occupancy.OccupancyIndex;
+import com.jacobo.reservation_system.repositories.RecurringReservationsRepository;
+import com.jacobo.reservation_system.repositories.ReservationsRepository;
+import com.jacobo.reservation_system.repositories.ResourceUsageDailyRepository;
 import com.jacobo.reservation_system.repositories.ResourcesRepository;
 import com.jacobo.reservation_system.repositories.UsersRepository;
+import com.jacobo.reservation_system.repositories.WaitlistEntriesRepository;
+import com.jacobo.reservation_system.rollup.UsageBackfill;
+import com.jacobo.reservation_system.rollup.UsageRollups;
+import com.jacobo.reservation_system.search.ResourceSearchIndex;
 import com.jacobo.reservation_system.services.IResourcesService;
+import com.jacobo.reservation_system.sharding.ShardContext;
+import com.jacobo.reservation_system.sharding.ShardRouter;
+import com.jacobo.reservation_system.sharding.ShardTemplate;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Service where is all business logic
@@ -31,12 +57,50 @@ import java.util.List;
 public class ResourcesService implements IResourcesService {
     private final ResourcesRepository resourcesRepo;
     private final UsersRepository usersRepo;
+    private final ResourceSearchIndex searchIndex;
+    private final ReservationsRepository resRepo;
+    private final RecurringReservationsRepository recurringRepo;
+    private final WaitlistEntriesRepository waitlistRepo;
+    private final OccupancyIndex occupancyIndex;
+    private final UsageRollups rollups;
+    private final UsageBackfill backfill;
+    private final ResourceUsageDailyRepository usageRepo;
+    private final AvailabilityStream availability;
+    private final ShardRouter shardRouter;
+    private final ShardTemplate shards;
+
+    /**
+     * Longest utilization report, in days
+     */
+    private static final long MAX_UTILIZATION_DAYS = 3660;
 
     public ResourcesService (ResourcesRepository resourcesRepo,
-                             UsersRepository usersRepo) {
+                             UsersRepository usersRepo,
+                             ResourceSearchIndex searchIndex,
+                             ReservationsRepository resRepo,
+                             RecurringReservationsRepository recurringRepo,
+                             WaitlistEntriesRepository waitlistRepo,
+                             OccupancyIndex occupancyIndex,
+                             UsageRollups rollups,
+                             UsageBackfill backfill,
+                             ResourceUsageDailyRepository usageRepo,
+                             AvailabilityStream availability,
+                             ShardRouter shardRouter,
+                             ShardTemplate shards) {
 
         this.usersRepo = usersRepo;
         this.resourcesRepo = resourcesRepo;
+        this.searchIndex = searchIndex;
+        this.resRepo = resRepo;
+        this.recurringRepo = recurringRepo;
+        this.waitlistRepo = waitlistRepo;
+        this.occupancyIndex = occupancyIndex;
+        this.rollups = rollups;
+        this.backfill = backfill;
+        this.usageRepo = usageRepo;
+        this.availability = availability;
+        this.shardRouter = shardRouter;
+        this.shards = shards;
     }
 
     /**
@@ -52,6 +116,11 @@ public class ResourcesService implements IResourcesService {
             throw new MissFillingFieldsException("Complete the creation info");
         }
 
+        int capacity = inDto.getCapacity() == null ? 1 : inDto.getCapacity();
+        if (capacity < 1) {
+            throw new MissFillingFieldsException("Capacity must be 1 or more");
+        }
+
         if (resourcesRepo.findByName(inDto.getName()).isPresent()) {
             throw new ResourceAlreadyCreatedException("Enter a different name");
         }
@@ -60,12 +129,15 @@ public class ResourcesService implements IResourcesService {
         resource.setName(inDto.getName());
         resource.setDescription(inDto.getDescription());
         resource.setActive(true);
+        resource.setCapacity(capacity);
 
         resourcesRepo.save(resource);
+        searchIndex.add(resource);
 
         CreateResourcesOutDTO outDto = new CreateResourcesOutDTO();
         outDto.setName(resource.getName());
         outDto.setDescription(resource.getDescription());
+        outDto.setCapacity(resource.getCapacity());
 
         return outDto;
     }
@@ -79,83 +151,221 @@ public class ResourcesService implements IResourcesService {
      * @return List<ListAllResourcesOutDto> outDto </ListAllResourcesOutDto>
      */
     @Override
+    @Transactional(readOnly = true)
     public List<ListAllResourcesOutDTO> listAllResources() {
-        List<Resources> resource = resourcesRepo.findAll();
-        List<Resources> adminRes = new ArrayList<>();
-        List<Resources> userRes = new ArrayList<>();
-
-        for (Resources res: resource) {
-            if (res.isActive()) {
-                userRes.add(res);
-                adminRes.add(res);
-            }
-            else {
-                adminRes.add(res);
-            }
-        }
+        List<ListAllResourcesOutDTO> outDto = new ArrayList<>();
+        forEachResource(outDto::add);
 
+        return outDto;
+    }
+
+    /**
+     * Method that passes the resources visible for the authenticated user
+     * one by one to the action, while they are read from the database
+     * Same role rules as listAllResources()
+     * @param action receives each resource
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void forEachResource(Consumer<ListAllResourcesOutDTO> action) {
         // Retrieves the current authentication object from Spring Security context
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
 
         // Gets the username of the currently authenticated user
         String username = auth.getName();
 
-        Users user = usersRepo.findByUsername(username).orElseThrow(
+        // Roles are needed below, so they are loaded in the same query
+        Users user = usersRepo.findWithRoleByUsername(username).orElseThrow(
                 () -> new UserNotFoundException("Enter an existing username")
         );
 
-        List<ListAllResourcesOutDTO> outDto = new ArrayList<>();
-
         for (Roles role: user.getRole()) {
             if (role.getName().equals("ADMIN")) {
-
-                for (Resources res: adminRes) {
-                    ListAllResourcesOutDTO dto = new ListAllResourcesOutDTO();
-                    dto.setName(res.getName());
-                    dto.setDescription(res.getDescription());
-
-                    outDto.add(dto);
+                // ADMIN lists active and inactive resources
+                try (Stream<ListAllResourcesOutDTO> resources = resourcesRepo.streamAll()) {
+                    resources.forEach(action);
                 }
             }
             else if (role.getName().equals("USER")) {
-
-                for (Resources res: userRes) {
-                    ListAllResourcesOutDTO dto = new ListAllResourcesOutDTO();
-                    dto.setName(res.getName());
-                    dto.setDescription(res.getDescription());
-
-                    outDto.add(dto);
+                // USER lists only active resources
+                try (Stream<ListAllResourcesOutDTO> resources = resourcesRepo.streamActive()) {
+                    resources.forEach(action);
                 }
             }
         }
-
-        return outDto;
     }
 
     /**
      * Method that deactivates the resource state
+     * Its unfinished reservations and series are canceled and its waiters taken out
+     * of the waitlist, with one update per table instead of row by row
+     * The status update and the cancellations run in one transaction when the bookings
+     * live in home. Otherwise the cancellations run in the shard transaction nested in
+     * the home one, which commits last: if they fail, the resource stays active
      * @param id
      * @return outDto
      */
     @Override
     public DeactivateResourcesOutDTO deactivateResource(Long id) {
-        Resources resource = resourcesRepo.findById(id).orElseThrow(
-                () -> new ResourceNotFoundException("Enter an existing ID")
-        );
+        int canceled = shards.inShard(ShardContext.HOME, () -> deactivateWithBookings(id));
+
+        searchIndex.setActive(id, false);
 
         DeactivateResourcesOutDTO dto = new DeactivateResourcesOutDTO();
+        dto.setSuccess(true);
+        dto.setMessage("Resource deactivated successfully");
+        dto.setCanceled_reservations(canceled);
+
+        return dto;
+    }
+
+    /**
+     * Deactivates the resource and cancels its bookings, inside the home transaction
+     * @return number of canceled reservations and series
+     */
+    private int deactivateWithBookings(Long id) {
+        // The row count tells if it was active, the row is only read to tell 404 from 409
+        // The update locks the row until the commit: bookings in progress (shared lock of
+        // findForBookingById) end first, and new ones wait and then read it deactivated
+        if (resourcesRepo.deactivateIfActive(id) == 0) {
+            if (!resourcesRepo.existsById(id)) {
+                throw new ResourceNotFoundException("Enter an existing ID");
+            }
 
-        if (!resource.isActive()) {
             throw new ResourceDeactivationException("Resource is already deactivated");
         }
 
-        resource.setActive(false);
-        resourcesRepo.save(resource);
+        // Bookings of the resource live in one shard. The resource is locked,
+        // so no booking can run between the cancellation and the occupancy drop
+        LocalDate today = LocalDate.now();
+        return shards.inShard(shardRouter.shardForResource(id), () -> {
+            occupancyIndex.lock(id);
 
-        dto.setSuccess(true);
-        dto.setMessage("Resource deactivated successfully");
+            int reservations = resRepo.cancelUnfinishedByResource(id, today)
+                    + recurringRepo.cancelUnfinishedByResource(id, today);
+            waitlistRepo.cancelWaitingByResource(id);
 
-        return dto;
+            occupancyIndex.evict(id);
+            rollups.rebuild(id);
+            availability.publish(id, "deactivated", null, null);
+            return reservations;
+        });
+    }
+
+    /**
+     * Method that reports the utilization of a resource per day, week or month
+     * Read from the daily rollups (check @UsageRollups): one primary key range scan
+     * of at most one row per day, the reservations table is not read
+     * @param id resource ID
+     * @param from first day
+     * @param to day after the last one
+     * @param period day, week or month
+     * @return outDto
+     */
+    @Override
+    public ResourceUtilizationOutDTO getUtilization(Long id, LocalDate from, LocalDate to, String period) {
+        if (from == null || to == null || !to.isAfter(from)) {
+            throw new MissFillingFieldsException("Enter a range where to is after from");
+        }
+
+        if (ChronoUnit.DAYS.between(from, to) > MAX_UTILIZATION_DAYS) {
+            throw new MissFillingFieldsException("The range can't be longer than " + MAX_UTILIZATION_DAYS + " days");
+        }
+
+        String unit = period == null ? "day" : period.toLowerCase();
+        if (!unit.equals("day") && !unit.equals("week") && !unit.equals("month")) {
+            throw new MissFillingFieldsException("Period must be day, week or month");
+        }
+
+        Resources resource = resourcesRepo.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Enter an existing ID"));
+
+        Map<LocalDate, Integer> booked = new HashMap<>();
+        for (Object[] row : shards.readShard(shardRouter.shardForResource(id), () -> usageRepo.findRange(id, from, to))) {
+            booked.put((LocalDate) row[0], (Integer) row[1]);
+        }
+
+        List<UtilizationPeriodOutDTO> periods = new ArrayList<>();
+        LocalDate start = from;
+
+        while (start.isBefore(to)) {
+            LocalDate end = switch (unit) {
+                case "week" -> start.with(TemporalAdjusters.next(DayOfWeek.MONDAY));
+                case "month" -> start.with(TemporalAdjusters.firstDayOfNextMonth());
+                default -> start.plusDays(1);
+            };
+            if (end.isAfter(to)) {
+                end = to;
+            }
+
+            long units = 0;
+            for (LocalDate day = start; day.isBefore(end); day = day.plusDays(1)) {
+                units += booked.getOrDefault(day, 0);
+            }
+            long available = (long) resource.getCapacity() * ChronoUnit.DAYS.between(start, end);
+
+            periods.add(new UtilizationPeriodOutDTO(start, end, units, available,
+                    available == 0 ? 0 : (double) units / available));
+            start = end;
+        }
+
+        ResourceUtilizationOutDTO outDto = new ResourceUtilizationOutDTO();
+        outDto.setResource_id(id);
+        outDto.setCapacity(resource.getCapacity());
+        outDto.setPeriod(unit);
+        outDto.setFrom(from);
+        outDto.setTo(to);
+        outDto.setPeriods(periods);
+
+        return outDto;
+    }
+
+    /**
+     * Method that starts the rebuild of every daily rollup in the background
+     * @return outDto
+     */
+    @Override
+    public UsageBackfillOutDTO startUsageBackfill() {
+        UsageBackfillOutDTO outDto = new UsageBackfillOutDTO();
+        outDto.setStarted(backfill.start());
+        outDto.setMessage(outDto.isStarted()
+                ? "Rollup backfill started, its result is logged when it finishes"
+                : "A rollup backfill is already running");
+
+        return outDto;
     }
 
+    /**
+     * Method that opens a stream of the availability changes of some resources
+     * No query is sent: the stream is fed by the booking code (check @AvailabilityStream)
+     * @param ids resources to follow
+     * @return emitter of the stream
+     */
+    @Override
+    public SseEmitter subscribeAvailability(List<Long> ids) {
+        return availability.subscribe(ids);
+    }
+
+    /**
+     * Method that searches resources by name and description
+     * Answered from memory (check @ResourceSearchIndex), no query is sent to the database
+     * The role is read from the token authorities for the same reason:
+     * ADMIN finds active and inactive resources, USER only active ones
+     * @param query words to look for (prefixes and small typos are accepted)
+     * @param limit maximum results
+     * @return results, best first
+     */
+    @Override
+    public List<SearchResourcesOutDTO> searchResources(String query, int limit) {
+        if (query == null || query.isBlank()) {
+            throw new MissFillingFieldsException("Enter some words to search");
+        }
+
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+
+        boolean isAdmin = auth.getAuthorities().stream()
+                .anyMatch(authority -> authority.getAuthority().equals("ROLE_ADMIN"));
+
+        return searchIndex.search(query, isAdmin, Math.min(Math.max(limit, 1), 100));
+    }
 }
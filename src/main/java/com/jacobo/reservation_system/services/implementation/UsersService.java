@@ -1,15 +1,35 @@
 package com.jacobo.reservation_system.services.implementation;
 
+import com.jacobo.reservation_system.availability.AvailabilityStream;
 import com.jacobo.reservation_system.exceptions.AuthExceptions.UserDeactivationException;
 import com.jacobo.reservation_system.exceptions.AuthExceptions.UserNotFoundException;
 import com.jacobo.reservation_system.models.dtos.UserDtos.*;
 import com.jacobo.reservation_system.models.entities.Roles;
+import com.jacobo.reservation_system.models.entities.UserPurges;
 import com.jacobo.reservation_system.models.entities.Users;
+import com.jacobo.reservation_system.occupancy.OccupancyIndex;
+import com.jacobo.reservation_system.purge.UserPurger;
+import com.jacobo.reservation_system.repositories.RecurringReservationsRepository;
+import com.jacobo.reservation_system.repositories.ReservationsRepository;
+import com.jacobo.reservation_system.repositories.UserPurgesRepository;
 import com.jacobo.reservation_system.repositories.UsersRepository;
+import com.jacobo.reservation_system.repositories.WaitlistEntriesRepository;
+import com.jacobo.reservation_system.revocation.TokenRevocations;
+import com.jacobo.reservation_system.rollup.UsageRollups;
 import com.jacobo.reservation_system.services.IUsersService;
+import com.jacobo.reservation_system.sharding.ShardContext;
+import com.jacobo.reservation_system.sharding.ShardTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Service where is all business logic
@@ -22,14 +42,49 @@ public class UsersService implements IUsersService {
      * It brings JPA methods
      */
     private final UsersRepository userRepo;
+    private final ReservationsRepository resRepo;
+    private final RecurringReservationsRepository recurringRepo;
+    private final WaitlistEntriesRepository waitlistRepo;
+    private final OccupancyIndex occupancyIndex;
+    private final UsageRollups rollups;
+    private final AvailabilityStream availability;
+    private final ShardTemplate shards;
+    private final UserPurger userPurger;
+    private final UserPurgesRepository purgeRepo;
+    private final TokenRevocations revocations;
 
     /**
      * Injection of userRepo
      * Access to the methods
      * @param userRepo
+     * @param resRepo
+     * @param recurringRepo
+     * @param waitlistRepo
+     * @param occupancyIndex
+     * @param rollups
+     * @param availability
+     * @param shards
+     * @param userPurger
+     * @param purgeRepo
+     * @param revocations
      */
-    public UsersService(UsersRepository userRepo) {
+    public UsersService(UsersRepository userRepo, ReservationsRepository resRepo,
+                        RecurringReservationsRepository recurringRepo, WaitlistEntriesRepository waitlistRepo,
+                        OccupancyIndex occupancyIndex, UsageRollups rollups,
+                        AvailabilityStream availability, ShardTemplate shards,
+                        UserPurger userPurger, UserPurgesRepository purgeRepo,
+                        TokenRevocations revocations) {
         this.userRepo = userRepo;
+        this.resRepo = resRepo;
+        this.recurringRepo = recurringRepo;
+        this.waitlistRepo = waitlistRepo;
+        this.occupancyIndex = occupancyIndex;
+        this.rollups = rollups;
+        this.availability = availability;
+        this.shards = shards;
+        this.userPurger = userPurger;
+        this.purgeRepo = purgeRepo;
+        this.revocations = revocations;
     }
 
     /**
@@ -38,7 +93,8 @@ public class UsersService implements IUsersService {
      */
     @Override
     public GetUsersByIdOutDTO getUserById(Long id) {
-        Users user = userRepo.findById(id).orElseThrow(
+        // Roles are returned in the DTO, so they are loaded in the same query
+        Users user = userRepo.findWithRoleById(id).orElseThrow(
                 () -> new UserNotFoundException("Enter an existing id")
         );
 
@@ -60,26 +116,52 @@ public class UsersService implements IUsersService {
      * @return List of users
      */
     @Override
+    @Transactional(readOnly = true)
     public List<GetAllUsersOutDTO> getUsers() {
-        List<Users> entity = userRepo.findAll();
+        List<GetAllUsersOutDTO> outDto = new ArrayList<>();
+        forEachUser(outDto::add);
 
-        return entity.stream().map(
-                users -> {
-                    GetAllUsersOutDTO dto = new GetAllUsersOutDTO();
+        return outDto;
+    }
+
+    /**
+     * Method that passes all users one by one to the action,
+     * while they are read from the database
+     * Rows come ordered by user ID with one row per role,
+     * so a user is complete when the next ID appears
+     * @param action receives each user
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void forEachUser(Consumer<GetAllUsersOutDTO> action) {
+        try (Stream<Object[]> rows = userRepo.streamWithRoleNames()) {
+            GetAllUsersOutDTO current = null;
 
-                    dto.setId(users.getId());
-                    dto.setUsername(users.getUsername());
-                    dto.setRole(
-                            users.getRole().stream().map(
-                                    Roles::getName
-                            ).toList()
-                    );
+            for (Iterator<Object[]> it = rows.iterator(); it.hasNext(); ) {
+                Object[] row = it.next();
+                Long id = (Long) row[0];
 
-                    dto.setActive(users.getActive());
+                if (current == null || !current.getId().equals(id)) {
+                    if (current != null) {
+                        action.accept(current);
+                    }
 
-                    return dto;
+                    current = new GetAllUsersOutDTO();
+                    current.setId(id);
+                    current.setUsername((String) row[1]);
+                    current.setActive((Boolean) row[2]);
+                    current.setRole(new ArrayList<>());
                 }
-        ).toList();
+
+                if (row[3] != null) {
+                    current.getRole().add((String) row[3]);
+                }
+            }
+
+            if (current != null) {
+                action.accept(current);
+            }
+        }
     }
 
     /**
@@ -89,41 +171,138 @@ public class UsersService implements IUsersService {
      */
     @Override
     public DeactivateUsersOutDTO deactivateUser(Long id) {
-        Users user = userRepo.findById(id).
-                orElseThrow(() -> new UserNotFoundException("Enter an existing ID"));
+        int canceled = shards.inShard(ShardContext.HOME, () -> deactivateWithBookings(id));
 
         DeactivateUsersOutDTO outDto = new DeactivateUsersOutDTO();
+        outDto.setMessage("User deactivated successfully");
+        outDto.setSuccess(true);
+        outDto.setCanceled_reservations(canceled);
+
+        return outDto;
+    }
+
+    /**
+     * Deactivates the user, cancels his bookings and revokes his tokens, inside the home transaction
+     * @return number of canceled reservations and series
+     */
+    private int deactivateWithBookings(Long id) {
+        // The row count tells if he was active, the row is only read to tell 404 from 409
+        if (userRepo.deactivateIfActive(id) == 0) {
+            if (!userRepo.existsById(id)) {
+                throw new UserNotFoundException("Enter an existing ID");
+            }
 
-        if (!user.getActive()) {
             throw new UserDeactivationException("User is already deactivated");
         }
 
-        user.setActive(false);
-        userRepo.save(user);
+        int canceled = cancelBookings(id);
 
-        outDto.setMessage("User deactivated successfully");
-        outDto.setSuccess(true);
+        // Otherwise his tokens would keep working until they expire
+        revokeTokens(id);
 
-        return outDto;
+        return canceled;
     }
 
     /**
      * Method that deletes a user searching for his id
+     * The user is deactivated and marked as pending purge right away, and his rows
+     * are deleted later in the background (check @UserPurger)
+     * Asking again for the same user only returns the state of his purge
      * @param id
      * @return outDTO
      */
     @Override
     public DeleteUsersOutDTO deleteUser(Long id) {
-        Users user = userRepo.findById(id).
-                orElseThrow(() -> new UserNotFoundException("Enter an existing ID"));
+        // The mark and the cancellation are committed together: a failed cascade leaves him as he was
+        UserPurges purge = shards.inShard(ShardContext.HOME, () -> {
+            UserPurges requested = userPurger.request(id);
 
-        userRepo.delete(user);
+            if (requested == null) {
+                throw new UserNotFoundException("Enter an existing ID");
+            }
+
+            // Until the purge reaches them, his bookings must not keep any date occupied
+            cancelBookings(id);
+            revokeTokens(id);
+
+            return requested;
+        });
 
         DeleteUsersOutDTO outDTO = new DeleteUsersOutDTO();
         outDTO.setSuccess(true);
-        outDTO.setMessage("User deleted successfully");
+        outDTO.setMessage(purge.getStatus().equals("done")
+                ? "User already deleted"
+                : "User deletion scheduled, check GET /users/purge/" + id);
+        outDTO.setPurge_status(purge.getStatus());
 
         return outDTO;
     }
 
+    /**
+     * Method that shows the progress of a user deletion
+     * @param id deleted user ID
+     * @return outDto
+     */
+    @Override
+    public UserPurgeStatusOutDTO getPurgeStatus(Long id) {
+        UserPurges purge = purgeRepo.findById(id)
+                .orElseThrow(() -> new UserNotFoundException("No deletion was requested for this user"));
+
+        UserPurgeStatusOutDTO outDto = new UserPurgeStatusOutDTO();
+        outDto.setUser_id(purge.getUser_id());
+        outDto.setStatus(purge.getStatus());
+        outDto.setPhase(purge.getPhase());
+        outDto.setShard(purge.getShard());
+        outDto.setDeleted_rows(purge.getDeleted_rows());
+        outDto.setRequested_at(purge.getRequested_at());
+        outDto.setFinished_at(purge.getFinished_at());
+
+        return outDto;
+    }
+
+    /**
+     * Refuses every token issued to the user until now
+     * Nothing to do if his row was already purged: that was done when it was requested
+     */
+    private void revokeTokens(Long id) {
+        userRepo.findUsernameById(id).ifPresent(revocations::revokeUser);
+    }
+
+    /**
+     * Cancels the unfinished reservations and series of a user and takes his waitlist
+     * entries out, with one update per table in each shard instead of row by row
+     * The resources he booked are locked first (in ID order), and their occupancies
+     * and daily rollups are rebuilt after the updates
+     * Called in the home transaction: home is updated in it and every other shard in a
+     * nested one, so a failure rolls back the deactivation too
+     * @return number of canceled reservations and series
+     */
+    private int cancelBookings(Long id) {
+        LocalDate today = LocalDate.now();
+        int canceled = 0;
+
+        for (int shard = ShardContext.HOME; shard < shards.count(); shard++) {
+            canceled += shards.inShard(shard, () -> {
+                Set<Long> resourceIds = new TreeSet<>(resRepo.findResourceIdsOfUnfinishedByUser(id, today));
+                resourceIds.addAll(recurringRepo.findResourceIdsOfUnfinishedByUser(id, today));
+                occupancyIndex.lock(resourceIds);
+
+                waitlistRepo.cancelWaitingByUser(id);
+                int reservations = resRepo.cancelUnfinishedByUser(id, today)
+                        + recurringRepo.cancelUnfinishedByUser(id, today);
+
+                // The lock incremented their versions: other instances reload them too
+                for (Long resourceId : resourceIds) {
+                    occupancyIndex.evict(resourceId);
+                    rollups.rebuild(resourceId);
+                    availability.publish(resourceId, "changed", null, null);
+                }
+
+                return reservations;
+            });
+        }
+
+        return canceled;
+    }
+
 }
@@ -0,0 +1,46 @@
+package com.jacobo.reservation_system.sharding;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Default router: hash of the resource ID modulo the number of shards
+ * The ID is mixed first because resources also take interleaved IDs from home
+ * (all of them odd with two shards): a plain modulo would send every resource to one shard
+ * IDs of the bookings are interleaved between shards, so the shard of a row
+ * is known from its ID without asking every database. Each MySQL server must run with
+ * auto_increment_increment = number of shards and auto_increment_offset = shard + 1
+ * (check docker/docker-compose.yml): shard 0 generates 1, 3, 5... and shard 1 2, 4, 6...
+ * Changing the number of shards moves resources, the rows must be migrated first
+ */
+@Component
+public class ModuloShardRouter implements ShardRouter {
+    private final int count;
+
+    public ModuloShardRouter(ShardingProperties properties) {
+        this.count = properties.getShards().size() + 1;
+    }
+
+    @Override
+    public int shardCount() {
+        return count;
+    }
+
+    @Override
+    public int shardForResource(Long resourceId) {
+        return (int) Math.floorMod(mix(resourceId), (long) count);
+    }
+
+    @Override
+    public int shardForId(Long id) {
+        return (int) Math.floorMod(id - 1, (long) count);
+    }
+
+    /**
+     * Finalizer of SplitMix64: every bit of the ID changes about half of the result
+     */
+    static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+}
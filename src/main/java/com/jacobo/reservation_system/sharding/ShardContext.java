@@ -0,0 +1,40 @@
+package com.jacobo.reservation_system.sharding;
+
+/**
+ * Shard used by the current thread, read by @ShardRoutingDataSource when
+ * a transaction takes its connection
+ * Only @ShardTemplate changes it, always before the transaction starts
+ * No shard set means home (shard 0)
+ */
+public final class ShardContext {
+    public static final int HOME = 0;
+
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    /**
+     * @return shard of the current thread, or null for home
+     */
+    public static Integer current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Sets the shard of the current thread
+     * @param shard new shard, null for home
+     * @return previous shard, to restore it later
+     */
+    static Integer set(Integer shard) {
+        Integer previous = CURRENT.get();
+
+        if (shard == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(shard);
+        }
+
+        return previous;
+    }
+}
@@ -0,0 +1,30 @@
+package com.jacobo.reservation_system.sharding;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import java.util.List;
+
+/**
+ * Hikari pool of every shard, home included, in shard order
+ * Built by @ShardingConfig and closed by @ShardRoutingDataSource
+ * Unwrapping the routing DataSource only gives the pool of the current shard,
+ * so whoever watches the pools (check @AdmissionController) reads them here
+ */
+public class ShardPools {
+    private final List<HikariDataSource> pools;
+
+    public ShardPools(List<HikariDataSource> pools) {
+        this.pools = List.copyOf(pools);
+    }
+
+    /**
+     * @return pools in shard order, named "shard-N"
+     */
+    public List<HikariDataSource> all() {
+        return pools;
+    }
+
+    public HikariDataSource get(int shard) {
+        return pools.get(shard);
+    }
+}
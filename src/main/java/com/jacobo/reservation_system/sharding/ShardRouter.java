@@ -0,0 +1,29 @@
+package com.jacobo.reservation_system.sharding;
+
+/**
+ * Decides in which shard each booking lives
+ * Bookings are routed by resource, so everything about one resource
+ * (capacity check, waitlist, cancellations) runs in a single shard
+ * Another strategy (e.g. a lookup table) only needs another implementation
+ */
+public interface ShardRouter {
+
+    /**
+     * @return number of shards, home included
+     */
+    int shardCount();
+
+    /**
+     * @param resourceId resource of the booking
+     * @return shard where the bookings of the resource are stored
+     */
+    int shardForResource(Long resourceId);
+
+    /**
+     * Shard of an existing booking, found from its own ID
+     * (cancellations and polling only receive the ID)
+     * @param id reservation, recurring reservation or waitlist entry ID
+     * @return shard where the row is stored
+     */
+    int shardForId(Long id);
+}
@@ -0,0 +1,32 @@
+package com.jacobo.reservation_system.sharding;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * The only DataSource of the application: each connection is taken from the pool
+ * of the shard set in @ShardContext (home if none)
+ * JPA, the SQL statistics proxy and the repositories don't know about the shards
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return ShardContext.current();
+    }
+
+    /**
+     * The pools are not beans, so they are closed here on shutdown
+     */
+    @Override
+    public void close() throws IOException {
+        for (DataSource pool : getResolvedDataSources().values()) {
+            if (pool instanceof Closeable closeable) {
+                closeable.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.jacobo.reservation_system.sharding;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Runs repository calls in the transaction of one shard
+ * The shard is chosen before the transaction takes its connection, so every
+ * repository used inside the action reads and writes that shard
+ * ---------------------------------------------------------------------------
+ * A call for another shard starts a new transaction (REQUIRES_NEW), and the current
+ * one is resumed after it. A call for the shard of the current transaction runs in it:
+ * a new one would ask the same pool for a second connection while holding one, and
+ * concurrent requests could exhaust the pool waiting for each other
+ * Nested transactions always go from home to a shard, never back: a shard transaction
+ * doesn't wait for a home connection while home transactions wait for shard ones
+ * Lazy associations must not be loaded across shards: entities of another shard
+ * are read with these methods
+ */
+@Component
+public class ShardTemplate {
+    private final ShardRouter router;
+    private final TransactionTemplate write;
+    private final TransactionTemplate read;
+
+    public ShardTemplate(ShardRouter router, PlatformTransactionManager transactionManager) {
+        this.router = router;
+
+        this.write = new TransactionTemplate(transactionManager);
+        this.write.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        this.read = new TransactionTemplate(transactionManager);
+        this.read.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.read.setReadOnly(true);
+    }
+
+    public int count() {
+        return router.shardCount();
+    }
+
+    /**
+     * Runs the action in a read-write transaction of the shard
+     * @return result of the action
+     */
+    public <T> T inShard(int shard, Supplier<T> action) {
+        return execute(write, shard, action);
+    }
+
+    /**
+     * Runs the action in a read-only transaction of the shard
+     * @return result of the action
+     */
+    public <T> T readShard(int shard, Supplier<T> action) {
+        return execute(read, shard, action);
+    }
+
+    /**
+     * Runs the action in a read-write transaction of the shard that is always rolled back
+     * Nothing it writes is committed nor seen by other transactions (warm-up, check @WarmUp)
+     * @return result of the action
+     */
+    public <T> T rolledBack(int shard, Supplier<T> action) {
+        Integer previous = ShardContext.set(shard);
+        try {
+            return write.execute(status -> {
+                status.setRollbackOnly();
+                return action.get();
+            });
+        } finally {
+            ShardContext.set(previous);
+        }
+    }
+
+    /**
+     * Runs the action on every shard, one after the other, each one in its own
+     * read-only transaction. Used by streamed listings, which write while reading
+     * @param action receives the shard number
+     */
+    public void forEachShard(IntConsumer action) {
+        for (int shard = 0; shard < count(); shard++) {
+            int current = shard;
+            readShard(current, () -> {
+                action.accept(current);
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Scatter-gather: runs the query on every shard at the same time (one virtual thread
+     * per shard) and returns the results in shard order
+     * With one shard it runs in the caller thread. Statements run by other threads
+     * are not counted in the SQL statistics of the request (check @SqlStats)
+     * @param query receives the shard number
+     * @return result of each shard
+     */
+    public <T> List<T> scatter(IntFunction<T> query) {
+        if (count() == 1) {
+            return Collections.singletonList(readShard(ShardContext.HOME, () -> query.apply(ShardContext.HOME)));
+        }
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<T>> futures = new ArrayList<>();
+            for (int shard = 0; shard < count(); shard++) {
+                int current = shard;
+                futures.add(executor.submit(() -> readShard(current, () -> query.apply(current))));
+            }
+
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+
+            return results;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Shard query failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while querying the shards", e);
+        }
+    }
+
+    private <T> T execute(TransactionTemplate template, int shard, Supplier<T> action) {
+        if (inCurrentTransaction(template, shard)) {
+            return action.get();
+        }
+
+        Integer previous = ShardContext.set(shard);
+        try {
+            return template.execute(status -> action.get());
+        } finally {
+            ShardContext.set(previous);
+        }
+    }
+
+    /**
+     * The action can run in the current transaction if it uses the same shard
+     * and, for writes, it isn't read-only
+     */
+    private boolean inCurrentTransaction(TransactionTemplate template, int shard) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            return false;
+        }
+
+        Integer current = ShardContext.current();
+        if ((current == null ? ShardContext.HOME : current) != shard) {
+            return false;
+        }
+
+        return template.isReadOnly() || !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+}
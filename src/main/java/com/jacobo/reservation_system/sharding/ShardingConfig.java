@@ -0,0 +1,85 @@
+package com.jacobo.reservation_system.sharding;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sharding configuration
+ * Replaces the DataSource of Spring Boot with @ShardRoutingDataSource
+ * Every shard has its own Hikari pool with the spring.datasource.hikari settings,
+ * named "shard-N" in the hikaricp metrics and listed in @ShardPools
+ * Hibernate (ddl-auto) only sees the home shard, the other ones are created with
+ * docker/shard-schema.sql
+ */
+@Configuration
+public class ShardingConfig {
+
+    @Bean
+    public ShardPools shardPools(DataSourceProperties home, ShardingProperties sharding,
+                                 Environment environment, ObjectProvider<MeterRegistry> registry) {
+        List<HikariDataSource> pools = new ArrayList<>();
+
+        HikariDataSource homePool = home.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        pools.add(configure(homePool, ShardContext.HOME, environment, registry));
+
+        List<ShardingProperties.Shard> shards = sharding.getShards();
+        for (int i = 0; i < shards.size(); i++) {
+            ShardingProperties.Shard shard = shards.get(i);
+
+            HikariDataSource pool = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(shard.getUrl())
+                    .username(shard.getUsername())
+                    .password(shard.getPassword())
+                    .build();
+
+            pools.add(configure(pool, i + 1, environment, registry));
+        }
+
+        return new ShardPools(pools);
+    }
+
+    @Bean
+    public DataSource dataSource(ShardPools pools) {
+        Map<Object, Object> targets = new HashMap<>();
+        for (int shard = 0; shard < pools.all().size(); shard++) {
+            targets.put(shard, pools.get(shard));
+        }
+
+        ShardRoutingDataSource dataSource = new ShardRoutingDataSource();
+        dataSource.setTargetDataSources(targets);
+        dataSource.setDefaultTargetDataSource(pools.get(ShardContext.HOME));
+        // An unknown shard is an error, never a silent write to home
+        dataSource.setLenientFallback(false);
+
+        return dataSource;
+    }
+
+    private HikariDataSource configure(HikariDataSource pool, int shard, Environment environment,
+                                       ObjectProvider<MeterRegistry> registry) {
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+        pool.setPoolName("shard-" + shard);
+
+        MeterRegistry meterRegistry = registry.getIfAvailable();
+        if (meterRegistry != null) {
+            pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+        }
+
+        return pool;
+    }
+}
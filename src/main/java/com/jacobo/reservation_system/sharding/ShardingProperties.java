@@ -0,0 +1,36 @@
+package com.jacobo.reservation_system.sharding;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sharding settings read from application.properties (prefix "sharding")
+ * Shard 0 (home) is always spring.datasource: it keeps users, roles, resources and
+ * idempotency keys, plus its part of the bookings. Each shard listed here only
+ * keeps bookings (reservations, recurring reservations and waitlist entries)
+ * With no shards listed the application works with one database, as before
+ */
+@Component
+@ConfigurationProperties(prefix = "sharding")
+@Data
+public class ShardingProperties {
+    /**
+     * Extra shards, shard 1 is the first one of the list
+     */
+    private List<Shard> shards = new ArrayList<>();
+
+    @Data
+    public static class Shard {
+        private String url;
+        /**
+         * Same database for the reactive read path (check @ReactiveReadsApplication)
+         */
+        private String r2dbcUrl;
+        private String username;
+        private String password;
+    }
+}
@@ -0,0 +1,60 @@
+package com.jacobo.reservation_system.startup;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the time to first request: from the JVM start until the first response is sent
+ * It's the number to compare between the normal and the fast-start images (check docker/Dockerfile)
+ * Logged once and exposed as the metric "application.first_request.time" (milliseconds)
+ * After the first request it only costs one volatile read
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class FirstRequestTimer extends OncePerRequestFilter {
+    /**
+     * Milliseconds since JVM start, -1 until the first request ends
+     */
+    private final AtomicLong firstRequestMs = new AtomicLong(-1);
+
+    public FirstRequestTimer(MeterRegistry registry) {
+        Gauge.builder("application.first_request.time", firstRequestMs, AtomicLong::get)
+                .description("Milliseconds from JVM start until the first response")
+                .baseUnit("milliseconds")
+                .register(registry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest req) {
+        return firstRequestMs.get() >= 0;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest req, HttpServletResponse res, FilterChain chain)
+            throws ServletException, IOException {
+        try {
+            chain.doFilter(req, res);
+        } finally {
+            long elapsed = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+
+            if (firstRequestMs.compareAndSet(-1, elapsed)) {
+                log.info("Time to first request: {} ms since JVM start ({} {})",
+                        elapsed, req.getMethod(), req.getRequestURI());
+            }
+        }
+    }
+}
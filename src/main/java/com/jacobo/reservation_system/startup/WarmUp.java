@@ -0,0 +1,234 @@
+package com.jacobo.reservation_system.startup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jacobo.reservation_system.models.dtos.ReservationsDtos.CreateReservationsInDTO;
+import com.jacobo.reservation_system.models.dtos.ReservationsDtos.CreateReservationsOutDTO;
+import com.jacobo.reservation_system.models.dtos.ReservationsDtos.GetAllReservationsOutDTO;
+import com.jacobo.reservation_system.models.entities.Reservations;
+import com.jacobo.reservation_system.models.entities.Resources;
+import com.jacobo.reservation_system.models.entities.Users;
+import com.jacobo.reservation_system.occupancy.ResourceOccupancy;
+import com.jacobo.reservation_system.repositories.ReservationsRepository;
+import com.jacobo.reservation_system.repositories.ResourcesRepository;
+import com.jacobo.reservation_system.repositories.UsersRepository;
+import com.jacobo.reservation_system.revocation.TokenRevocations;
+import com.jacobo.reservation_system.services.implementation.JwtService;
+import com.jacobo.reservation_system.sharding.ShardContext;
+import com.jacobo.reservation_system.sharding.ShardTemplate;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * JIT warm-up: runs the hot paths of the requests against synthetic data before the
+ * instance reports it's ready, so the first real requests don't run interpreted code
+ * ---------------------------------------------------------------------------
+ * It starts when the application is ready, on its own virtual thread, and runs rounds of:
+ * - JWT generation, parsing and revocation check (every authenticated request)
+ * - JSON reading and writing of the booking DTOs (Jackson)
+ * - Occupancy checks and free window search (check @ResourceOccupancy)
+ * - Inserts and queries of a synthetic user, resource and reservations (Hibernate, JDBC),
+ *   in a transaction of home that is always rolled back, so nothing is ever committed
+ * Rounds stop when the JIT settles (a round compiled less than warmup.settled-compile-ms)
+ * or after warmup.max-duration-ms
+ * ---------------------------------------------------------------------------
+ * This bean is also the "warmUp" health indicator, part of the readiness group
+ * (/actuator/health/readiness): OUT_OF_SERVICE until the warm-up ends, so load balancers
+ * and orchestrators don't send traffic before. Liveness is not affected
+ * The time is logged and exposed as "application.warmup.time" (milliseconds)
+ */
+@Slf4j
+@Component
+public class WarmUp implements HealthIndicator {
+    private static final List<String> ROLES = List.of("USER");
+    private static final String REQUEST = """
+            {"resource_id": 1, "start_date": "2030-01-10", "end_date": "2030-01-12", "join_waitlist": false}
+            """;
+
+    private final JwtService jwtService;
+    private final TokenRevocations revocations;
+    private final ObjectMapper mapper;
+    private final ShardTemplate shards;
+    private final UsersRepository usersRepo;
+    private final ResourcesRepository resourcesRepo;
+    private final ReservationsRepository resRepo;
+
+    private final boolean enabled;
+    private final int iterations;
+    private final long settledCompileMs;
+    private final long maxDurationMs;
+
+    /**
+     * Milliseconds the warm-up took, -1 until it ends
+     */
+    private final AtomicLong warmUpMs = new AtomicLong(-1);
+    private volatile boolean done;
+
+    public WarmUp(JwtService jwtService, TokenRevocations revocations, ObjectMapper mapper, ShardTemplate shards,
+                  UsersRepository usersRepo, ResourcesRepository resourcesRepo, ReservationsRepository resRepo,
+                  MeterRegistry registry,
+                  @Value("${warmup.enabled:true}") boolean enabled,
+                  @Value("${warmup.iterations-per-round:200}") int iterations,
+                  @Value("${warmup.settled-compile-ms:10}") long settledCompileMs,
+                  @Value("${warmup.max-duration-ms:30000}") long maxDurationMs) {
+        this.jwtService = jwtService;
+        this.revocations = revocations;
+        this.mapper = mapper;
+        this.shards = shards;
+        this.usersRepo = usersRepo;
+        this.resourcesRepo = resourcesRepo;
+        this.resRepo = resRepo;
+        this.enabled = enabled;
+        this.iterations = Math.max(1, iterations);
+        this.settledCompileMs = settledCompileMs;
+        this.maxDurationMs = maxDurationMs;
+        this.done = !enabled;
+
+        Gauge.builder("application.warmup.time", warmUpMs, AtomicLong::get)
+                .description("Milliseconds spent warming up the hot paths before reporting readiness")
+                .baseUnit("milliseconds")
+                .register(registry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (enabled) {
+            Thread.ofVirtual().name("warm-up").start(this::run);
+        }
+    }
+
+    @Override
+    public Health health() {
+        if (done) {
+            return Health.up().withDetail("warmup_ms", warmUpMs.get()).build();
+        }
+        return Health.outOfService().withDetail("reason", "Warming up").build();
+    }
+
+    private void run() {
+        CompilationMXBean jit = ManagementFactory.getCompilationMXBean();
+        boolean measured = jit != null && jit.isCompilationTimeMonitoringSupported();
+
+        long start = System.nanoTime();
+        long deadline = start + maxDurationMs * 1_000_000;
+        int rounds = 0;
+        boolean settled = false;
+
+        try {
+            while (!settled && System.nanoTime() < deadline) {
+                long compiledBefore = measured ? jit.getTotalCompilationTime() : 0;
+                round();
+                rounds++;
+
+                // Without JIT timing it runs until the deadline
+                settled = measured && jit.getTotalCompilationTime() - compiledBefore < settledCompileMs;
+            }
+        } catch (RuntimeException e) {
+            // A failed warm-up only means slower first requests, it never keeps the instance out
+            log.warn("Warm-up stopped after {} rounds: {}", rounds, e.getMessage());
+        } finally {
+            long elapsed = (System.nanoTime() - start) / 1_000_000;
+            warmUpMs.set(elapsed);
+            done = true;
+            log.info("Warm-up finished: {} rounds of {} iterations in {} ms ({})", rounds, iterations, elapsed,
+                    settled ? "JIT settled" : "time limit reached");
+        }
+    }
+
+    private void round() {
+        String username = "warmup-" + UUID.randomUUID();
+
+        for (int i = 0; i < iterations; i++) {
+            Claims claims = jwtService.parse("Bearer " + jwtService.generate(username, ROLES));
+            revocations.isRevoked(claims);
+
+            json(i);
+            occupancy(i);
+        }
+
+        shards.rolledBack(ShardContext.HOME, () -> {
+            database(username);
+            return null;
+        });
+    }
+
+    private void json(int i) {
+        try {
+            CreateReservationsInDTO in = mapper.readValue(REQUEST, CreateReservationsInDTO.class);
+
+            CreateReservationsOutDTO out = new CreateReservationsOutDTO();
+            out.setMessage("Reservation created for resource " + in.getResource_id());
+            out.setStatus(i % 2 == 0 ? "active" : "waitlisted");
+            mapper.writeValueAsBytes(out);
+
+            mapper.writeValueAsBytes(List.of(new GetAllReservationsOutDTO((long) i, 1L, in.getResource_id(),
+                    in.getStart_date(), in.getEnd_date(), "active")));
+        } catch (Exception e) {
+            throw new IllegalStateException("JSON warm-up failed", e);
+        }
+    }
+
+    private void occupancy(int i) {
+        ResourceOccupancy occupancy = new ResourceOccupancy();
+        LocalDate day = LocalDate.of(2030, 1, 1);
+
+        for (int booking = 0; booking < 20; booking++) {
+            LocalDate from = day.plusDays((booking * 3L + i) % 40);
+            occupancy.add(from, from.plusDays(2));
+        }
+
+        occupancy.maxOccupancy(day, day.plusDays(30));
+        occupancy.nextFree(day, 3, 0);
+        occupancy.previousFree(day.plusDays(40), day, 3, 0);
+    }
+
+    /**
+     * Runs in the rolled back transaction: the rows are never committed
+     */
+    private void database(String username) {
+        Users user = new Users();
+        user.setUsername(username);
+        user.setEmail(username + "@warmup.invalid");
+        user.setPassword("-");
+        usersRepo.save(user);
+
+        Resources resource = new Resources();
+        resource.setName(username);
+        resource.setDescription("Warm-up");
+        resourcesRepo.save(resource);
+
+        LocalDate day = LocalDate.of(2030, 1, 1);
+        for (int i = 0; i < 10; i++) {
+            Reservations reservation = new Reservations();
+            reservation.setUser(user);
+            reservation.setResource(resource);
+            reservation.setStart_date(day.plusDays(i * 2L));
+            reservation.setEnd_date(day.plusDays(i * 2L + 1));
+            reservation.setStatus("active");
+            resRepo.save(reservation);
+        }
+
+        for (int i = 0; i < iterations / 10; i++) {
+            usersRepo.findWithRoleByUsername(username);
+            resourcesRepo.findByName(username);
+            resRepo.findActiveRanges(resource.getId());
+            resRepo.countByUserIdAndStatus(user.getId(), "active");
+            resRepo.findPageAfter(0L, PageRequest.of(0, 20));
+        }
+    }
+}
@@ -7,13 +7,17 @@ import io.swagger.v3.oas.models.security.SecurityRequirement;
 import io.swagger.v3.oas.models.security.SecurityScheme;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 
 /**
  * Swagger/OpenAPI configuration for the authentication module
  * Define the general API information and register the security scheme
  * JWT-based to enable the "Authorize" button in the Swagger interface
+ * Only with the "openapi-runtime" profile: otherwise the document is the static one
+ * generated by the build, which already includes this information
  */
 @Configuration
+@Profile("openapi-runtime")
 public class SwaggerConfig {
 
     @Bean
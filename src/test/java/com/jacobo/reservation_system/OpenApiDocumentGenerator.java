@@ -0,0 +1,67 @@
+package com.jacobo.reservation_system;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Generates the OpenAPI document at build time (prepare-package phase, check pom.xml)
+ * The application is started once with the test database (H2) and the "openapi-runtime"
+ * profile, so springdoc scans the controllers here instead of in every instance
+ * The document is written to static/openapi.json plus a gzip copy, which Spring serves
+ * when the client accepts it (spring.web.resources.chain.compressed)
+ * Usage: OpenApiDocumentGenerator <output directory>
+ * Devtools restart is disabled: it would run main() again with the Spring arguments
+ * instead of the output directory
+ * The build checks that static/openapi.json exists after this step (check pom.xml)
+ */
+public class OpenApiDocumentGenerator {
+
+	public static void main(String[] args) throws Exception {
+		if (args.length != 1) {
+			throw new IllegalArgumentException("Usage: OpenApiDocumentGenerator <output directory>");
+		}
+		Path output = Path.of(args[0]);
+		System.setProperty("spring.devtools.restart.enabled", "false");
+
+		SpringApplication app = new SpringApplication(ReservationSystemApplication.class);
+		app.setAdditionalProfiles("test", "openapi-runtime");
+
+		try (ConfigurableApplicationContext context = app.run(
+				"--server.port=0",
+				"--logging.level.root=WARN")) {
+			int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+			String contextPath = context.getEnvironment().getProperty("server.servlet.context-path", "");
+
+			HttpResponse<byte[]> response = HttpClient.newHttpClient().send(
+					HttpRequest.newBuilder(URI.create("http://localhost:" + port + contextPath + "/v3/api-docs")).build(),
+					HttpResponse.BodyHandlers.ofByteArray());
+
+			if (response.statusCode() != 200) {
+				throw new IllegalStateException("/v3/api-docs answered " + response.statusCode());
+			}
+
+			write(output, response.body());
+		}
+		System.out.println("OpenAPI document written to " + output.toAbsolutePath().resolve("openapi.json"));
+	}
+
+	private static void write(Path output, byte[] document) throws IOException {
+		Files.createDirectories(output);
+		Files.write(output.resolve("openapi.json"), document);
+
+		try (OutputStream gzip = new GZIPOutputStream(Files.newOutputStream(output.resolve("openapi.json.gz")))) {
+			gzip.write(document);
+		}
+	}
+}
@@ -0,0 +1,302 @@
+package com.jacobo.reservation_system;
+
+import com.jacobo.reservation_system.models.entities.Reservations;
+import com.jacobo.reservation_system.models.entities.Resources;
+import com.jacobo.reservation_system.models.entities.Roles;
+import com.jacobo.reservation_system.models.entities.Users;
+import com.jacobo.reservation_system.repositories.ReservationsRepository;
+import com.jacobo.reservation_system.repositories.ResourcesRepository;
+import com.jacobo.reservation_system.repositories.RolesRepository;
+import com.jacobo.reservation_system.repositories.UsersRepository;
+import com.jacobo.reservation_system.services.implementation.JwtService;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Query-count budget per endpoint
+ * Each test runs one request and checks the SQL statements it executed
+ * (metric "http.server.requests.sql.statements", check @SqlStatsFilter)
+ * Several extra users, resources and reservations are created first,
+ * so an N+1 query would go over the budget and fail the build
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class QueryBudgetTests {
+
+	@Autowired
+	private MockMvc mockMvc;
+	@Autowired
+	private MeterRegistry registry;
+	@Autowired
+	private UsersRepository usersRepo;
+	@Autowired
+	private RolesRepository rolesRepo;
+	@Autowired
+	private ResourcesRepository resourcesRepo;
+	@Autowired
+	private ReservationsRepository reservationsRepo;
+	@Autowired
+	private PasswordEncoder encoder;
+	@Autowired
+	private JwtService jwt;
+
+	private String suffix;
+	private String encodedPassword;
+	private Users admin;
+	private Users user;
+	private Users userWithoutReservations;
+	private Resources resource;
+	private Reservations reservation;
+
+	@BeforeEach
+	void setUp() {
+		suffix = UUID.randomUUID().toString().substring(0, 8);
+		encodedPassword = encoder.encode("secret"); // BCrypt is slow, encoded once per test
+		Roles userRole = role("USER");
+		Roles adminRole = role("ADMIN");
+
+		admin = newUser("admin_" + suffix, adminRole);
+		user = newUser("user_" + suffix, userRole);
+		userWithoutReservations = newUser("empty_" + suffix, userRole);
+		resource = newResource("room_" + suffix);
+
+		// Extra rows: an N+1 would run one more query for each of them
+		for (int i = 0; i < 5; i++) {
+			Users other = newUser("other" + i + "_" + suffix, userRole);
+			Resources otherResource = newResource("desk" + i + "_" + suffix);
+			newReservation(other, otherResource, LocalDate.of(2031, 1, 1), LocalDate.of(2031, 1, 5));
+		}
+
+		reservation = newReservation(newUser("owner_" + suffix, userRole), newResource("hall_" + suffix),
+				LocalDate.of(2031, 2, 1), LocalDate.of(2031, 2, 3));
+	}
+
+	@Test
+	void login() throws Exception {
+		long statements = statements("POST", "/auth/login", post("/auth/login")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("{\"username\":\"" + user.getUsername() + "\",\"email\":\"" + user.getEmail()
+						+ "\",\"password\":\"secret\"}"), 200);
+
+		assertThat(statements).isLessThanOrEqualTo(2);
+	}
+
+	@Test
+	void register() throws Exception {
+		long statements = statements("POST", "/auth/register", post("/auth/register")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("{\"username\":\"new_" + suffix + "\",\"email\":\"new_" + suffix
+						+ "@mail.com\",\"password\":\"secret\",\"roles\":[\"USER\"]}"), 201);
+
+		assertThat(statements).isLessThanOrEqualTo(4);
+	}
+
+	@Test
+	void createReservation() throws Exception {
+		long statements = statements("POST", "/reservations/create_reservation", post("/reservations/create_reservation")
+				.header("Authorization", token(user, "USER"))
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("{\"resource_id\":" + resource.getId()
+						+ ",\"start_date\":\"2032-03-01\",\"end_date\":\"2032-03-04\"}"), 200);
+
+		// Includes the lock row of the resource: update + version (or insert the first time)
+		// and the daily rollup (one batch)
+		assertThat(statements).isLessThanOrEqualTo(10);
+	}
+
+	@Test
+	void createRecurringReservation() throws Exception {
+		// A year-long weekly series: one insert and one rollup batch, the conflict check
+		// doesn't depend on its length
+		long statements = statements("POST", "/reservations/create_recurring_reservation",
+				post("/reservations/create_recurring_reservation")
+						.header("Authorization", token(user, "USER"))
+						.contentType(MediaType.APPLICATION_JSON)
+						.content("{\"resource_id\":" + resource.getId()
+								+ ",\"start_date\":\"2033-01-03\",\"end_date\":\"2033-01-04\""
+								+ ",\"frequency\":\"weekly\",\"until\":\"2033-12-31\"}"), 200);
+
+		assertThat(statements).isLessThanOrEqualTo(10);
+	}
+
+	@Test
+	void listReservationsAsAdmin() throws Exception {
+		long statements = statements("GET", "/reservations/", get("/reservations/")
+				.header("Authorization", token(admin, "ADMIN")), 200);
+
+		assertThat(statements).isLessThanOrEqualTo(3);
+	}
+
+	@Test
+	void listReservationsAsUser() throws Exception {
+		long statements = statements("GET", "/reservations/", get("/reservations/")
+				.header("Authorization", token(user, "USER")), 200);
+
+		assertThat(statements).isLessThanOrEqualTo(3);
+	}
+
+	@Test
+	void pageReservations() throws Exception {
+		// One keyset query per shard (the test profile has only home)
+		long statements = statements("GET", "/reservations/page", get("/reservations/page")
+				.param("limit", "3")
+				.header("Authorization", token(admin, "ADMIN")), 200);
+
+		assertThat(statements).isLessThanOrEqualTo(1);
+	}
+
+	@Test
+	void deactivateReservation() throws Exception {
+		long statements = statements("PATCH", "/reservations/deactivate/{id}",
+				patch("/reservations/deactivate/" + reservation.getId())
+						.header("Authorization", token(admin, "ADMIN")), 200);
+
+		// Includes the lock row of the resource and the daily rollup (one batch)
+		assertThat(statements).isLessThanOrEqualTo(6);
+	}
+
+	@Test
+	void listResources() throws Exception {
+		long statements = statements("GET", "/resources/", get("/resources/")
+				.header("Authorization", token(user, "USER")), 200);
+
+		assertThat(statements).isLessThanOrEqualTo(2);
+	}
+
+	@Test
+	void searchResources() throws Exception {
+		// Answered by the in-memory index
+		long statements = statements("GET", "/resources/search", get("/resources/search")
+				.param("q", "room")
+				.header("Authorization", token(user, "USER")), 200);
+
+		assertThat(statements).isZero();
+	}
+
+	@Test
+	void deactivateResource() throws Exception {
+		long statements = statements("PATCH", "/resources/deactivate_resource/{id}",
+				patch("/resources/deactivate_resource/" + resource.getId())
+						.header("Authorization", token(admin, "ADMIN")), 200);
+
+		// Conditional update + lock row + one cascade update per booking table
+		// + rollup rebuild (delete, two reads, one batch)
+		assertThat(statements).isLessThanOrEqualTo(9);
+	}
+
+	@Test
+	void listUsers() throws Exception {
+		long statements = statements("GET", "/users/", get("/users/")
+				.header("Authorization", token(admin, "ADMIN")), 200);
+
+		assertThat(statements).isLessThanOrEqualTo(1);
+	}
+
+	@Test
+	void getUserById() throws Exception {
+		long statements = statements("GET", "/users/{id}", get("/users/" + user.getId())
+				.header("Authorization", token(admin, "ADMIN")), 200);
+
+		assertThat(statements).isLessThanOrEqualTo(1);
+	}
+
+	@Test
+	void deactivateUser() throws Exception {
+		long statements = statements("PATCH", "/users/deactivate_user/{id}",
+				patch("/users/deactivate_user/" + user.getId())
+						.header("Authorization", token(admin, "ADMIN")), 200);
+
+		// Conditional update + token revocation (username, upsert) + booked resources
+		// (one query per booking table) + one cascade update per booking table
+		// The user has no bookings: no lock rows nor rollups
+		assertThat(statements).isLessThanOrEqualTo(9);
+	}
+
+	@Test
+	void deleteUser() throws Exception {
+		long statements = statements("DELETE", "/users/delete_user/{id}",
+				delete("/users/delete_user/" + userWithoutReservations.getId())
+						.header("Authorization", token(admin, "ADMIN")), 202);
+
+		// Only the mark, the token revocation and the cancellations, the rows are purged in the background
+		assertThat(statements).isLessThanOrEqualTo(12);
+	}
+
+	/**
+	 * Runs a request and returns the SQL statements it executed
+	 */
+	private long statements(String method, String uriPattern, MockHttpServletRequestBuilder request,
+							int expectedStatus) throws Exception {
+		double before = recorded(method, uriPattern);
+		mockMvc.perform(request).andExpect(status().is(expectedStatus));
+
+		return Math.round(recorded(method, uriPattern) - before);
+	}
+
+	private double recorded(String method, String uriPattern) {
+		DistributionSummary summary = registry.find("http.server.requests.sql.statements")
+				.tag("method", method)
+				.tag("uri", uriPattern)
+				.summary();
+
+		return summary == null ? 0 : summary.totalAmount();
+	}
+
+	private String token(Users user, String role) {
+		return "Bearer " + jwt.generate(user.getUsername(), List.of(role));
+	}
+
+	private Roles role(String name) {
+		return rolesRepo.findByName(name).orElseGet(() -> {
+			Roles role = new Roles();
+			role.setName(name);
+			return rolesRepo.save(role);
+		});
+	}
+
+	private Users newUser(String username, Roles role) {
+		Users newUser = new Users();
+		newUser.setUsername(username);
+		newUser.setEmail(username + "@mail.com");
+		newUser.setPassword(encodedPassword);
+		newUser.setRole(new HashSet<>(Set.of(role)));
+		return usersRepo.save(newUser);
+	}
+
+	private Resources newResource(String name) {
+		Resources newResource = new Resources();
+		newResource.setName(name);
+		newResource.setDescription("Resource " + name);
+		return resourcesRepo.save(newResource);
+	}
+
+	private Reservations newReservation(Users owner, Resources reserved, LocalDate start, LocalDate end) {
+		Reservations newReservation = new Reservations();
+		newReservation.setUser(owner);
+		newReservation.setResource(reserved);
+		newReservation.setStart_date(start);
+		newReservation.setEnd_date(end);
+		return reservationsRepo.save(newReservation);
+	}
+}
@@ -0,0 +1,86 @@
+package com.jacobo.reservation_system;
+
+import com.jacobo.reservation_system.reactive.ReactiveReadsApplication;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The read endpoints on the servlet path (Tomcat pool, JPA) and on the reactive read path
+ * (Netty, R2DBC, check ReactiveReadsApplication), both on the same H2 database
+ * Same data and load as ReadThroughputBenchmarkTests: 400 clients in a closed loop for 10 s
+ * per endpoint and round, the two paths taking turns. Both have 10 connections: the Hikari
+ * default and reactive-reads.pool-size
+ * H2 runs its queries on the calling thread, so here the event loop also does the database
+ * work; on MySQL it would only wait for the network
+ * Run with: mvn test -Pbenchmarks
+ */
+@Tag("benchmark")
+class ReactiveReadThroughputBenchmarkTests {
+	private static final Duration WARM_UP = Duration.ofSeconds(3);
+	private static final Duration DURATION = Duration.ofSeconds(10);
+	private static final int ROUNDS = 2;
+	private static final String[] MODES = {"servlet", "reactive"};
+	private static final String DATABASE = "reactive_bench;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+	@Test
+	void servletVersusReactive() throws Exception {
+		List<ReadThroughputBenchmarkTests.Result> reactiveResults = new ArrayList<>();
+
+		try (ConfigurableApplicationContext servlet = new SpringApplicationBuilder(ReservationSystemApplication.class)
+				.profiles("test")
+				.run(
+						"--server.port=0",
+						"--spring.datasource.url=jdbc:h2:mem:" + DATABASE,
+						"--rate-limit.enabled=false",
+						"--admission.enabled=false");
+			 ConfigurableApplicationContext reactive = ReactiveReadsApplication.application()
+					 .profiles("test")
+					 .run(
+							 "--server.port=0",
+							 "--spring.r2dbc.url=r2dbc:h2:mem:///" + DATABASE.replaceFirst(";", "?options="))) {
+			String token = "Bearer " + ReadThroughputBenchmarkTests.seed(servlet);
+			Map<String, Integer> ports = Map.of(
+					"servlet", ReadThroughputBenchmarkTests.port(servlet),
+					"reactive", ReadThroughputBenchmarkTests.port(reactive));
+
+			for (String path : List.of("/reservations/", "/resources/")) {
+				for (String mode : MODES) {
+					ReadThroughputBenchmarkTests.load(ReadThroughputBenchmarkTests.uri(ports.get(mode), path), token, WARM_UP);
+				}
+				for (int round = 0; round < ROUNDS; round++) {
+					for (String mode : MODES) {
+						ReadThroughputBenchmarkTests.Result result = ReadThroughputBenchmarkTests.load(
+								ReadThroughputBenchmarkTests.uri(ports.get(mode), path), token, DURATION);
+						if (mode.equals("reactive")) {
+							reactiveResults.add(result);
+						}
+						System.out.printf("%-8s GET %-14s %6.0f req/s  avg %6.1f ms  p99 %7.1f ms  errors %d%n",
+								mode, path, result.perSecond(), result.averageMs(), result.p99Ms(), result.errors());
+					}
+				}
+			}
+
+			System.out.printf("Request threads: %d Tomcat workers, %d Netty event loops%n",
+					threads("http-nio-"), threads("reactor-http-"));
+		}
+
+		assertThat(reactiveResults).allSatisfy(result -> assertThat(result.errors()).isZero());
+	}
+
+	private static long threads(String prefix) {
+		ThreadInfo[] threads = ManagementFactory.getThreadMXBean().dumpAllThreads(false, false);
+		return Arrays.stream(threads).filter(thread -> thread.getThreadName().startsWith(prefix)).count();
+	}
+}
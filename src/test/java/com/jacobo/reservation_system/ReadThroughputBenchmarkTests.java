@@ -0,0 +1,216 @@
+package com.jacobo.reservation_system;
+
+import com.jacobo.reservation_system.models.entities.Reservations;
+import com.jacobo.reservation_system.models.entities.Resources;
+import com.jacobo.reservation_system.models.entities.Roles;
+import com.jacobo.reservation_system.models.entities.Users;
+import com.jacobo.reservation_system.repositories.ReservationsRepository;
+import com.jacobo.reservation_system.repositories.ResourcesRepository;
+import com.jacobo.reservation_system.repositories.RolesRepository;
+import com.jacobo.reservation_system.repositories.UsersRepository;
+import com.jacobo.reservation_system.services.implementation.JwtService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * In-JVM version of docker/benchmark-reads.sh: the read endpoints on platform threads
+ * (Tomcat pool) and on virtual threads, on H2 instead of MySQL
+ * The application is started once per mode on a random port, with rate limit and admission
+ * control disabled, and 400 clients send GET requests in a loop for 10 s per endpoint and round
+ * Requests/s, average and p99 latency and non-200 answers are printed
+ * Run with: mvn test -Pbenchmarks
+ */
+@Tag("benchmark")
+class ReadThroughputBenchmarkTests {
+	private static final int CONCURRENCY = 400;
+	private static final Duration WARM_UP = Duration.ofSeconds(3);
+	private static final Duration DURATION = Duration.ofSeconds(10);
+	private static final int RESOURCES = 100;
+	private static final int RESERVATIONS = 500;
+	private static final int ROUNDS = 2;
+	private static final boolean[] MODES = {false, true};
+
+	@Test
+	void platformVersusVirtualThreads() throws Exception {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		List<Result> virtualResults = new ArrayList<>();
+
+		try (ConfigurableApplicationContext platform = start(false);
+			 ConfigurableApplicationContext virtual = start(true)) {
+			Map<Boolean, String> tokens = Map.of(false, "Bearer " + seed(platform), true, "Bearer " + seed(virtual));
+			Map<Boolean, Integer> ports = Map.of(false, port(platform), true, port(virtual));
+
+			for (String path : List.of("/reservations/", "/resources/")) {
+				for (boolean mode : MODES) {
+					load(uri(ports.get(mode), path), tokens.get(mode), WARM_UP);
+				}
+				// Both applications share the JVM and its JIT: the modes take turns so neither
+				// runs on code compiled by the other one
+				for (int round = 0; round < ROUNDS; round++) {
+					for (boolean mode : MODES) {
+						Result result = load(uri(ports.get(mode), path), tokens.get(mode), DURATION);
+						if (mode) {
+							virtualResults.add(result);
+						}
+						System.out.printf("virtual threads %-5s GET %-14s %6.0f req/s  avg %6.1f ms  p99 %7.1f ms  errors %d%n",
+								mode, path, result.perSecond(), result.averageMs(), result.p99Ms(), result.errors());
+					}
+				}
+			}
+			System.out.printf("Peak platform threads: %d (Tomcat pool of the platform-threads application)%n",
+					threads.getPeakThreadCount());
+		}
+
+		// With platform threads a request may wait for a Tomcat thread and then for a connection
+		// (5 s timeout), so only the virtual threads runs must have no errors
+		assertThat(virtualResults).allSatisfy(result -> assertThat(result.errors()).isZero());
+	}
+
+	private static ConfigurableApplicationContext start(boolean virtual) {
+		// Command line arguments: properties() of the builder are defaults, application.properties wins over them
+		return new SpringApplicationBuilder(ReservationSystemApplication.class)
+				.profiles("test")
+				.run(
+						"--server.port=0",
+						"--spring.threads.virtual.enabled=" + virtual,
+						"--spring.datasource.url=jdbc:h2:mem:reads_" + virtual + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+						"--rate-limit.enabled=false",
+						"--admission.enabled=false");
+	}
+
+	static int port(ConfigurableApplicationContext context) {
+		return ((WebServerApplicationContext) context).getWebServer().getPort();
+	}
+
+	static URI uri(int port, String path) {
+		return URI.create("http://localhost:" + port + "/reservation_system" + path);
+	}
+
+	/**
+	 * Rows listed by the endpoints and an admin
+	 * @return token of the admin
+	 */
+	static String seed(ConfigurableApplicationContext context) {
+		RolesRepository rolesRepo = context.getBean(RolesRepository.class);
+		UsersRepository usersRepo = context.getBean(UsersRepository.class);
+		ResourcesRepository resourcesRepo = context.getBean(ResourcesRepository.class);
+		ReservationsRepository reservationsRepo = context.getBean(ReservationsRepository.class);
+
+		Roles adminRole = rolesRepo.findByName("ADMIN").orElseGet(() -> {
+			Roles role = new Roles();
+			role.setName("ADMIN");
+			return rolesRepo.save(role);
+		});
+		Users admin = new Users();
+		admin.setUsername("bench_admin");
+		admin.setEmail("bench_admin@mail.com");
+		admin.setPassword("not used");
+		admin.setRole(new HashSet<>(Set.of(adminRole)));
+		usersRepo.save(admin);
+
+		List<Resources> resources = new ArrayList<>();
+		for (int i = 0; i < RESOURCES; i++) {
+			Resources resource = new Resources();
+			resource.setName("bench_room_" + i);
+			resource.setDescription("Benchmark room " + i);
+			resources.add(resource);
+		}
+		resourcesRepo.saveAll(resources);
+
+		List<Reservations> reservations = new ArrayList<>();
+		for (int i = 0; i < RESERVATIONS; i++) {
+			Reservations reservation = new Reservations();
+			reservation.setUser(admin);
+			reservation.setResource(resources.get(i % RESOURCES));
+			LocalDate start = LocalDate.of(2031, 1, 1).plusDays(i / RESOURCES * 3L);
+			reservation.setStart_date(start);
+			reservation.setEnd_date(start.plusDays(2));
+			reservations.add(reservation);
+		}
+		reservationsRepo.saveAll(reservations);
+
+		return context.getBean(JwtService.class).generate(admin.getUsername(), List.of("ADMIN"));
+	}
+
+	/**
+	 * Closed loop: each client sends its next request when the previous answer is read
+	 */
+	static Result load(URI uri, String token, Duration duration) throws Exception {
+		HttpRequest request = HttpRequest.newBuilder(uri).header("Authorization", token).GET().build();
+		long end = System.nanoTime() + duration.toNanos();
+		List<Future<long[]>> clients = new ArrayList<>();
+		AtomicLong errors = new AtomicLong();
+
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+			 HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).executor(executor).build()) {
+			for (int c = 0; c < CONCURRENCY; c++) {
+				clients.add(executor.submit(() -> {
+					long[] nanos = new long[1024];
+					int count = 0;
+					while (System.nanoTime() < end) {
+						long start = System.nanoTime();
+						try {
+							HttpResponse<byte[]> response = http.send(request, HttpResponse.BodyHandlers.ofByteArray());
+							if (response.statusCode() != 200) {
+								errors.incrementAndGet();
+							}
+						} catch (IOException e) {
+							errors.incrementAndGet();
+						}
+						if (count == nanos.length) {
+							nanos = Arrays.copyOf(nanos, count * 2);
+						}
+						nanos[count++] = System.nanoTime() - start;
+					}
+					return Arrays.copyOf(nanos, count);
+				}));
+			}
+
+			List<long[]> latencies = new ArrayList<>();
+			for (Future<long[]> client : clients) {
+				latencies.add(client.get());
+			}
+			long[] all = latencies.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+			return new Result(all, duration, errors.get());
+		}
+	}
+
+	record Result(long[] sorted, Duration duration, long errors) {
+		double perSecond() {
+			return sorted.length * 1000.0 / duration.toMillis();
+		}
+
+		double averageMs() {
+			return Arrays.stream(sorted).average().orElse(0) / 1_000_000;
+		}
+
+		double p99Ms() {
+			return sorted.length == 0 ? 0 : sorted[Math.min(sorted.length - 1, sorted.length * 99 / 100)] / 1_000_000.0;
+		}
+	}
+}
@@ -0,0 +1,123 @@
+package com.jacobo.reservation_system.admission;
+
+import com.jacobo.reservation_system.sharding.ShardPools;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Shedding with one pool per shard: two H2 pools of one connection each,
+ * the connection of one of them is held and another thread waits for it
+ */
+class AdmissionControllerTests {
+	private SimpleMeterRegistry registry;
+	private HikariDataSource home;
+	private HikariDataSource shard;
+	private AdmissionController admission;
+
+	@BeforeEach
+	void setUp() {
+		registry = new SimpleMeterRegistry();
+		home = pool("shard-0");
+		shard = pool("shard-1");
+
+		AdmissionProperties properties = new AdmissionProperties();
+		properties.getNormal().setMaxWaiting(0);
+		properties.getNormal().setMaxAcquireMs(1_000);
+		properties.getCritical().setMaxWaiting(5);
+		properties.getCritical().setMaxAcquireMs(60_000);
+
+		admission = new AdmissionController(properties, new ShardPools(List.of(home, shard)), registry);
+	}
+
+	@AfterEach
+	void tearDown() {
+		home.close();
+		shard.close();
+	}
+
+	@Test
+	void shedsWhenAnyPoolIsSaturated() throws Exception {
+		assertThat(admission.admit(AdmissionController.Priority.NORMAL)).isTrue();
+
+		try (Connection held = shard.getConnection()) {
+			Thread waiter = Thread.ofVirtual().start(() -> {
+				try (Connection ignored = shard.getConnection()) {
+					// Gets it once the held one is closed
+				} catch (Exception e) {
+					// Timed out: nothing to check
+				}
+			});
+			awaitWaiting(shard);
+
+			// Only the pool of shard 1 has a queue, home is idle
+			assertThat(registry.get("admission.pool.waiting").tag("pool", "shard-1").gauge().value()).isEqualTo(1);
+			assertThat(registry.get("admission.pool.waiting").tag("pool", "shard-0").gauge().value()).isZero();
+			assertThat(admission.admit(AdmissionController.Priority.NORMAL)).isFalse();
+			assertThat(admission.admit(AdmissionController.Priority.CRITICAL)).isTrue();
+
+			held.close();
+			waiter.join();
+		}
+
+		assertThat(admission.admit(AdmissionController.Priority.NORMAL)).isTrue();
+		assertThat(registry.get("admission.shed").tag("priority", "NORMAL").counter().count()).isEqualTo(1);
+	}
+
+	@Test
+	void acquireTimeIsReadFromThePoolWithTheQueue() throws Exception {
+		AdmissionProperties properties = new AdmissionProperties();
+		properties.getNormal().setMaxWaiting(10);
+		properties.getNormal().setMaxAcquireMs(500);
+		admission = new AdmissionController(properties, new ShardPools(List.of(home, shard)), registry);
+
+		// A slow acquire recorded by home only: it doesn't shed while shard 1 has the queue
+		registry.timer("hikaricp.connections.acquire", "pool", "shard-0").record(Duration.ofSeconds(2));
+
+		try (Connection held = shard.getConnection()) {
+			Thread waiter = Thread.ofVirtual().start(() -> {
+				try (Connection ignored = shard.getConnection()) {
+					// Gets it once the held one is closed
+				} catch (Exception e) {
+					// Timed out: nothing to check
+				}
+			});
+			awaitWaiting(shard);
+
+			assertThat(admission.admit(AdmissionController.Priority.NORMAL)).isTrue();
+
+			registry.timer("hikaricp.connections.acquire", "pool", "shard-1").record(Duration.ofSeconds(2));
+			assertThat(admission.admit(AdmissionController.Priority.NORMAL)).isFalse();
+
+			held.close();
+			waiter.join();
+		}
+	}
+
+	private HikariDataSource pool(String name) {
+		HikariDataSource pool = new HikariDataSource();
+		pool.setJdbcUrl("jdbc:h2:mem:" + name);
+		pool.setPoolName(name);
+		pool.setMaximumPoolSize(1);
+		pool.setConnectionTimeout(5_000);
+		pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry));
+		return pool;
+	}
+
+	private static void awaitWaiting(HikariDataSource pool) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (pool.getHikariPoolMXBean().getThreadsAwaitingConnection() == 0 && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+	}
+}
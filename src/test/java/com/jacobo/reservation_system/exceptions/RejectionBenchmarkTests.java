@@ -0,0 +1,193 @@
+package com.jacobo.reservation_system.exceptions;
+
+import com.jacobo.reservation_system.models.entities.Resources;
+import com.jacobo.reservation_system.models.entities.Roles;
+import com.jacobo.reservation_system.models.entities.Users;
+import com.jacobo.reservation_system.repositories.ResourcesRepository;
+import com.jacobo.reservation_system.repositories.RolesRepository;
+import com.jacobo.reservation_system.repositories.UsersRepository;
+import com.jacobo.reservation_system.services.implementation.JwtService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * In-JVM version of docker/benchmark-rejections.sh: rejected bookings on H2 instead of MySQL
+ * - taken dates: a capacity-1 resource already booked, every request gets 406 under the lock
+ * - deactivated resource: every request gets 409 before the lock
+ * 100 clients send the same booking in a loop for 10 s per case, with rate limit and admission
+ * control disabled. Requests/s, average and p99 latency and the bytes allocated by the JVM
+ * (all threads, clients included) are printed
+ * @BusinessException reads its switch once, so each setting needs its own JVM. Run with:
+ *   mvn test -Pbenchmarks -Dtest=RejectionBenchmarkTests
+ *   mvn test -Pbenchmarks -Dtest=RejectionBenchmarkTests -DargLine=-Dbusiness-errors.stack-traces=true
+ */
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+		"rate-limit.enabled=false",
+		"admission.enabled=false",
+})
+@ActiveProfiles("test")
+class RejectionBenchmarkTests {
+	private static final int CONCURRENCY = 100;
+	private static final Duration WARM_UP = Duration.ofSeconds(3);
+	private static final Duration DURATION = Duration.ofSeconds(10);
+	private static final String DATES = "\"start_date\":\"2040-01-10\",\"end_date\":\"2040-01-12\"";
+
+	@LocalServerPort
+	private int port;
+	@Autowired
+	private UsersRepository usersRepo;
+	@Autowired
+	private RolesRepository rolesRepo;
+	@Autowired
+	private ResourcesRepository resourcesRepo;
+	@Autowired
+	private JwtService jwt;
+
+	@Test
+	void rejectedBookings() throws Exception {
+		String suffix = UUID.randomUUID().toString().substring(0, 8);
+		Roles userRole = rolesRepo.findByName("USER").orElseGet(() -> {
+			Roles role = new Roles();
+			role.setName("USER");
+			return rolesRepo.save(role);
+		});
+		String owner = token(newUser("owner_" + suffix, userRole));
+		String user = token(newUser("user_" + suffix, userRole));
+
+		// The owner takes the dates, the user is rejected on every request
+		Resources taken = newResource("taken_" + suffix, true);
+		assertThat(book(HttpClient.newHttpClient(), owner, taken).statusCode()).isEqualTo(200);
+		Resources inactive = newResource("inactive_" + suffix, false);
+
+		boolean traces = Boolean.getBoolean("business-errors.stack-traces");
+		System.out.printf("== stack traces: %s, %d concurrent clients for %d s%n", traces, CONCURRENCY, DURATION.toSeconds());
+		List<Result> results = new ArrayList<>();
+		for (Case rejection : List.of(new Case("taken dates", taken, 406), new Case("deactivated resource", inactive, 409))) {
+			load(user, rejection, WARM_UP);
+			Result result = load(user, rejection, DURATION);
+			results.add(result);
+			System.out.printf("%-21s (%d) %6.0f req/s  avg %6.1f ms  p99 %6.1f ms  allocated %5d MB (%.1f KB/request)  unexpected %d%n",
+					rejection.name(), rejection.status(), result.perSecond(), result.averageMs(), result.p99Ms(),
+					result.allocated() / (1024 * 1024), result.allocated() / 1024.0 / result.sorted().length, result.unexpected());
+		}
+
+		assertThat(results).allSatisfy(result -> assertThat(result.unexpected()).isZero());
+	}
+
+	private record Case(String name, Resources resource, int status) {
+	}
+
+	/**
+	 * Closed loop: each client sends its next booking when the previous answer is read
+	 */
+	private Result load(String token, Case rejection, Duration duration) throws Exception {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long end = System.nanoTime() + duration.toNanos();
+		List<Future<long[]>> clients = new ArrayList<>();
+		AtomicLong unexpected = new AtomicLong();
+		long allocatedBefore = threads.getTotalThreadAllocatedBytes();
+
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+			 HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).executor(executor).build()) {
+			for (int c = 0; c < CONCURRENCY; c++) {
+				clients.add(executor.submit(() -> {
+					long[] nanos = new long[1024];
+					int count = 0;
+					while (System.nanoTime() < end) {
+						long start = System.nanoTime();
+						try {
+							if (book(http, token, rejection.resource()).statusCode() != rejection.status()) {
+								unexpected.incrementAndGet();
+							}
+						} catch (IOException e) {
+							unexpected.incrementAndGet();
+						}
+						if (count == nanos.length) {
+							nanos = Arrays.copyOf(nanos, count * 2);
+						}
+						nanos[count++] = System.nanoTime() - start;
+					}
+					return Arrays.copyOf(nanos, count);
+				}));
+			}
+
+			List<long[]> latencies = new ArrayList<>();
+			for (Future<long[]> client : clients) {
+				latencies.add(client.get());
+			}
+			long[] all = latencies.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+			return new Result(all, duration, threads.getTotalThreadAllocatedBytes() - allocatedBefore, unexpected.get());
+		}
+	}
+
+	private HttpResponse<String> book(HttpClient http, String token, Resources resource)
+			throws IOException, InterruptedException {
+		HttpRequest request = HttpRequest.newBuilder(
+						URI.create("http://localhost:" + port + "/reservation_system/reservations/create_reservation"))
+				.header("Authorization", token)
+				.header("Content-Type", "application/json")
+				.POST(HttpRequest.BodyPublishers.ofString("{\"resource_id\":" + resource.getId() + "," + DATES + "}"))
+				.build();
+		return http.send(request, HttpResponse.BodyHandlers.ofString());
+	}
+
+	private record Result(long[] sorted, Duration duration, long allocated, long unexpected) {
+		double perSecond() {
+			return sorted.length * 1000.0 / duration.toMillis();
+		}
+
+		double averageMs() {
+			return Arrays.stream(sorted).average().orElse(0) / 1_000_000;
+		}
+
+		double p99Ms() {
+			return sorted.length == 0 ? 0 : sorted[Math.min(sorted.length - 1, sorted.length * 99 / 100)] / 1_000_000.0;
+		}
+	}
+
+	private String token(Users user) {
+		return "Bearer " + jwt.generate(user.getUsername(), List.of("USER"));
+	}
+
+	private Users newUser(String username, Roles role) {
+		Users newUser = new Users();
+		newUser.setUsername(username);
+		newUser.setEmail(username + "@mail.com");
+		newUser.setPassword("not used");
+		newUser.setRole(new HashSet<>(Set.of(role)));
+		return usersRepo.save(newUser);
+	}
+
+	private Resources newResource(String name, boolean active) {
+		Resources newResource = new Resources();
+		newResource.setName(name);
+		newResource.setDescription("Rejections benchmark");
+		newResource.setActive(active);
+		return resourcesRepo.save(newResource);
+	}
+}
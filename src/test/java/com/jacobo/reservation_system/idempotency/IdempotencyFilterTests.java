@@ -0,0 +1,132 @@
+package com.jacobo.reservation_system.idempotency;
+
+import com.jacobo.reservation_system.repositories.IdempotencyKeysRepository;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Replays of IdempotencyFilter, with the table mocked: the store answers from memory
+ * The chain stands for the controller, it counts the executions of the request
+ */
+class IdempotencyFilterTests {
+	private static final String BODY = "{\"resource_id\":1,\"start_date\":\"2030-01-01\",\"end_date\":\"2030-01-03\"}";
+
+	private IdempotencyKeysRepository keysRepo;
+	private IdempotencyFilter filter;
+	private final AtomicInteger executions = new AtomicInteger();
+
+	@BeforeEach
+	void setUp() {
+		keysRepo = mock(IdempotencyKeysRepository.class);
+		when(keysRepo.findById(anyString())).thenReturn(Optional.empty());
+
+		filter = new IdempotencyFilter(new IdempotencyStore(keysRepo, 100, 24), 5000);
+	}
+
+	@Test
+	void concurrentDuplicateWaitsAndReplaysTheFirstResponse() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		FilterChain slowCreate = (req, res) -> {
+			started.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			created(res);
+		};
+
+		try (ExecutorService executor = Executors.newFixedThreadPool(2)) {
+			Future<MockHttpServletResponse> first = executor.submit(() -> send("key-1", BODY, slowCreate));
+			assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+			Future<MockHttpServletResponse> duplicate = executor.submit(() -> send("key-1", BODY, slowCreate));
+
+			// The first request looked up the key twice (before and after claiming it), the
+			// duplicate once: it found the claim and waits for the first execution
+			verify(keysRepo, timeout(5000).times(3)).findById(anyString());
+			assertThat(duplicate.isDone()).isFalse();
+			release.countDown();
+
+			MockHttpServletResponse original = first.get(5, TimeUnit.SECONDS);
+			MockHttpServletResponse replayed = duplicate.get(5, TimeUnit.SECONDS);
+
+			assertThat(executions).hasValue(1);
+			assertThat(original.getHeader(IdempotencyFilter.REPLAYED_HEADER)).isNull();
+			assertThat(replayed.getStatus()).isEqualTo(original.getStatus()).isEqualTo(200);
+			assertThat(replayed.getContentAsString()).isEqualTo(original.getContentAsString());
+			assertThat(replayed.getHeader(IdempotencyFilter.REPLAYED_HEADER)).isEqualTo("true");
+		}
+	}
+
+	@Test
+	void sameKeyWithAnotherBodyIsRejected() throws Exception {
+		assertThat(send("key-2", BODY, (req, res) -> created(res)).getStatus()).isEqualTo(200);
+
+		MockHttpServletResponse other = send("key-2", BODY.replace("2030-01-03", "2030-01-04"),
+				(req, res) -> created(res));
+
+		assertThat(other.getStatus()).isEqualTo(422);
+		assertThat(executions).hasValue(1);
+	}
+
+	@Test
+	void serverErrorsAreNotReplayed() throws Exception {
+		FilterChain failing = (req, res) -> {
+			executions.incrementAndGet();
+			((HttpServletResponse) res).setStatus(503);
+		};
+
+		assertThat(send("key-3", BODY, failing).getStatus()).isEqualTo(503);
+		assertThat(send("key-3", BODY, (req, res) -> created(res)).getStatus()).isEqualTo(200);
+
+		assertThat(executions).hasValue(2);
+		verify(keysRepo, times(1)).save(any());
+	}
+
+	private MockHttpServletResponse send(String key, String body, FilterChain chain) throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", "/reservations/create_reservation");
+		request.addHeader(IdempotencyFilter.HEADER, key);
+		request.setContentType("application/json");
+		request.setContent(body.getBytes(StandardCharsets.UTF_8));
+
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		filter.doFilter(request, response, chain);
+		return response;
+	}
+
+	/**
+	 * Response of the controller: a new reservation ID on every execution
+	 */
+	private void created(ServletResponse res) throws IOException {
+		int execution = executions.incrementAndGet();
+		HttpServletResponse response = (HttpServletResponse) res;
+		response.setStatus(200);
+		response.setContentType("application/json");
+		response.getWriter().write("{\"id\":" + execution + ",\"message\":\"Reservation created\"}");
+	}
+}
@@ -0,0 +1,190 @@
+package com.jacobo.reservation_system.jackson;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jacobo.reservation_system.models.dtos.ReservationsDtos.GetAllReservationsOutDTO;
+import com.jacobo.reservation_system.models.entities.Reservations;
+import com.jacobo.reservation_system.models.entities.Resources;
+import com.jacobo.reservation_system.models.entities.Users;
+import com.jacobo.reservation_system.repositories.ReservationsRepository;
+import com.jacobo.reservation_system.repositories.ResourcesRepository;
+import com.jacobo.reservation_system.repositories.UsersRepository;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Allocation benchmark of GET /reservations/ (admin, every row)
+ * - list: the code before streaming, entities loaded with findAll, copied to a list of
+ *   OutDTOs and the list serialized
+ * - streamed: DTOs built by the query and written one by one (check @JsonArrayStreamer)
+ * Bytes allocated by the test thread (ThreadMXBean), median of several runs after a warm-up
+ * Run with: mvn test -Pbenchmarks
+ */
+@Tag("benchmark")
+@SpringBootTest
+@ActiveProfiles("test")
+class ListAllocationBenchmarkTests {
+	private static final int ROWS = 20_000;
+	private static final int RUNS = 7;
+
+	@Autowired
+	private ReservationsRepository reservationsRepo;
+	@Autowired
+	private UsersRepository usersRepo;
+	@Autowired
+	private ResourcesRepository resourcesRepo;
+	@Autowired
+	private JsonArrayStreamer streamer;
+	@Autowired
+	private ObjectMapper mapper;
+	@Autowired
+	private JdbcTemplate jdbc;
+	@Autowired
+	private PlatformTransactionManager txManager;
+
+	private TransactionTemplate readOnly;
+
+	@BeforeEach
+	void setUp() {
+		readOnly = new TransactionTemplate(txManager);
+		readOnly.setReadOnly(true);
+
+		if (reservationsRepo.count() >= ROWS) {
+			return;
+		}
+
+		String suffix = UUID.randomUUID().toString().substring(0, 8);
+		Users user = new Users();
+		user.setUsername("bench_" + suffix);
+		user.setEmail("bench_" + suffix + "@mail.com");
+		user.setPassword("-");
+		usersRepo.save(user);
+
+		Resources resource = new Resources();
+		resource.setName("bench_" + suffix);
+		resourcesRepo.save(resource);
+
+		List<Object[]> rows = new ArrayList<>();
+		for (int i = 0; i < ROWS; i++) {
+			LocalDate start = LocalDate.of(2030, 1, 1).plusDays(i);
+			rows.add(new Object[]{user.getId(), resource.getId(), Date.valueOf(start), Date.valueOf(start.plusDays(1))});
+		}
+		jdbc.batchUpdate("insert into reservations (user_id, resource_id, start_date_time, end_date_time, status) "
+				+ "values (?, ?, ?, ?, 'active')", rows);
+	}
+
+	@Test
+	void listVersusStreamed() throws IOException {
+		long list = median(this::list);
+		long streamed = median(this::streamed);
+
+		System.out.printf("GET /reservations/ with %d rows: list %,d bytes allocated, streamed %,d bytes (%.1f%%)%n",
+				ROWS, list, streamed, 100.0 * streamed / list);
+
+		assertThat(streamed).isLessThan(list);
+	}
+
+	private void list() {
+		readOnly.executeWithoutResult(status -> {
+			List<GetAllReservationsOutDTO> outDto = new ArrayList<>();
+			for (Reservations reservation : reservationsRepo.findAll()) {
+				GetAllReservationsOutDTO dto = new GetAllReservationsOutDTO();
+				dto.setId(reservation.getId());
+				dto.setUser(reservation.getUser().getId());
+				dto.setResource(reservation.getResource().getId());
+				dto.setStart_date(reservation.getStart_date());
+				dto.setEnd_date(reservation.getEnd_date());
+				dto.setStatus(reservation.getStatus());
+				outDto.add(dto);
+			}
+
+			try {
+				mapper.writeValue(new DiscardingResponse().getOutputStream(), outDto);
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+	}
+
+	private void streamed() {
+		readOnly.executeWithoutResult(status -> {
+			try {
+				streamer.<GetAllReservationsOutDTO>writeArray(new DiscardingResponse(), action -> {
+					try (Stream<GetAllReservationsOutDTO> reservations = reservationsRepo.streamAll()) {
+						reservations.forEach(action);
+					}
+				});
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+	}
+
+	private static long median(Runnable run) {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+		for (int i = 0; i < 3; i++) {
+			run.run(); // Warm-up: class loading and first compilations
+		}
+
+		long[] allocated = new long[RUNS];
+		for (int i = 0; i < RUNS; i++) {
+			long before = threads.getCurrentThreadAllocatedBytes();
+			run.run();
+			allocated[i] = threads.getCurrentThreadAllocatedBytes() - before;
+		}
+
+		Arrays.sort(allocated);
+		return allocated[RUNS / 2];
+	}
+
+	/**
+	 * Response whose body is thrown away, so the buffer of the body isn't measured
+	 */
+	private static final class DiscardingResponse extends MockHttpServletResponse {
+		private final ServletOutputStream out = new ServletOutputStream() {
+			@Override
+			public void write(int b) {
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) {
+			}
+
+			@Override
+			public boolean isReady() {
+				return true;
+			}
+
+			@Override
+			public void setWriteListener(WriteListener listener) {
+			}
+		};
+
+		@Override
+		public ServletOutputStream getOutputStream() {
+			return out;
+		}
+	}
+}
@@ -0,0 +1,190 @@
+package com.jacobo.reservation_system.occupancy;
+
+import com.jacobo.reservation_system.repositories.RecurringReservationsRepository;
+import com.jacobo.reservation_system.repositories.ReservationsRepository;
+import com.jacobo.reservation_system.repositories.ResourceLocksRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Lifetime of the cached occupancies across commits, rollbacks and changes of other instances
+ * Transactions are simulated with the synchronizations of TransactionSynchronizationManager,
+ * the lock row is a counter like the "version" column of resource_locks
+ */
+class OccupancyIndexTests {
+	private static final Long RESOURCE = 7L;
+	private static final LocalDate DAY = LocalDate.of(2030, 1, 1);
+
+	private ReservationsRepository resRepo;
+	private ResourceLocksRepository locksRepo;
+	private OccupancyIndex index;
+
+	/**
+	 * Committed version of the lock row and the one of the current transaction
+	 */
+	private long committedVersion;
+	private long version;
+
+	@BeforeEach
+	void setUp() {
+		resRepo = mock(ReservationsRepository.class);
+		locksRepo = mock(ResourceLocksRepository.class);
+		RecurringReservationsRepository recurringRepo = mock(RecurringReservationsRepository.class);
+
+		when(resRepo.findActiveRanges(RESOURCE)).thenReturn(List.<Object[]>of(new Object[] {DAY, DAY.plusDays(2)}));
+		when(recurringRepo.findByResourceIdAndStatus(anyLong(), anyString())).thenReturn(List.of());
+		when(locksRepo.lockAndIncrement(RESOURCE)).thenAnswer(invocation -> {
+			version = committedVersion + 1;
+			return 1;
+		});
+		when(locksRepo.findVersion(RESOURCE)).thenAnswer(invocation -> version);
+
+		index = new OccupancyIndex(resRepo, recurringRepo, locksRepo, new SimpleMeterRegistry(), 1000);
+	}
+
+	@AfterEach
+	void tearDown() {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+	}
+
+	@Test
+	void rolledBackChangesAreDropped() {
+		begin();
+		index.lock(RESOURCE);
+		ResourceOccupancy first = index.get(RESOURCE);
+		first.add(DAY.plusDays(5), DAY.plusDays(6));
+		assertThat(first.dirty).isTrue();
+		end(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+		begin();
+		index.lock(RESOURCE);
+		ResourceOccupancy second = index.get(RESOURCE);
+
+		assertThat(second).isNotSameAs(first);
+		assertThat(second.maxOccupancy(DAY.plusDays(5), DAY.plusDays(6))).isZero();
+		assertThat(second.maxOccupancy(DAY, DAY.plusDays(2))).isEqualTo(1);
+		verify(resRepo, times(2)).findActiveRanges(RESOURCE);
+		end(TransactionSynchronization.STATUS_COMMITTED);
+	}
+
+	@Test
+	void rolledBackWithoutChangesIsKept() {
+		begin();
+		index.lock(RESOURCE);
+		ResourceOccupancy first = index.get(RESOURCE);
+		end(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+		begin();
+		index.lock(RESOURCE);
+		assertThat(index.get(RESOURCE)).isSameAs(first);
+		verify(resRepo, times(1)).findActiveRanges(RESOURCE);
+		end(TransactionSynchronization.STATUS_COMMITTED);
+	}
+
+	@Test
+	void committedChangesAreKept() {
+		begin();
+		index.lock(RESOURCE);
+		ResourceOccupancy first = index.get(RESOURCE);
+		first.add(DAY.plusDays(5), DAY.plusDays(6));
+		end(TransactionSynchronization.STATUS_COMMITTED);
+
+		assertThat(first.dirty).isFalse();
+		assertThat(first.version).isEqualTo(committedVersion);
+
+		begin();
+		index.lock(RESOURCE);
+		assertThat(index.get(RESOURCE)).isSameAs(first);
+		assertThat(first.maxOccupancy(DAY.plusDays(5), DAY.plusDays(6))).isEqualTo(1);
+		verify(resRepo, times(1)).findActiveRanges(RESOURCE);
+		end(TransactionSynchronization.STATUS_COMMITTED);
+	}
+
+	@Test
+	void changedByAnotherInstanceIsReloaded() {
+		begin();
+		index.lock(RESOURCE);
+		ResourceOccupancy first = index.get(RESOURCE);
+		end(TransactionSynchronization.STATUS_COMMITTED);
+
+		committedVersion += 3; // Bookings committed by other instances
+
+		begin();
+		index.lock(RESOURCE);
+		ResourceOccupancy second = index.get(RESOURCE);
+
+		assertThat(second).isNotSameAs(first);
+		assertThat(second.version).isEqualTo(committedVersion);
+		verify(resRepo, times(2)).findActiveRanges(RESOURCE);
+		end(TransactionSynchronization.STATUS_COMMITTED);
+	}
+
+	@Test
+	void occupancyNeedsTheLock() {
+		begin();
+		assertThatThrownBy(() -> index.get(RESOURCE)).isInstanceOf(IllegalStateException.class);
+		end(TransactionSynchronization.STATUS_COMMITTED);
+
+		assertThatThrownBy(() -> index.lock(RESOURCE)).isInstanceOf(IllegalStateException.class);
+	}
+
+	@Test
+	void lockIsReleasedWhenTheTransactionEnds() throws InterruptedException {
+		begin();
+		index.lock(RESOURCE);
+		end(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+		// Another thread can lock it now
+		List<Throwable> errors = new ArrayList<>();
+		Thread other = Thread.ofVirtual().start(() -> {
+			try {
+				begin();
+				index.lock(RESOURCE);
+				end(TransactionSynchronization.STATUS_COMMITTED);
+			} catch (Throwable e) {
+				errors.add(e);
+			}
+		});
+		other.join();
+
+		assertThat(errors).isEmpty();
+	}
+
+	private static void begin() {
+		TransactionSynchronizationManager.initSynchronization();
+	}
+
+	/**
+	 * Completes the simulated transaction: the row version is committed or restored
+	 */
+	private void end(int status) {
+		if (status == TransactionSynchronization.STATUS_COMMITTED && version > committedVersion) {
+			committedVersion = version;
+		}
+		List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+		TransactionSynchronizationManager.clearSynchronization();
+
+		for (TransactionSynchronization synchronization : synchronizations) {
+			synchronization.afterCompletion(status);
+		}
+	}
+}
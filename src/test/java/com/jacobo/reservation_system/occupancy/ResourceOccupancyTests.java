@@ -0,0 +1,249 @@
+package com.jacobo.reservation_system.occupancy;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Step function of the booked units, checked against a model with one counter per day
+ * Ranges are half-open [start, end)
+ */
+class ResourceOccupancyTests {
+	private static final LocalDate BASE = LocalDate.of(2030, 1, 1);
+	private static final int DAYS = 400;
+
+	@Test
+	void adjacentRangesDontOverlap() {
+		ResourceOccupancy occupancy = new ResourceOccupancy();
+		occupancy.add(day(1), day(3));
+		occupancy.add(day(3), day(5));
+
+		assertThat(occupancy.maxOccupancy(day(0), day(10))).isEqualTo(1);
+		assertThat(occupancy.maxOccupancy(day(2), day(4))).isEqualTo(1);
+		assertThat(occupancy.maxOccupancy(day(5), day(10))).isZero();
+		assertThat(occupancy.maxOccupancy(day(0), day(1))).isZero();
+	}
+
+	@Test
+	void overlappingRangesStack() {
+		ResourceOccupancy occupancy = new ResourceOccupancy();
+		occupancy.add(day(1), day(10));
+		occupancy.add(day(5), day(15));
+		occupancy.add(day(9), day(10));
+
+		assertThat(occupancy.maxOccupancy(day(0), day(5))).isEqualTo(1);
+		assertThat(occupancy.maxOccupancy(day(5), day(9))).isEqualTo(2);
+		assertThat(occupancy.maxOccupancy(day(9), day(10))).isEqualTo(3);
+		assertThat(occupancy.maxOccupancy(day(10), day(20))).isEqualTo(1);
+	}
+
+	@Test
+	void removingEverythingGoesBackToZero() {
+		ResourceOccupancy occupancy = new ResourceOccupancy();
+		occupancy.add(day(1), day(10));
+		occupancy.add(day(5), day(15));
+		occupancy.remove(day(1), day(10));
+		occupancy.remove(day(5), day(15));
+
+		assertThat(occupancy.maxOccupancy(day(-100), day(100))).isZero();
+	}
+
+	@Test
+	void emptyRangesAreIgnored() {
+		ResourceOccupancy occupancy = new ResourceOccupancy();
+		occupancy.add(day(5), day(5));
+		occupancy.add(day(6), day(5));
+
+		assertThat(occupancy.maxOccupancy(day(0), day(10))).isZero();
+		assertThat(occupancy.dirty).isFalse();
+	}
+
+	@Test
+	void changesMarkItDirty() {
+		ResourceOccupancy occupancy = new ResourceOccupancy();
+		occupancy.add(day(1), day(2));
+
+		assertThat(occupancy.dirty).isTrue();
+	}
+
+	@Test
+	void nextFreeSkipsBusySegments() {
+		ResourceOccupancy occupancy = new ResourceOccupancy();
+		occupancy.add(day(0), day(5));
+		occupancy.add(day(6), day(10));
+
+		assertThat(occupancy.nextFree(day(0), 1, 0)).isEqualTo(day(5)); // The one-day gap fits
+		assertThat(occupancy.nextFree(day(0), 2, 0)).isEqualTo(day(10)); // It doesn't fit two days
+		assertThat(occupancy.nextFree(day(11), 3, 0)).isEqualTo(day(11)); // Already free
+	}
+
+	@Test
+	void conflictAtTheEndOfTheTimeline() {
+		ResourceOccupancy occupancy = new ResourceOccupancy();
+		occupancy.add(day(10), day(20)); // Last booking: no key after its end but the 0 one
+
+		assertThat(occupancy.nextFree(day(10), 3, 0)).isEqualTo(day(20));
+		assertThat(occupancy.nextFree(day(19), 1, 0)).isEqualTo(day(20));
+		assertThat(occupancy.nextFree(day(8), 3, 0)).isEqualTo(day(20)); // Starts free but runs into it
+		assertThat(occupancy.previousFree(day(20), day(0), 3, 0)).isEqualTo(day(7));
+		assertThat(occupancy.previousFree(day(25), day(0), 3, 0)).isEqualTo(day(24)); // May end after "before"
+	}
+
+	@Test
+	void capacityAboveOne() {
+		ResourceOccupancy occupancy = new ResourceOccupancy();
+		occupancy.add(day(0), day(10));
+		occupancy.add(day(3), day(6));
+		occupancy.add(day(4), day(5));
+
+		// Capacity 3 (max level 2 before booking one more): only day 4 is full
+		assertThat(occupancy.nextFree(day(0), 4, 2)).isEqualTo(day(0));
+		assertThat(occupancy.nextFree(day(2), 4, 2)).isEqualTo(day(5));
+		assertThat(occupancy.previousFree(day(6), day(0), 4, 2)).isEqualTo(day(5)); // Latest start: [5, 9)
+		// Capacity 2 (max level 1): days 3 to 5 are full
+		assertThat(occupancy.nextFree(day(0), 3, 1)).isEqualTo(day(0));
+		assertThat(occupancy.nextFree(day(1), 3, 1)).isEqualTo(day(6));
+		assertThat(occupancy.previousFree(day(5), day(0), 3, 1)).isEqualTo(day(0));
+		assertThat(occupancy.previousFree(day(5), day(1), 3, 1)).isNull();
+	}
+
+	@Test
+	void previousFreeTouchingTheNotBeforeBound() {
+		ResourceOccupancy occupancy = new ResourceOccupancy();
+		occupancy.add(day(3), day(10));
+
+		// [0, 3) fits exactly between the bound and the booking
+		assertThat(occupancy.previousFree(day(10), day(0), 3, 0)).isEqualTo(day(0));
+		assertThat(occupancy.previousFree(day(1), day(0), 3, 0)).isEqualTo(day(0));
+		// One day later it doesn't fit anymore
+		assertThat(occupancy.previousFree(day(10), day(1), 3, 0)).isNull();
+		// Nothing starts before the bound
+		assertThat(occupancy.previousFree(day(0), day(0), 1, 0)).isNull();
+	}
+
+	/**
+	 * Free window search against the model: every start is checked day by day
+	 */
+	@Test
+	void freeWindowsMatchPerDayModel() {
+		Random random = new Random(2);
+
+		for (int run = 0; run < 300; run++) {
+			ResourceOccupancy occupancy = new ResourceOccupancy();
+			int[] model = new int[DAYS];
+
+			for (int booking = 0; booking < 5 + random.nextInt(60); booking++) {
+				int start = random.nextInt(DAYS - 40);
+				int[] range = {start, start + 1 + random.nextInt(30)};
+				occupancy.add(day(range[0]), day(range[1]));
+				apply(model, range, 1);
+			}
+
+			for (int query = 0; query < 50; query++) {
+				int days = 1 + random.nextInt(20);
+				int maxLevel = random.nextInt(3); // Capacity 1 to 3
+				int from = random.nextInt(DAYS + 20) - 10;
+				int notBefore = from - random.nextInt(100);
+
+				assertThat(occupancy.nextFree(day(from), days, maxLevel))
+						.as("run %d nextFree(%d, %d, %d)", run, from, days, maxLevel)
+						.isEqualTo(day(nextFree(model, from, days, maxLevel)));
+
+				Integer previous = previousFree(model, from, notBefore, days, maxLevel);
+				assertThat(occupancy.previousFree(day(from), day(notBefore), days, maxLevel))
+						.as("run %d previousFree(%d, %d, %d, %d)", run, from, notBefore, days, maxLevel)
+						.isEqualTo(previous == null ? null : day(previous));
+			}
+		}
+	}
+
+	private static int nextFree(int[] model, int from, int days, int maxLevel) {
+		int start = from;
+		while (!fits(model, start, days, maxLevel)) {
+			start++;
+		}
+		return start;
+	}
+
+	private static Integer previousFree(int[] model, int before, int notBefore, int days, int maxLevel) {
+		for (int start = before - 1; start >= notBefore; start--) {
+			if (fits(model, start, days, maxLevel)) {
+				return start;
+			}
+		}
+		return null;
+	}
+
+	private static boolean fits(int[] model, int start, int days, int maxLevel) {
+		for (int d = start; d < start + days; d++) {
+			if (d >= 0 && d < model.length && model[d] > maxLevel) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Random adds and removes of existing bookings; after each change the level
+	 * of every day and the maximum of random ranges must match the model
+	 */
+	@Test
+	void matchesPerDayModel() {
+		Random random = new Random(1);
+
+		for (int run = 0; run < 50; run++) {
+			ResourceOccupancy occupancy = new ResourceOccupancy();
+			int[] model = new int[DAYS];
+			List<int[]> bookings = new ArrayList<>();
+
+			for (int step = 0; step < 200; step++) {
+				if (bookings.isEmpty() || random.nextInt(10) < 6) {
+					int start = random.nextInt(DAYS - 40);
+					int[] booking = {start, start + 1 + random.nextInt(30)};
+					bookings.add(booking);
+					occupancy.add(day(booking[0]), day(booking[1]));
+					apply(model, booking, 1);
+				} else {
+					int[] booking = bookings.remove(random.nextInt(bookings.size()));
+					occupancy.remove(day(booking[0]), day(booking[1]));
+					apply(model, booking, -1);
+				}
+
+				for (int d = 0; d < DAYS; d++) {
+					assertThat(occupancy.maxOccupancy(day(d), day(d + 1))).as("run %d step %d day %d", run, step, d)
+							.isEqualTo(model[d]);
+				}
+
+				for (int i = 0; i < 10; i++) {
+					int from = random.nextInt(DAYS);
+					int to = from + 1 + random.nextInt(DAYS - from);
+					assertThat(occupancy.maxOccupancy(day(from), day(to))).as("run %d step %d [%d, %d)", run, step, from, to)
+							.isEqualTo(max(model, from, to));
+				}
+			}
+		}
+	}
+
+	private static void apply(int[] model, int[] booking, int delta) {
+		for (int d = booking[0]; d < booking[1]; d++) {
+			model[d] += delta;
+		}
+	}
+
+	private static int max(int[] model, int from, int to) {
+		int max = 0;
+		for (int d = from; d < to; d++) {
+			max = Math.max(max, model[d]);
+		}
+		return max;
+	}
+
+	private static LocalDate day(int offset) {
+		return BASE.plusDays(offset);
+	}
+}
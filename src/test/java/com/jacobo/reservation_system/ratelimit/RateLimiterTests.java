@@ -0,0 +1,56 @@
+package com.jacobo.reservation_system.ratelimit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Bounded map of buckets: a full map never makes new clients share a bucket
+ */
+class RateLimiterTests {
+
+	@Test
+	void newClientsAreRejectedWhileEveryBucketIsInUse() {
+		// One token per second: a bucket that gave a token stays in use for a second
+		RateLimiter limiter = limiter(2, 60);
+
+		assertThat(limiter.tryAcquire("GET", "/resources/", null, "10.0.0.1")).isZero();
+		assertThat(limiter.tryAcquire("GET", "/resources/", null, "10.0.0.2")).isZero();
+
+		// Full: the third client waits for a token, as if its own bucket was empty
+		assertThat(limiter.tryAcquire("GET", "/resources/", null, "10.0.0.3")).isEqualTo(1_000_000_000L);
+		assertThat(limiter.tryAcquire("GET", "/resources/", null, "10.0.0.4")).isEqualTo(1_000_000_000L);
+		// The clients that have a bucket keep their own limit
+		assertThat(limiter.tryAcquire("GET", "/resources/", null, "10.0.0.1")).isZero();
+		assertThat(limiter.tryAcquire("GET", "/resources/", null, "10.0.0.1")).isPositive();
+	}
+
+	@Test
+	void idleBucketsAreEvictedWhenTheMapIsFull() throws InterruptedException {
+		// One token per millisecond: the buckets are full again right away
+		RateLimiter limiter = limiter(2, 60_000);
+
+		assertThat(limiter.tryAcquire("GET", "/resources/", null, "10.0.0.1")).isZero();
+		assertThat(limiter.tryAcquire("GET", "/resources/", null, "10.0.0.2")).isZero();
+		Thread.sleep(5);
+
+		assertThat(limiter.tryAcquire("GET", "/resources/", null, "10.0.0.3")).isZero();
+	}
+
+	private static RateLimiter limiter(int maxBuckets, int refillPerMinute) {
+		RateLimitProperties.Rule rule = new RateLimitProperties.Rule();
+		rule.setName("default");
+		rule.setKey(RateLimitProperties.KeyType.IP);
+		rule.setCapacity(2);
+		rule.setRefillPerMinute(refillPerMinute);
+
+		RateLimitProperties properties = new RateLimitProperties();
+		properties.setMaxBuckets(maxBuckets);
+		properties.setRules(List.of(rule));
+
+		return new RateLimiter(properties, new SimpleMeterRegistry());
+	}
+}
@@ -0,0 +1,101 @@
+package com.jacobo.reservation_system.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * GCRA timing of TokenBucket, with the clock passed by the test
+ * Capacity 3 and 60 tokens per minute: one token every second, bursts of 3
+ */
+class TokenBucketTests {
+	private static final long SECOND = 1_000_000_000L;
+	private static final long START = 1_000 * SECOND;
+
+	@Test
+	void burstUpToCapacityThenOneIntervalToWait() {
+		TokenBucket bucket = new TokenBucket(3, 60, START);
+
+		assertThat(bucket.tryAcquire(START)).isZero();
+		assertThat(bucket.tryAcquire(START)).isZero();
+		assertThat(bucket.tryAcquire(START)).isZero();
+
+		assertThat(bucket.tryAcquire(START)).isEqualTo(SECOND);
+		// A rejection doesn't take a token: the wait is the same
+		assertThat(bucket.tryAcquire(START)).isEqualTo(SECOND);
+	}
+
+	@Test
+	void refillsOneTokenPerInterval() {
+		TokenBucket bucket = new TokenBucket(3, 60, START);
+		for (int i = 0; i < 3; i++) {
+			bucket.tryAcquire(START);
+		}
+
+		assertThat(bucket.tryAcquire(START + SECOND / 4)).isEqualTo(SECOND * 3 / 4);
+		assertThat(bucket.tryAcquire(START + SECOND)).isZero();
+		assertThat(bucket.tryAcquire(START + SECOND)).isEqualTo(SECOND);
+		assertThat(bucket.tryAcquire(START + 3 * SECOND)).isZero();
+		assertThat(bucket.tryAcquire(START + 3 * SECOND)).isZero();
+		assertThat(bucket.tryAcquire(START + 3 * SECOND)).isEqualTo(SECOND);
+	}
+
+	@Test
+	void idleTimeDoesNotGrowTheBurstOverCapacity() {
+		TokenBucket bucket = new TokenBucket(3, 60, START);
+		long later = START + 3_600 * SECOND;
+
+		for (int i = 0; i < 3; i++) {
+			assertThat(bucket.tryAcquire(later)).isZero();
+		}
+		assertThat(bucket.tryAcquire(later)).isEqualTo(SECOND);
+	}
+
+	@Test
+	void idleOnlyWhenFullAgain() {
+		TokenBucket bucket = new TokenBucket(3, 60, START);
+		assertThat(bucket.isIdle(START)).isTrue();
+
+		bucket.tryAcquire(START);
+		bucket.tryAcquire(START);
+
+		assertThat(bucket.isIdle(START + SECOND)).isFalse();
+		assertThat(bucket.isIdle(START + 2 * SECOND)).isTrue();
+	}
+
+	@Test
+	void concurrentAcquiresNeverTakeMoreThanTheBurst() throws Exception {
+		int threads = 16;
+		TokenBucket bucket = new TokenBucket(10, 60, START);
+		CyclicBarrier start = new CyclicBarrier(threads);
+		List<Future<Integer>> allowed = new ArrayList<>();
+
+		try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+			for (int t = 0; t < threads; t++) {
+				allowed.add(executor.submit(() -> {
+					start.await();
+					int count = 0;
+					for (int i = 0; i < 100; i++) {
+						if (bucket.tryAcquire(START) == 0) {
+							count++;
+						}
+					}
+					return count;
+				}));
+			}
+
+			int total = 0;
+			for (Future<Integer> count : allowed) {
+				total += count.get();
+			}
+			assertThat(total).isEqualTo(10);
+		}
+	}
+}
@@ -0,0 +1,255 @@
+package com.jacobo.reservation_system.reactive;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jacobo.reservation_system.ReservationSystemApplication;
+import com.jacobo.reservation_system.models.entities.Resources;
+import com.jacobo.reservation_system.models.entities.Roles;
+import com.jacobo.reservation_system.models.entities.Users;
+import com.jacobo.reservation_system.repositories.ResourcesRepository;
+import com.jacobo.reservation_system.repositories.RolesRepository;
+import com.jacobo.reservation_system.repositories.UsersRepository;
+import com.jacobo.reservation_system.revocation.ReactiveTokenRevocations;
+import com.jacobo.reservation_system.revocation.TokenRevocations;
+import com.jacobo.reservation_system.services.implementation.JwtService;
+import com.jacobo.reservation_system.sharding.ShardRouter;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Reactive read path next to the main application, on two H2 shards
+ * The main application creates the schemas and the bookings (writes stay on JPA),
+ * and both applications must give the same answers to the same tokens
+ */
+class ReactiveReadsTests {
+	private static final String OPTIONS = "MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+	private static final HttpClient HTTP = HttpClient.newHttpClient();
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	private static ConfigurableApplicationContext servlet;
+	private static ConfigurableApplicationContext reactive;
+	private static Users admin;
+	private static Users alice;
+
+	@BeforeAll
+	static void start() throws Exception {
+		servlet = new SpringApplicationBuilder(ReservationSystemApplication.class)
+				.profiles("test")
+				.run(
+						"--server.port=0",
+						"--spring.datasource.url=jdbc:h2:mem:reactive_home;" + OPTIONS,
+						"--sharding.shards[0].url=jdbc:h2:mem:reactive_shard1;" + OPTIONS
+								+ ";INIT=RUNSCRIPT FROM 'docker/shard-schema.sql'",
+						"--sharding.shards[0].username=sa",
+						"--sharding.shards[0].password=",
+						"--rate-limit.enabled=false");
+
+		reactive = ReactiveReadsApplication.application()
+				.profiles("test")
+				.run(
+						"--server.port=0",
+						"--spring.r2dbc.url=r2dbc:h2:mem:///reactive_home?options=" + OPTIONS,
+						"--sharding.shards[0].r2dbc-url=r2dbc:h2:mem:///reactive_shard1?options=" + OPTIONS,
+						"--sharding.shards[0].username=sa",
+						"--sharding.shards[0].password=");
+
+		seed();
+	}
+
+	@AfterAll
+	static void stop() {
+		reactive.close();
+		servlet.close();
+	}
+
+	@Test
+	void sameListingsAsTheServletPath() throws Exception {
+		for (Users user : List.of(admin, alice)) {
+			String token = token(user, user == admin ? "ADMIN" : "USER");
+
+			for (String path : List.of("/reservations/", "/resources/")) {
+				HttpResponse<String> expected = get(servlet, path, token, "application/json");
+				HttpResponse<String> actual = get(reactive, path, token, "application/json");
+
+				assertThat(actual.statusCode()).isEqualTo(expected.statusCode()).isEqualTo(200);
+				assertThat(MAPPER.readTree(actual.body())).isEqualTo(MAPPER.readTree(expected.body()));
+			}
+		}
+
+		// ADMIN: the reservations of both shards with their user, and the 4 occurrences of the series
+		JsonNode all = MAPPER.readTree(get(reactive, "/reservations/", token(admin, "ADMIN"), "application/json").body());
+		assertThat(all).hasSize(2 + 4);
+		assertThat(all.findValues("user")).allMatch(user -> !user.isNull());
+		assertThat(all.findValues("recurring_id")).filteredOn(id -> !id.isNull()).hasSize(4);
+
+		// USER: only his own ones, without the user; only the active resources
+		JsonNode own = MAPPER.readTree(get(reactive, "/reservations/", token(alice, "USER"), "application/json").body());
+		assertThat(own).hasSize(4);
+		assertThat(own.findValues("user")).allMatch(JsonNode::isNull);
+		JsonNode resources = MAPPER.readTree(get(reactive, "/resources/", token(alice, "USER"), "application/json").body());
+		assertThat(resources.findValuesAsText("name")).doesNotContain("reactive_closed");
+	}
+
+	@Test
+	void ndjsonSendsOneElementPerLine() throws Exception {
+		String token = token(admin, "ADMIN");
+		HttpResponse<String> ndjson = get(reactive, "/reservations/", token, "application/x-ndjson");
+
+		assertThat(ndjson.headers().firstValue("Content-Type")).hasValue("application/x-ndjson");
+		assertThat(ndjson.body().lines().map(line -> {
+			try {
+				return MAPPER.readTree(line);
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+		}).toList()).containsExactlyElementsOf(
+				MAPPER.readTree(get(reactive, "/reservations/", token, "application/json").body()));
+	}
+
+	@Test
+	void missingInvalidOrRevokedTokensAreRefusedLikeTheServletPath() throws Exception {
+		Users carol = newUser("reactive_carol", role("USER"));
+		String revoked = token(carol, "USER");
+		String other = token(alice, "USER");
+
+		servlet.getBean(TokenRevocations.class).revokeToken(servlet.getBean(JwtService.class).parse(revoked));
+		reactive.getBean(ReactiveTokenRevocations.class).rebuild().block();
+
+		for (String token : new String[]{null, "Bearer not.a.token", revoked}) {
+			assertThat(get(reactive, "/reservations/", token, "application/json").statusCode())
+					.isEqualTo(get(servlet, "/reservations/", token, "application/json").statusCode())
+					.isEqualTo(403);
+		}
+		assertThat(get(reactive, "/reservations/", other, "application/json").statusCode()).isEqualTo(200);
+
+		// Tokens of a revoked user are refused, whatever their ID
+		Users dave = newUser("reactive_dave", role("USER"));
+		String beforeRevocation = token(dave, "USER");
+		servlet.getBean(TokenRevocations.class).revokeUser(dave.getUsername());
+		reactive.getBean(ReactiveTokenRevocations.class).rebuild().block();
+
+		assertThat(get(reactive, "/resources/", beforeRevocation, "application/json").statusCode()).isEqualTo(403);
+	}
+
+	@Test
+	void unknownUserIsNotFound() throws Exception {
+		String token = "Bearer " + servlet.getBean(JwtService.class).generate("reactive_nobody", List.of("USER"));
+
+		HttpResponse<String> expected = get(servlet, "/reservations/", token, "application/json");
+		HttpResponse<String> actual = get(reactive, "/reservations/", token, "application/json");
+
+		assertThat(actual.statusCode()).isEqualTo(expected.statusCode()).isEqualTo(404);
+		assertThat(MAPPER.readTree(actual.body())).isEqualTo(MAPPER.readTree(expected.body()));
+	}
+
+	@Test
+	void actuatorIsOnlyForAdministratorsExceptHealth() throws Exception {
+		assertThat(get(reactive, "/actuator/health", null, "application/json").statusCode()).isEqualTo(200);
+		assertThat(get(reactive, "/actuator/metrics", token(alice, "USER"), "application/json").statusCode())
+				.isEqualTo(403);
+		assertThat(get(reactive, "/actuator/metrics/r2dbc.pool.acquired", token(admin, "ADMIN"), "application/json")
+				.statusCode()).isEqualTo(200);
+	}
+
+	/**
+	 * An admin, a user with a weekly series, two users with one reservation each
+	 * (one per shard), and an inactive resource
+	 * A user can't have more than one active reservation, series included
+	 */
+	private static void seed() throws Exception {
+		admin = newUser("reactive_admin", role("ADMIN"));
+		alice = newUser("reactive_alice", role("USER"));
+		Users bob = newUser("reactive_bob", role("USER"));
+		Users erin = newUser("reactive_erin", role("USER"));
+
+		Resources home = resourceIn(0);
+		Resources shard1 = resourceIn(1);
+		Resources closed = newResource("reactive_closed");
+		closed.setActive(false);
+		servlet.getBean(ResourcesRepository.class).save(closed);
+
+		post("/reservations/create_reservation", bob, "{\"resource_id\":" + home.getId()
+				+ ",\"start_date\":\"2036-03-01\",\"end_date\":\"2036-03-03\"}");
+		post("/reservations/create_reservation", erin, "{\"resource_id\":" + shard1.getId()
+				+ ",\"start_date\":\"2036-03-01\",\"end_date\":\"2036-03-03\"}");
+		post("/reservations/create_recurring_reservation", alice, "{\"resource_id\":" + shard1.getId()
+				+ ",\"start_date\":\"2037-01-05\",\"end_date\":\"2037-01-06\",\"frequency\":\"weekly\",\"count\":4}");
+	}
+
+	private static void post(String path, Users user, String body) throws Exception {
+		HttpResponse<String> response = HTTP.send(HttpRequest.newBuilder(uri(servlet, path))
+						.header("Authorization", token(user, "USER"))
+						.header("Content-Type", "application/json")
+						.POST(HttpRequest.BodyPublishers.ofString(body))
+						.build(),
+				HttpResponse.BodyHandlers.ofString());
+		assertThat(response.statusCode()).as(response.body()).isEqualTo(200);
+	}
+
+	private static HttpResponse<String> get(ConfigurableApplicationContext context, String path, String token,
+											String accept) throws Exception {
+		HttpRequest.Builder request = HttpRequest.newBuilder(uri(context, path)).header("Accept", accept).GET();
+		if (token != null) {
+			request.header("Authorization", token);
+		}
+		return HTTP.send(request.build(), HttpResponse.BodyHandlers.ofString());
+	}
+
+	private static URI uri(ConfigurableApplicationContext context, String path) {
+		int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+		return URI.create("http://localhost:" + port + "/reservation_system" + path);
+	}
+
+	private static String token(Users user, String role) {
+		return "Bearer " + servlet.getBean(JwtService.class).generate(user.getUsername(), List.of(role));
+	}
+
+	private static Roles role(String name) {
+		RolesRepository rolesRepo = servlet.getBean(RolesRepository.class);
+		return rolesRepo.findByName(name).orElseGet(() -> {
+			Roles role = new Roles();
+			role.setName(name);
+			return rolesRepo.save(role);
+		});
+	}
+
+	private static Users newUser(String username, Roles role) {
+		Users newUser = new Users();
+		newUser.setUsername(username);
+		newUser.setEmail(username + "@mail.com");
+		newUser.setPassword("not used");
+		newUser.setRole(new HashSet<>(Set.of(role)));
+		return servlet.getBean(UsersRepository.class).save(newUser);
+	}
+
+	private static Resources resourceIn(int shard) {
+		ShardRouter router = servlet.getBean(ShardRouter.class);
+		Resources resource;
+		int i = 0;
+		do {
+			resource = newResource("reactive_room_" + shard + "_" + i++);
+		} while (router.shardForResource(resource.getId()) != shard);
+		return resource;
+	}
+
+	private static Resources newResource(String name) {
+		Resources newResource = new Resources();
+		newResource.setName(name);
+		newResource.setDescription("Resource " + name);
+		return servlet.getBean(ResourcesRepository.class).save(newResource);
+	}
+}
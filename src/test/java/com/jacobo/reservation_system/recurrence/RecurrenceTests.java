@@ -0,0 +1,159 @@
+package com.jacobo.reservation_system.recurrence;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Date arithmetic of the recurring reservations, without database
+ * Ranges are half-open [start, end), like the overlap query of the reservations
+ */
+class RecurrenceTests {
+	private static final LocalDate FIRST = LocalDate.of(2030, 1, 1);
+
+	@ParameterizedTest
+	@CsvSource({
+			"daily,   1,  1",
+			"daily,   3,  3",
+			"DAILY,   2,  2",
+			"weekly,  1,  7",
+			"Weekly,  2, 14",
+			"monthly, 1, -1",
+	})
+	void periodDays(String frequency, int every, long expected) {
+		assertThat(Recurrence.periodDays(frequency, every)).isEqualTo(expected);
+	}
+
+	@ParameterizedTest
+	@CsvSource({
+			// until,   period, occurrences starting on or before until
+			"2029-12-31, 7, 0",
+			"2030-01-01, 7, 1",
+			"2030-01-07, 7, 1",
+			"2030-01-08, 7, 2",
+			"2030-01-10, 1, 10",
+			"2030-01-10, 3, 4", // 1, 4, 7, 10
+			"2030-01-09, 3, 3",
+	})
+	void countUntil(LocalDate until, long period, long expected) {
+		assertThat(Recurrence.countUntil(FIRST, until, period)).isEqualTo(expected);
+	}
+
+	@ParameterizedTest
+	@CsvSource({
+			// count, until,   period, occurrences
+			"5,     ,           7, 5",
+			",      2030-01-29, 7, 5",
+			"3,     2030-01-29, 7, 3", // count first
+			"10,    2030-01-29, 7, 5", // until first
+			"10,    2029-12-01, 7, 0", // until before the first start: rejected
+	})
+	void occurrencesWithCountOrUntil(Integer count, LocalDate until, long period, long expected) {
+		assertThat(Recurrence.occurrences(count, FIRST, until, period)).isEqualTo(expected);
+	}
+
+	@ParameterizedTest
+	@CsvSource({
+			// frequency, every, last day an occurrence starts (from 2030-01-01), occurrences
+			"weekly, 1, 3633, 520", // 519 weeks later: the last allowed
+			"weekly, 1, 3640, 521", // 520 weeks later: one too many
+			"daily,  1,  519, 520",
+			"daily,  1,  520, 521",
+			"daily,  2, 1038, 520",
+			"daily,  2, 1039, 520", // The day after doesn't start a new occurrence
+			"daily,  2, 1040, 521",
+	})
+	void maxOccurrencesBoundary(String frequency, int every, long untilDays, long expected) {
+		long period = Recurrence.periodDays(frequency, every);
+		long occurrences = Recurrence.occurrences(null, FIRST, FIRST.plusDays(untilDays), period);
+
+		assertThat(occurrences).isEqualTo(expected);
+		// Same check as the service: between 1 and MAX_OCCURRENCES
+		assertThat(occurrences <= Recurrence.MAX_OCCURRENCES).isEqualTo(expected <= 520);
+	}
+
+	@Test
+	void longestSeriesIsGeneratedUpToItsLastEnd() {
+		Recurrence rule = new Recurrence(FIRST, FIRST.plusDays(2), 7, Recurrence.MAX_OCCURRENCES);
+		List<LocalDate[]> occurrences = occurrences(rule);
+
+		assertThat(occurrences).hasSize(Recurrence.MAX_OCCURRENCES);
+		assertThat(occurrences.get(0)).containsExactly(FIRST, FIRST.plusDays(2));
+		assertThat(occurrences.get(occurrences.size() - 1)[1]).isEqualTo(rule.lastEnd());
+		assertThat(rule.lastEnd()).isEqualTo(FIRST.plusDays(519 * 7 + 2));
+	}
+
+	@ParameterizedTest
+	@CsvSource({
+			// Weekly series of 4 occurrences of 2 days: [01, 03) [08, 10) [15, 17) [22, 24)
+			// from,     to,         first day of each overlapping occurrence
+			"2029-12-01, 2030-01-01, ''",
+			"2029-12-01, 2030-01-02, 1",
+			"2030-01-03, 2030-01-08, ''", // Between two occurrences, both bounds touch
+			"2030-01-02, 2030-01-09, 1 8",
+			"2030-01-09, 2030-01-16, 8 15",
+			"2030-01-23, 2030-03-01, 22",
+			"2030-01-24, 2030-03-01, ''", // Right after the last end
+			"2029-01-01, 2031-01-01, 1 8 15 22",
+	})
+	void occurrencesInRange(LocalDate from, LocalDate to, String expectedDays) {
+		Recurrence rule = new Recurrence(FIRST, FIRST.plusDays(2), 7, 4);
+
+		List<Integer> days = new ArrayList<>();
+		rule.forEachOccurrence(from, to, (start, end) -> days.add(start.getDayOfMonth()));
+
+		assertThat(days).containsExactlyElementsOf(expectedDays.isBlank() ? List.of()
+				: List.of(expectedDays.split(" ")).stream().map(Integer::valueOf).toList());
+	}
+
+	@Test
+	void lastEnd() {
+		assertThat(new Recurrence(FIRST, FIRST.plusDays(2), 7, 4).lastEnd()).isEqualTo(LocalDate.of(2030, 1, 24));
+		assertThat(new Recurrence(FIRST, FIRST.plusDays(2), 7, 1).lastEnd()).isEqualTo(LocalDate.of(2030, 1, 3));
+		assertThat(new Recurrence(FIRST, FIRST.plusDays(1), 3, 3).lastEnd()).isEqualTo(LocalDate.of(2030, 1, 8));
+	}
+
+	/**
+	 * Random series (daily or weekly, every > 1, occurrences as long as the period)
+	 * and ranges, checked against every occurrence filtered one by one
+	 */
+	@Test
+	void occurrencesInRangeMatchTheFullList() {
+		Random random = new Random(42);
+
+		for (int i = 0; i < 2_000; i++) {
+			long period = Recurrence.periodDays(random.nextBoolean() ? "daily" : "weekly", 1 + random.nextInt(3));
+			LocalDate start = FIRST.plusDays(random.nextInt(30));
+			Recurrence rule = new Recurrence(start, start.plusDays(1 + random.nextInt((int) period)), period,
+					1 + random.nextInt(20));
+
+			LocalDate from = FIRST.plusDays(random.nextInt(200) - 20);
+			LocalDate to = from.plusDays(1 + random.nextInt(60));
+
+			List<LocalDate> expected = new ArrayList<>();
+			for (LocalDate[] occurrence : occurrences(rule)) {
+				if (occurrence[0].isBefore(to) && occurrence[1].isAfter(from)) {
+					expected.add(occurrence[0]);
+				}
+			}
+
+			List<LocalDate> actual = new ArrayList<>();
+			rule.forEachOccurrence(from, to, (occurrenceStart, occurrenceEnd) -> actual.add(occurrenceStart));
+
+			assertThat(actual).as("%s %s", from, to).containsExactlyElementsOf(expected);
+		}
+	}
+
+	private static List<LocalDate[]> occurrences(Recurrence rule) {
+		List<LocalDate[]> occurrences = new ArrayList<>();
+		rule.forEachOccurrence((start, end) -> occurrences.add(new LocalDate[] {start, end}));
+		return occurrences;
+	}
+}
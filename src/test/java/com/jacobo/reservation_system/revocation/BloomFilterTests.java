@@ -0,0 +1,87 @@
+package com.jacobo.reservation_system.revocation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A key that was added is always found, whatever the load of the filter
+ */
+class BloomFilterTests {
+
+	@Test
+	void addedKeysAreAlwaysFound() {
+		BloomFilter filter = new BloomFilter(1000, 0.01);
+		List<String> keys = keys(1000);
+		keys.forEach(key -> filter.add("token:", key));
+
+		assertThat(keys).allMatch(key -> filter.mightContain("token:", key));
+	}
+
+	@Test
+	void noFalseNegativeOverCapacity() {
+		// Ten times the expected keys: more false positives, still no false negative
+		BloomFilter filter = new BloomFilter(100, 0.01);
+		List<String> keys = keys(1000);
+		keys.forEach(key -> filter.add("user:", key));
+
+		assertThat(keys).allMatch(key -> filter.mightContain("user:", key));
+	}
+
+	@Test
+	void falsePositiveRateIsNearTheConfiguredOne() {
+		BloomFilter filter = new BloomFilter(10_000, 0.01);
+		keys(10_000).forEach(key -> filter.add("token:", key));
+
+		long falsePositives = keys(100_000).stream().filter(key -> filter.mightContain("token:", key)).count();
+
+		assertThat(falsePositives / 100_000.0).isLessThan(0.02);
+	}
+
+	@Test
+	void prefixIsHashedAsPartOfTheKey() {
+		BloomFilter filter = new BloomFilter(10, 0.01);
+		filter.add("user:", "bob");
+
+		// The rebuild adds the table IDs ("user:bob") with an empty prefix
+		assertThat(filter.mightContain("", "user:bob")).isTrue();
+		assertThat(filter.mightContain(TokenRevocations.USER, "bob")).isTrue();
+		assertThat(filter.mightContain("token:", null)).isFalse();
+	}
+
+	@Test
+	void concurrentAddsAreAllKept() throws Exception {
+		// Small filter: the threads set bits of the same words at the same time
+		BloomFilter filter = new BloomFilter(500, 0.01);
+		List<Future<List<String>>> added = new ArrayList<>();
+
+		try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+			for (int t = 0; t < 8; t++) {
+				added.add(executor.submit(() -> {
+					List<String> keys = keys(500);
+					keys.forEach(key -> filter.add("token:", key));
+					return keys;
+				}));
+			}
+
+			for (Future<List<String>> keys : added) {
+				assertThat(keys.get()).allMatch(key -> filter.mightContain("token:", key));
+			}
+		}
+	}
+
+	private static List<String> keys(int count) {
+		List<String> keys = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			keys.add(UUID.randomUUID().toString());
+		}
+		return keys;
+	}
+}
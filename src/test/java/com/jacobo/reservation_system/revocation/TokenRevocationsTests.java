@@ -0,0 +1,154 @@
+package com.jacobo.reservation_system.revocation;
+
+import com.jacobo.reservation_system.models.entities.RevokedTokens;
+import com.jacobo.reservation_system.repositories.RevokedTokensRepository;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Rebuilds of the filter while tokens are revoked
+ * The revoked_tokens table is a map behind a mocked repository. A token that the filter
+ * drops is accepted without reading the table, so every check must find it revoked
+ */
+class TokenRevocationsTests {
+	private final Map<String, RevokedTokens> table = new ConcurrentHashMap<>();
+	private RevokedTokensRepository revokedRepo;
+	private TokenRevocations revocations;
+
+	@BeforeEach
+	void setUp() {
+		revokedRepo = mock(RevokedTokensRepository.class);
+		when(revokedRepo.save(any())).thenAnswer(invocation -> {
+			RevokedTokens revoked = invocation.getArgument(0);
+			table.put(revoked.getId(), revoked);
+			return revoked;
+		});
+		when(revokedRepo.existsById(anyString())).thenAnswer(invocation -> table.containsKey(invocation.getArgument(0)));
+		when(revokedRepo.findById(anyString())).thenAnswer(invocation -> Optional.ofNullable(table.get(invocation.getArgument(0))));
+		when(revokedRepo.findLiveIds(any())).thenAnswer(invocation -> new ArrayList<>(table.keySet()));
+
+		revocations = new TokenRevocations(revokedRepo, 60, 16, 0.01);
+	}
+
+	@Test
+	void revokedTokensSurviveARebuild() {
+		Claims token = token("alice");
+		revocations.revokeToken(token);
+		revocations.revokeUser("bob");
+
+		revocations.rebuild();
+
+		assertThat(revocations.isRevoked(token)).isTrue();
+		assertThat(revocations.isRevoked(issuedBefore("bob"))).isTrue();
+		assertThat(revocations.isRevoked(token("alice"))).isFalse();
+	}
+
+	@Test
+	void revocationDuringTheReadIsKeptAfterTheSwap() {
+		// Revoked once the rebuild has read the table: the row is not in its list
+		Claims late = token("carol");
+		when(revokedRepo.findLiveIds(any())).thenAnswer(invocation -> {
+			List<String> ids = new ArrayList<>(table.keySet());
+			revocations.revokeToken(late);
+			return ids;
+		});
+
+		revocations.rebuild();
+
+		assertThat(revocations.isRevoked(late)).isTrue();
+	}
+
+	@Test
+	void revocationDuringAResizedRebuildIsKept() {
+		// More rows than half the minimum capacity: the rebuild reads the table again for a
+		// bigger filter, and the first one, which got the revocation, is dropped
+		for (int i = 0; i < 20; i++) {
+			revocations.revokeToken(token("dave"));
+		}
+		Claims late = token("dave");
+		AtomicInteger reads = new AtomicInteger();
+		when(revokedRepo.findLiveIds(any())).thenAnswer(invocation -> {
+			List<String> ids = new ArrayList<>(table.keySet());
+			if (reads.incrementAndGet() == 1) {
+				revocations.revokeToken(late);
+			}
+			return ids;
+		});
+
+		revocations.rebuild();
+
+		assertThat(reads).hasValue(2);
+		assertThat(revocations.isRevoked(late)).isTrue();
+	}
+
+	@Test
+	void noRevocationIsLostWhileRebuildingNonStop() throws Exception {
+		AtomicBoolean revoking = new AtomicBoolean(true);
+		List<Claims> revoked = new ArrayList<>();
+
+		try (ExecutorService executor = Executors.newFixedThreadPool(2)) {
+			Future<?> rebuilds = executor.submit(() -> {
+				while (revoking.get()) {
+					revocations.rebuild();
+				}
+			});
+			Future<?> revokes = executor.submit(() -> {
+				for (int i = 0; i < 2000; i++) {
+					Claims token = token("user" + i % 50);
+					revocations.revokeToken(token);
+					revoked.add(token);
+				}
+				revoking.set(false);
+			});
+			revokes.get();
+			rebuilds.get();
+		}
+
+		assertThat(revoked).allMatch(revocations::isRevoked);
+	}
+
+	private static Claims token(String username) {
+		Instant now = Instant.now();
+		return Jwts.claims()
+				.id(UUID.randomUUID().toString())
+				.subject(username)
+				.issuedAt(Date.from(now))
+				.expiration(Date.from(now.plusSeconds(3600)))
+				.build();
+	}
+
+	/**
+	 * Token of the user issued a minute before his revocation
+	 */
+	private static Claims issuedBefore(String username) {
+		Instant issued = Instant.now().minusSeconds(60);
+		return Jwts.claims()
+				.id(UUID.randomUUID().toString())
+				.subject(username)
+				.issuedAt(Date.from(issued))
+				.expiration(Date.from(issued.plusSeconds(3600)))
+				.build();
+	}
+}
@@ -0,0 +1,110 @@
+package com.jacobo.reservation_system.search;
+
+import com.jacobo.reservation_system.models.entities.Resources;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Latency of the search index with 100k resources
+ * Names of 2-3 words and descriptions of 6-10 words from a vocabulary of 5000 random words
+ * Each kind of query runs 20k times after a warm-up, p50 / p99 / max are printed
+ * Run with: mvn test -Pbenchmarks
+ */
+@Tag("benchmark")
+class ResourceSearchBenchmarkTests {
+	private static final int RESOURCES = 100_000;
+	private static final int QUERIES = 20_000;
+	private static final int LIMIT = 20;
+
+	private final Random random = new Random(7);
+	private final String[] vocabulary = vocabulary(5_000);
+
+	@Test
+	void queriesAt100kResources() {
+		ResourceSearchIndex index = new ResourceSearchIndex(null, null);
+
+		long start = System.nanoTime();
+		for (int id = 1; id <= RESOURCES; id++) {
+			Resources resource = new Resources();
+			resource.setId((long) id);
+			resource.setName(words(2 + random.nextInt(2)) + " " + id);
+			resource.setDescription(words(6 + random.nextInt(5)));
+			resource.setActive(random.nextInt(10) > 0);
+			index.add(resource);
+		}
+		System.out.printf("Index of %,d resources built in %d ms%n", RESOURCES, (System.nanoTime() - start) / 1_000_000);
+
+		long[] exact = run(index, word -> word);
+		long[] prefix = run(index, word -> word.substring(0, 3));
+		long[] typo = run(index, word -> typo(word));
+		long[] twoWords = run(index, word -> word + " " + vocabulary[random.nextInt(vocabulary.length)]);
+
+		report("exact", exact);
+		report("prefix (3 letters)", prefix);
+		report("typo (1 letter)", typo);
+		report("two words", twoWords);
+
+		assertThat(percentile(exact, 50)).isLessThan(1_000_000);
+		assertThat(percentile(prefix, 50)).isLessThan(1_000_000);
+	}
+
+	private long[] run(ResourceSearchIndex index, Function<String, String> query) {
+		for (int i = 0; i < QUERIES; i++) {
+			index.search(query.apply(vocabulary[random.nextInt(vocabulary.length)]), false, LIMIT); // Warm-up
+		}
+
+		long[] nanos = new long[QUERIES];
+		for (int i = 0; i < QUERIES; i++) {
+			String text = query.apply(vocabulary[random.nextInt(vocabulary.length)]);
+			long start = System.nanoTime();
+			index.search(text, false, LIMIT);
+			nanos[i] = System.nanoTime() - start;
+		}
+
+		Arrays.sort(nanos);
+		return nanos;
+	}
+
+	private static void report(String kind, long[] sorted) {
+		System.out.printf("%-20s p50 %6.1f us  p99 %7.1f us  max %8.1f us%n", kind,
+				percentile(sorted, 50) / 1000.0, percentile(sorted, 99) / 1000.0, sorted[sorted.length - 1] / 1000.0);
+	}
+
+	private static long percentile(long[] sorted, int percentile) {
+		return sorted[Math.min(sorted.length - 1, sorted.length * percentile / 100)];
+	}
+
+	private String words(int count) {
+		List<String> words = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			words.add(vocabulary[random.nextInt(vocabulary.length)]);
+		}
+		return String.join(" ", words);
+	}
+
+	private String typo(String word) {
+		char[] letters = word.toCharArray();
+		letters[1 + random.nextInt(letters.length - 1)] = (char) ('a' + random.nextInt(26));
+		return new String(letters);
+	}
+
+	private String[] vocabulary(int size) {
+		String[] words = new String[size];
+		for (int i = 0; i < size; i++) {
+			char[] letters = new char[5 + random.nextInt(6)];
+			for (int j = 0; j < letters.length; j++) {
+				letters[j] = (char) ('a' + random.nextInt(26));
+			}
+			words[i] = new String(letters);
+		}
+		return words;
+	}
+}
@@ -0,0 +1,117 @@
+package com.jacobo.reservation_system.search;
+
+import com.jacobo.reservation_system.models.dtos.ResourcesDtos.SearchResourcesOutDTO;
+import com.jacobo.reservation_system.models.entities.Resources;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tokenizer, bounded edit distance and ranked search, without database
+ */
+class ResourceSearchIndexTests {
+	private ResourceSearchIndex index;
+
+	@BeforeEach
+	void setUp() {
+		index = new ResourceSearchIndex(null, null); // add() and search() don't use the database
+	}
+
+	@ParameterizedTest
+	@CsvSource(delimiter = '|', value = {
+			"Sala Reunión                | sala reunion",
+			"Conference-room 3B (floor 2)| conference room 3b floor 2",
+			"ÀÉÎÕÜ ñ ç                   | aeiou n c",
+			"Конференц-зал №2            | конференц зал 2",
+			"Αίθουσα συνεδριάσεων        | αιθουσα συνεδριασεων",
+			"会议室 A                     | 会议室 a",
+			"東京-大阪                    | 東京 大阪",
+			"  ...  ,, --                | ''",
+	})
+	void tokenize(String text, String expected) {
+		assertThat(ResourceSearchIndex.tokenize(text))
+				.containsExactlyElementsOf(expected.isEmpty() ? List.of() : List.of(expected.split(" ")));
+	}
+
+	@Test
+	void tokenizeNothing() {
+		assertThat(ResourceSearchIndex.tokenize(null)).isEmpty();
+		assertThat(ResourceSearchIndex.tokenize("   ")).isEmpty();
+	}
+
+	@ParameterizedTest
+	@CsvSource({
+			// a,          b,           max, expected (max + 1 when over the maximum)
+			"room,         room,        2,   0",
+			"room,         roam,        2,   1", // Substitution
+			"room,         rooms,       2,   1", // Insertion
+			"rooms,        room,        2,   1", // Deletion
+			"room,         orom,        2,   2", // Transposition counts as two
+			"conference,   confrence,   2,   1",
+			"conference,   konferense,  2,   2",
+			"conference,   kinferense,  2,   3", // Over the maximum: stops early
+			"desk,         parking,     2,   3", // Length difference alone is over
+			"a,            '',          1,   1",
+			"зал,          зол,         1,   1",
+	})
+	void editDistance(String a, String b, int max, int expected) {
+		assertThat(ResourceSearchIndex.editDistance(a, b, max)).isEqualTo(expected);
+	}
+
+	@Test
+	void exactPrefixAndTypoMatchesAreRanked() {
+		add(1, "Conference room", "Big room with projector", true);
+		add(2, "Confession box", "Quiet", true);
+		add(3, "Meeting room", "Next to the conference room", true);
+		add(4, "Conferense hall", "Typo in the name", true);
+
+		assertThat(ids(index.search("conference", false, 10))).containsExactly(1L, 4L, 3L);
+		assertThat(ids(index.search("conf", false, 10))).containsExactly(1L, 4L, 2L, 3L); // Same score: by name
+		assertThat(ids(index.search("conference projector", false, 10))).containsExactly(1L);
+		assertThat(ids(index.search("conference", false, 1))).containsExactly(1L);
+	}
+
+	@Test
+	void inactiveResourcesOnlyForAdmins() {
+		add(1, "Desk 1", null, true);
+		add(2, "Desk 2", null, false);
+
+		assertThat(ids(index.search("desk", false, 10))).containsExactly(1L);
+		assertThat(ids(index.search("desk", true, 10))).containsExactlyInAnyOrder(1L, 2L);
+
+		index.setActive(2L, true);
+		assertThat(ids(index.search("desk", false, 10))).containsExactlyInAnyOrder(1L, 2L);
+	}
+
+	@Test
+	void nonLatinNamesAreSearchable() {
+		add(1, "Конференц-зал", "Большой зал", true);
+		add(2, "Αίθουσα συνεδριάσεων", null, true);
+		add(3, "会议室", "二楼", true);
+
+		assertThat(ids(index.search("конференц", false, 10))).containsExactly(1L);
+		assertThat(ids(index.search("конф", false, 10))).containsExactly(1L);
+		assertThat(ids(index.search("зал", false, 10))).containsExactly(1L);
+		assertThat(ids(index.search("αιθουσα", false, 10))).containsExactly(2L);
+		assertThat(ids(index.search("Αίθουσα", false, 10))).containsExactly(2L);
+		assertThat(ids(index.search("会议", false, 10))).containsExactly(3L);
+	}
+
+	private void add(long id, String name, String description, boolean active) {
+		Resources resource = new Resources();
+		resource.setId(id);
+		resource.setName(name);
+		resource.setDescription(description);
+		resource.setActive(active);
+		index.add(resource);
+	}
+
+	private static List<Long> ids(List<SearchResourcesOutDTO> results) {
+		return results.stream().map(SearchResourcesOutDTO::getId).toList();
+	}
+}
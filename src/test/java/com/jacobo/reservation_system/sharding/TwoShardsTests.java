@@ -0,0 +1,440 @@
+package com.jacobo.reservation_system.sharding;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jacobo.reservation_system.models.entities.Resources;
+import com.jacobo.reservation_system.models.entities.Roles;
+import com.jacobo.reservation_system.models.entities.Users;
+import com.jacobo.reservation_system.repositories.RecurringReservationsRepository;
+import com.jacobo.reservation_system.repositories.ResourcesRepository;
+import com.jacobo.reservation_system.repositories.RolesRepository;
+import com.jacobo.reservation_system.repositories.UsersRepository;
+import com.jacobo.reservation_system.services.implementation.JwtService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Bookings with two shards: home and a second H2 database created from docker/shard-schema.sql
+ * IDs are interleaved like in docker/docker-compose.yml (home odd, shard 1 even), resources included
+ */
+@SpringBootTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:sharded_home;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+		"sharding.shards[0].url=jdbc:h2:mem:shard1;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;"
+				+ "INIT=RUNSCRIPT FROM 'docker/shard-schema.sql'",
+		"sharding.shards[0].username=sa",
+		"sharding.shards[0].password=",
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class TwoShardsTests {
+	private static final String[] BOOKING_TABLES = {"reservations", "recurring_reservations", "waitlist_entries"};
+	private static boolean interleaved;
+
+	@Autowired
+	private MockMvc mockMvc;
+	@Autowired
+	private ObjectMapper mapper;
+	@Autowired
+	private ShardTemplate shards;
+	@Autowired
+	private ShardRouter router;
+	@Autowired
+	private JdbcTemplate jdbc;
+	@Autowired
+	private UsersRepository usersRepo;
+	@Autowired
+	private RolesRepository rolesRepo;
+	@Autowired
+	private ResourcesRepository resourcesRepo;
+	@Autowired
+	private JwtService jwt;
+	@MockitoSpyBean
+	private RecurringReservationsRepository recurringRepo;
+
+	private String suffix;
+
+	@BeforeEach
+	void setUp() {
+		suffix = UUID.randomUUID().toString().substring(0, 8);
+
+		if (!interleaved) {
+			// Shard 0 generates 1, 3, 5... and shard 1 2, 4, 6..., like auto_increment_offset
+			interleave(ShardContext.HOME, "resources", 1001);
+			for (String table : BOOKING_TABLES) {
+				interleave(ShardContext.HOME, table, 1001);
+				interleave(1, table, 1002);
+			}
+			interleaved = true;
+		}
+	}
+
+	@Test
+	void bookingsLandOnBothShardsAndArePagedInIdOrder() throws Exception {
+		assertThat(router.shardCount()).isEqualTo(2);
+
+		// Resource IDs are all odd: a plain modulo would put all of them in one shard
+		List<Resources> resources = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			resources.add(newResource("room" + i + "_" + suffix));
+		}
+		assertThat(resources).allMatch(resource -> resource.getId() % 2 == 1);
+		assertThat(resources.stream().map(resource -> router.shardForResource(resource.getId())))
+				.contains(ShardContext.HOME, 1);
+
+		Roles userRole = role("USER");
+		for (int i = 0; i < resources.size(); i++) {
+			Users user = newUser("booker" + i + "_" + suffix, userRole);
+
+			mockMvc.perform(post("/reservations/create_reservation")
+							.header("Authorization", token(user, "USER"))
+							.contentType(MediaType.APPLICATION_JSON)
+							.content("{\"resource_id\":" + resources.get(i).getId()
+									+ ",\"start_date\":\"2034-05-01\",\"end_date\":\"2034-05-03\"}"))
+					.andExpect(status().isOk());
+		}
+
+		// Each reservation is in the shard of its resource, and its ID tells that shard
+		for (Resources resource : resources) {
+			int shard = router.shardForResource(resource.getId());
+			List<Long> ids = shards.readShard(shard, () -> jdbc.queryForList(
+					"select id from reservations where resource_id = ?", Long.class, resource.getId()));
+
+			assertThat(ids).hasSize(1);
+			assertThat(router.shardForId(ids.get(0))).isEqualTo(shard);
+		}
+
+		// Pages of 3: every reservation once, in ID order, from both shards
+		Users admin = newUser("admin_" + suffix, role("ADMIN"));
+		List<Long> paged = new ArrayList<>();
+		String after = null;
+		do {
+			JsonNode page = mapper.readTree(mockMvc.perform(get("/reservations/page")
+							.param("limit", "3")
+							.param("after", after == null ? "" : after)
+							.header("Authorization", token(admin, "ADMIN")))
+					.andExpect(status().isOk())
+					.andReturn().getResponse().getContentAsString());
+
+			page.get("items").forEach(item -> paged.add(item.get("id").asLong()));
+			after = page.get("next_after").isNull() ? null : page.get("next_after").asText();
+		} while (after != null);
+
+		List<Long> stored = new ArrayList<>();
+		for (int shard = 0; shard < shards.count(); shard++) {
+			stored.addAll(shards.readShard(shard, () -> jdbc.queryForList("select id from reservations", Long.class)));
+		}
+
+		assertThat(paged).isSorted().doesNotHaveDuplicates().containsExactlyInAnyOrderElementsOf(stored);
+		assertThat(paged).anyMatch(id -> id % 2 == 0).anyMatch(id -> id % 2 == 1);
+	}
+
+	@Test
+	void callForTheCurrentShardRunsInTheCurrentTransaction() {
+		String session = "select session_id()";
+
+		shards.inShard(ShardContext.HOME, () -> {
+			Integer outer = jdbc.queryForObject(session, Integer.class);
+
+			// Same connection: a new transaction would take a second one from the pool
+			assertThat(shards.readShard(ShardContext.HOME, () -> jdbc.queryForObject(session, Integer.class)))
+					.isEqualTo(outer);
+			assertThat(shards.inShard(ShardContext.HOME, () -> jdbc.queryForObject(session, Integer.class)))
+					.isEqualTo(outer);
+			// Another shard: its own transaction, then this one again
+			shards.readShard(1, () -> jdbc.queryForObject(session, Integer.class));
+			assertThat(jdbc.queryForObject(session, Integer.class)).isEqualTo(outer);
+			return null;
+		});
+	}
+
+	@Test
+	void cancellationPromotesWaiterInOtherShard() throws Exception {
+		Long resourceId = resourceIn(1).getId();
+
+		Roles userRole = role("USER");
+		Users first = newUser("first_" + suffix, userRole);
+		Users waiter = newUser("waiter_" + suffix, userRole);
+		String booking = "{\"resource_id\":" + resourceId
+				+ ",\"start_date\":\"2034-06-01\",\"end_date\":\"2034-06-05\",\"join_waitlist\":true}";
+
+		mockMvc.perform(post("/reservations/create_reservation")
+						.header("Authorization", token(first, "USER"))
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(booking))
+				.andExpect(status().isOk());
+		JsonNode waitlisted = mapper.readTree(mockMvc.perform(post("/reservations/create_reservation")
+						.header("Authorization", token(waiter, "USER"))
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(booking))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString());
+		assertThat(waitlisted.get("status").asText()).isEqualTo("waitlisted");
+
+		Long reservationId = shards.readShard(1, () -> jdbc.queryForObject(
+				"select id from reservations where resource_id = ? and user_id = ?", Long.class, resourceId, first.getId()));
+		Users admin = newUser("admin_" + suffix, role("ADMIN"));
+		mockMvc.perform(patch("/reservations/deactivate/" + reservationId)
+						.header("Authorization", token(admin, "ADMIN")))
+				.andExpect(status().isOk());
+
+		// The waiter (read from home before the cancellation) got the freed dates
+		JsonNode entry = mapper.readTree(mockMvc.perform(get("/reservations/waitlist/" + waitlisted.get("waitlist_id").asLong())
+						.header("Authorization", token(waiter, "USER")))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString());
+		assertThat(entry.get("status").asText()).isEqualTo("promoted");
+		assertThat(shards.readShard(1, () -> jdbc.queryForObject(
+				"select count(*) from reservations where resource_id = ? and user_id = ? and status = 'active'",
+				Long.class, resourceId, waiter.getId()))).isEqualTo(1);
+	}
+
+	/**
+	 * The same user books a resource of each shard at the same time, 20 times:
+	 * the lock of his row in home lets only one booking of each pair through
+	 */
+	@Test
+	void oneActiveReservationPerUserAcrossShards() throws Exception {
+		Roles userRole = role("USER");
+
+		for (int round = 0; round < 20; round++) {
+			Resources[] resources = {resourceIn(ShardContext.HOME), resourceIn(1)};
+			Users user = newUser("racer" + round + "_" + suffix, userRole);
+			CyclicBarrier start = new CyclicBarrier(resources.length);
+			List<Integer> statuses = new CopyOnWriteArrayList<>();
+
+			try (ExecutorService executor = Executors.newFixedThreadPool(resources.length)) {
+				List<Future<?>> bookings = new ArrayList<>();
+				for (Resources resource : resources) {
+					bookings.add(executor.submit(() -> {
+						start.await();
+						statuses.add(mockMvc.perform(post("/reservations/create_reservation")
+										.header("Authorization", token(user, "USER"))
+										.contentType(MediaType.APPLICATION_JSON)
+										.content("{\"resource_id\":" + resource.getId()
+												+ ",\"start_date\":\"2035-01-01\",\"end_date\":\"2035-01-05\"}"))
+								.andReturn().getResponse().getStatus());
+						return null;
+					}));
+				}
+				for (Future<?> booking : bookings) {
+					booking.get();
+				}
+			}
+
+			assertThat(statuses).as("round %d", round).containsExactlyInAnyOrder(200, 409);
+
+			long active = 0;
+			for (int shard = 0; shard < shards.count(); shard++) {
+				active += shards.readShard(shard, () -> jdbc.queryForObject(
+						"select count(*) from reservations where user_id = ? and status = 'active'", Long.class, user.getId()));
+			}
+			assertThat(active).as("round %d", round).isEqualTo(1);
+		}
+	}
+
+	/**
+	 * The cancellation of the bookings fails: the deactivation is rolled back with it,
+	 * in home (one transaction) and in shard 1 (nested transaction)
+	 */
+	@ParameterizedTest
+	@ValueSource(ints = {ShardContext.HOME, 1})
+	void deactivationIsRolledBackWhenTheCascadeFails(int shard) throws Exception {
+		Resources resource = resourceIn(shard);
+		Users user = newUser("booker_" + suffix, role("USER"));
+		book(user, resource, "2036-01-01", "2036-01-05").andExpect(status().isOk());
+
+		// Last update of the cascade: the reservations of the resource are already canceled
+		doThrow(new IllegalStateException("Series cancellation failed"))
+				.when(recurringRepo).cancelUnfinishedByResource(eq(resource.getId()), any());
+		assertThatThrownBy(() -> mockMvc.perform(patch("/resources/deactivate_resource/" + resource.getId())
+				.header("Authorization", token(newUser("admin_" + suffix, role("ADMIN")), "ADMIN"))))
+				.hasRootCauseMessage("Series cancellation failed");
+
+		assertThat(resourcesRepo.findById(resource.getId()).orElseThrow().isActive()).isTrue();
+		assertThat(activeReservations(resource)).isEqualTo(1);
+	}
+
+	/**
+	 * Same for users, deactivated or deleted: the user stays active, with his booking
+	 * and without a purge, whichever shard the booking lives in
+	 */
+	@ParameterizedTest
+	@CsvSource({"deactivate,0", "deactivate,1", "delete,0", "delete,1"})
+	void userDeactivationIsRolledBackWhenTheCascadeFails(String action, int shard) throws Exception {
+		Resources resource = resourceIn(shard);
+		Users user = newUser("leaver_" + suffix, role("USER"));
+		book(user, resource, "2036-03-01", "2036-03-05").andExpect(status().isOk());
+
+		// Fails in home, once the user row and his home reservations are already updated
+		doThrow(new IllegalStateException("Series cancellation failed"))
+				.when(recurringRepo).cancelUnfinishedByUser(eq(user.getId()), any());
+		String adminToken = token(newUser("admin_" + suffix, role("ADMIN")), "ADMIN");
+		assertThatThrownBy(() -> mockMvc.perform(action.equals("delete")
+				? delete("/users/delete_user/" + user.getId()).header("Authorization", adminToken)
+				: patch("/users/deactivate_user/" + user.getId()).header("Authorization", adminToken)))
+				.hasRootCauseMessage("Series cancellation failed");
+
+		assertThat(usersRepo.findById(user.getId()).orElseThrow().getActive()).isTrue();
+		assertThat(jdbc.queryForObject("select count(*) from user_purges where user_id = ?", Long.class, user.getId()))
+				.isZero();
+		assertThat(activeReservations(resource)).isEqualTo(1);
+	}
+
+	/**
+	 * A booking and the deactivation of its resource at the same time, 20 times:
+	 * either the booking is canceled by the deactivation or it's rejected
+	 */
+	@Test
+	void noActiveBookingOnDeactivatedResource() throws Exception {
+		Roles userRole = role("USER");
+		String adminToken = token(newUser("admin_" + suffix, role("ADMIN")), "ADMIN");
+
+		for (int round = 0; round < 20; round++) {
+			Resources resource = resourceIn(round % 2);
+			Users user = newUser("racer" + round + "_" + suffix, userRole);
+			CyclicBarrier start = new CyclicBarrier(2);
+
+			try (ExecutorService executor = Executors.newFixedThreadPool(2)) {
+				Future<?> booking = executor.submit(() -> {
+					start.await();
+					return book(user, resource, "2036-02-01", "2036-02-05").andReturn();
+				});
+				Future<?> deactivation = executor.submit(() -> {
+					start.await();
+					return mockMvc.perform(patch("/resources/deactivate_resource/" + resource.getId())
+							.header("Authorization", adminToken)).andExpect(status().isOk());
+				});
+				booking.get();
+				deactivation.get();
+			}
+
+			assertThat(activeReservations(resource)).as("round %d", round).isZero();
+		}
+	}
+
+	/**
+	 * A series is canceled by its owner or an ADMIN, other users get 404 as if it didn't exist
+	 */
+	@ParameterizedTest
+	@ValueSource(ints = {ShardContext.HOME, 1})
+	void seriesIsDeactivatedOnlyByItsOwnerOrAdmin(int shard) throws Exception {
+		Roles userRole = role("USER");
+		Users owner = newUser("owner_" + suffix, userRole);
+		long ownSeries = bookSeries(owner, resourceIn(shard));
+		long otherSeries = bookSeries(newUser("neighbour_" + suffix, userRole), resourceIn(shard));
+
+		mockMvc.perform(patch("/reservations/recurring/deactivate/" + otherSeries)
+						.header("Authorization", token(owner, "USER")))
+				.andExpect(status().isNotFound());
+		mockMvc.perform(patch("/reservations/recurring/deactivate/" + ownSeries)
+						.header("Authorization", token(owner, "USER")))
+				.andExpect(status().isOk());
+		mockMvc.perform(patch("/reservations/recurring/deactivate/" + otherSeries)
+						.header("Authorization", token(newUser("admin_" + suffix, role("ADMIN")), "ADMIN")))
+				.andExpect(status().isOk());
+	}
+
+	private ResultActions book(Users user, Resources resource, String start, String end) throws Exception {
+		return mockMvc.perform(post("/reservations/create_reservation")
+				.header("Authorization", token(user, "USER"))
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("{\"resource_id\":" + resource.getId()
+						+ ",\"start_date\":\"" + start + "\",\"end_date\":\"" + end + "\"}"));
+	}
+
+	private long bookSeries(Users user, Resources resource) throws Exception {
+		String response = mockMvc.perform(post("/reservations/create_recurring_reservation")
+						.header("Authorization", token(user, "USER"))
+						.contentType(MediaType.APPLICATION_JSON)
+						.content("{\"resource_id\":" + resource.getId()
+								+ ",\"start_date\":\"2037-01-05\",\"end_date\":\"2037-01-06\""
+								+ ",\"frequency\":\"weekly\",\"count\":4}"))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString();
+		return mapper.readTree(response).get("id").asLong();
+	}
+
+	private long activeReservations(Resources resource) {
+		return shards.readShard(router.shardForResource(resource.getId()), () -> jdbc.queryForObject(
+				"select count(*) from reservations where resource_id = ? and status = 'active'",
+				Long.class, resource.getId()));
+	}
+
+	private Resources resourceIn(int shard) {
+		Resources resource;
+		do {
+			resource = newResource("desk_" + UUID.randomUUID());
+		} while (router.shardForResource(resource.getId()) != shard);
+		return resource;
+	}
+
+	private void interleave(int shard, String table, long start) {
+		shards.inShard(shard, () -> {
+			jdbc.execute("alter table " + table + " alter column id set increment by 2");
+			jdbc.execute("alter table " + table + " alter column id restart with " + start);
+			return null;
+		});
+	}
+
+	private String token(Users user, String role) {
+		return "Bearer " + jwt.generate(user.getUsername(), List.of(role));
+	}
+
+	private Roles role(String name) {
+		return rolesRepo.findByName(name).orElseGet(() -> {
+			Roles role = new Roles();
+			role.setName(name);
+			return rolesRepo.save(role);
+		});
+	}
+
+	private Users newUser(String username, Roles role) {
+		Users newUser = new Users();
+		newUser.setUsername(username);
+		newUser.setEmail(username + "@mail.com");
+		newUser.setPassword("not used");
+		newUser.setRole(new HashSet<>(Set.of(role)));
+		return usersRepo.save(newUser);
+	}
+
+	private Resources newResource(String name) {
+		Resources newResource = new Resources();
+		newResource.setName(name);
+		newResource.setDescription("Resource " + name);
+		return resourcesRepo.save(newResource);
+	}
+}